@@ -54,6 +54,18 @@ public class ITSearchService {
 				.anyMatch(hit -> hit.getDocument().id.equals("003"));
 	}
 
+	@Test
+	public void testSearchWithoutHits() throws Exception {
+		SearchResult fullResult = getSearchClient().search(indexName, new SearchQuery().setQ("bike"), Collections.emptyMap());
+		SearchResult countResult = getSearchClient().search(indexName, new SearchQuery().setQ("bike").setWithHits(false), Collections.emptyMap());
+
+		SearchResultSlice mainSlice = countResult.slices.get(0);
+		assertThat(mainSlice.hits).isEmpty();
+		assertThat(mainSlice.matchCount).isEqualTo(fullResult.slices.get(0).matchCount);
+		assertThat(mainSlice.facets).hasSameSizeAs(fullResult.slices.get(0).facets)
+				.anyMatch(f -> f.getFieldName().equals("brand"));
+	}
+
 	@Test
 	public void testVariantPicking() throws Exception {
 		SearchResult searchResult1 = getSearchClient().search(indexName, new SearchQuery().setQ("striped"), Collections.singletonMap("color", "black and yellow"));
@@ -0,0 +1,81 @@
+package de.cxp.ocs.usecase;
+
+import static de.cxp.ocs.OCSStack.getImportClient;
+import static de.cxp.ocs.OCSStack.getSearchClient;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.cxp.ocs.OCSStack;
+import de.cxp.ocs.model.index.Document;
+import de.cxp.ocs.model.params.SearchQuery;
+import de.cxp.ocs.model.result.SearchResult;
+import de.cxp.ocs.util.DataIndexer;
+
+/**
+ * Compares the corrections of the local spell checker with the ones of the
+ * Elasticsearch term suggester. Both tenants use the same index, only the
+ * 'spellcheck_local_test' tenant has the local spell checker enabled.
+ */
+@ExtendWith({ OCSStack.class })
+public class LocalSpellCheckerTest {
+
+	private final static String indexName = "spellcheck_test";
+
+	private final static String localSpellCheckTenant = "spellcheck_local_test";
+
+	private final static List<String> misspelledQueries = List.of("iphnoe", "addidas", "snekaers", "labtop", "samsnug", "headphnes", "iphnoe cabel");
+
+	@BeforeAll
+	public static void prepareData() throws Exception {
+		List<Document> documents = new ArrayList<>();
+		documents.add(new Document("1").set("title", "apple iphone 15 case").set("brand", "apple"));
+		documents.add(new Document("2").set("title", "iphone charger cable").set("brand", "anker"));
+		documents.add(new Document("3").set("title", "running sneakers").set("brand", "adidas"));
+		documents.add(new Document("4").set("title", "leather sneakers").set("brand", "nike"));
+		documents.add(new Document("5").set("title", "gaming laptop 15 inch").set("brand", "lenovo"));
+		documents.add(new Document("6").set("title", "galaxy tablet").set("brand", "samsung"));
+		documents.add(new Document("7").set("title", "wireless headphones").set("brand", "samsung"));
+		documents.add(new Document("8").set("title", "usb cable").set("brand", "anker"));
+		assertEquals(documents.size(), new DataIndexer(getImportClient()).indexTestData(indexName, documents.iterator()));
+	}
+
+	@Test
+	public void testLocalCorrectionsEqualElasticsearchCorrections() throws Exception {
+		awaitLocalSpellChecker();
+
+		for (String query : misspelledQueries) {
+			SearchResult esResult = search(indexName, query);
+			SearchResult localResult = search(localSpellCheckTenant, query);
+
+			assertThat(esResult.meta.get("query_corrected")).as("correction of '%s' by Elasticsearch", query).isNotNull();
+			assertThat(localResult.meta.get("spell_checker")).as("spell checker for '%s'", query).isEqualTo("local");
+			assertThat(localResult.meta.get("query_corrected")).as("local correction of '%s'", query).isEqualTo(esResult.meta.get("query_corrected"));
+			assertThat(localResult.slices.get(0).matchCount).as("match count for '%s'", query).isEqualTo(esResult.slices.get(0).matchCount);
+		}
+	}
+
+	/**
+	 * The local spell checker is loaded in the background after the first
+	 * request to the tenant.
+	 */
+	private void awaitLocalSpellChecker() throws Exception {
+		for (int i = 0; i < 30; i++) {
+			if ("local".equals(search(localSpellCheckTenant, misspelledQueries.get(0)).meta.get("spell_checker"))) return;
+			Thread.sleep(500);
+		}
+		fail("local spell checker was not loaded");
+	}
+
+	private SearchResult search(String tenant, String query) throws Exception {
+		return getSearchClient().search(tenant, new SearchQuery().setQ(query), Collections.emptyMap());
+	}
+}
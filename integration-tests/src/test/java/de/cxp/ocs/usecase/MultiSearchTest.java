@@ -0,0 +1,88 @@
+package de.cxp.ocs.usecase;
+
+import static de.cxp.ocs.OCSStack.getImportClient;
+import static de.cxp.ocs.OCSStack.getSearchClient;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.cxp.ocs.OCSStack;
+import de.cxp.ocs.model.params.MultiSearchQuery;
+import de.cxp.ocs.model.params.ProductSet;
+import de.cxp.ocs.model.params.SearchQuery;
+import de.cxp.ocs.model.params.StaticProductSet;
+import de.cxp.ocs.model.params.TenantSearchQuery;
+import de.cxp.ocs.model.result.MultiSearchResult;
+import de.cxp.ocs.model.result.MultiSearchResultItem;
+import de.cxp.ocs.model.result.SearchResult;
+import de.cxp.ocs.util.DataIndexer;
+
+@ExtendWith({ OCSStack.class })
+public class MultiSearchTest {
+
+	static final String indexName = "test_multi_search";
+
+	@BeforeAll
+	public static void setup() throws Exception {
+		assertTrue(new DataIndexer(getImportClient()).indexTestData(indexName) > 0);
+	}
+
+	@Test
+	public void testResultsAreReturnedInRequestedOrder() throws Exception {
+		MultiSearchQuery multiSearchQuery = new MultiSearchQuery()
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setTenant(indexName).setQ("bike"))
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setTenant(indexName).setFilters(Map.of("color", "black")).setQ("skirt"))
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setTenant(indexName)
+						.setArrangedProductSets(new ProductSet[] { new StaticProductSet(new String[] { "005" }, "stuff") })
+						.setQ("helmet"))
+				// this query needs the following query stages
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setTenant(indexName).setQ("striped bike helmet"));
+
+		MultiSearchResult multiSearchResult = getSearchClient().multiSearch(multiSearchQuery);
+		assertEquals(4, multiSearchResult.results.size());
+		assertThat(multiSearchResult.results).allMatch(item -> item.status == 200 && item.error == null);
+
+		// each result is the same as the one of a single search
+		SearchResult bikeResult = getSearchClient().search(indexName, new SearchQuery().setQ("bike"), Collections.emptyMap());
+		assertEquals(bikeResult.slices.get(0).matchCount, multiSearchResult.results.get(0).result.slices.get(0).matchCount);
+		assertEquals(bikeResult.inputURI, multiSearchResult.results.get(0).result.inputURI);
+
+		SearchResult skirtResult = getSearchClient().search(indexName, new SearchQuery().setQ("skirt"), Map.of("color", "black"));
+		assertEquals(skirtResult.slices.get(0).matchCount, multiSearchResult.results.get(1).result.slices.get(0).matchCount);
+
+		assertEquals("005", multiSearchResult.results.get(2).result.slices.get(0).hits.get(0).document.id);
+
+		SearchResult relaxedResult = getSearchClient().search(indexName, new SearchQuery().setQ("striped bike helmet"), Collections.emptyMap());
+		assertEquals(relaxedResult.slices.get(0).matchCount, multiSearchResult.results.get(3).result.slices.get(0).matchCount);
+	}
+
+	@Test
+	public void testFailedSearchDoesNotFailOthers() throws Exception {
+		MultiSearchQuery multiSearchQuery = new MultiSearchQuery()
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setTenant("unknown_multi_search_tenant").setQ("bike"))
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setTenant(indexName).setQ("bike"))
+				.addSearch((TenantSearchQuery) new TenantSearchQuery().setQ("bike"));
+
+		MultiSearchResult multiSearchResult = getSearchClient().multiSearch(multiSearchQuery);
+		assertEquals(3, multiSearchResult.results.size());
+
+		MultiSearchResultItem unknownTenant = multiSearchResult.results.get(0);
+		assertEquals(404, unknownTenant.status);
+		assertNull(unknownTenant.result);
+		assertNotNull(unknownTenant.error);
+
+		assertEquals(200, multiSearchResult.results.get(1).status);
+		assertThat(multiSearchResult.results.get(1).result.slices.get(0).hits).isNotEmpty();
+
+		assertEquals(400, multiSearchResult.results.get(2).status);
+	}
+}
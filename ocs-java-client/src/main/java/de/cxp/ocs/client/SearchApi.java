@@ -4,6 +4,9 @@ import java.util.Map;
 
 import de.cxp.ocs.model.index.Document;
 import de.cxp.ocs.model.params.ArrangedSearchQuery;
+import de.cxp.ocs.model.params.LinkMode;
+import de.cxp.ocs.model.params.MultiSearchQuery;
+import de.cxp.ocs.model.result.MultiSearchResult;
 import de.cxp.ocs.model.result.SearchResult;
 import feign.Headers;
 import feign.Param;
@@ -15,7 +18,7 @@ interface SearchApi {
 	@RequestLine("GET /search-api/v1/tenants")
 	String[] getTenants();
 
-	@RequestLine("GET /search-api/v1/search/{tenant}?q={q}&sort={sort}&offset={offset}&limit={limit}&withFacets={withFacets}")
+	@RequestLine("GET /search-api/v1/search/{tenant}?q={q}&sort={sort}&offset={offset}&limit={limit}&withFacets={withFacets}&withHits={withHits}&links={links}")
 	SearchResult search(
 			@Param("tenant") String tenant,
 			@Param("q") String q,
@@ -23,12 +26,18 @@ interface SearchApi {
 			@Param("offset") int offset,
 			@Param("limit") int limit,
 			@Param("withFacets") boolean withFacets,
+			@Param("withHits") boolean withHits,
+			@Param("links") LinkMode links,
 			@QueryMap Map<String, String> filters);
 
 	@RequestLine("POST /search-api/v1/search/arranged/{tenant}")
 	@Headers("Content-Type: application/json")
 	SearchResult arrangedSearch(@Param("tenant") String tenant, ArrangedSearchQuery searchQuery);
 
+	@RequestLine("POST /search-api/v1/search/multi")
+	@Headers("Content-Type: application/json")
+	MultiSearchResult multiSearch(MultiSearchQuery multiSearchQuery);
+
 	@RequestLine("GET /search-api/v1/doc/{tenant}/{id}")
 	Document getDocument(@Param("tenant") String tenant, @Param("id") String docId);
 }
@@ -8,7 +8,9 @@ import de.cxp.ocs.api.searcher.SearchService;
 import de.cxp.ocs.client.deserializer.ObjectMapperFactory;
 import de.cxp.ocs.model.index.Document;
 import de.cxp.ocs.model.params.ArrangedSearchQuery;
+import de.cxp.ocs.model.params.MultiSearchQuery;
 import de.cxp.ocs.model.params.SearchQuery;
+import de.cxp.ocs.model.result.MultiSearchResult;
 import de.cxp.ocs.model.result.SearchResult;
 import feign.Feign;
 import feign.Feign.Builder;
@@ -56,7 +58,7 @@ public class SearchClient implements SearchService {
 	@Override
 	public SearchResult search(String tenant, SearchQuery searchParams, Map<String, String> filters) throws Exception {
 		return target.search(tenant,
-				searchParams.q, searchParams.sort, searchParams.offset, searchParams.limit, searchParams.withFacets,
+				searchParams.q, searchParams.sort, searchParams.offset, searchParams.limit, searchParams.withFacets, searchParams.withHits, searchParams.links,
 				filters == null ? Collections.emptyMap() : filters);
 	}
 
@@ -65,6 +67,11 @@ public class SearchClient implements SearchService {
 		return target.arrangedSearch(tenant, searchQuery);
 	}
 
+	@Override
+	public MultiSearchResult multiSearch(MultiSearchQuery multiSearchQuery) {
+		return target.multiSearch(multiSearchQuery);
+	}
+
 	@Override
 	public Document getDocument(String tenant, String docId) {
 		return target.getDocument(tenant, docId);
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import de.cxp.ocs.model.params.LinkMode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
@@ -22,6 +23,20 @@ public class FacetConfiguration {
 
 	private int maxFacets = 5;
 
+	private LinkMode linkMode = LinkMode.FULL;
+
+	private int adaptiveSamplingMinHits = -1;
+
+	private double adaptiveSamplingRate = 0.1;
+
+	private int adaptiveSamplingMinSize = 1000;
+
+	private int aggregationCacheTtlSeconds = 0;
+
+	private int aggregationCacheMaxSize = 1000;
+
+	private int metricsMaxFields = 50;
+
 	/**
 	 * A list of fine grained facet configurations. Each facet configuration
 	 * controls the return value of one specific facet.
@@ -51,6 +66,108 @@ public class FacetConfiguration {
 		return this;
 	}
 
+	/**
+	 * Default mode that defines how the links of the facet entries and sort
+	 * options are rendered. Can be overwritten per request with the 'links'
+	 * parameter. Set to 'NONE' for frontends that build their URLs on their
+	 * own.
+	 * 
+	 * @param linkMode
+	 *        default link mode
+	 * @return self
+	 */
+	public FacetConfiguration setLinkMode(@NonNull LinkMode linkMode) {
+		this.linkMode = linkMode;
+		return this;
+	}
+
+	/**
+	 * Enables adaptive sampling of the facet aggregations: if a previous
+	 * request with the same query and filters had at least that amount of
+	 * hits, the facets are only aggregated on a sample of the best matching
+	 * documents. The counts of such facets are extrapolated and the facets are
+	 * flagged as estimated.
+	 * Set to a value less or equal to 0 to disable adaptive sampling (default).
+	 * 
+	 * @param adaptiveSamplingMinHits
+	 *        minimum hit count to sample the facet aggregations
+	 * @return self
+	 */
+	public FacetConfiguration setAdaptiveSamplingMinHits(int adaptiveSamplingMinHits) {
+		this.adaptiveSamplingMinHits = adaptiveSamplingMinHits;
+		return this;
+	}
+
+	/**
+	 * The share of the expected hits that are sampled per shard for the facet
+	 * aggregations, if adaptive sampling is enabled.
+	 * 
+	 * @param adaptiveSamplingRate
+	 *        value between 0 and 1
+	 * @return self
+	 */
+	public FacetConfiguration setAdaptiveSamplingRate(double adaptiveSamplingRate) {
+		this.adaptiveSamplingRate = adaptiveSamplingRate;
+		return this;
+	}
+
+	/**
+	 * The minimum amount of documents that are sampled per shard for the facet
+	 * aggregations, if adaptive sampling is enabled.
+	 * 
+	 * @param adaptiveSamplingMinSize
+	 *        minimum sample size
+	 * @return self
+	 */
+	public FacetConfiguration setAdaptiveSamplingMinSize(int adaptiveSamplingMinSize) {
+		this.adaptiveSamplingMinSize = adaptiveSamplingMinSize;
+		return this;
+	}
+
+	/**
+	 * Time in seconds the facet aggregations of a search are cached. Requests
+	 * with the same query and filters but different sorting or paging (e.g.
+	 * category browse pages) reuse the cached aggregations instead of
+	 * computing them again.
+	 * Set to a value less or equal to 0 to disable the cache (default).
+	 * 
+	 * @param aggregationCacheTtlSeconds
+	 *        cache time to live in seconds
+	 * @return self
+	 */
+	public FacetConfiguration setAggregationCacheTtlSeconds(int aggregationCacheTtlSeconds) {
+		this.aggregationCacheTtlSeconds = aggregationCacheTtlSeconds;
+		return this;
+	}
+
+	/**
+	 * The maximum amount of searches whose facet aggregations are cached, if
+	 * the aggregation cache is enabled.
+	 * 
+	 * @param aggregationCacheMaxSize
+	 *        maximum cache size
+	 * @return self
+	 */
+	public FacetConfiguration setAggregationCacheMaxSize(int aggregationCacheMaxSize) {
+		this.aggregationCacheMaxSize = aggregationCacheMaxSize;
+		return this;
+	}
+
+	/**
+	 * The maximum amount of distinct field names that are used as tag for the
+	 * per-facet metrics ('facetBuild' timer and 'facetBuckets' summary).
+	 * Further fields are recorded with the tag value '_other'. Set to 0 to not
+	 * tag any field name.
+	 * 
+	 * @param metricsMaxFields
+	 *        maximum amount of field names used as metric tag
+	 * @return self
+	 */
+	public FacetConfiguration setMetricsMaxFields(int metricsMaxFields) {
+		this.metricsMaxFields = metricsMaxFields;
+		return this;
+	}
+
 	@Deprecated
 	public FacetConfiguration setDefaultFacetConfiguration(de.cxp.ocs.config.FacetConfiguration.FacetConfig defaultFacetConfiguration) {
 		this.defaultTermFacetConfiguration = defaultFacetConfiguration;
@@ -14,6 +14,26 @@ public class QueryProcessingConfiguration {
 
 	private String userQueryAnalyzer = null;
 
+	private int analysisCacheSize = 0;
+
+	private int spellCorrectionCacheSize = 0;
+
+	private int spellCorrectionCacheTtlSeconds = 3600;
+
+	private String spellCorrectionWarmupFile = null;
+
+	private int localSpellCheckerVocabularySize = 0;
+
+	private int predictionCacheSize = 0;
+
+	private int predictionCacheTtlSeconds = 3600;
+
+	private int queryStageLearnerSize = 0;
+
+	private int queryStageLearnerTtlSeconds = 86400;
+
+	private String queryStageLearnerFile = null;
+
 	/**
 	 * <p>
 	 * List of custom query preprocessors (their canonical or simple class name)
@@ -56,4 +76,177 @@ public class QueryProcessingConfiguration {
 		return this;
 	}
 
+
+	/**
+	 * <p>
+	 * Maximum amount of analyzed user queries that are cached per tenant. The
+	 * analysis result of the user query analyzer is cached by the
+	 * whitespace-normalized query, so that frequent queries are not analyzed
+	 * again. If the analyzer is based on rules that are reloaded, the cache is
+	 * invalidated accordingly.
+	 * </p>
+	 * <p>
+	 * Only use it with analyzers that return the same result for the same
+	 * query. Per default it's 0, which disables the cache.
+	 * </p>
+	 * 
+	 * @param analysisCacheSize
+	 *        maximum amount of cached analysis results
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setAnalysisCacheSize(int analysisCacheSize) {
+		this.analysisCacheSize = analysisCacheSize;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * Maximum amount of terms whose spell corrections are cached per tenant.
+	 * Terms without corrections are cached as well. Only terms that are not
+	 * cached are requested from Elasticsearch, so for queries with known
+	 * terms no suggest request is necessary at all. The cache is cleared if
+	 * the index behind the tenant alias changes.
+	 * </p>
+	 * <p>
+	 * Per default it's 0, which disables the cache.
+	 * </p>
+	 * 
+	 * @param spellCorrectionCacheSize
+	 *        maximum amount of cached terms
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setSpellCorrectionCacheSize(int spellCorrectionCacheSize) {
+		this.spellCorrectionCacheSize = spellCorrectionCacheSize;
+		return this;
+	}
+
+	/**
+	 * Time in seconds the spell corrections of a term are cached. Defaults to
+	 * 3600. Only used if the spellCorrectionCacheSize is greater than 0.
+	 * 
+	 * @param spellCorrectionCacheTtlSeconds
+	 *        time to live of cached spell corrections
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setSpellCorrectionCacheTtlSeconds(int spellCorrectionCacheTtlSeconds) {
+		this.spellCorrectionCacheTtlSeconds = spellCorrectionCacheTtlSeconds;
+		return this;
+	}
+
+	/**
+	 * Optional path to a file with one search query per line, e.g. extracted
+	 * from the query log. The terms of these queries are corrected in the
+	 * background after the tenant was loaded, to fill the spell correction
+	 * cache. Only used if the spellCorrectionCacheSize is greater than 0.
+	 * 
+	 * @param spellCorrectionWarmupFile
+	 *        path to the query file
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setSpellCorrectionWarmupFile(String spellCorrectionWarmupFile) {
+		this.spellCorrectionWarmupFile = spellCorrectionWarmupFile;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * If greater than 0, the spell correction is done by an in-memory spell
+	 * checker instead of the Elasticsearch term suggester. Its vocabulary
+	 * consists of the most frequent terms of each search field, limited by
+	 * this value per field. It is loaded in the background after the tenant
+	 * was loaded and again after the index behind the tenant alias changed.
+	 * Until then, the Elasticsearch term suggester is used.
+	 * </p>
+	 * <p>
+	 * Terms that are not part of the vocabulary are considered misspelled, so
+	 * the size should cover all terms of the search fields. Per default it's
+	 * 0, which disables the local spell checker.
+	 * </p>
+	 * 
+	 * @param localSpellCheckerVocabularySize
+	 *        maximum amount of terms per search field
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setLocalSpellCheckerVocabularySize(int localSpellCheckerVocabularySize) {
+		this.localSpellCheckerVocabularySize = localSpellCheckerVocabularySize;
+		return this;
+	}
+
+	/**
+	 * Maximum amount of analyzed queries whose predicted queries are cached.
+	 * The predicted queries are used by the PredictionQueryFactory and the
+	 * RelaxedQueryFactory and require an additional Elasticsearch request.
+	 * Cached predictions are dropped when the index behind the alias changes.
+	 * Defaults to 0, which disables the cache.
+	 * 
+	 * @param predictionCacheSize
+	 *        maximum amount of cached predictions
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setPredictionCacheSize(int predictionCacheSize) {
+		this.predictionCacheSize = predictionCacheSize;
+		return this;
+	}
+
+	/**
+	 * Time in seconds the predicted queries are cached. Defaults to 3600. Only
+	 * used if the predictionCacheSize is greater than 0.
+	 * 
+	 * @param predictionCacheTtlSeconds
+	 *        time to live of cached predictions
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setPredictionCacheTtlSeconds(int predictionCacheTtlSeconds) {
+		this.predictionCacheTtlSeconds = predictionCacheTtlSeconds;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * If greater than 0, the search remembers for up to that many normalized
+	 * user queries, which query stage first returned a sufficient result. The
+	 * next search for such a query starts at that stage, which saves the
+	 * requests of the previous stages. Only used for searches without filters
+	 * and without an explicit 'query_stage' parameter.
+	 * </p>
+	 * <p>
+	 * Defaults to 0, which disables the learning.
+	 * </p>
+	 * 
+	 * @param queryStageLearnerSize
+	 *        maximum amount of learned queries
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setQueryStageLearnerSize(int queryStageLearnerSize) {
+		this.queryStageLearnerSize = queryStageLearnerSize;
+		return this;
+	}
+
+	/**
+	 * Time in seconds a learned query stage is used, before all stages are
+	 * tried again. Defaults to 86400 (one day). Only used if the
+	 * queryStageLearnerSize is greater than 0.
+	 * 
+	 * @param queryStageLearnerTtlSeconds
+	 *        time to live of learned query stages
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setQueryStageLearnerTtlSeconds(int queryStageLearnerTtlSeconds) {
+		this.queryStageLearnerTtlSeconds = queryStageLearnerTtlSeconds;
+		return this;
+	}
+
+	/**
+	 * Optional path to a local file, where the learned query stages are
+	 * stored regularly and loaded from at startup. Only used if the
+	 * queryStageLearnerSize is greater than 0.
+	 * 
+	 * @param queryStageLearnerFile
+	 *        path to the file
+	 * @return self
+	 */
+	public QueryProcessingConfiguration setQueryStageLearnerFile(String queryStageLearnerFile) {
+		this.queryStageLearnerFile = queryStageLearnerFile;
+		return this;
+	}
 }
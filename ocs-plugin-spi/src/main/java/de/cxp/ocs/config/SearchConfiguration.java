@@ -36,6 +36,10 @@ public class SearchConfiguration {
 
 	private String variantPickingStrategy = "pickIfBestScored";
 
+	private long latencyBudgetMs = 0;
+
+	private long requestCoalescingMaxWaitMs = 0;
+
 	public enum ProductSetType {
 		Static, Dynamic, Generic, Querystring;
 
@@ -231,4 +235,45 @@ public class SearchConfiguration {
 	public void setVariantPickingStrategy(String variantPickingStrategy) {
 		this.variantPickingStrategy = variantPickingStrategy;
 	}
+
+	/**
+	 * <p>
+	 * Optional latency budget in milliseconds for a single search request. It
+	 * is passed as timeout to all Elasticsearch requests of a search request.
+	 * If the budget is exhausted, remaining query stages and arranged product
+	 * sets are skipped, facets are omitted and the result is flagged as
+	 * partial result.
+	 * </p>
+	 * <p>
+	 * Per default it's 0, which disables the budget.
+	 * </p>
+	 * 
+	 * @param latencyBudgetMs
+	 *        latency budget in milliseconds
+	 * @return self
+	 */
+	public SearchConfiguration setLatencyBudgetMs(long latencyBudgetMs) {
+		this.latencyBudgetMs = latencyBudgetMs;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * If greater than 0, concurrent search requests with identical parameters
+	 * share a single execution. Requests wait up to that many milliseconds for
+	 * the result of the identical search and otherwise run the search on their
+	 * own.
+	 * </p>
+	 * <p>
+	 * Per default it's 0, which disables the request coalescing.
+	 * </p>
+	 * 
+	 * @param requestCoalescingMaxWaitMs
+	 *        maximum wait time in milliseconds
+	 * @return self
+	 */
+	public SearchConfiguration setRequestCoalescingMaxWaitMs(long requestCoalescingMaxWaitMs) {
+		this.requestCoalescingMaxWaitMs = requestCoalescingMaxWaitMs;
+		return this;
+	}
 }
@@ -7,6 +7,7 @@ import java.util.List;
 import de.cxp.ocs.elasticsearch.model.term.QueryStringTerm;
 import de.cxp.ocs.elasticsearch.model.util.QueryStringUtil;
 import de.cxp.ocs.elasticsearch.model.visitor.QueryTermVisitor;
+import lombok.Getter;
 
 /**
  * A query that consists of several different analyzed queries.
@@ -17,6 +18,7 @@ public class MultiVariantQuery implements AnalyzedQuery {
 
 	private final List<String> inputTerms = new ArrayList<>();
 
+	@Getter
 	private final List<AnalyzedQuery> queryVariation = new ArrayList<>();
 
 	public MultiVariantQuery(Collection<QueryStringTerm> inputTerms) {
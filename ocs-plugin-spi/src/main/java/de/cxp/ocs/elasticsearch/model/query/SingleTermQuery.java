@@ -6,6 +6,7 @@ import java.util.List;
 import de.cxp.ocs.elasticsearch.model.term.QueryStringTerm;
 import de.cxp.ocs.elasticsearch.model.term.WeightedTerm;
 import de.cxp.ocs.elasticsearch.model.visitor.QueryTermVisitor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
@@ -13,6 +14,7 @@ public class SingleTermQuery implements AnalyzedQuery {
 
 	private final String inputTerm;
 
+	@Getter
 	private final QueryStringTerm term;
 
 	public SingleTermQuery(WeightedTerm weightedTerm) {
@@ -21,9 +21,11 @@ import lombok.experimental.Accessors;
 @Accessors(chain = true)
 public class ConceptTerm implements QueryStringTerm {
 
+	@Getter
 	private final List<QueryStringTerm> terms = new ArrayList<>();
 
 	@Setter
+	@Getter
 	private float weight = 1f;
 
 	@Setter
@@ -31,6 +33,7 @@ public class ConceptTerm implements QueryStringTerm {
 	private Occur occur = Occur.SHOULD;
 
 	@Setter
+	@Getter
 	private boolean isQuoted = false;
 
 	public ConceptTerm(Collection<QueryStringTerm> terms) {
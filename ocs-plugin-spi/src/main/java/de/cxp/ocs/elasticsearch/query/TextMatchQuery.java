@@ -16,6 +16,10 @@ public class TextMatchQuery<Q> {
 		this(masterQuery, variantQuery, isWithSpellCorrection, acceptNoResult, null);
 	}
 
+	public TextMatchQuery(Q masterQuery, Q variantQuery, boolean isWithSpellCorrection, boolean acceptNoResult, String queryDescription) {
+		this(masterQuery, variantQuery, isWithSpellCorrection, acceptNoResult, queryDescription, -1);
+	}
+
 	@Setter
 	private Q masterLevelQuery;
 
@@ -33,4 +37,11 @@ public class TextMatchQuery<Q> {
 
 	private String queryDescription;
 
+	/**
+	 * The number of documents the query is expected to match, if the query
+	 * factory knows it, e.g. from a query prediction. Otherwise -1.
+	 */
+	@Setter
+	private long expectedMatchCount = -1;
+
 }
@@ -4,7 +4,9 @@ import java.util.Map;
 
 import de.cxp.ocs.model.index.Document;
 import de.cxp.ocs.model.params.ArrangedSearchQuery;
+import de.cxp.ocs.model.params.MultiSearchQuery;
 import de.cxp.ocs.model.params.SearchQuery;
+import de.cxp.ocs.model.result.MultiSearchResult;
 import de.cxp.ocs.model.result.SearchResult;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -176,6 +178,43 @@ public interface SearchService {
 					required = true) ArrangedSearchQuery searchQuery)
 			throws Exception;
 
+	/**
+	 * Run several independent searches with a single request, e.g. for all
+	 * product widgets of a landing page. The searches may target different
+	 * tenants. They are executed together, so the first request to the search
+	 * backend of each search is sent in a single batch.
+	 * 
+	 * @param multiSearchQuery
+	 *        the searches, each one with its tenant
+	 * @return
+	 *         one result item per search in the same order as requested. A
+	 *         failed search does not fail the whole request, instead its item
+	 *         contains the error.
+	 * @throws Exception
+	 *         if the request itself is invalid
+	 */
+	@POST
+	@Path("search/multi")
+	@Operation(
+			summary = "Run several searches at once",
+			description = "Runs several independent searches, optionally for different tenants, and returns their results in the requested order."
+					+ " A failed search does not fail the other searches, instead its result item contains the error.",
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "one result item per search",
+							content = @Content(schema = @Schema(ref = "MultiSearchResult"))),
+					@ApiResponse(
+							responseCode = "400",
+							description = "no searches given or too many searches requested",
+							content = @Content(mediaType = "text/plain"))
+			})
+	MultiSearchResult multiSearch(
+			@RequestBody(
+					description = "the searches that should be answered with a single response",
+					required = true) MultiSearchQuery multiSearchQuery)
+			throws Exception;
+
 	@GET
 	@Path("doc/{tenant}/{id}")
 	Document getDocument(
@@ -0,0 +1,48 @@
+package de.cxp.ocs.model.params;
+
+import java.util.Locale;
+
+/**
+ * Defines how the links of the facet entries and sort options are rendered.
+ */
+public enum LinkMode {
+
+	/**
+	 * Each link contains the full query string of the search state it refers to.
+	 */
+	FULL,
+
+	/**
+	 * Each link only contains the parameter that changes compared to the current search state, e.g.
+	 * 'brand=apple%2Corange'. A parameter without value (e.g. 'brand=') means, that parameter is removed.
+	 */
+	COMPACT,
+
+	/**
+	 * No links are rendered at all.
+	 */
+	NONE;
+
+	/**
+	 * Case-insensitive parsing of the link mode. Additionally 'true' is accepted for {@link #FULL} and 'false' for
+	 * {@link #NONE}.
+	 *
+	 * @param value
+	 *        the parameter value
+	 * @return the link mode or null if the value is null or blank
+	 * @throws IllegalArgumentException
+	 *         if the value is not a known link mode
+	 */
+	public static LinkMode parse(String value) {
+		if (value == null || value.isBlank()) return null;
+		String normalizedValue = value.trim().toUpperCase(Locale.ROOT);
+		switch (normalizedValue) {
+			case "TRUE":
+				return FULL;
+			case "FALSE":
+				return NONE;
+			default:
+				return valueOf(normalizedValue);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package de.cxp.ocs.model.params;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Several independent searches that should be answered with a single
+ * response, e.g. for all the product widgets of a landing page. The searches
+ * may target different tenants.
+ */
+@NoArgsConstructor
+@Data
+@Accessors(chain = true)
+public class MultiSearchQuery {
+
+	@Schema(description = "the independent searches, the results are returned in the same order")
+	public List<TenantSearchQuery> searches = new ArrayList<>();
+
+	public MultiSearchQuery addSearch(TenantSearchQuery search) {
+		searches.add(search);
+		return this;
+	}
+}
@@ -61,6 +61,28 @@ public class SearchQuery {
 			+ "Should be set to false in case only the next batch of hits is requested (e.g. for endless scrolling).")
 	public boolean withFacets = true;
 
+	/**
+	 * flag to specify if hits should be returned with the requested response.
+	 * Should be set to false in case only the facets and the match count are
+	 * requested (e.g. to refresh a filter sidebar). Such requests are cheaper,
+	 * since no documents are fetched, mapped or rescored.
+	 */
+	@Schema(description = "flag to specify if hits should be returned with the requested response. "
+			+ "Should be set to false in case only the facets and the match count are requested (e.g. to refresh a filter sidebar). "
+			+ "Such requests are cheaper, since no documents are fetched, mapped or rescored.")
+	public boolean withHits = true;
+
+	/**
+	 * Optional mode that defines how the links of the facet entries and sort
+	 * options are rendered. Set to 'NONE' (or 'false') if the links are not
+	 * used, which saves response time and size. If not set, the default of the
+	 * tenant's facet configuration is used.
+	 */
+	@Schema(description = "Optional mode that defines how the links of the facet entries and sort options are rendered: "
+			+ "'FULL' for complete links, 'COMPACT' for links that only contain the changed parameter or 'NONE' (also 'false') to omit links. "
+			+ "If not set, the default of the tenant is used.")
+	public LinkMode links;
+
 	public String asUri() {
 		StringBuilder uri = new StringBuilder();
 		uri.append("q=").append(q);
@@ -68,6 +90,8 @@ public class SearchQuery {
 		uri.append("&limit=").append(limit);
 		if (offset > 0) uri.append("&offset=").append(offset);
 		uri.append("&withFacets=").append(withFacets);
+		if (!withHits) uri.append("&withHits=false");
+		if (links != null) uri.append("&links=").append(links);
 		return uri.toString();
 	}
 
@@ -0,0 +1,21 @@
+package de.cxp.ocs.model.params;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * A single search of a {@link MultiSearchQuery}. In addition to the arranged
+ * search query it defines the tenant it should be executed for.
+ */
+@NoArgsConstructor
+@Data
+@EqualsAndHashCode(callSuper = true)
+@Accessors(chain = true)
+public class TenantSearchQuery extends ArrangedSearchQuery {
+
+	@Schema(description = "the name of the tenant that correlates to the index configuration", required = true)
+	public String tenant;
+}
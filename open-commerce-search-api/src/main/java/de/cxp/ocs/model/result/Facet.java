@@ -34,6 +34,13 @@ public class Facet {
 	@Schema(description = "Is set to true if there an active filter from that facet.")
 	public boolean isFiltered = false;
 
+	/**
+	 * Is set to true if the document counts of that facet are extrapolated
+	 * from a sample of the matched documents.
+	 */
+	@Schema(description = "Is set to true if the document counts of that facet are extrapolated from a sample of the matched documents.")
+	public boolean isEstimated = false;
+
 	/**
 	 * The entries of that facet.
 	 */
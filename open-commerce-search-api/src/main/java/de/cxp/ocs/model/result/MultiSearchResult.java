@@ -0,0 +1,29 @@
+package de.cxp.ocs.model.result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+@Data
+@NoArgsConstructor
+@Accessors(chain = true)
+public class MultiSearchResult {
+
+	/**
+	 * amount of time the internal search needed to compute all results
+	 */
+	@Schema(description = "amount of time the internal search needed to compute all results")
+	public long tookInMillis;
+
+	/**
+	 * One item per requested search in the same order as requested. A failed
+	 * search does not fail the others, instead its item contains the error.
+	 */
+	@Schema(description = "One item per requested search in the same order as requested."
+			+ " A failed search does not fail the others, instead its item contains the error.")
+	public List<MultiSearchResultItem> results = new ArrayList<>();
+}
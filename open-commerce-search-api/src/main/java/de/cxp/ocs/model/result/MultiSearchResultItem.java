@@ -0,0 +1,25 @@
+package de.cxp.ocs.model.result;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * The outcome of a single search of a multi-search request: either its result
+ * or the error that occurred.
+ */
+@Data
+@NoArgsConstructor
+@Accessors(chain = true)
+public class MultiSearchResultItem {
+
+	@Schema(description = "HTTP status code the single search would have been answered with")
+	public int status = 200;
+
+	@Schema(description = "the search result, only set if the search was successful")
+	public SearchResult result;
+
+	@Schema(description = "error message, only set if the search failed")
+	public String error;
+}
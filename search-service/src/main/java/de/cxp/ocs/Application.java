@@ -1,6 +1,9 @@
 package de.cxp.ocs;
 
+import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import de.cxp.ocs.config.ConnectionConfiguration;
 import de.cxp.ocs.model.params.*;
@@ -12,11 +15,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.jsontype.NamedType;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
@@ -61,6 +68,15 @@ public class Application {
 		return new ElasticSearchBuilder(restClient, connectionConfig.isUseCompatibilityMode());
 	}
 
+	/**
+	 * Runs the searches of a multi-search request in parallel. It's shut down
+	 * with the application context.
+	 */
+	@Bean(destroyMethod = "close")
+	public ExecutorService multiSearchExecutor() {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("multi-search-", 0).factory());
+	}
+
 	@Bean
 	public SearchPlugins pluginManager(ApplicationProperties properties) {
 		PluginManager pluginManager = new PluginManager(properties.getDisabledPlugins(), properties.getPreferedPlugins());
@@ -79,10 +95,33 @@ public class Application {
 		module.setMixInAnnotation(ProductSet.class, WithTypeInfo.class);
 		module.setMixInAnnotation(Document.class, NoNullValues.class);
         module.registerSubtypes(new NamedType(DynamicProductSet.class, "dynamic"), new NamedType(StaticProductSet.class, "static"), new NamedType(GenericProductSet.class, "generic"), new NamedType(QueryStringProductSet.class, "querystring"));
+		module.addDeserializer(LinkMode.class, new StdDeserializer<LinkMode>(LinkMode.class) {
+
+			@Override
+			public LinkMode deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+				return LinkMode.parse(p.getValueAsString());
+			}
+		});
 
 		return module;
 	}
 
+	/**
+	 * Lenient binding of the 'links' request parameter, that also accepts 'true' and 'false'.
+	 * 
+	 * @return converter for the link mode
+	 */
+	@Bean
+	public Converter<String, LinkMode> linkModeConverter() {
+		return new Converter<String, LinkMode>() {
+
+			@Override
+			public LinkMode convert(String source) {
+				return LinkMode.parse(source);
+			}
+		};
+	}
+
 	@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
 	public static abstract class WithTypeInfo {}
 
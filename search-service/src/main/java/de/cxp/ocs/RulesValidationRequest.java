@@ -0,0 +1,24 @@
+package de.cxp.ocs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RulesValidationRequest {
+
+	/**
+	 * Full rules definition as it would be loaded by the query analyzer.
+	 */
+	String rules;
+
+	/**
+	 * Sample queries that are analyzed with the given rules.
+	 */
+	List<String> queries = new ArrayList<>();
+}
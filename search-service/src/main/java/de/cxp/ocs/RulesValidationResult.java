@@ -0,0 +1,25 @@
+package de.cxp.ocs;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class RulesValidationResult {
+
+	boolean valid;
+
+	/**
+	 * Reason why the rules can't be loaded. Only set if the rules are invalid.
+	 */
+	String error;
+
+	/**
+	 * The sample queries mapped to their analyzed query string.
+	 */
+	Map<String, String> rewrittenQueries;
+}
@@ -4,6 +4,7 @@ import java.util.List;
 
 import de.cxp.ocs.config.FieldConfigIndex;
 import de.cxp.ocs.config.SearchConfiguration;
+import de.cxp.ocs.elasticsearch.facets.CategoryHierarchy;
 import de.cxp.ocs.elasticsearch.prodset.HeroProductHandler;
 import de.cxp.ocs.spi.search.UserQueryPreprocessor;
 import lombok.EqualsAndHashCode;
@@ -26,4 +27,12 @@ public class SearchContext {
 
 	public final HeroProductHandler heroProductHandler;
 
+	/**
+	 * Fetched from the index and not part of the configuration, so it's not
+	 * considered to detect configuration changes. Otherwise each flush would
+	 * rebuild the searcher.
+	 */
+	@EqualsAndHashCode.Exclude
+	public final CategoryHierarchy categoryHierarchy;
+
 }
@@ -12,10 +12,13 @@ import org.springframework.stereotype.Component;
 import de.cxp.ocs.config.FieldConfigIncompatibilityException;
 import de.cxp.ocs.config.FieldConfigIndex;
 import de.cxp.ocs.config.FieldConfiguration;
+import de.cxp.ocs.config.FieldType;
 import de.cxp.ocs.config.SearchConfiguration;
 import de.cxp.ocs.config.SearchConfiguration.ProductSetType;
 import de.cxp.ocs.elasticsearch.ElasticSearchBuilder;
 import de.cxp.ocs.elasticsearch.FieldConfigFetcher;
+import de.cxp.ocs.elasticsearch.facets.CategoryHierarchy;
+import de.cxp.ocs.elasticsearch.facets.CategoryHierarchyFetcher;
 import de.cxp.ocs.elasticsearch.prodset.HeroProductHandler;
 import de.cxp.ocs.elasticsearch.prodset.ProductSetResolver;
 import de.cxp.ocs.spi.search.UserQueryPreprocessor;
@@ -43,12 +46,37 @@ public class SearchContextLoader {
 
 		FieldConfigIndex fieldConfigIndex = loadFieldConfigIndex(searchConfig);
 
+		CategoryHierarchy categoryHierarchy = loadCategoryHierarchy(searchConfig, fieldConfigIndex);
+
 		List<UserQueryPreprocessor> userQueryPreprocessors = SearchPlugins.initialize(
 				searchConfig.getQueryProcessing().getUserQueryPreprocessors(),
 				plugins.getUserQueryPreprocessors(),
 				searchConfig.getPluginConfiguration());
 		log.info("Using index(es) {} for tenant {}", searchConfig.getIndexName(), tenant);
-		return new SearchContext(fieldConfigIndex, searchConfig, userQueryPreprocessors, new HeroProductHandler(resolvers));
+		return new SearchContext(fieldConfigIndex, searchConfig, userQueryPreprocessors, new HeroProductHandler(resolvers), categoryHierarchy);
+	}
+
+	/**
+	 * Fetch the category hierarchy once, so that the category facets don't
+	 * have to aggregate the category IDs with every request.
+	 * 
+	 * @param searchConfig
+	 *        search configuration with the validated index names
+	 * @param fieldConfigIndex
+	 *        field configuration
+	 * @return the category hierarchy or null if it could not be fetched
+	 */
+	private CategoryHierarchy loadCategoryHierarchy(SearchConfiguration searchConfig, FieldConfigIndex fieldConfigIndex) {
+		if (fieldConfigIndex.getFieldsByType(FieldType.CATEGORY).isEmpty()) {
+			return CategoryHierarchy.EMPTY;
+		}
+		try {
+			return new CategoryHierarchyFetcher(esBuilder.getRestHLClient()).fetchHierarchy(searchConfig.getIndexName());
+		}
+		catch (Exception e) {
+			log.warn("couldn't fetch category hierarchy from index {}, category IDs will be aggregated per request", searchConfig.getIndexName(), e);
+			return null;
+		}
 	}
 
 	private Map<ProductSetType, ProductSetResolver> loadProductSetResolver(SearchConfiguration searchConfig) {
@@ -8,6 +8,7 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.elasticsearch.ElasticsearchStatusException;
@@ -30,13 +31,21 @@ import com.google.common.cache.CacheBuilder;
 
 import de.cxp.ocs.api.searcher.SearchService;
 import de.cxp.ocs.elasticsearch.ElasticSearchBuilder;
+import de.cxp.ocs.elasticsearch.MultiSearchBatch;
 import de.cxp.ocs.elasticsearch.Searcher;
 import de.cxp.ocs.elasticsearch.mapper.ResultMapper;
+import de.cxp.ocs.elasticsearch.query.analyzer.ReloadableQueryAnalyzer;
 import de.cxp.ocs.model.index.Document;
 import de.cxp.ocs.model.params.ArrangedSearchQuery;
+import de.cxp.ocs.model.params.MultiSearchQuery;
 import de.cxp.ocs.model.params.ProductSet;
 import de.cxp.ocs.model.params.SearchQuery;
+import de.cxp.ocs.model.params.TenantSearchQuery;
+import de.cxp.ocs.model.result.Facet;
+import de.cxp.ocs.model.result.MultiSearchResult;
+import de.cxp.ocs.model.result.MultiSearchResultItem;
 import de.cxp.ocs.model.result.SearchResult;
+import de.cxp.ocs.spi.search.UserQueryAnalyzer;
 import de.cxp.ocs.util.InternalSearchParams;
 import de.cxp.ocs.util.NotFoundException;
 import de.cxp.ocs.util.TraceOptions.TraceFlag;
@@ -69,6 +78,12 @@ public class SearchController implements SearchService {
 	@Autowired
 	private MeterRegistry registry;
 
+	static final int MAX_MULTI_SEARCH_SIZE = 100;
+
+	@Autowired
+	@NonNull
+	private ExecutorService multiSearchExecutor;
+
 	private final Map<String, SearchContext> searchContexts = new ConcurrentHashMap<>();
 
 	private final Map<String, String> actualIndexPerTenant = new ConcurrentHashMap<>();
@@ -97,6 +112,20 @@ public class SearchController implements SearchService {
 			@ApiResponse(responseCode = "304", description = "No config changes detected. Nothing to reload.") })
 	@GetMapping("/flushConfig/{tenant}")
 	public ResponseEntity<HttpStatus> flushConfig(@PathVariable("tenant") String tenant) {
+		HttpStatus status = flushConfig(tenant, false);
+		return new ResponseEntity<>(status, status);
+	}
+
+	/**
+	 * @param tenant
+	 *        the tenant to flush
+	 * @param isIndexChanged
+	 *        if true, the searcher is rebuilt even if the configuration did not
+	 *        change, because the data that is fetched from the index, like the
+	 *        category hierarchy, is not part of the configuration comparison
+	 * @return the status of the flush
+	 */
+	private HttpStatus flushConfig(String tenant, boolean isIndexChanged) {
 		HttpStatus status;
 		synchronized (tenant.intern()) {
 			MDC.put("tenant", tenant);
@@ -108,7 +137,7 @@ public class SearchController implements SearchService {
 					log.info("config successfully loaded for tenant {}", tenant);
 					status = HttpStatus.CREATED;
 				}
-				else if (oldConfig.equals(searchContexts.get(tenant))) {
+				else if (!isIndexChanged && oldConfig.equals(searchContexts.get(tenant))) {
 					log.info("config flush did not modify config for tenant {}", tenant);
 					status = HttpStatus.NOT_MODIFIED;
 				}
@@ -133,23 +162,144 @@ public class SearchController implements SearchService {
 
 			MDC.remove("tenant");
 		}
+		return status;
+	}
 
-		return new ResponseEntity<>(status, status);
+	@Operation(summary = "Reload the query analyzer rules of the specified tenant without flushing the rest of the configuration."
+			+ " The rules are only activated if they changed and can be loaded without errors.",
+			responses = {
+					@ApiResponse(responseCode = "200", description = "changed rules were loaded and activated"),
+					@ApiResponse(responseCode = "304", description = "No rule changes detected. Nothing to reload."),
+					@ApiResponse(responseCode = "404", description = "tenant is not loaded or its query analyzer has no reloadable rules"),
+					@ApiResponse(responseCode = "500", description = "rules can't be loaded or are invalid, the previous rules stay active") })
+	@GetMapping("/reloadRules/{tenant}")
+	public ResponseEntity<HttpStatus> reloadRules(@PathVariable("tenant") String tenant) throws IOException {
+		MDC.put("tenant", tenant);
+		try {
+			Searcher searcher = searchClientCache.getIfPresent(tenant);
+			Optional<ReloadableQueryAnalyzer> queryAnalyzer = searcher == null ? Optional.empty() : searcher.getReloadableQueryAnalyzer();
+			HttpStatus status;
+			if (queryAnalyzer.isEmpty()) {
+				status = HttpStatus.NOT_FOUND;
+			}
+			else if (queryAnalyzer.get().reload()) {
+				log.info("rules successfully reloaded for tenant {}", tenant);
+				status = HttpStatus.OK;
+			}
+			else {
+				status = HttpStatus.NOT_MODIFIED;
+			}
+			return new ResponseEntity<>(status, status);
+		}
+		finally {
+			MDC.remove("tenant");
+		}
+	}
+
+	@Operation(summary = "Dry-run of query analyzer rules: the given rules are loaded with the settings of the specified tenant"
+			+ " and the sample queries are analyzed with them. The rules are not activated.",
+			responses = {
+					@ApiResponse(responseCode = "200", description = "validation result with the error or the analyzed sample queries"),
+					@ApiResponse(responseCode = "404", description = "tenant is unknown or its query analyzer has no reloadable rules") })
+	@PostMapping("/validateRules/{tenant}")
+	public RulesValidationResult validateRules(@PathVariable("tenant") String tenant, @RequestBody RulesValidationRequest validationRequest) throws Exception {
+		MDC.put("tenant", tenant);
+		try {
+			checkTenant(tenant);
+			SearchContext searchContext = searchContexts.computeIfAbsent(tenant, searchContextLoader::loadContext);
+			final Searcher searcher = searchClientCache.get(tenant, () -> initializeSearcher(searchContext));
+			ReloadableQueryAnalyzer queryAnalyzer = searcher.getReloadableQueryAnalyzer()
+					.orElseThrow(() -> new NotFoundException("Reloadable query analyzer for tenant " + tenant));
+
+			UserQueryAnalyzer testAnalyzer;
+			try {
+				testAnalyzer = queryAnalyzer.withRules(Optional.ofNullable(validationRequest.getRules()).orElse(""));
+			}
+			catch (IOException | RuntimeException e) {
+				String error = e.getCause() != null && e.getCause().getMessage() != null ? e.getMessage() + ": " + e.getCause().getMessage() : e.getMessage();
+				return RulesValidationResult.builder().valid(false).error(error).rewrittenQueries(Collections.emptyMap()).build();
+			}
+
+			Map<String, String> rewrittenQueries = new LinkedHashMap<>();
+			if (validationRequest.getQueries() != null) {
+				validationRequest.getQueries().forEach(query -> rewrittenQueries.put(query, testAnalyzer.analyze(query).toQueryString()));
+			}
+			return RulesValidationResult.builder().valid(true).rewrittenQueries(rewrittenQueries).build();
+		}
+		catch (ElasticsearchStatusException esx) {
+			handleUnavailableIndex(tenant, esx);
+			throw esx;
+		}
+		finally {
+			MDC.remove("tenant");
+		}
 	}
 
 	@GetMapping("/search/{tenant}")
 	@Override
 	public SearchResult search(@PathVariable("tenant") String tenant, SearchQuery searchQuery, @RequestParam Map<String, String> filters) throws Exception {
-		return internalSearch(tenant, searchQuery, filters, null);
+		return internalSearch(tenant, searchQuery, filters, null, null);
 	}
 
 	@PostMapping("/search/arranged/{tenant}")
 	@Override
 	public SearchResult arrangedSearch(@PathVariable("tenant") String tenant, @RequestBody ArrangedSearchQuery searchQuery) throws Exception {
-		return internalSearch(tenant, searchQuery, searchQuery.filters, searchQuery.arrangedProductSets);
+		return internalSearch(tenant, searchQuery, searchQuery.filters, searchQuery.arrangedProductSets, null);
+	}
+
+	@PostMapping("/search/multi")
+	@Override
+	public MultiSearchResult multiSearch(@RequestBody MultiSearchQuery multiSearchQuery) throws Exception {
+		List<TenantSearchQuery> searches = multiSearchQuery.getSearches();
+		if (searches == null || searches.isEmpty()) {
+			throw new IllegalArgumentException("no searches given");
+		}
+		if (searches.size() > MAX_MULTI_SEARCH_SIZE) {
+			throw new IllegalArgumentException("too many searches, at most " + MAX_MULTI_SEARCH_SIZE + " are allowed");
+		}
+
+		long start = System.currentTimeMillis();
+		// all searches have to run in parallel, since their first requests
+		// wait for each other to be sent as a single batch
+		MultiSearchBatch batch = new MultiSearchBatch(esBuilder.getRestHLClient(), searches.size());
+		List<CompletableFuture<MultiSearchResultItem>> resultItems = new ArrayList<>(searches.size());
+		for (int i = 0; i < searches.size(); i++) {
+			TenantSearchQuery search = searches.get(i);
+			MultiSearchBatch.Member member = batch.getMember(i);
+			resultItems.add(CompletableFuture.supplyAsync(() -> multiSearchItem(search, member), multiSearchExecutor));
+		}
+
+		MultiSearchResult multiSearchResult = new MultiSearchResult();
+		resultItems.forEach(resultItem -> multiSearchResult.results.add(resultItem.join()));
+		multiSearchResult.tookInMillis = System.currentTimeMillis() - start;
+		return multiSearchResult;
 	}
 
-	private SearchResult internalSearch(String tenant, SearchQuery searchQuery, Map<String, String> filters, ProductSet[] heroProducts) throws Exception {
+	private MultiSearchResultItem multiSearchItem(TenantSearchQuery search, MultiSearchBatch.Member member) {
+		try {
+			if (search == null || search.tenant == null || search.tenant.isBlank()) {
+				throw new IllegalArgumentException("tenant missing");
+			}
+			return new MultiSearchResultItem().setResult(internalSearch(search.tenant, search, search.filters, search.arrangedProductSets, member));
+		}
+		catch (NotFoundException e) {
+			return new MultiSearchResultItem().setStatus(HttpStatus.NOT_FOUND.value()).setError(e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			return new MultiSearchResultItem().setStatus(HttpStatus.BAD_REQUEST.value()).setError(e.getMessage());
+		}
+		catch (Exception e) {
+			final String errorId = UUID.randomUUID().toString();
+			log.error("Internal Server Error {} for multi-search of tenant {}", errorId, search.tenant, e);
+			return new MultiSearchResultItem().setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value()).setError("Internal Error " + errorId);
+		}
+		finally {
+			member.leave();
+		}
+	}
+
+	private SearchResult internalSearch(String tenant, SearchQuery searchQuery, Map<String, String> filters, ProductSet[] heroProducts,
+			MultiSearchBatch.Member multiSearchMember) throws Exception {
 		MDC.put("tenant", tenant);
 		try {
 			// deny access to tenants that were considered invalid before
@@ -162,6 +312,7 @@ public class SearchController implements SearchService {
 				SearchContext searchContext = searchContexts.computeIfAbsent(tenant, searchContextLoader::loadContext);
 
 				final InternalSearchParams parameters = extractInternalParams(searchQuery, filters, searchContext);
+				parameters.multiSearchMember = multiSearchMember;
 
 				if (parameters.trace.isSet(TraceFlag.Request)) {
 					log.info("called search for tenant={} on index{} through method={} with searchQuery={}, filters={} and productSet={}",
@@ -170,8 +321,9 @@ public class SearchController implements SearchService {
 
 				final Searcher searcher = searchClientCache.get(tenant, () -> initializeSearcher(searchContext));
 
-				if (heroProducts != null) {
-					parameters.heroProductSets = searchContext.heroProductHandler.resolve(heroProducts, searcher, searchContext);
+				// arranged product sets are not resolved if no hits are requested
+				if (heroProducts != null && parameters.withHits) {
+					parameters.heroProductSets = searchContext.heroProductHandler.resolve(heroProducts, searcher, searchContext, parameters.deadline);
 				}
 
 				SearchResult result = searcher.find(parameters, searchMetaData);
@@ -203,13 +355,48 @@ public class SearchController implements SearchService {
 		}
 	}
 
+	@Operation(summary = "Page through all values of a single facet for the given search query and filters."
+			+ " The 'limit' parameter defines the page size and the 'cursor' parameter the page, as returned with the 'nextCursor' meta data of the previous page.",
+			responses = {
+					@ApiResponse(responseCode = "200", description = "facet with the values of the requested page"),
+					@ApiResponse(responseCode = "404", description = "tenant or facet is unknown or the facet values can't be paged") })
+	@GetMapping("/facet-values/{tenant}/{facetName}")
+	public Facet getFacetValues(@PathVariable("tenant") String tenant, @PathVariable("facetName") String facetName, SearchQuery searchQuery,
+			@RequestParam Map<String, String> filters) throws Exception {
+		MDC.put("tenant", tenant);
+		try {
+			checkTenant(tenant);
+			SearchContext searchContext = searchContexts.computeIfAbsent(tenant, searchContextLoader::loadContext);
+
+			final InternalSearchParams parameters = extractInternalParams(searchQuery, filters, searchContext);
+			String cursor = parameters.customParams.remove("cursor");
+			// the limit is used as page size, the facet links should lead to a
+			// result with the default limit
+			int pageSize = parameters.limit;
+			parameters.limit = new InternalSearchParams().limit;
+
+			final Searcher searcher = searchClientCache.get(tenant, () -> initializeSearcher(searchContext));
+			return searcher.findFacetValues(parameters, facetName, cursor, pageSize)
+					.orElseThrow(() -> new NotFoundException("Facet " + facetName));
+		}
+		catch (ElasticsearchStatusException esx) {
+			handleUnavailableIndex(tenant, esx);
+			throw esx;
+		}
+		finally {
+			MDC.remove("tenant");
+		}
+	}
+
 	private void triggerFlushIfNecessary(String tenant, SearchResult result) {
 		if (!result.getSlices().isEmpty() && !result.getSlices().get(0).hits.isEmpty()) {
 			String indexName = result.getSlices().get(0).hits.get(0).index;
 			String prevIndexName = actualIndexPerTenant.put(tenant, indexName);
 			if (prevIndexName != null && !indexName.equals(prevIndexName)) {
 				log.info("flushing config for tenant {} because actual index changed from {} to {}", tenant, prevIndexName, indexName);
-				CompletableFuture.runAsync(() -> flushConfig(tenant));
+				Searcher searcher = searchClientCache.getIfPresent(tenant);
+				if (searcher != null) searcher.clearIndexCaches();
+				CompletableFuture.runAsync(() -> flushConfig(tenant, true));
 			}
 		}
 	}
@@ -285,7 +472,9 @@ public class SearchController implements SearchService {
 	}
 
 	private Searcher initializeSearcher(SearchContext searchContext) {
-		return new Searcher(esBuilder.getRestHLClient(), searchContext, registry, plugins);
+		Searcher searcher = new Searcher(esBuilder.getRestHLClient(), searchContext, registry, plugins);
+		searcher.warmUp();
+		return searcher;
 	}
 
 	@ExceptionHandler({ NotFoundException.class })
@@ -298,7 +487,7 @@ public class SearchController implements SearchService {
 	}
 
 	@ExceptionHandler({ IllegalArgumentException.class })
-	public ResponseEntity<ExceptionResponse> handleParameterErrors(NotFoundException e) {
+	public ResponseEntity<ExceptionResponse> handleParameterErrors(IllegalArgumentException e) {
 		return ResponseEntity.status(HttpStatus.BAD_REQUEST)
 				.body(ExceptionResponse.builder()
 						.message(e.getMessage())
@@ -42,6 +42,19 @@ public class ApplicationSearchProperties {
 
 	private String variantPickingStrategy = "pickIfBestScored";
 
+	/**
+	 * Latency budget in milliseconds per search request. If not set at the
+	 * tenant specific configuration, the default is used.
+	 */
+	private Long latencyBudgetMs;
+
+	/**
+	 * Maximum time in milliseconds a request waits for an identical
+	 * concurrent request. If not set at the tenant specific configuration, the
+	 * default is used.
+	 */
+	private Long requestCoalescingMaxWaitMs;
+
 	@NestedConfigurationProperty
 	private QueryProcessingConfiguration queryProcessing = new QueryProcessingConfiguration();
 
@@ -30,6 +30,8 @@ public class DefaultSearchConfigurationProvider implements SearchConfigurationPr
 		getFacetConfiguration(tenant).ifPresent(mergedConfig::setFacetConfiguration);
 		getScoringConfiguration(tenant).ifPresent(mergedConfig::setScoring);
 		getVariantPickingStrategy(tenant).ifPresent(mergedConfig::setVariantPickingStrategy);
+		getLatencyBudget(tenant).ifPresent(mergedConfig::setLatencyBudgetMs);
+		getRequestCoalescingMaxWait(tenant).ifPresent(mergedConfig::setRequestCoalescingMaxWaitMs);
 
 		mergedConfig.getQueryConfigs().addAll(getQueryConfiguration(tenant));
 		mergedConfig.getSortConfigs().addAll(getSortConfigs(tenant));
@@ -57,6 +59,18 @@ public class DefaultSearchConfigurationProvider implements SearchConfigurationPr
 				.getOrDefault(tenant, properties.getDefaultTenantConfig()).getVariantPickingStrategy());
 	}
 
+	private Optional<Long> getLatencyBudget(String tenant) {
+		return Optional.ofNullable(properties.getTenantConfig().get(tenant))
+				.map(ApplicationSearchProperties::getLatencyBudgetMs)
+				.or(() -> Optional.ofNullable(properties.getDefaultTenantConfig().getLatencyBudgetMs()));
+	}
+
+	private Optional<Long> getRequestCoalescingMaxWait(String tenant) {
+		return Optional.ofNullable(properties.getTenantConfig().get(tenant))
+				.map(ApplicationSearchProperties::getRequestCoalescingMaxWaitMs)
+				.or(() -> Optional.ofNullable(properties.getDefaultTenantConfig().getRequestCoalescingMaxWaitMs()));
+	}
+
 	public Optional<QueryProcessingConfiguration> getQueryProcessing(String tenant) {
 		return getSubConfiguration(tenant, ApplicationSearchProperties::getQueryProcessing,
 				tenantConfig -> tenantConfig == null);
@@ -0,0 +1,193 @@
+package de.cxp.ocs.elasticsearch;
+
+import java.util.*;
+
+import de.cxp.ocs.elasticsearch.model.term.AssociatedTerm;
+import de.cxp.ocs.elasticsearch.model.term.WeightedTerm;
+import de.cxp.ocs.elasticsearch.query.builder.CountedTerm;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * In-memory spell checker based on a SymSpell like deletion index of the
+ * terms that are indexed into the search fields. It is used instead of the
+ * Elasticsearch term suggester, so that the spell correction does not need a
+ * round-trip to Elasticsearch.
+ * </p>
+ * <p>
+ * The settings and the scoring are aligned with the defaults of the
+ * Elasticsearch term suggester: Only terms that are not part of the
+ * vocabulary are corrected, if they have at least {@value #MIN_WORD_LENGTH}
+ * characters. Corrections have at most {@value #MAX_EDITS} edits (a
+ * transposition counts as one edit) and must start with the same character.
+ * The score is the edit distance relative to the length of the shorter term,
+ * like Lucene's internal levenshtein distance.
+ * </p>
+ * <p>
+ * To keep the deletion index small, only the deletes of the first
+ * {@value #DELETES_PREFIX_LENGTH} characters of each term are indexed. The
+ * candidates are verified with the edit distance of the whole terms.
+ * </p>
+ */
+@Slf4j
+public class LocalSpellChecker {
+
+	static final int	MAX_EDITS				= 2;
+	static final int	PREFIX_LENGTH			= 1;
+	static final int	MIN_WORD_LENGTH			= 4;
+	static final int	MAX_SUGGESTIONS			= 5;
+	static final int	DELETES_PREFIX_LENGTH	= 7;
+
+	private static class Vocabulary {
+
+		final Map<String, Integer> termFrequencies;
+
+		final Map<String, List<String>> deletes = new HashMap<>();
+
+		Vocabulary(Map<String, Integer> termFrequencies) {
+			this.termFrequencies = termFrequencies;
+			for (String term : termFrequencies.keySet()) {
+				for (String delete : getDeletes(term)) {
+					deletes.computeIfAbsent(delete, d -> new ArrayList<>(1)).add(term);
+				}
+			}
+		}
+	}
+
+	private volatile Vocabulary vocabulary = null;
+
+	/**
+	 * Build a new deletion index from the given terms and replace the
+	 * previous one.
+	 * 
+	 * @param termFrequencies
+	 *        the terms of the vocabulary with their document frequency
+	 */
+	public void load(Map<String, Integer> termFrequencies) {
+		long start = System.currentTimeMillis();
+		Vocabulary newVocabulary = new Vocabulary(new HashMap<>(termFrequencies));
+		vocabulary = newVocabulary;
+		log.info("loaded local spell checker with {} terms and {} deletes in {}ms", newVocabulary.termFrequencies.size(), newVocabulary.deletes.size(),
+				System.currentTimeMillis() - start);
+	}
+
+	public boolean isLoaded() {
+		return vocabulary != null;
+	}
+
+	public int size() {
+		Vocabulary currentVocabulary = vocabulary;
+		return currentVocabulary == null ? 0 : currentVocabulary.termFrequencies.size();
+	}
+
+	/**
+	 * Get the best corrections of the given terms. Only the corrections with
+	 * the best score are returned per term, the same way the corrections of
+	 * the Elasticsearch term suggester are extracted.
+	 * 
+	 * @param terms
+	 *        terms to correct
+	 * @param minScore
+	 *        the minimum score of a correction
+	 * @return corrections per term
+	 */
+	public Map<String, AssociatedTerm> correct(Collection<String> terms, float minScore) {
+		Vocabulary currentVocabulary = vocabulary;
+		Map<String, AssociatedTerm> correctedWords = new HashMap<>();
+		if (currentVocabulary == null) return correctedWords;
+
+		for (String term : terms) {
+			if (correctedWords.containsKey(term) || term.length() < MIN_WORD_LENGTH || currentVocabulary.termFrequencies.containsKey(term)) continue;
+
+			List<CountedTerm> corrections = getBestCorrections(currentVocabulary, term, minScore);
+			if (!corrections.isEmpty()) {
+				AssociatedTerm correctedWord = new AssociatedTerm(new WeightedTerm(term));
+				corrections.forEach(correctedWord::putOrUpdate);
+				correctedWords.put(term, correctedWord);
+			}
+		}
+		return correctedWords;
+	}
+
+	private List<CountedTerm> getBestCorrections(Vocabulary currentVocabulary, String term, float minScore) {
+		Map<String, Float> candidateScores = new HashMap<>();
+		for (String delete : getDeletes(term)) {
+			List<String> candidates = currentVocabulary.deletes.get(delete);
+			if (candidates == null) continue;
+			for (String candidate : candidates) {
+				if (candidateScores.containsKey(candidate) || Math.abs(candidate.length() - term.length()) > MAX_EDITS
+						|| !candidate.regionMatches(0, term, 0, PREFIX_LENGTH)) {
+					continue;
+				}
+				int distance = getEditDistance(term, candidate);
+				candidateScores.put(candidate, distance <= MAX_EDITS ? getScore(term, candidate, distance) : 0f);
+			}
+		}
+
+		// same order as the term suggester: score first, then frequency
+		List<Map.Entry<String, Float>> rankedCandidates = new ArrayList<>(candidateScores.entrySet());
+		rankedCandidates.removeIf(candidate -> candidate.getValue() < minScore);
+		rankedCandidates.sort(Comparator.<Map.Entry<String, Float>> comparingDouble(Map.Entry::getValue).reversed()
+				.thenComparing(candidate -> -currentVocabulary.termFrequencies.get(candidate.getKey())));
+
+		List<CountedTerm> corrections = new ArrayList<>();
+		for (Map.Entry<String, Float> candidate : rankedCandidates.subList(0, Math.min(MAX_SUGGESTIONS, rankedCandidates.size()))) {
+			if (candidate.getValue() < rankedCandidates.get(0).getValue()) break;
+			corrections.add(new CountedTerm(new WeightedTerm(candidate.getKey(), candidate.getValue()), currentVocabulary.termFrequencies.get(candidate.getKey())));
+		}
+		return corrections;
+	}
+
+	/**
+	 * @return all variants of the term's prefix with up to MAX_EDITS deleted
+	 *         characters, including the prefix itself
+	 */
+	static Set<String> getDeletes(String term) {
+		String prefix = term.length() > DELETES_PREFIX_LENGTH ? term.substring(0, DELETES_PREFIX_LENGTH) : term;
+		Set<String> deletes = new HashSet<>();
+		deletes.add(prefix);
+		Set<String> currentDeletes = Collections.singleton(prefix);
+		for (int edit = 0; edit < MAX_EDITS; edit++) {
+			Set<String> nextDeletes = new HashSet<>();
+			for (String word : currentDeletes) {
+				if (word.length() <= 1) continue;
+				for (int i = 0; i < word.length(); i++) {
+					String delete = word.substring(0, i) + word.substring(i + 1);
+					if (deletes.add(delete)) {
+						nextDeletes.add(delete);
+					}
+				}
+			}
+			currentDeletes = nextDeletes;
+		}
+		return deletes;
+	}
+
+	static float getScore(String term, String candidate, int distance) {
+		return 1f - ((float) distance / Math.min(term.length(), candidate.length()));
+	}
+
+	/**
+	 * Optimal string alignment distance, which is the levenshtein distance
+	 * where transpositions of adjacent characters count as one edit.
+	 */
+	static int getEditDistance(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			d[i][0] = i;
+		}
+		for (int j = 0; j <= b.length(); j++) {
+			d[0][j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+					d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+}
@@ -0,0 +1,195 @@
+package de.cxp.ocs.elasticsearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import de.cxp.ocs.util.Deadline;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects the first search request of several searches that run in parallel
+ * and sends them to Elasticsearch with a single multi-search request. Each
+ * search uses its own {@link Member} for its first request, all further
+ * requests of a search, e.g. of following query stages, are sent as usual.
+ * The batch is sent as soon as every member either submitted its request or
+ * left the batch without one, so each member has to leave the batch after its
+ * search is done. A member only waits for the batch until its own deadline is
+ * exceeded and then sends its request on its own.
+ */
+@Slf4j
+public class MultiSearchBatch {
+
+	private final RestHighLevelClient restClient;
+
+	private final List<Member> members;
+
+	private final List<Member> submittedMembers = new ArrayList<>();
+
+	private int openMembers;
+
+	private boolean isSent;
+
+	public MultiSearchBatch(RestHighLevelClient restClient, int size) {
+		this.restClient = restClient;
+		List<Member> members = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			members.add(new Member());
+		}
+		this.members = Collections.unmodifiableList(members);
+		this.openMembers = size;
+	}
+
+	public Member getMember(int index) {
+		return members.get(index);
+	}
+
+	public class Member {
+
+		private final CompletableFuture<MultiSearchResponse.Item> response = new CompletableFuture<>();
+
+		private SearchRequest request;
+
+		private Deadline deadline = Deadline.NONE;
+
+		private boolean isOpen = true;
+
+		/**
+		 * @return true if the member did neither submit its request nor left
+		 *         the batch yet
+		 */
+		public boolean isOpen() {
+			synchronized (MultiSearchBatch.this) {
+				return isOpen;
+			}
+		}
+
+		/**
+		 * Submit the request and wait until the whole batch was executed, but
+		 * not longer than the deadline allows. If the deadline is exceeded
+		 * before, the request is sent as a single search request.
+		 *
+		 * @param searchRequest
+		 *        the search request
+		 * @param deadline
+		 *        deadline of the search
+		 * @return the search response of that request
+		 * @throws IOException
+		 *         in case of connection errors
+		 */
+		public SearchResponse search(SearchRequest searchRequest, Deadline deadline) throws IOException {
+			List<Member> batch;
+			synchronized (MultiSearchBatch.this) {
+				if (!isOpen) throw new IllegalStateException("request of that member was already submitted");
+				request = searchRequest;
+				this.deadline = deadline;
+				submittedMembers.add(this);
+				batch = close();
+			}
+			if (batch != null) send(batch);
+
+			MultiSearchResponse.Item item;
+			try {
+				item = deadline.isSet() ? response.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS) : response.get();
+			}
+			catch (TimeoutException e) {
+				synchronized (MultiSearchBatch.this) {
+					// not needed anymore, if the batch is still waiting for others
+					if (!isSent) submittedMembers.remove(this);
+				}
+				log.debug("multi-search batch not answered within the deadline {}, sending a single search request", deadline);
+				return restClient.search(searchRequest, deadline.getRequestOptions());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for multi-search response");
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+				if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+				throw new IOException(e.getCause());
+			}
+
+			if (item.isFailure()) {
+				Exception failure = item.getFailure();
+				if (failure instanceof ElasticsearchStatusException) throw (ElasticsearchStatusException) failure;
+				// same exception as for a single search request
+				if (failure instanceof ElasticsearchException) {
+					throw new ElasticsearchStatusException("{}", ((ElasticsearchException) failure).status(), failure, failure.getMessage());
+				}
+				throw new IOException(failure);
+			}
+			return item.getResponse();
+		}
+
+		/**
+		 * Leave the batch without a request, e.g. because the search is done
+		 * or failed before. Does nothing if the request was submitted already.
+		 */
+		public void leave() {
+			List<Member> batch;
+			synchronized (MultiSearchBatch.this) {
+				if (!isOpen) return;
+				batch = close();
+			}
+			if (batch != null) send(batch);
+		}
+
+		/**
+		 * Must be called with the lock of the batch.
+		 *
+		 * @return the members to send, if this was the last open member
+		 */
+		private List<Member> close() {
+			isOpen = false;
+			openMembers--;
+			if (openMembers == 0 && !submittedMembers.isEmpty()) {
+				isSent = true;
+				return new ArrayList<>(submittedMembers);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Send the batch with the request options of the member with the least
+	 * remaining time, since each member waits at most until its deadline.
+	 */
+	private void send(List<Member> batch) {
+		MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+		batch.forEach(member -> multiSearchRequest.add(member.request));
+		RequestOptions requestOptions = batch.stream()
+				.map(member -> member.deadline)
+				.filter(Deadline::isSet)
+				.min(Comparator.comparingLong(Deadline::getRemainingMillis))
+				.map(Deadline::getRequestOptions)
+				.orElse(RequestOptions.DEFAULT);
+		try {
+			MultiSearchResponse.Item[] items = restClient.msearch(multiSearchRequest, requestOptions).getResponses();
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).response.complete(items[i]);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			log.debug("multi-search request with {} searches failed", batch.size(), e);
+			batch.forEach(member -> member.response.completeExceptionally(e));
+		}
+	}
+}
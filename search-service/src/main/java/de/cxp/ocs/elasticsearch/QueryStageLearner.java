@@ -0,0 +1,240 @@
+package de.cxp.ocs.elasticsearch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.cxp.ocs.spi.search.ESQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Learns which query stage first returned a sufficient result for a
+ * normalized user query, so that the staged search can start at that stage
+ * the next time and the requests of the previous stages are saved. Only
+ * stages after the first one are remembered. A learned stage expires after
+ * the configured time, so that earlier stages get their chance again after
+ * the data changed.
+ * The learned stages are bounded in size and optionally stored in a local
+ * file, that is loaded again at startup.
+ */
+@Slf4j
+public class QueryStageLearner {
+
+	static final long SAVE_INTERVAL_MS = 60_000;
+
+	@Value
+	private static class LearnedStage {
+
+		String	stageName;
+		long	learnedAt;
+	}
+
+	private final Cache<String, LearnedStage> learnedStages;
+
+	private final long ttlMillis;
+
+	private final Locale locale;
+
+	private final Path file;
+
+	private final AtomicBoolean	isSaving		= new AtomicBoolean();
+	private volatile boolean	isModified		= false;
+	private volatile long		nextSave		= 0;
+
+	private final Counter	hitCounter;
+	private final Counter	missCounter;
+	private final Counter	skippedStagesCounter;
+
+	public QueryStageLearner(int maxSize, int ttlSeconds, Path file, Locale locale, MeterRegistry registry, String indexName) {
+		learnedStages = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.build();
+		this.ttlMillis = ttlSeconds * 1000L;
+		this.file = file;
+		this.locale = locale == null ? Locale.ROOT : locale;
+
+		hitCounter = Counter.builder("queryStageLearner").tag("indexName", indexName).tag("result", "hit").register(registry);
+		missCounter = Counter.builder("queryStageLearner").tag("indexName", indexName).tag("result", "miss").register(registry);
+		skippedStagesCounter = Counter.builder("queryStageLearnerSkippedStages").tag("indexName", indexName).register(registry);
+		Gauge.builder("queryStageLearnerSize", learnedStages, Cache::size).tag("indexName", indexName).register(registry);
+
+		if (file != null && Files.exists(file)) {
+			load();
+		}
+	}
+
+	/**
+	 * Get the index of the stage the search should start with and count the
+	 * hit or miss.
+	 *
+	 * @param userQuery
+	 *        the user query
+	 * @param stages
+	 *        the query stages that match the query
+	 * @return the index of the learned stage or 0
+	 */
+	public int getStartStage(String userQuery, List<ESQueryFactory> stages) {
+		int startStage = peekStartStage(userQuery, stages);
+		if (startStage > 0) {
+			hitCounter.increment();
+			skippedStagesCounter.increment(startStage);
+		}
+		else {
+			missCounter.increment();
+		}
+		return startStage;
+	}
+
+	/**
+	 * Same as {@link #getStartStage(String, List)} but without counting the
+	 * hit or miss, for requests that don't run the staged search.
+	 *
+	 * @param userQuery
+	 *        the user query
+	 * @param stages
+	 *        the query stages that match the query
+	 * @return the index of the learned stage or 0
+	 */
+	public int peekStartStage(String userQuery, List<ESQueryFactory> stages) {
+		String key = normalize(userQuery);
+		LearnedStage learnedStage = key == null ? null : learnedStages.getIfPresent(key);
+		if (learnedStage != null && System.currentTimeMillis() - learnedStage.learnedAt > ttlMillis) {
+			learnedStages.invalidate(key);
+			learnedStage = null;
+		}
+		int startStage = 0;
+		if (learnedStage != null) {
+			// the stage might not exist anymore after a configuration change
+			for (int i = 1; i < stages.size(); i++) {
+				if (learnedStage.stageName.equals(stages.get(i).getName())) {
+					startStage = i;
+					break;
+				}
+			}
+		}
+		return startStage;
+	}
+
+	/**
+	 * Remember the stage that returned a sufficient result for the given
+	 * query. If it was the first stage, a previously learned stage is removed.
+	 *
+	 * @param userQuery
+	 *        the user query
+	 * @param stageName
+	 *        name of the query stage
+	 * @param stageIndex
+	 *        index of that stage in the list of all matching stages
+	 */
+	public void learn(String userQuery, String stageName, int stageIndex) {
+		String key = normalize(userQuery);
+		if (key == null) return;
+		if (stageIndex > 0) {
+			LearnedStage learnedStage = learnedStages.getIfPresent(key);
+			if (learnedStage == null || !learnedStage.stageName.equals(stageName)) {
+				learnedStages.put(key, new LearnedStage(stageName, System.currentTimeMillis()));
+				isModified = true;
+			}
+			saveIfDue();
+		}
+		else {
+			forget(userQuery);
+		}
+	}
+
+	/**
+	 * Remove the learned stage of the given query, e.g. because it did not
+	 * return a sufficient result anymore.
+	 *
+	 * @param userQuery
+	 *        the user query
+	 */
+	public void forget(String userQuery) {
+		String key = normalize(userQuery);
+		if (key != null && learnedStages.asMap().remove(key) != null) {
+			isModified = true;
+			saveIfDue();
+		}
+	}
+
+	private String normalize(String userQuery) {
+		String normalizedQuery = StringUtils.normalizeSpace(userQuery);
+		return normalizedQuery == null || normalizedQuery.isEmpty() ? null : normalizedQuery.toLowerCase(locale);
+	}
+
+	private void saveIfDue() {
+		if (file != null && isModified && System.currentTimeMillis() >= nextSave && isSaving.compareAndSet(false, true)) {
+			nextSave = System.currentTimeMillis() + SAVE_INTERVAL_MS;
+			CompletableFuture.runAsync(() -> {
+				try {
+					save();
+				}
+				finally {
+					isSaving.set(false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Write all learned stages into the configured file. The file is replaced
+	 * atomically, so that a crash never leaves a broken file.
+	 */
+	synchronized void save() {
+		isModified = false;
+		List<String> lines = new ArrayList<>((int) learnedStages.size());
+		for (Map.Entry<String, LearnedStage> entry : learnedStages.asMap().entrySet()) {
+			lines.add(entry.getKey() + "\t" + entry.getValue().stageName + "\t" + entry.getValue().learnedAt);
+		}
+		try {
+			Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+			Files.write(tempFile, lines, StandardCharsets.UTF_8);
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			isModified = true;
+			log.warn("failed to save learned query stages to {}", file, e);
+		}
+	}
+
+	private void load() {
+		long now = System.currentTimeMillis();
+		try {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				String[] values = line.split("\t");
+				if (values.length != 3) continue;
+				long learnedAt = Long.parseLong(values[2]);
+				if (now - learnedAt <= ttlMillis) {
+					learnedStages.put(values[0], new LearnedStage(values[1], learnedAt));
+				}
+			}
+			log.info("loaded {} learned query stages from {}", learnedStages.size(), file);
+		}
+		catch (IOException | NumberFormatException e) {
+			log.warn("failed to load learned query stages from {}", file, e);
+		}
+	}
+
+	public long size() {
+		return learnedStages.size();
+	}
+}
@@ -20,56 +20,68 @@ import de.cxp.ocs.config.ScoringConfiguration.ScoringFunction;
 import de.cxp.ocs.elasticsearch.query.ScoringContext;
 import de.cxp.ocs.util.ConfigurationException;
 import de.cxp.ocs.util.InternalSearchParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Creates the scoring context from the scoring configuration. All scoring
+ * functions are compiled once when the tenant is loaded. Functions with an
+ * invalid configuration are discarded with a warning at that time. Only
+ * functions that depend on request parameters (rank features with
+ * 'dynamic_param') are built per request.
+ */
 @Slf4j
 public class ScoringCreator {
 
 	private final ScoringConfiguration	scoreConf;
-	private final List<ScoringFunction>	scoreFunctions;
 	private final Map<String, Field>	scoreFields;
 
+	/**
+	 * Scoring context with all functions that don't depend on request
+	 * parameters. It is shared by all requests and must not be modified.
+	 */
+	private final ScoringContext		staticScoringContext;
+	private final List<ScoringFunction>	dynamicScoreFunctions	= new ArrayList<>();
+
+	@Getter
+	private final List<String> discardedScoreFunctions = new ArrayList<>();
+
+	private final Counter discardedCounter;
+
 	private final static EnumSet<ScoreType> typesRequireField = EnumSet.of(ScoreType.RANDOM_SCORE, ScoreType.FIELD_VALUE_FACTOR, ScoreType.RANK_FEATURE,
 			ScoreType.DECAY_EXP, ScoreType.DECAY_GAUSS, ScoreType.DECAY_LINEAR);
 
-	public ScoringCreator(SearchContext context) {
+	private final static Set<String> rankFeatureFunctions = Set.of("linear", "log", "sigmoid", "saturation");
+
+	public ScoringCreator(SearchContext context, MeterRegistry registry) {
 		scoreConf = context.config.getScoring();
 		Map<String, Field> tempScoreFields = context.getFieldConfigIndex().getFieldsByUsage(FieldUsage.SCORE);
 		scoreFields = Collections.unmodifiableMap(tempScoreFields);
-		// copy into array, so that we can remove invalid score definitions
-		scoreFunctions = extractValidScoreFunctions(scoreConf.getScoreFunctions());
-	}
+		discardedCounter = Counter.builder("scoringFunctionsDiscarded").tag("indexName", context.config.getIndexName()).register(registry);
 
-	private List<ScoringFunction> extractValidScoreFunctions(List<ScoringFunction> scoringFunctions) {
-		List<ScoringFunction> validFunctions = new ArrayList<>();
-		for (ScoringFunction sf : scoringFunctions) {
-			boolean isFieldRequired = typesRequireField.contains(sf.getType());
-			Optional<Field> relatedField = Optional.ofNullable(sf.getField()).map(scoreFields::get);
-			if (isFieldRequired && relatedField.isEmpty()) {
-				if (sf.getField() != null) {
-					log.warn("Field {} for scoring does not exist. Will ignore scoring function of type {}", sf.getField(), sf.getType());
-				}
-				else {
-					log.warn("Scoring function of type {} requires field, but non given", sf.getType());
-				}
-			}
-			else {
-				validFunctions.add(sf);
-			}
+		staticScoringContext = compileScoringContext(scoreConf.getScoreFunctions());
+		if (!discardedScoreFunctions.isEmpty()) {
+			log.warn("Discarded {} of {} scoring functions for index {}: {}", discardedScoreFunctions.size(), scoreConf.getScoreFunctions().size(),
+					context.config.getIndexName(), discardedScoreFunctions);
 		}
-		return validFunctions;
 	}
 
-	public ScoringContext getScoringContext(InternalSearchParams parameters) {
+	private ScoringContext compileScoringContext(List<ScoringFunction> scoringFunctions) {
 		ScoringContext scoringContext = new ScoringContext();
 		scoringContext.setBoostMode(CombineFunction.fromString(scoreConf.getBoostMode().name().toUpperCase()));
 		scoringContext.setScoreMode(ScoreMode.fromString(scoreConf.getScoreMode().name().toUpperCase()));
 
-		Iterator<ScoringFunction> scoreFunctionIterator = scoreFunctions.iterator();
-		while (scoreFunctionIterator.hasNext()) {
-			ScoringFunction scoringFunction = scoreFunctionIterator.next();
+		for (ScoringFunction scoringFunction : scoringFunctions) {
 			boolean isFieldRequired = typesRequireField.contains(scoringFunction.getType());
 			Optional<Field> relatedField = Optional.ofNullable(scoringFunction.getField()).map(scoreFields::get);
+			if (isFieldRequired && relatedField.isEmpty()) {
+				discard(scoringFunction, scoringFunction.getField() != null
+						? "field " + scoringFunction.getField() + " does not exist or is not used for scoring"
+						: "scoring function of type " + scoringFunction.getType() + " requires a field, but none given");
+				continue;
+			}
 
 			boolean isMasterScoringField = relatedField.map(Field::isMasterLevel).orElse(false);
 			boolean isVariantScoringField = relatedField.map(Field::isVariantLevel).orElse(false);
@@ -78,24 +90,60 @@ public class ScoringCreator {
 			// explicitly.
 			boolean useForVariants = Boolean.parseBoolean(scoringFunction.getOptions().getOrDefault(ScoreOption.USE_FOR_VARIANTS, Boolean.toString(isVariantScoringField)));
 			if (useForVariants && !isVariantScoringField) {
-				log.warn("score function configured for variant level on field {}, but field does not exist on variant level."
-						+ " Discarding function {}", scoringFunction.getField(), scoringFunction);
-				scoreFunctionIterator.remove();
+				discard(scoringFunction, "configured for variant level, but field " + scoringFunction.getField() + " does not exist on variant level");
+				continue;
+			}
+
+			if (isDynamic(scoringFunction)) {
+				if (useForVariants) log.warn("rank-feature not supported for variant-level (on field {})", scoringFunction.getField());
+				String function = scoringFunction.getOptions().getOrDefault(ScoreOption.MODIFIER, "saturation").toLowerCase();
+				if (!rankFeatureFunctions.contains(function)) {
+					log.warn("rank_feature score configuration for field {} has invalid function: '{}'. Using 'saturation' instead.", scoringFunction.getField(), function);
+				}
+				if (isMasterScoringField) dynamicScoreFunctions.add(scoringFunction);
 				continue;
 			}
 
 			try {
-				if (isMasterScoringField || !isFieldRequired) applyFunction(scoringContext, scoringFunction, parameters, false);
-				if (useForVariants) applyFunction(scoringContext, scoringFunction, parameters, true);
+				if (isMasterScoringField || !isFieldRequired) applyFunction(scoringContext, scoringFunction, false);
+				if (useForVariants) applyFunction(scoringContext, scoringFunction, true);
 			}
-			catch (ConfigurationException configException) {
-				log.error("Applying scoring function failed: {}! Ignoring.", configException.getMessage());
+			catch (ConfigurationException | IllegalArgumentException configException) {
+				discard(scoringFunction, configException.getMessage());
 			}
 		}
 		return scoringContext;
 	}
 
-	private void applyFunction(ScoringContext scoringContext, ScoringFunction scoringFunction, InternalSearchParams parameters, boolean useForVariants) throws ConfigurationException {
+	private boolean isDynamic(ScoringFunction scoringFunction) {
+		return ScoreType.RANK_FEATURE.equals(scoringFunction.getType()) && scoringFunction.getOptions().containsKey(ScoreOption.DYNAMIC_PARAM);
+	}
+
+	private void discard(ScoringFunction scoringFunction, String reason) {
+		discardedScoreFunctions.add(scoringFunction.getType() + (scoringFunction.getField() == null ? "" : " on field " + scoringFunction.getField()) + ": " + reason);
+		discardedCounter.increment();
+	}
+
+	/**
+	 * Get the scoring context for the given parameters. If no scoring function
+	 * depends on request parameters, the same precompiled context is returned
+	 * for all requests, so it must not be modified.
+	 * 
+	 * @param parameters
+	 *        search parameters
+	 * @return scoring context
+	 */
+	public ScoringContext getScoringContext(InternalSearchParams parameters) {
+		if (dynamicScoreFunctions.isEmpty()) return staticScoringContext;
+
+		ScoringContext scoringContext = staticScoringContext.copy();
+		for (ScoringFunction scoringFunction : dynamicScoreFunctions) {
+			buildRankFeatureQueries(scoringFunction, scoreFields.get(scoringFunction.getField()), parameters, scoringContext);
+		}
+		return scoringContext;
+	}
+
+	private void applyFunction(ScoringContext scoringContext, ScoringFunction scoringFunction, boolean useForVariants) throws ConfigurationException {
 		switch (scoringFunction.getType()) {
 			case SCRIPT_SCORE:
 				buildScriptScoreFunction(scoringFunction)
@@ -112,7 +160,7 @@ public class ScoringCreator {
 				break;
 			case RANK_FEATURE:
 				if (useForVariants) log.warn("rank-feature not supported for variant-level (on field {})", scoringFunction.getField());
-				else buildRankFeatureQueries(scoringFunction, scoreFields.get(scoringFunction.getField()), parameters, scoringContext);
+				else buildRankFeatureQueries(scoringFunction, scoreFields.get(scoringFunction.getField()), null, scoringContext);
 				break;
 			default:
 				buildFieldBasedScoreFunction(scoringFunction, scoreFields.get(scoringFunction.getField()), useForVariants)
@@ -153,7 +201,10 @@ public class ScoringCreator {
 						.orElseGet(() -> RankFeatureQueryBuilders.saturation(fieldName));
 				break;
 			default:
-				log.warn("rank_feature score configuration for field {} has invalid function: '{}'. Using 'saturation' instead.", field.getName(), function);
+				// for dynamic rank features this is already logged at load time
+				if (parameters == null) {
+					log.warn("rank_feature score configuration for field {} has invalid function: '{}'. Using 'saturation' instead.", field.getName(), function);
+				}
 				rankFeatureQuery = RankFeatureQueryBuilders.saturation(fieldName);
 		}
 
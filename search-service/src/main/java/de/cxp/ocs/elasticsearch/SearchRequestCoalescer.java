@@ -0,0 +1,299 @@
+package de.cxp.ocs.elasticsearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
+import de.cxp.ocs.model.index.Document;
+import de.cxp.ocs.model.index.Product;
+import de.cxp.ocs.model.params.LinkMode;
+import de.cxp.ocs.model.params.StaticProductSet;
+import de.cxp.ocs.model.result.*;
+import de.cxp.ocs.util.InternalSearchParams;
+import de.cxp.ocs.util.TraceOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lets concurrent identical search requests share a single execution: The
+ * first request is executed, all identical requests that arrive until it's
+ * done wait for its result instead of running the same searches against
+ * Elasticsearch. Nothing is cached beyond the execution time.
+ * Waiting requests run the search on their own, if the shared execution
+ * fails, takes longer than the configured maximum wait time or only returned a
+ * partial result because its latency budget was exhausted.
+ */
+@Slf4j
+public class SearchRequestCoalescer {
+
+	@FunctionalInterface
+	public interface SearchExecution {
+
+		SearchResult execute() throws IOException;
+	}
+
+	private final Map<CoalescingKey, CompletableFuture<SearchResult>> inFlightSearches = new ConcurrentHashMap<>();
+
+	private final long maxWaitMillis;
+
+	private final Counter	executedCounter;
+	private final Counter	coalescedCounter;
+	private final Counter	timeoutCounter;
+	private final Counter	partialCounter;
+
+	public SearchRequestCoalescer(long maxWaitMillis, MeterRegistry registry, String indexName) {
+		this.maxWaitMillis = maxWaitMillis;
+		executedCounter = Counter.builder("searchRequestCoalescing").tag("indexName", indexName).tag("result", "executed").register(registry);
+		coalescedCounter = Counter.builder("searchRequestCoalescing").tag("indexName", indexName).tag("result", "coalesced").register(registry);
+		timeoutCounter = Counter.builder("searchRequestCoalescing").tag("indexName", indexName).tag("result", "timeout").register(registry);
+		partialCounter = Counter.builder("searchRequestCoalescing").tag("indexName", indexName).tag("result", "partial").register(registry);
+	}
+
+	/**
+	 * Run the given search or wait for the result of an identical search
+	 * that is already running.
+	 *
+	 * @param parameters
+	 *        the search parameters
+	 * @param execution
+	 *        the actual search
+	 * @return the own or shared search result
+	 * @throws IOException
+	 *         in case the own search execution failed
+	 */
+	public SearchResult execute(InternalSearchParams parameters, SearchExecution execution) throws IOException {
+		CoalescingKey key = getCoalescingKey(parameters);
+		if (key == null) return execution.execute();
+
+		CompletableFuture<SearchResult> ownSearch = new CompletableFuture<>();
+		CompletableFuture<SearchResult> inFlightSearch = inFlightSearches.putIfAbsent(key, ownSearch);
+		if (inFlightSearch == null) {
+			executedCounter.increment();
+			try {
+				SearchResult result = execution.execute();
+				ownSearch.complete(result);
+				return result;
+			}
+			catch (IOException | RuntimeException e) {
+				ownSearch.completeExceptionally(e);
+				throw e;
+			}
+			finally {
+				inFlightSearches.remove(key, ownSearch);
+			}
+		}
+
+		// don't wait longer than the own latency budget allows
+		long waitMillis = Math.min(maxWaitMillis, parameters.deadline.getRemainingMillis());
+		try {
+			SearchResult sharedResult = inFlightSearch.get(waitMillis, TimeUnit.MILLISECONDS);
+			if (isPartialResult(sharedResult)) {
+				log.debug("coalesced search for '{}' returned a partial result, running it again", parameters.userQuery);
+				partialCounter.increment();
+			}
+			else {
+				coalescedCounter.increment();
+				return copy(sharedResult);
+			}
+		}
+		catch (TimeoutException e) {
+			timeoutCounter.increment();
+		}
+		catch (ExecutionException e) {
+			log.debug("coalesced search for '{}' failed, running it again", parameters.userQuery, e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for coalesced search");
+		}
+		return execution.execute();
+	}
+
+	/**
+	 * A result degraded by the latency budget of the executing request, e.g.
+	 * without facets, is not shared, since the waiting request might still
+	 * have the time to get the full result.
+	 */
+	private static boolean isPartialResult(SearchResult sharedResult) {
+		return sharedResult.meta != null && Boolean.TRUE.equals(sharedResult.meta.get("partial_result"));
+	}
+
+	/**
+	 * The shared result is returned to several callers, so each one gets its
+	 * own copy that can be modified. Only the leaf values, like the document
+	 * field values, are shared.
+	 */
+	private static SearchResult copy(SearchResult sharedResult) {
+		SearchResult result = new SearchResult();
+		result.tookInMillis = sharedResult.tookInMillis;
+		result.inputURI = sharedResult.inputURI;
+		result.slices = copyList(sharedResult.slices, SearchRequestCoalescer::copySlice);
+		result.sortOptions = copyList(sharedResult.sortOptions, sorting -> new Sorting(sorting.label, sorting.field, sorting.sortOrder, sorting.isActive, sorting.link));
+		result.meta = sharedResult.meta == null ? new HashMap<>() : new HashMap<>(sharedResult.meta);
+		result.meta.put("coalesced", true);
+		return result;
+	}
+
+	private static SearchResultSlice copySlice(SearchResultSlice slice) {
+		SearchResultSlice copy = new SearchResultSlice();
+		copy.label = slice.label;
+		copy.matchCount = slice.matchCount;
+		copy.nextOffset = slice.nextOffset;
+		copy.nextLink = slice.nextLink;
+		copy.resultLink = slice.resultLink;
+		copy.hits = copyList(slice.hits, SearchRequestCoalescer::copyHit);
+		copy.facets = copyList(slice.facets, SearchRequestCoalescer::copyFacet);
+		return copy;
+	}
+
+	private static ResultHit copyHit(ResultHit hit) {
+		ResultHit copy = new ResultHit();
+		copy.index = hit.index;
+		copy.document = hit.document == null ? null : copyDocument(hit.document);
+		copy.matchedQueries = hit.matchedQueries == null ? null : hit.matchedQueries.clone();
+		copy.metaData = hit.metaData == null ? null : new HashMap<>(hit.metaData);
+		return copy;
+	}
+
+	private static Document copyDocument(Document document) {
+		Document copy;
+		if (document.getClass() == Product.class) {
+			Document[] variants = ((Product) document).variants;
+			copy = new Product(document.id).setVariants(variants == null ? null : Arrays.stream(variants).map(SearchRequestCoalescer::copyDocument).toArray(Document[]::new));
+		}
+		else if (document.getClass() == Document.class) {
+			copy = new Document(document.id);
+		}
+		else {
+			// unknown document types can't be copied
+			return document;
+		}
+		copy.data = document.data == null ? null : new HashMap<>(document.data);
+		copy.attributes = document.attributes == null ? null : new ArrayList<>(document.attributes);
+		copy.categories = document.categories == null ? null : new ArrayList<>(document.categories);
+		return copy;
+	}
+
+	private static Facet copyFacet(Facet facet) {
+		Facet copy = new Facet(facet.fieldName);
+		copy.absoluteFacetCoverage = facet.absoluteFacetCoverage;
+		copy.isFiltered = facet.isFiltered;
+		copy.isEstimated = facet.isEstimated;
+		copy.type = facet.type;
+		copy.entries = copyList(facet.entries, SearchRequestCoalescer::copyFacetEntry);
+		copy.meta = facet.meta == null ? null : new HashMap<>(facet.meta);
+		return copy;
+	}
+
+	private static FacetEntry copyFacetEntry(FacetEntry entry) {
+		FacetEntry copy;
+		if (entry.getClass() == FacetEntry.class) {
+			copy = new FacetEntry(entry.key, entry.id, entry.docCount, entry.link, entry.selected);
+		}
+		else if (entry.getClass() == HierarchialFacetEntry.class) {
+			HierarchialFacetEntry hierarchialEntry = (HierarchialFacetEntry) entry;
+			copy = new HierarchialFacetEntry(entry.key, entry.id, entry.docCount, entry.link, entry.selected)
+					.setChildren(copyList(hierarchialEntry.children, SearchRequestCoalescer::copyFacetEntry))
+					.setPath(hierarchialEntry.path);
+		}
+		else if (entry.getClass() == IntervalFacetEntry.class) {
+			IntervalFacetEntry intervalEntry = (IntervalFacetEntry) entry;
+			copy = new IntervalFacetEntry(entry.key, intervalEntry.getLowerBound(), intervalEntry.getUpperBound(), entry.docCount, entry.link, entry.selected);
+		}
+		else if (entry.getClass() == RangeFacetEntry.class) {
+			RangeFacetEntry rangeEntry = (RangeFacetEntry) entry;
+			copy = new RangeFacetEntry(rangeEntry.getLowerBound(), rangeEntry.getUpperBound(), entry.docCount, entry.link, entry.selected)
+					.setSelectedMin(rangeEntry.getSelectedMin())
+					.setSelectedMax(rangeEntry.getSelectedMax());
+			copy.key = entry.key;
+		}
+		else {
+			// unknown facet entry types can't be copied
+			return entry;
+		}
+		copy.id = entry.id;
+		return copy;
+	}
+
+	private static <T> List<T> copyList(List<T> list, UnaryOperator<T> copyFunction) {
+		return list == null ? null : list.stream().map(copyFunction).collect(Collectors.toCollection(ArrayList::new));
+	}
+
+	/**
+	 * Build a key from all parameters that influence the search result. Traced
+	 * requests are never coalesced, since they expect their own trace output.
+	 * Searches of a multi-search batch are not coalesced either, since their
+	 * first request waits for the other searches of that batch.
+	 *
+	 * @param parameters
+	 *        the search parameters
+	 * @return the key or null if the request should not be coalesced
+	 */
+	static CoalescingKey getCoalescingKey(InternalSearchParams parameters) {
+		if (parameters.trace != null && parameters.trace != TraceOptions.OFF) return null;
+		if (parameters.multiSearchMember != null) return null;
+		return new CoalescingKey(parameters);
+	}
+
+	/**
+	 * All parameters that influence the search result. A new field of the
+	 * {@link InternalSearchParams} has to be added here as well.
+	 */
+	@Value
+	static class CoalescingKey {
+
+		String							userQuery;
+		int								offset;
+		int								limit;
+		int								aggSampling;
+		boolean							withHits;
+		boolean							withFacets;
+		boolean							withResultData;
+		boolean							includeMainResult;
+		LinkMode						linkMode;
+		List<String>					sortings;
+		Set<String>						filters;
+		Set<String>						inducedFilters;
+		Map<String, String>				customParams;
+		List<StaticProductSet>			heroProductSets;
+		Set<String>						excludedIds;
+		/**
+		 * The budget decides which stages are skipped, e.g. the facets.
+		 */
+		long							budgetMillis;
+
+		CoalescingKey(InternalSearchParams parameters) {
+			userQuery = StringUtils.normalizeSpace(parameters.userQuery);
+			offset = parameters.offset;
+			limit = parameters.limit;
+			aggSampling = parameters.aggSampling;
+			withHits = parameters.withHits;
+			withFacets = parameters.withFacets;
+			withResultData = parameters.withResultData;
+			includeMainResult = parameters.includeMainResult;
+			linkMode = parameters.linkMode;
+			sortings = parameters.sortings.stream().map(sorting -> sorting.getField().getName() + ":" + sorting.getSortOrder()).toList();
+			filters = getFiltersKey(parameters.filters);
+			inducedFilters = getFiltersKey(parameters.inducedFilters);
+			customParams = parameters.customParams == null ? null : new HashMap<>(parameters.customParams);
+			heroProductSets = parameters.heroProductSets == null ? null : Arrays.asList(parameters.heroProductSets.clone());
+			excludedIds = parameters.excludedIds == null ? null : new HashSet<>(parameters.excludedIds);
+			budgetMillis = parameters.deadline.getBudgetMillis();
+		}
+
+		private static Set<String> getFiltersKey(List<InternalResultFilter> filters) {
+			return filters == null ? null
+					: filters.stream()
+							.map(filter -> (filter.isNegated() ? "!" : "") + (filter.isFilterOnId() ? "#" : "") + filter.getField().getName() + "=" + Arrays.toString(filter.getValues()))
+							.collect(Collectors.toSet());
+		}
+	}
+}
@@ -5,8 +5,13 @@ import static de.cxp.ocs.config.FieldConstants.VARIANTS;
 import static de.cxp.ocs.util.ESQueryUtils.validateSearchFields;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
@@ -14,28 +19,37 @@ import org.apache.lucene.search.join.ScoreMode;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
-import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.search.rescore.QueryRescorerBuilder;
 import org.elasticsearch.search.rescore.RescorerBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.search.suggest.SuggestBuilder;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
 
 import de.cxp.ocs.SearchContext;
 import de.cxp.ocs.SearchPlugins;
 import de.cxp.ocs.config.*;
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
+import de.cxp.ocs.elasticsearch.facets.AdaptiveAggregationSampling;
+import de.cxp.ocs.elasticsearch.facets.FacetAggregationCache;
 import de.cxp.ocs.elasticsearch.facets.FacetConfigurationApplyer;
+import de.cxp.ocs.elasticsearch.facets.FacetMetrics;
 import de.cxp.ocs.elasticsearch.mapper.ResultMapper;
 import de.cxp.ocs.elasticsearch.mapper.VariantPickingStrategy;
 import de.cxp.ocs.elasticsearch.model.query.AnalyzedQuery;
@@ -46,25 +60,31 @@ import de.cxp.ocs.elasticsearch.prodset.HeroProductHandler;
 import de.cxp.ocs.elasticsearch.query.FiltersBuilder;
 import de.cxp.ocs.elasticsearch.query.SearchQueryContext;
 import de.cxp.ocs.elasticsearch.query.TextMatchQuery;
+import de.cxp.ocs.elasticsearch.query.analyzer.CachingUserQueryAnalyzer;
+import de.cxp.ocs.elasticsearch.query.analyzer.ReloadableQueryAnalyzer;
 import de.cxp.ocs.elasticsearch.query.analyzer.WhitespaceAnalyzer;
 import de.cxp.ocs.elasticsearch.query.builder.ConditionalQueries;
 import de.cxp.ocs.elasticsearch.query.builder.ESQueryFactoryBuilder;
+import de.cxp.ocs.elasticsearch.query.builder.QueryPredictionCache;
 import de.cxp.ocs.elasticsearch.query.builder.EnforcedSpellCorrectionQueryFactory;
 import de.cxp.ocs.elasticsearch.query.builder.MatchAllQueryFactory;
 import de.cxp.ocs.elasticsearch.query.filter.FilterContext;
 import de.cxp.ocs.model.params.ProductSet;
+import de.cxp.ocs.model.result.Facet;
 import de.cxp.ocs.model.result.ResultHit;
 import de.cxp.ocs.model.result.SearchResult;
 import de.cxp.ocs.model.result.SearchResultSlice;
 import de.cxp.ocs.spi.search.ESQueryFactory;
 import de.cxp.ocs.spi.search.RescorerProvider;
 import de.cxp.ocs.spi.search.UserQueryAnalyzer;
+import de.cxp.ocs.util.Deadline;
 import de.cxp.ocs.util.DefaultLinkBuilder;
 import de.cxp.ocs.util.ESQueryUtils;
 import de.cxp.ocs.util.InternalSearchParams;
 import de.cxp.ocs.util.SearchParamsParser;
 import de.cxp.ocs.util.TraceOptions.TraceFlag;
 import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -77,6 +97,8 @@ public class Searcher {
 
 	private static final Marker QUERY_MARKER = MarkerFactory.getMarker("QUERY");
 
+	private static final int SPELL_CORRECTION_WARMUP_BATCH_SIZE = 100;
+
 	@NonNull
 	private final RestHighLevelClient restClient;
 
@@ -89,6 +111,8 @@ public class Searcher {
 	@NonNull
 	private final FieldConfigIndex fieldIndex;
 
+	private final UserQueryAnalyzer userQueryAnalyzer;
+
 	private final QueryStringParser queryParser;
 
 	private final FacetConfigurationApplyer facetApplier;
@@ -103,6 +127,7 @@ public class Searcher {
 	private final Set<String>				preferredVariantAttributes;
 	private final VariantPickingStrategy	variantPickingStrategy;
 	private final Timer						findTimer;
+	private final Timer						findWithoutHitsTimer;
 	private final Timer						sqbTimer;
 	private final Timer						inputWordsTimer;
 	private final Timer						correctedWordsTimer;
@@ -111,6 +136,15 @@ public class Searcher {
 	private final DistributionSummary summary;
 	private final ScoringCreator      scoringCreator;
 	private final SpellCorrector      spellCorrector;
+	private final SpellCorrectionCache spellCorrectionCache;
+	private final LocalSpellChecker    localSpellChecker;
+	private final AdaptiveAggregationSampling aggregationSampling;
+	private final FacetAggregationCache      aggregationCache;
+	private final QueryPredictionCache       predictionCache;
+	private final QueryStageLearner          stageLearner;
+	private final SearchRequestCoalescer     requestCoalescer;
+	private final FacetMetrics               facetMetrics;
+	private final Map<String, Counter>       budgetExhaustedCounters = new ConcurrentHashMap<>();
 
 	public Searcher(RestHighLevelClient restClient, SearchContext searchContext, final MeterRegistry registry, final SearchPlugins plugins) {
 		this.restClient = restClient;
@@ -119,6 +153,7 @@ public class Searcher {
 		this.fieldIndex = searchContext.getFieldConfigIndex();
 
 		findTimer = getTimer("find", config.getIndexName());
+		findWithoutHitsTimer = getTimer("findWithoutHits", config.getIndexName());
 		resultTimer = getTimer("buildResult", config.getIndexName());
 		sqbTimer = getTimer("stagedSearch", config.getIndexName());
 		inputWordsTimer = getTimer("inputWordsSearch", config.getIndexName());
@@ -130,21 +165,126 @@ public class Searcher {
 		String queryAnalyzerClazz = config.getQueryProcessing().getUserQueryAnalyzer();
 		UserQueryAnalyzer userQueryAnalyzer = SearchPlugins.initialize(queryAnalyzerClazz, plugins.getUserQueryAnalyzers(), config.getPluginConfiguration().get(queryAnalyzerClazz))
 				.orElseGet(WhitespaceAnalyzer::new);
+		if (config.getQueryProcessing().getAnalysisCacheSize() > 0) {
+			userQueryAnalyzer = new CachingUserQueryAnalyzer(userQueryAnalyzer, config.getQueryProcessing().getAnalysisCacheSize(), registry, config.getIndexName());
+		}
+		this.userQueryAnalyzer = userQueryAnalyzer;
 		queryParser = new QueryStringParser(searchContext.userQueryPreprocessors, userQueryAnalyzer, fieldIndex, config.getLocale());
 
 		sortingHandler = new SortingHandler(fieldIndex, config.getSortConfigs());
 		facetApplier = new FacetConfigurationApplyer(searchContext, plugins.getFacetCreators());
+		aggregationSampling = new AdaptiveAggregationSampling(config.getFacetConfiguration(), registry, config.getIndexName());
+		aggregationCache = new FacetAggregationCache(config.getFacetConfiguration(), registry, config.getIndexName());
+		facetMetrics = new FacetMetrics(config.getFacetConfiguration(), registry, config.getIndexName());
 		filtersBuilder = new FiltersBuilder(searchContext);
-		scoringCreator = new ScoringCreator(searchContext);
-		spellCorrector = new SpellCorrector(fieldIndex.getFieldsByUsage(FieldUsage.SEARCH).keySet());
+		scoringCreator = new ScoringCreator(searchContext, registry);
+		QueryProcessingConfiguration queryProcessing = config.getQueryProcessing();
+		spellCorrectionCache = queryProcessing.getSpellCorrectionCacheSize() > 0
+				? new SpellCorrectionCache(queryProcessing.getSpellCorrectionCacheSize(), queryProcessing.getSpellCorrectionCacheTtlSeconds(), registry, config.getIndexName())
+				: null;
+		localSpellChecker = queryProcessing.getLocalSpellCheckerVocabularySize() > 0 ? new LocalSpellChecker() : null;
+		spellCorrector = new SpellCorrector(fieldIndex.getFieldsByUsage(FieldUsage.SEARCH).keySet(), spellCorrectionCache, localSpellChecker);
 		rescorers = SearchPlugins.initialize(config.getRescorers(), plugins.getRescorerProviders(), config.getPluginConfiguration());
 
-		queryBuilder = new ESQueryFactoryBuilder(restClient, searchContext, plugins.getEsQueryFactories()).build();
+		requestCoalescer = config.getRequestCoalescingMaxWaitMs() > 0
+				? new SearchRequestCoalescer(config.getRequestCoalescingMaxWaitMs(), registry, config.getIndexName())
+				: null;
+		predictionCache = new QueryPredictionCache(queryProcessing, registry, config.getIndexName());
+		stageLearner = queryProcessing.getQueryStageLearnerSize() > 0
+				? new QueryStageLearner(queryProcessing.getQueryStageLearnerSize(), queryProcessing.getQueryStageLearnerTtlSeconds(),
+						Optional.ofNullable(queryProcessing.getQueryStageLearnerFile()).map(Paths::get).orElse(null),
+						config.getLocale(), registry, config.getIndexName())
+				: null;
+		queryBuilder = new ESQueryFactoryBuilder(restClient, searchContext, plugins.getEsQueryFactories(), predictionCache).build();
 
 		preferredVariantAttributes = initVariantHandling();
 		variantPickingStrategy = VariantPickingStrategy.valueOf(config.getVariantPickingStrategy());
 	}
 
+	/**
+	 * Asynchronously fill the spell correction cache with the configured warmup
+	 * queries and load the local spell checker, if they are enabled. Should be
+	 * called once after the searcher was created. Until then, the spell
+	 * correction is done by Elasticsearch for each request.
+	 */
+	public void warmUp() {
+		String warmupFile = config.getQueryProcessing().getSpellCorrectionWarmupFile();
+		if (spellCorrectionCache != null && warmupFile != null) {
+			CompletableFuture.runAsync(() -> warmUpSpellCorrections(warmupFile));
+		}
+		if (localSpellChecker != null) {
+			CompletableFuture.runAsync(this::loadLocalSpellChecker);
+		}
+	}
+
+	/**
+	 * Load the terms of all spell correction fields with their document
+	 * frequency into the local spell checker. Until it's loaded, the spell
+	 * correction is done by Elasticsearch.
+	 */
+	private void loadLocalSpellChecker() {
+		int vocabularySize = config.getQueryProcessing().getLocalSpellCheckerVocabularySize();
+		SearchSourceBuilder vocabularyRequest = SearchSourceBuilder.searchSource().size(0).trackTotalHits(false);
+		for (String fieldName : spellCorrector.getSpellCorrectionFields()) {
+			vocabularyRequest.aggregation(AggregationBuilders.terms(fieldName).field(fieldName).size(vocabularySize));
+		}
+
+		try {
+			SearchResponse searchResponse = executeSearchRequest(vocabularyRequest);
+			Map<String, Integer> termFrequencies = new HashMap<>();
+			if (searchResponse.getAggregations() != null) {
+				for (Aggregation fieldTerms : searchResponse.getAggregations()) {
+					for (Terms.Bucket termBucket : ((Terms) fieldTerms).getBuckets()) {
+						termFrequencies.merge(termBucket.getKeyAsString(), (int) termBucket.getDocCount(), Math::max);
+					}
+				}
+			}
+			localSpellChecker.load(termFrequencies);
+		}
+		catch (Exception e) {
+			log.error("could not load local spell checker for index {}, spell correction stays with Elasticsearch", config.getIndexName(), e);
+		}
+	}
+
+	/**
+	 * Correct the terms of the queries in the given file to fill the spell
+	 * correction cache. All terms of a batch are corrected with a single
+	 * suggest request.
+	 * 
+	 * @param queryFile
+	 *        file with one query per line
+	 */
+	private void warmUpSpellCorrections(String queryFile) {
+		List<String> terms;
+		try (Stream<String> queries = Files.lines(Paths.get(queryFile))) {
+			terms = queries.flatMap(query -> Arrays.stream(StringUtils.split(query)))
+					.distinct()
+					.limit(config.getQueryProcessing().getSpellCorrectionCacheSize())
+					.collect(Collectors.toList());
+		}
+		catch (Exception e) {
+			log.warn("could not read spell correction warmup file {}", queryFile, e);
+			return;
+		}
+
+		try {
+			for (List<String> batch : Lists.partition(terms, SPELL_CORRECTION_WARMUP_BATCH_SIZE)) {
+				String batchQuery = StringUtils.join(batch, ' ');
+				SuggestBuilder spellCorrectionQuery = spellCorrector.buildSpellCorrectionQuery(batchQuery);
+				if (spellCorrectionQuery == null) continue;
+				SearchResponse searchResponse = executeSearchRequest(SearchSourceBuilder.searchSource()
+						.size(0)
+						.trackTotalHits(false)
+						.suggest(spellCorrectionQuery));
+				spellCorrector.cacheCorrections(batchQuery, searchResponse.getSuggest());
+			}
+			log.info("warmed up spell correction cache of index {} with {} terms", config.getIndexName(), terms.size());
+		}
+		catch (Exception e) {
+			log.warn("spell correction warmup for index {} failed", config.getIndexName(), e);
+		}
+	}
+
 	private Timer getTimer(final String name, final String indexName) {
 		return Timer.builder(name)
 				.tag("indexName", indexName)
@@ -178,36 +318,158 @@ public class Searcher {
 	 *         in case of connection errors
 	 */
 	public SearchResult find(InternalSearchParams parameters, Map<String, Object> searchMetaData) throws IOException {
+		if (requestCoalescer != null) {
+			return requestCoalescer.execute(parameters, () -> executeFind(parameters, searchMetaData));
+		}
+		return executeFind(parameters, searchMetaData);
+	}
+
+	private SearchResult executeFind(InternalSearchParams parameters, Map<String, Object> searchMetaData) throws IOException {
 		Sample findTimerSample = Timer.start(Clock.SYSTEM);
 
 		ExtendedQuery parsedQuery = queryParser.preprocessQuery(parameters, searchMetaData);
 		boolean isInvalidUserQuery = parsedQuery.isEmpty() && parameters.getUserQuery() != null && !parameters.getUserQuery().isBlank();
 
-		Iterator<ESQueryFactory> stagedQueryBuildersIterator = initializeStageQueryBuilders(parameters, parsedQuery, isInvalidUserQuery);
-
 		SearchQueryContext queryContext = new SearchQueryContext();
+		Iterator<ESQueryFactory> stagedQueryBuildersIterator = initializeStageQueryBuilders(parameters, parsedQuery, isInvalidUserQuery, queryContext);
+
 		queryContext.filters = filtersBuilder.buildFilterContext(parameters);
 		queryContext.variantSortings = sortingHandler.getVariantSortings(parameters.sortings);
 		queryContext.scoring = scoringCreator.getScoringContext(parameters);
-		HeroProductHandler.getHeroQuery(parameters).ifPresent(queryContext::setHeroProducts);
+		queryContext.withVariantInnerHits = parameters.withHits;
+		queryContext.deadline = parameters.deadline;
+		queryContext.multiSearchMember = parameters.multiSearchMember;
+		if (parameters.withHits) {
+			HeroProductHandler.getHeroQuery(parameters).ifPresent(queryContext::setHeroProducts);
+		}
 
 		// staged search: try each query builder until we get a result
 		// + try and use spell correction with first query
 		SearchResponse searchResponse = stagedSearch(parameters, parsedQuery, queryContext, stagedQueryBuildersIterator, searchMetaData);
+		if (searchResponse != null) {
+			aggregationSampling.recordHitCount(parameters, searchResponse.getHits().getTotalHits().value);
+		}
 
 		SearchResult searchResult = buildResult(parameters, queryContext.filters, searchResponse);
 		searchResult.getMeta().putAll(searchMetaData);
 
-		findTimerSample.stop(findTimer);
+		findTimerSample.stop(parameters.withHits ? findTimer : findWithoutHitsTimer);
 
 		return searchResult;
 	}
 
+	/**
+	 * Get a single page of all values of one facet for the given search
+	 * parameters. The facet values are aggregated for the same query that
+	 * would be used to build the search result, but sorted by value and not
+	 * limited like at the search result.
+	 * 
+	 * @param parameters
+	 *        the parsed and validated parameters
+	 * @param facetName
+	 *        the name of the facet
+	 * @param cursor
+	 *        the cursor returned with the previous page or null for the first
+	 *        page
+	 * @param pageSize
+	 *        the amount of values per page
+	 * @return the facet with the values of that page or empty if that facet
+	 *         does not exist or its values can't be paged
+	 * @throws IOException
+	 *         in case of connection errors
+	 */
+	public Optional<Facet> findFacetValues(InternalSearchParams parameters, String facetName, String cursor, int pageSize) throws IOException {
+		DefaultLinkBuilder linkBuilder = new DefaultLinkBuilder(parameters);
+		FilterContext filterContext = filtersBuilder.buildFilterContext(parameters);
+		Optional<AggregationBuilder> valuesAggregation = facetApplier.buildFacetValuesAggregation(filterContext, facetName, cursor, pageSize);
+		if (!valuesAggregation.isPresent()) return Optional.empty();
+
+		Map<String, Object> searchMetaData = new HashMap<>();
+		ExtendedQuery parsedQuery = queryParser.preprocessQuery(parameters, searchMetaData);
+		boolean isInvalidUserQuery = parsedQuery.isEmpty() && parameters.getUserQuery() != null && !parameters.getUserQuery().isBlank();
+
+		SearchQueryContext queryContext = new SearchQueryContext();
+		queryContext.filters = filterContext;
+		queryContext.variantSortings = Collections.emptyList();
+		queryContext.scoring = scoringCreator.getScoringContext(parameters);
+		queryContext.withVariantInnerHits = false;
+		queryContext.deadline = parameters.deadline;
+
+		SearchSourceBuilder searchSourceBuilder = SearchSourceBuilder.searchSource()
+				.size(0)
+				.aggregation(valuesAggregation.get());
+		SearchResponse searchResponse = null;
+		if (parsedQuery.isEmpty()) {
+			if (isInvalidUserQuery && parsedQuery.getFilters().isEmpty()) return Optional.empty();
+			queryContext.text = new MatchAllQueryFactory().createQuery(parsedQuery);
+			searchResponse = executeSearchRequest(searchSourceBuilder.query(buildFinalQuery(queryContext)), parameters.deadline);
+		}
+		else {
+			// Use the query stage that the search would use: Start with the
+			// learned stage and send the values aggregation along with each
+			// stage query, until one matches. Unlike the staged search, this
+			// neither trains the stage learner nor records search metrics and
+			// only uses spell corrections that are known without a request.
+			Iterator<ESQueryFactory> queryStages = getFacetValuesQueryStages(parameters, parsedQuery);
+			Map<String, AssociatedTerm> correctedWords = null;
+			while (queryStages.hasNext() && (searchResponse == null || searchResponse.getHits().getTotalHits().value == 0)) {
+				if (searchResponse != null && parameters.deadline.isExceeded()) break;
+				ESQueryFactory queryStage = queryStages.next();
+				TextMatchQuery<QueryBuilder> searchQuery = createFacetValuesQuery(parameters, queryStage, parsedQuery);
+				if (searchQuery == null) continue;
+				queryContext.text = searchQuery;
+				searchResponse = executeSearchRequest(searchSourceBuilder.query(buildFinalQuery(queryContext)), parameters.deadline);
+
+				if (searchResponse.getHits().getTotalHits().value == 0 && correctedWords == null && spellCorrector != null && queryStage.allowParallelSpellcheckExecution()) {
+					correctedWords = spellCorrector.getCorrections(parameters.userQuery, null);
+					if (!correctedWords.isEmpty()) {
+						AnalyzedQuery queryWithCorrections = SpellCorrector.toListWithAllTerms(parsedQuery.getSearchQuery(), correctedWords);
+						parsedQuery = new ExtendedQuery(queryWithCorrections, parsedQuery.getFilters(), parsedQuery.getBoostings());
+						if (!searchQuery.isWithSpellCorrection() && !parameters.deadline.isExceeded()) {
+							queryContext.text = createFacetValuesQuery(parameters, queryStage, parsedQuery);
+							searchResponse = executeSearchRequest(searchSourceBuilder.query(buildFinalQuery(queryContext)), parameters.deadline);
+						}
+					}
+				}
+				if (searchQuery.isAcceptNoResult()) break;
+			}
+		}
+		if (searchResponse == null) return Optional.empty();
+
+		return facetApplier.getFacetValues(searchResponse.getAggregations(), facetName, pageSize, filterContext, linkBuilder);
+	}
+
+	private TextMatchQuery<QueryBuilder> createFacetValuesQuery(InternalSearchParams parameters, ESQueryFactory queryStage, ExtendedQuery parsedQuery) {
+		TextMatchQuery<QueryBuilder> searchQuery = queryStage.createQuery(parsedQuery);
+		if (searchQuery == null || searchQuery.getMasterLevelQuery() == null) return null;
+		if (parameters.excludedIds != null && !parameters.excludedIds.isEmpty()) {
+			searchQuery.setMasterLevelQuery(ESQueryUtils.mapToBoolQueryBuilder(searchQuery.getMasterLevelQuery())
+					.mustNot(QueryBuilders.idsQuery().addIds(parameters.excludedIds.toArray(new String[0]))));
+		}
+		return searchQuery;
+	}
+
+	private Iterator<ESQueryFactory> getFacetValuesQueryStages(InternalSearchParams parameters, ExtendedQuery parsedQuery) {
+		List<ESQueryFactory> stagedQueryBuilders = queryBuilder.getMatchingFactories(parsedQuery);
+		if (stagedQueryBuilders.isEmpty()) return Collections.emptyIterator();
+
+		int queryStage = Optional.ofNullable(parameters.customParams.get("query_stage")).map(Integer::parseInt).orElse(-1);
+		if (queryStage >= 0 && queryStage < stagedQueryBuilders.size()) {
+			return Iterators.singletonIterator(getQueryStage(stagedQueryBuilders, queryStage));
+		}
+		int startStage = isStageLearningApplicable(parameters) ? stageLearner.peekStartStage(parameters.userQuery, stagedQueryBuilders) : 0;
+		List<ESQueryFactory> remainingStages = new ArrayList<>(stagedQueryBuilders.subList(startStage, stagedQueryBuilders.size()));
+		remainingStages.set(0, getQueryStage(stagedQueryBuilders, startStage));
+		return remainingStages.iterator();
+	}
+
 	public SearchResult queryStringFind(InternalSearchParams parameters, Map<String, Float> fieldWeights) throws IOException {
 		SearchQueryContext queryContext = new SearchQueryContext();
 		queryContext.filters = filtersBuilder.buildFilterContext(parameters);
 		queryContext.variantSortings = sortingHandler.getVariantSortings(parameters.sortings);
 		queryContext.scoring = scoringCreator.getScoringContext(parameters);
+		queryContext.withVariantInnerHits = parameters.withHits;
+		queryContext.deadline = parameters.deadline;
 
 		Map<String, Float> masterFields = validateSearchFields(fieldWeights, this.fieldIndex, Field::isMasterLevel);
 
@@ -217,14 +479,18 @@ public class Searcher {
 				false, true);
 
 		SearchSourceBuilder searchSourceBuilder = buildBasicSearchSourceBuilder(parameters, queryContext);
+		setFacetAggregations(parameters, queryContext);
 		searchSourceBuilder.query(buildFinalQuery(queryContext));
-		SearchResponse searchResponse = executeSearchRequest(searchSourceBuilder);
+		SearchResponse searchResponse = executeSearchRequest(searchSourceBuilder, queryContext);
 
 		return buildResult(parameters, queryContext.filters, searchResponse);
 	}
 
 	private SearchResponse stagedSearch(InternalSearchParams parameters, ExtendedQuery parsedQuery, SearchQueryContext queryContext, Iterator<ESQueryFactory> stagedQueryBuildersIterator, Map<String, Object> searchMetaData) throws IOException {
 		int i = 0;
+		// unlike 'i' also counts the stages that were skipped
+		int stagePosition = 0;
+		int stageIndex = -1;
 		String queryStrategyName = "";
 		SearchResponse searchResponse = null;
 		Map<String, AssociatedTerm> correctedWords = null;
@@ -234,11 +500,17 @@ public class Searcher {
 
 		boolean isResultSufficient = false;
 		while ((searchResponse == null || !isResultSufficient) && stagedQueryBuildersIterator.hasNext()) {
+			// without budget, stick to the result we already have
+			if (searchResponse != null && parameters.deadline.isExceeded()) {
+				recordBudgetExhausted(parameters.deadline, "query_stages");
+				break;
+			}
 			StopWatch sw = new StopWatch();
 			sw.start();
 			Sample inputWordsSample = Timer.start(registry);
 			ESQueryFactory stagedQueryBuilder = stagedQueryBuildersIterator.next();
 			queryStrategyName = stagedQueryBuilder.getName();
+			stageIndex = queryContext.queryStageOffset + stagePosition++;
 
 			TextMatchQuery<QueryBuilder> searchQuery = stagedQueryBuilder.createQuery(parsedQuery);
 			if (log.isTraceEnabled()) {
@@ -254,14 +526,16 @@ public class Searcher {
 			if (searchQuery.getMasterLevelQuery() == null && queryContext.heroProducts == null)
 				continue;
 
+			// with cached corrections the suggest part might not be necessary
+			boolean isSpellCheckRequested = false;
+			SuggestBuilder spellCorrectionQuery = null;
 			if (correctedWords == null && spellCorrector != null
 					&& stagedQueryBuilder.allowParallelSpellcheckExecution()
 					&& (!searchQuery.isWithSpellCorrection() || stagedQueryBuildersIterator.hasNext())) {
-				searchSourceBuilder.suggest(spellCorrector.buildSpellCorrectionQuery(parameters.userQuery));
-			}
-			else {
-				searchSourceBuilder.suggest(null);
+				isSpellCheckRequested = true;
+				spellCorrectionQuery = spellCorrector.buildSpellCorrectionQuery(parameters.userQuery);
 			}
+			searchSourceBuilder.suggest(spellCorrectionQuery);
 
 			if (parameters.excludedIds != null && !parameters.excludedIds.isEmpty()) {
 				BoolQueryBuilder masterLevelQueryWithExcludes = ESQueryUtils.mapToBoolQueryBuilder(searchQuery.getMasterLevelQuery())
@@ -270,6 +544,7 @@ public class Searcher {
 			}
 
 			searchSourceBuilder.query(buildFinalQuery(queryContext));
+			setFacetAggregations(parameters, queryContext);
 
 			if (log.isTraceEnabled() || parameters.trace.isSet(TraceFlag.EsQuery)) {
 				String oneLineQuery = searchSourceBuilder.toString().replaceAll("[\n\\s]+", " ");
@@ -283,7 +558,7 @@ public class Searcher {
 				}
 			}
 
-			searchResponse = executeSearchRequest(searchSourceBuilder);
+			searchResponse = executeSearchRequest(searchSourceBuilder, queryContext);
 
 			if (log.isDebugEnabled()) {
 				log.debug("query nr {} ({}) for user-query '{}' done in {}ms with {} hits", i, stagedQueryBuilder.getName(),
@@ -295,30 +570,42 @@ public class Searcher {
 
 			// if we don't have any hits, but there's a chance to get corrected
 			// words, then enrich the search words with the corrected words
-			if (!isResultSufficient && correctedWords == null && spellCorrector != null && searchResponse.getSuggest() != null) {
+			boolean hasSpellCorrections = isSpellCheckRequested && (spellCorrectionQuery == null || searchResponse.getSuggest() != null);
+			if (!isResultSufficient && hasSpellCorrections) {
 				Sample correctedWordsSample = Timer.start(registry);
-				correctedWords = spellCorrector.extractRelatedWords(searchResponse.getSuggest());
+				correctedWords = spellCorrector.getCorrections(parameters.userQuery, searchResponse.getSuggest());
 				if (!correctedWords.isEmpty()) {
 					AnalyzedQuery queryWithCorrections = SpellCorrector.toListWithAllTerms(parsedQuery.getSearchQuery(), correctedWords);
 					parsedQuery = new ExtendedQuery(queryWithCorrections, parsedQuery.getFilters(), parsedQuery.getBoostings());
 					searchMetaData.put("query_corrected", parsedQuery.getSearchQuery().toQueryString());
+					if (spellCorrectionQuery == null && spellCorrector.isLocalSpellCheckerLoaded()) {
+						searchMetaData.put("spell_checker", "local");
+					}
 				}
 
 				// if the current query builder didn't take corrected words into
 				// account, then try again with corrected words
-				if (!correctedWords.isEmpty() && !searchQuery.isWithSpellCorrection()) {
+				if (!correctedWords.isEmpty() && !searchQuery.isWithSpellCorrection() && parameters.deadline.isExceeded()) {
+					recordBudgetExhausted(parameters.deadline, "spell_correction");
+				}
+				else if (!correctedWords.isEmpty() && !searchQuery.isWithSpellCorrection()) {
 					queryContext.text = stagedQueryBuilder.createQuery(parsedQuery);
 					searchSourceBuilder.query(buildFinalQuery(queryContext));
-					searchResponse = executeSearchRequest(searchSourceBuilder);
+					setFacetAggregations(parameters, queryContext);
+					searchResponse = executeSearchRequest(searchSourceBuilder, queryContext);
 					searchMetaData.put("query_correction", correctedWordsSample);
 				}
 				correctedWordsSample.stop(correctedWordsTimer);
 			}
+			else if (hasSpellCorrections) {
+				// not needed now, but cache them for the next requests
+				spellCorrector.cacheCorrections(parameters.userQuery, searchResponse.getSuggest());
+			}
 
 			searchMetaData.put("query_filters", parsedQuery.getFilters());
 			searchMetaData.put("query_boostings", parsedQuery.getBoostings().stream().map(QueryBoosting::toString).collect(Collectors.toList()));
 			searchMetaData.put("query_executed", searchQuery.getQueryDescription() == null ? searchQuery.getMasterLevelQuery().queryName() : searchQuery.getQueryDescription());
-			searchMetaData.put("query_stage", Optional.ofNullable(parameters.customParams.get("query_stage")).map(Integer::parseInt).orElse(i));
+			searchMetaData.put("query_stage", Optional.ofNullable(parameters.customParams.get("query_stage")).map(Integer::parseInt).orElse(stageIndex));
 			searchMetaData.put("query_strategy", queryStrategyName);
 
 			if (!isResultSufficient && searchQuery.isAcceptNoResult()) {
@@ -327,12 +614,19 @@ public class Searcher {
 
 			i++;
 		}
+		if (queryContext.queryStageOffset > 0) {
+			searchMetaData.put("query_stages_skipped", queryContext.queryStageOffset);
+		}
+		if (isStageLearningApplicable(parameters) && !parameters.customParams.containsKey("query_stage") && searchResponse != null) {
+			if (isResultSufficient) stageLearner.learn(parameters.userQuery, queryStrategyName, stageIndex);
+			else if (queryContext.queryStageOffset > 0) stageLearner.forget(parameters.userQuery);
+		}
 		summary.record(i);
 		sqbSample.stop(sqbTimer);
 		return searchResponse;
 	}
 
-	private Iterator<ESQueryFactory> initializeStageQueryBuilders(InternalSearchParams parameters, ExtendedQuery parsedQuery, boolean isInvalidUserQuery) {
+	private Iterator<ESQueryFactory> initializeStageQueryBuilders(InternalSearchParams parameters, ExtendedQuery parsedQuery, boolean isInvalidUserQuery, SearchQueryContext queryContext) {
 		Iterator<ESQueryFactory> stagedQueryBuildersIterator;
 		if (parsedQuery.isEmpty()) {
 			if (isInvalidUserQuery && parsedQuery.getFilters().isEmpty()) {
@@ -344,25 +638,19 @@ public class Searcher {
 		}
 		else {
 			List<ESQueryFactory> stagedQueryBuilders = queryBuilder.getMatchingFactories(parsedQuery);
-			// TODO: add a cache to pick the correct query for known search terms
 			int queryStage = Optional.ofNullable(parameters.customParams.get("query_stage")).map(Integer::parseInt).orElse(-1);
 			if (queryStage >= 0 && queryStage < stagedQueryBuilders.size()) {
-				ESQueryFactory singleQueryStage = stagedQueryBuilders.get(queryStage);
-
-				// if we jump to a stage > 0 it is possible that we hit a stage that used corrected queries via the
-				// spell-check request from a previous stage. This is checked here and enforced for that stage as well.
-				// FIXME: It can still happen, that the uncorrected queries have enough hits and a different result is
-				// returned than before.
-				for (int i = 0; i < queryStage; i++) {
-					if (stagedQueryBuilders.get(i).allowParallelSpellcheckExecution()) {
-						singleQueryStage = new EnforcedSpellCorrectionQueryFactory(singleQueryStage);
-						break;
-					}
-				}
-
+				ESQueryFactory singleQueryStage = getQueryStage(stagedQueryBuilders, queryStage);
 				log.info("Jumping to query stage {} with parallel spellcheck {}", queryStage, singleQueryStage instanceof EnforcedSpellCorrectionQueryFactory ? "enabled" : "disabled");
 				stagedQueryBuildersIterator = Iterators.singletonIterator(singleQueryStage);
 			}
+			else if (isStageLearningApplicable(parameters)) {
+				int startStage = stageLearner.getStartStage(parameters.userQuery, stagedQueryBuilders);
+				List<ESQueryFactory> remainingStages = new ArrayList<>(stagedQueryBuilders.subList(startStage, stagedQueryBuilders.size()));
+				remainingStages.set(0, getQueryStage(stagedQueryBuilders, startStage));
+				queryContext.queryStageOffset = startStage;
+				stagedQueryBuildersIterator = remainingStages.iterator();
+			}
 			else {
 				stagedQueryBuildersIterator = stagedQueryBuilders.iterator();
 			}
@@ -370,31 +658,79 @@ public class Searcher {
 		return stagedQueryBuildersIterator;
 	}
 
+	/**
+	 * Get the query stage at the given index. If we jump to a stage &gt; 0 it
+	 * is possible that we hit a stage that used corrected queries via the
+	 * spell-check request from a previous stage. This is checked here and
+	 * enforced for that stage as well.
+	 * FIXME: It can still happen, that the uncorrected queries have enough
+	 * hits and a different result is returned than before.
+	 */
+	private ESQueryFactory getQueryStage(List<ESQueryFactory> stagedQueryBuilders, int queryStage) {
+		ESQueryFactory queryStageBuilder = stagedQueryBuilders.get(queryStage);
+		for (int i = 0; i < queryStage; i++) {
+			if (stagedQueryBuilders.get(i).allowParallelSpellcheckExecution()) {
+				return new EnforcedSpellCorrectionQueryFactory(queryStageBuilder);
+			}
+		}
+		return queryStageBuilder;
+	}
+
+	/**
+	 * The learned query stages are only used for plain searches, since
+	 * filters or hero products change which stage is sufficient.
+	 */
+	private boolean isStageLearningApplicable(InternalSearchParams parameters) {
+		return stageLearner != null
+				&& parameters.includeMainResult
+				&& parameters.filters.isEmpty()
+				&& (parameters.heroProductSets == null || parameters.heroProductSets.length == 0);
+	}
+
 	private SearchSourceBuilder buildBasicSearchSourceBuilder(InternalSearchParams parameters, SearchQueryContext queryContext) {
-		SearchSourceBuilder searchSourceBuilder = SearchSourceBuilder.searchSource().size(parameters.limit)
-				.from(parameters.offset);
-		sortingHandler.applySorting(parameters.sortings, searchSourceBuilder);
+		SearchSourceBuilder searchSourceBuilder = SearchSourceBuilder.searchSource();
+		if (parameters.withHits) {
+			searchSourceBuilder.size(parameters.limit).from(parameters.offset);
+			sortingHandler.applySorting(parameters.sortings, searchSourceBuilder);
 
-		if (searchSourceBuilder.sorts() == null || searchSourceBuilder.sorts().isEmpty()) {
-			addRescorersFailsafe(parameters, searchSourceBuilder);
-		}
+			if (searchSourceBuilder.sorts() == null || searchSourceBuilder.sorts().isEmpty()) {
+				addRescorersFailsafe(parameters, searchSourceBuilder);
+			}
 
-		setFetchSources(searchSourceBuilder, queryContext.variantSortings, parameters.withResultData);
+			setFetchSources(searchSourceBuilder, queryContext.variantSortings, parameters.withResultData);
+		}
+		else {
+			// only facets and match count requested: no sorting and rescoring
+			searchSourceBuilder.size(0).fetchSource(FetchSourceContext.DO_NOT_FETCH_SOURCE);
+		}
 
 		QueryBuilder postFilter = queryContext.filters.getJoinedPostFilters();
 		if (postFilter != null) {
 			searchSourceBuilder.postFilter(postFilter);
 		}
 
-		if (parameters.isWithFacets()) {
-			List<AggregationBuilder> aggregators = facetApplier.buildAggregators(queryContext.filters, parameters.aggSampling);
-			if (aggregators != null && !aggregators.isEmpty()) {
-				aggregators.forEach(searchSourceBuilder::aggregation);
-			}
-		}
 		return searchSourceBuilder;
 	}
 
+	/**
+	 * Set the facet aggregations for the text query of the context. They
+	 * depend on it, since the facets are only aggregated on a sample of the
+	 * matched documents if that query is expected to have many hits.
+	 */
+	private void setFacetAggregations(InternalSearchParams parameters, SearchQueryContext queryContext) {
+		if (!parameters.isWithFacets()) return;
+
+		int adaptiveSampleSize = aggregationSampling.getAdaptiveSampleSize(parameters, queryContext.text.getExpectedMatchCount());
+		List<AggregationBuilder> aggregators = adaptiveSampleSize > 0
+				? facetApplier.buildAggregators(queryContext.filters, adaptiveSampleSize, true)
+				: facetApplier.buildAggregators(queryContext.filters, parameters.aggSampling);
+		if (aggregators != null) {
+			// aggregations are only added with the execution of the search
+			// request, since they may be taken from the aggregation cache
+			queryContext.aggregations = aggregators;
+		}
+	}
+
 	private boolean isResultSufficient(SearchResponse searchResponse, InternalSearchParams parameters) {
 		if (!parameters.includeMainResult)
 			return true;
@@ -500,19 +836,130 @@ public class Searcher {
 		}
 	}
 
-	@SuppressWarnings("deprecation")
+	private SearchResponse executeSearchRequest(SearchSourceBuilder searchSourceBuilder, SearchQueryContext queryContext) throws IOException {
+		if (queryContext.aggregations.isEmpty()) {
+			return executeSearchRequest(searchSourceBuilder, queryContext.deadline, queryContext.multiSearchMember);
+		}
+
+		SearchSourceBuilder searchSourceWithAggregations = searchSourceBuilder.shallowCopy();
+		queryContext.aggregations.forEach(searchSourceWithAggregations::aggregation);
+
+		HashCode cacheKey = null;
+		if (aggregationCache.isEnabled()) {
+			cacheKey = FacetAggregationCache.getCacheKey(searchSourceWithAggregations);
+			Aggregations cachedAggregations = aggregationCache.get(cacheKey);
+			if (cachedAggregations != null) {
+				return FacetAggregationCache.withAggregations(executeSearchRequest(searchSourceBuilder, queryContext.deadline, queryContext.multiSearchMember), cachedAggregations);
+			}
+		}
+
+		// degrade to a result without facets, if there is no time left
+		if (queryContext.deadline.isExceeded()) {
+			recordBudgetExhausted(queryContext.deadline, "facets");
+			return executeSearchRequest(searchSourceBuilder, queryContext.deadline, queryContext.multiSearchMember);
+		}
+
+		SearchResponse searchResponse = executeSearchRequest(searchSourceWithAggregations, queryContext.deadline, queryContext.multiSearchMember);
+		if (cacheKey != null) {
+			aggregationCache.put(cacheKey, searchResponse);
+		}
+		return searchResponse;
+	}
+
+	/**
+	 * Remove all cached data that depends on the actual index, e.g. because
+	 * the index behind the alias was changed.
+	 */
+	public void clearIndexCaches() {
+		aggregationCache.invalidateAll();
+		predictionCache.invalidateAll();
+		if (spellCorrectionCache != null) {
+			spellCorrectionCache.invalidateAll();
+		}
+		if (localSpellChecker != null) {
+			// the previous vocabulary is used until the new one is loaded
+			CompletableFuture.runAsync(this::loadLocalSpellChecker);
+		}
+	}
+
+	/**
+	 * @return the configured user query analyzer, if its rules can be
+	 *         reloaded at runtime
+	 */
+	public Optional<ReloadableQueryAnalyzer> getReloadableQueryAnalyzer() {
+		UserQueryAnalyzer analyzer = userQueryAnalyzer instanceof CachingUserQueryAnalyzer ? ((CachingUserQueryAnalyzer) userQueryAnalyzer).getDelegate() : userQueryAnalyzer;
+		return analyzer instanceof ReloadableQueryAnalyzer ? Optional.of((ReloadableQueryAnalyzer) analyzer) : Optional.empty();
+	}
+
 	public SearchResponse executeSearchRequest(SearchSourceBuilder searchSourceBuilder) throws IOException {
+		return executeSearchRequest(searchSourceBuilder, Deadline.NONE);
+	}
+
+	/**
+	 * Execute the search request with the remaining time of the deadline as
+	 * timeout. If the response does not arrive shortly after that timeout, the
+	 * request is aborted at client side.
+	 * 
+	 * @param searchSourceBuilder
+	 *        the search source to execute
+	 * @param deadline
+	 *        deadline of the search request
+	 * @return the search response
+	 * @throws IOException
+	 *         in case of connection errors or a client side timeout
+	 */
+	public SearchResponse executeSearchRequest(SearchSourceBuilder searchSourceBuilder, Deadline deadline) throws IOException {
+		return executeSearchRequest(searchSourceBuilder, deadline, null);
+	}
+
+	/**
+	 * Same as {@link #executeSearchRequest(SearchSourceBuilder, Deadline)}, but
+	 * if the given multi-search member did not submit a request yet, the
+	 * request is sent together with the other requests of its batch.
+	 */
+	@SuppressWarnings("deprecation")
+	private SearchResponse executeSearchRequest(SearchSourceBuilder searchSourceBuilder, Deadline deadline, MultiSearchBatch.Member multiSearchMember) throws IOException {
 		Sample sample = Timer.start(registry);
 		SearchResponse searchResponse;
 		{
+			// don't modify the given search source, since it is reused for
+			// further requests
+			SearchSourceBuilder source = deadline.isSet() ? searchSourceBuilder.shallowCopy().timeout(deadline.getSearchTimeout()) : searchSourceBuilder;
 			SearchRequest searchRequest = new SearchRequest(StringUtils.split(config.getIndexName(), ','))
-					.searchType(SearchType.QUERY_THEN_FETCH).source(searchSourceBuilder);
-			searchResponse = restClient.search(searchRequest, RequestOptions.DEFAULT);
+					.searchType(SearchType.QUERY_THEN_FETCH).source(source);
+			if (multiSearchMember != null && multiSearchMember.isOpen()) {
+				searchResponse = multiSearchMember.search(searchRequest, deadline);
+			}
+			else {
+				searchResponse = restClient.search(searchRequest, deadline.getRequestOptions());
+			}
 		}
 		sample.stop(searchRequestTimer);
+		if (searchResponse.isTimedOut()) {
+			recordBudgetExhausted(deadline, "es_timeout");
+		}
 		return searchResponse;
 	}
 
+	/**
+	 * Count and mark a stage that was skipped or degraded because the latency
+	 * budget was exhausted.
+	 * 
+	 * @param deadline
+	 *        the exceeded deadline
+	 * @param stage
+	 *        name of the affected stage
+	 */
+	public void recordBudgetExhausted(Deadline deadline, String stage) {
+		log.debug("latency budget of {} exhausted at stage {}", deadline, stage);
+		budgetExhaustedCounters.computeIfAbsent(stage, s -> Counter.builder("latencyBudgetExhausted")
+				.tag("indexName", config.getIndexName())
+				.tag("stage", s)
+				.register(registry))
+				.increment();
+		deadline.markExhausted(stage);
+	}
+
 	private SearchResult buildResult(InternalSearchParams parameters, FilterContext filterContext, SearchResponse searchResponse) {
 		DefaultLinkBuilder linkBuilder = new DefaultLinkBuilder(parameters);
 		SearchResult searchResult = new SearchResult();
@@ -533,8 +980,12 @@ public class Searcher {
 
 				if (parameters.includeMainResult) {
 					SearchResultSlice searchResultSlice = toSearchResult(searchResponse, parameters, heroIds);
-					if (parameters.isWithFacets()) {
-						searchResultSlice.facets = facetApplier.getFacets(searchResponse.getAggregations(), searchResultSlice.matchCount, filterContext, linkBuilder);
+					if (parameters.isWithFacets() && searchResponse.getAggregations() != null) {
+						FacetMetrics.RequestRecorder facetRecorder = facetMetrics.newRecorder(parameters.trace.isSet(TraceFlag.Facets));
+						searchResultSlice.facets = facetApplier.getFacets(searchResponse.getAggregations(), searchResultSlice.matchCount, filterContext, linkBuilder, facetRecorder);
+						if (parameters.trace.isSet(TraceFlag.Facets)) {
+							searchResult.meta.put("slowest_facets", facetRecorder.getSlowestFacets(10));
+						}
 					}
 					searchResultSlice.label = "main";
 					searchResult.slices.add(searchResultSlice);
@@ -551,6 +1002,11 @@ public class Searcher {
 			searchResult.meta.put("error", "invalid user query");
 		}
 
+		if (!parameters.deadline.getExhaustedStages().isEmpty()) {
+			searchResult.meta.put("partial_result", true);
+			searchResult.meta.put("budget_exhausted", parameters.deadline.getExhaustedStages());
+		}
+
 		return searchResult;
 	}
 
@@ -610,8 +1066,7 @@ public class Searcher {
 		// only exception: if the variants are only filtered
 		boolean isRetrieveVariantInnerHits = false;
 		if (variantsMatchQuery != null && !variantsOnlyFiltered) {
-			NestedQueryBuilder variantQuery = QueryBuilders.nestedQuery(FieldConstants.VARIANTS, variantsMatchQuery, ScoreMode.Avg)
-					.innerHit(getVariantInnerHits(queryContext.variantSortings));
+			NestedQueryBuilder variantQuery = withVariantInnerHits(QueryBuilders.nestedQuery(FieldConstants.VARIANTS, variantsMatchQuery, ScoreMode.Avg), queryContext);
 			masterLevelQuery = ESQueryUtils.mapToBoolQueryBuilder(masterLevelQuery).should(variantQuery);
 			isRetrieveVariantInnerHits = true;
 		}
@@ -629,24 +1084,30 @@ public class Searcher {
 		if (variantFilterQuery != null) {
 			NestedQueryBuilder variantQuery = QueryBuilders.nestedQuery(FieldConstants.VARIANTS, variantFilterQuery, ScoreMode.None);
 			if (variantsOnlyFiltered && !isRetrieveVariantInnerHits) {
-				variantQuery.innerHit(getVariantInnerHits(queryContext.variantSortings));
+				withVariantInnerHits(variantQuery, queryContext);
 				isRetrieveVariantInnerHits = true;
 			}
 			masterLevelQuery = ESQueryUtils.mapToBoolQueryBuilder(masterLevelQuery).filter(variantQuery);
 		}
 
 		if (variantPickingStrategy.isAllVariantHitCountRequired() && isRetrieveVariantInnerHits) {
-			masterLevelQuery = ESQueryUtils.mapToBoolQueryBuilder(masterLevelQuery).should(getAllVariantInnerHits());
+			masterLevelQuery = ESQueryUtils.mapToBoolQueryBuilder(masterLevelQuery).should(getAllVariantInnerHits(queryContext));
 		}
 		else if (VariantPickingStrategy.pickAlways.equals(variantPickingStrategy) && !isRetrieveVariantInnerHits) {
-			NestedQueryBuilder variantQuery = QueryBuilders.nestedQuery(FieldConstants.VARIANTS, QueryBuilders.matchAllQuery(), ScoreMode.None)
-					.innerHit(getVariantInnerHits(queryContext.variantSortings));
+			NestedQueryBuilder variantQuery = withVariantInnerHits(QueryBuilders.nestedQuery(FieldConstants.VARIANTS, QueryBuilders.matchAllQuery(), ScoreMode.None), queryContext);
 			masterLevelQuery = ESQueryUtils.mapToBoolQueryBuilder(masterLevelQuery).should(variantQuery);
 		}
 
 		return masterLevelQuery;
 	}
 
+	private NestedQueryBuilder withVariantInnerHits(NestedQueryBuilder variantQuery, SearchQueryContext queryContext) {
+		// the query structure stays the same, so the match count does not
+		// change if no hits are requested
+		if (!queryContext.withVariantInnerHits) return variantQuery;
+		return variantQuery.innerHit(getVariantInnerHits(queryContext.variantSortings));
+	}
+
 	private InnerHitBuilder getVariantInnerHits(List<SortBuilder<?>> variantSortings) {
 		InnerHitBuilder variantInnerHits = new InnerHitBuilder()
 				.setSize(2)
@@ -657,9 +1118,12 @@ public class Searcher {
 		return variantInnerHits;
 	}
 
-	private NestedQueryBuilder getAllVariantInnerHits() {
-		return QueryBuilders.nestedQuery(FieldConstants.VARIANTS, QueryBuilders.matchAllQuery(), ScoreMode.None)
-				.innerHit(new InnerHitBuilder().setSize(0).setName("_all"));
+	private NestedQueryBuilder getAllVariantInnerHits(SearchQueryContext queryContext) {
+		NestedQueryBuilder allVariantsQuery = QueryBuilders.nestedQuery(FieldConstants.VARIANTS, QueryBuilders.matchAllQuery(), ScoreMode.None);
+		if (queryContext.withVariantInnerHits) {
+			allVariantsQuery.innerHit(new InnerHitBuilder().setSize(0).setName("_all"));
+		}
+		return allVariantsQuery;
 	}
 
 	private SearchResultSlice toSearchResult(SearchResponse search, InternalSearchParams parameters, Set<String> heroIds) {
@@ -0,0 +1,123 @@
+package de.cxp.ocs.elasticsearch;
+
+import java.time.Duration;
+import java.util.*;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.cxp.ocs.elasticsearch.model.term.AssociatedTerm;
+import de.cxp.ocs.elasticsearch.model.term.QueryStringTerm;
+import de.cxp.ocs.elasticsearch.model.term.WeightedTerm;
+import de.cxp.ocs.elasticsearch.query.builder.CountedTerm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+
+/**
+ * Caches the spell corrections of single terms, so that frequent misspellings
+ * don't need to be corrected by Elasticsearch again. Terms without
+ * corrections are cached as well. The cached data is immutable and turned
+ * into new terms for each request, since they are modified during query
+ * building.
+ */
+public class SpellCorrectionCache {
+
+	@Value
+	private static class Correction {
+
+		String	term;
+		float	score;
+		int		termFrequency;
+	}
+
+	private final Cache<String, List<Correction>> corrections;
+
+	private final Counter	hitCounter;
+	private final Counter	missCounter;
+
+	public SpellCorrectionCache(int maxSize, int ttlSeconds, MeterRegistry registry, String indexName) {
+		corrections = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.build();
+
+		hitCounter = Counter.builder("spellCorrectionCache").tag("indexName", indexName).tag("result", "hit").register(registry);
+		missCounter = Counter.builder("spellCorrectionCache").tag("indexName", indexName).tag("result", "miss").register(registry);
+		Gauge.builder("spellCorrectionCacheSize", corrections, Cache::size).tag("indexName", indexName).register(registry);
+	}
+
+	/**
+	 * Get the terms that are not cached yet and count the cache hits and
+	 * misses.
+	 * 
+	 * @param terms
+	 *        terms to check
+	 * @return uncached terms in their original order without duplicates
+	 */
+	public Set<String> getUncachedTerms(Collection<String> terms) {
+		Set<String> uncachedTerms = new LinkedHashSet<>();
+		for (String term : terms) {
+			if (corrections.getIfPresent(term) == null) {
+				missCounter.increment();
+				uncachedTerms.add(term);
+			}
+			else {
+				hitCounter.increment();
+			}
+		}
+		return uncachedTerms;
+	}
+
+	/**
+	 * @param term
+	 *        the term to lookup
+	 * @return null if the term is not cached, an empty optional if it has no
+	 *         corrections or a new associated term with the cached corrections
+	 */
+	public Optional<AssociatedTerm> get(String term) {
+		List<Correction> termCorrections = corrections.getIfPresent(term);
+		if (termCorrections == null) return null;
+		if (termCorrections.isEmpty()) return Optional.empty();
+
+		AssociatedTerm correctedWord = new AssociatedTerm(new WeightedTerm(term));
+		termCorrections.forEach(correction -> correctedWord.putOrUpdate(
+				new CountedTerm(new WeightedTerm(correction.term, correction.score), correction.termFrequency)));
+		return Optional.of(correctedWord);
+	}
+
+	/**
+	 * Cache the corrections of the given term.
+	 * 
+	 * @param term
+	 *        the corrected term
+	 * @param correctedWord
+	 *        the term with its corrections or null if it has no corrections
+	 */
+	public void put(String term, AssociatedTerm correctedWord) {
+		List<Correction> termCorrections = new ArrayList<>();
+		if (correctedWord != null) {
+			correctedWord.getRelatedTerms().values().forEach(relatedTerm -> termCorrections.add(toCorrection(relatedTerm)));
+		}
+		corrections.put(term, Collections.unmodifiableList(termCorrections));
+	}
+
+	private static Correction toCorrection(QueryStringTerm relatedTerm) {
+		int termFrequency = -1;
+		if (relatedTerm instanceof CountedTerm) {
+			termFrequency = ((CountedTerm) relatedTerm).getTermFrequency();
+			relatedTerm = ((CountedTerm) relatedTerm).getDecorated();
+		}
+		float score = relatedTerm instanceof WeightedTerm ? ((WeightedTerm) relatedTerm).getWeight() : 1f;
+		return new Correction(relatedTerm.getRawTerm(), score, termFrequency);
+	}
+
+	public void invalidateAll() {
+		corrections.invalidateAll();
+	}
+
+	public long size() {
+		return corrections.size();
+	}
+}
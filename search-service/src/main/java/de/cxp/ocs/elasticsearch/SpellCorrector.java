@@ -25,7 +25,26 @@ public class SpellCorrector {
 	private final String[] spellCorrectionFields;
 	private final float    minScore = 0.75f;
 
+	private final SpellCorrectionCache cache;
+
+	private final LocalSpellChecker localSpellChecker;
+
 	public SpellCorrector(Collection<String> searchFields) {
+		this(searchFields, null, null);
+	}
+
+	/**
+	 * @param searchFields
+	 *        the fields that are used for spell correction
+	 * @param cache
+	 *        optional cache for the corrections of single terms
+	 * @param localSpellChecker
+	 *        optional in-memory spell checker that is used instead of
+	 *        Elasticsearch as soon as it is loaded
+	 */
+	public SpellCorrector(Collection<String> searchFields, SpellCorrectionCache cache, LocalSpellChecker localSpellChecker) {
+		this.cache = cache;
+		this.localSpellChecker = localSpellChecker;
 		final Set<String> spellCheckFields = new HashSet<>();
 		for (String searchField : searchFields) {
 			if (searchField == null || searchField.contains("*")) {
@@ -48,8 +67,22 @@ public class SpellCorrector {
 		spellCorrectionFields = spellCheckFields.toArray(new String[0]);
 	}
 
+	/**
+	 * Build the term suggestions for the terms of the user query. If a cache
+	 * is used, only the terms without cached corrections are requested.
+	 * 
+	 * @param userQuery
+	 *        the whitespace separated terms to correct
+	 * @return the suggest builder or null if all terms are cached or the
+	 *         local spell checker is used
+	 */
 	public SuggestBuilder buildSpellCorrectionQuery(String userQuery) {
-		SuggestBuilder suggestBuilder = new SuggestBuilder().setGlobalText(userQuery);
+		if (isLocalSpellCheckerLoaded()) return null;
+
+		String uncachedTerms = cache == null ? userQuery : StringUtils.join(cache.getUncachedTerms(splitTerms(userQuery)), ' ');
+		if (cache != null && uncachedTerms.isEmpty()) return null;
+
+		SuggestBuilder suggestBuilder = new SuggestBuilder().setGlobalText(uncachedTerms);
 		for (String fieldName : spellCorrectionFields) {
 			suggestBuilder.addSuggestion(fieldName,
 					SuggestBuilders
@@ -59,6 +92,84 @@ public class SpellCorrector {
 		return suggestBuilder;
 	}
 
+	/**
+	 * Get the corrections for the terms of the user query. The corrections of
+	 * the requested terms are extracted from the suggest response and are put
+	 * into the cache. The corrections of the other terms are taken from the
+	 * cache. If nothing was requested and the local spell checker is loaded,
+	 * all terms are corrected by the local spell checker.
+	 * 
+	 * @param userQuery
+	 *        the same query that was passed to
+	 *        {@link #buildSpellCorrectionQuery(String)}
+	 * @param suggest
+	 *        the suggest response or null if nothing was requested
+	 * @return the corrections per input term
+	 */
+	public Map<String, AssociatedTerm> getCorrections(String userQuery, Suggest suggest) {
+		if (suggest == null && isLocalSpellCheckerLoaded()) {
+			return localSpellChecker.correct(splitTerms(userQuery), minScore);
+		}
+
+		Map<String, AssociatedTerm> correctedWords = suggest == null ? new HashMap<>() : extractRelatedWords(suggest);
+		if (cache == null) return correctedWords;
+
+		Set<String> requestedTerms = getRequestedTerms(suggest);
+		for (String term : splitTerms(userQuery)) {
+			if (requestedTerms.contains(term)) {
+				cache.put(term, correctedWords.get(term));
+			}
+			else if (!correctedWords.containsKey(term)) {
+				Optional<AssociatedTerm> cachedCorrection = cache.get(term);
+				if (cachedCorrection != null && cachedCorrection.isPresent()) {
+					correctedWords.put(term, cachedCorrection.get());
+				}
+			}
+		}
+		return correctedWords;
+	}
+
+	/**
+	 * Only put the corrections of the requested terms into the cache, e.g. if
+	 * they are not needed for the current request.
+	 * 
+	 * @param userQuery
+	 *        the same query that was passed to
+	 *        {@link #buildSpellCorrectionQuery(String)}
+	 * @param suggest
+	 *        the suggest response
+	 */
+	public void cacheCorrections(String userQuery, Suggest suggest) {
+		if (cache != null && suggest != null) {
+			getCorrections(userQuery, suggest);
+		}
+	}
+
+	public boolean isLocalSpellCheckerLoaded() {
+		return localSpellChecker != null && localSpellChecker.isLoaded();
+	}
+
+	/**
+	 * @return the fields whose terms are used for spell correction
+	 */
+	public String[] getSpellCorrectionFields() {
+		return spellCorrectionFields.clone();
+	}
+
+	private static List<String> splitTerms(String userQuery) {
+		String[] terms = StringUtils.split(userQuery);
+		return terms == null ? Collections.emptyList() : Arrays.asList(terms);
+	}
+
+	private static Set<String> getRequestedTerms(Suggest suggest) {
+		if (suggest == null) return Collections.emptySet();
+		Set<String> requestedTerms = new HashSet<>();
+		for (Suggestion<? extends Entry<? extends Option>> correction : suggest) {
+			correction.getEntries().forEach(entry -> requestedTerms.add(entry.getText().string()));
+		}
+		return requestedTerms;
+	}
+
 	public Map<String, AssociatedTerm> extractRelatedWords(Suggest suggest) {
 		Map<String, AssociatedTerm> correctedWords = new HashMap<>();
 		Map<String, Float> bestScores = new HashMap<>();
@@ -0,0 +1,120 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.cxp.ocs.config.FacetConfiguration;
+import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
+import de.cxp.ocs.util.InternalSearchParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides if the facet aggregations of a request should only be computed on a
+ * sample of the matched documents. This is done for requests that are expected
+ * to have many hits, because broad queries cause the most expensive
+ * aggregations, while narrow queries don't need any sampling. The expected hit
+ * count is taken from the query itself if it is known (e.g. from the query
+ * prediction), otherwise from a recent request with the same user query and
+ * filters.
+ */
+@Slf4j
+public class AdaptiveAggregationSampling {
+
+	private static final int		MAX_OBSERVED_QUERIES	= 10_000;
+	private static final Duration	OBSERVATION_TTL			= Duration.ofMinutes(10);
+
+	private final int		minHits;
+	private final double	samplingRate;
+	private final int		minSampleSize;
+
+	private final Cache<String, Long> observedHitCounts;
+
+	private final Counter	sampledCounter;
+	private final Counter	fullCounter;
+
+	public AdaptiveAggregationSampling(FacetConfiguration facetConfiguration, MeterRegistry registry, String indexName) {
+		minHits = facetConfiguration.getAdaptiveSamplingMinHits();
+		samplingRate = facetConfiguration.getAdaptiveSamplingRate();
+		minSampleSize = facetConfiguration.getAdaptiveSamplingMinSize();
+		observedHitCounts = minHits > 0 ? CacheBuilder.newBuilder().maximumSize(MAX_OBSERVED_QUERIES).expireAfterWrite(OBSERVATION_TTL).build() : null;
+
+		sampledCounter = Counter.builder("facetAggregationSampling").tag("indexName", indexName).tag("decision", "sampled").register(registry);
+		fullCounter = Counter.builder("facetAggregationSampling").tag("indexName", indexName).tag("decision", "full").register(registry);
+	}
+
+	public boolean isEnabled() {
+		return minHits > 0;
+	}
+
+	/**
+	 * Get the sample size (per shard) for the facet aggregations of the given
+	 * request. If the request defines an explicit sample size with the
+	 * 'aggSampling' parameter, no adaptive sampling is done.
+	 *
+	 * @param parameters
+	 *        the search parameters
+	 * @param expectedHits
+	 *        the hit count that is expected for the query of the current
+	 *        request or -1 if unknown. In that case the hit count of a recent
+	 *        request with the same user query and filters is used.
+	 * @return the sample size or -1 if the facets should be aggregated on all
+	 *         matched documents
+	 */
+	public int getAdaptiveSampleSize(InternalSearchParams parameters, long expectedHits) {
+		if (!isEnabled() || parameters.aggSampling > 0) return -1;
+
+		Long estimatedHits = expectedHits >= 0 ? Long.valueOf(expectedHits) : observedHitCounts.getIfPresent(getQueryKey(parameters));
+		int sampleSize = -1;
+		if (estimatedHits != null && estimatedHits >= minHits) {
+			sampleSize = (int) Math.min(Integer.MAX_VALUE, Math.max(minSampleSize, (long) (estimatedHits * samplingRate)));
+			if (sampleSize >= estimatedHits) sampleSize = -1;
+		}
+
+		if (sampleSize > 0) {
+			log.debug("sampling facet aggregations on {} documents per shard, since {} hits were {}", sampleSize, estimatedHits,
+					expectedHits >= 0 ? "predicted for the query" : "observed for the same request");
+			sampledCounter.increment();
+		}
+		else {
+			fullCounter.increment();
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * Record the hit count of a request, so that the next request with the
+	 * same user query and filters can decide about sampling, if its hit count
+	 * can't be predicted.
+	 *
+	 * @param parameters
+	 *        the search parameters
+	 * @param hitCount
+	 *        the total hit count of the response
+	 */
+	public void recordHitCount(InternalSearchParams parameters, long hitCount) {
+		if (!isEnabled()) return;
+		observedHitCounts.put(getQueryKey(parameters), hitCount);
+	}
+
+	static String getQueryKey(InternalSearchParams parameters) {
+		StringBuilder queryKey = new StringBuilder();
+		if (parameters.userQuery != null) {
+			queryKey.append(parameters.userQuery.trim());
+		}
+		List<InternalResultFilter> filters = parameters.filters.stream()
+				.sorted(Comparator.comparing(filter -> filter.getField().getName()))
+				.toList();
+		for (InternalResultFilter filter : filters) {
+			queryKey.append('&').append(filter.getField().getName());
+			if (filter.isFilterOnId()) queryKey.append(".id");
+			queryKey.append(filter.isNegated() ? "!=" : "=").append(String.join(",", filter.getValues()));
+		}
+		return queryKey.toString();
+	}
+}
@@ -10,6 +10,7 @@ import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms.Bucket;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 
 import de.cxp.ocs.config.*;
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
@@ -31,8 +32,22 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 
 	@Setter
 	private int maxFacetValues = 250;
-	private final Map<String, FacetEntrySorter>	facetSorters	= new HashMap<>();
-	private final boolean						isExplicitFacetCreator;
+
+	/**
+	 * Prebuilt hierarchy of all categories. If it is set, the category IDs are
+	 * not aggregated anymore, but taken from that hierarchy.
+	 */
+	@Setter
+	private CategoryHierarchy categoryHierarchy;
+
+	/**
+	 * Set as soon as a category is found that is not part of the hierarchy,
+	 * e.g. because it was indexed after the hierarchy was fetched. From then
+	 * on the category IDs are aggregated again until the hierarchy is
+	 * reloaded.
+	 */
+	private volatile boolean isHierarchyIncomplete;
+	private final boolean isExplicitFacetCreator;
 
 	public CategoryFacetCreator(Map<String, FacetConfig> facetConfigs, Function<String, FacetConfig> defaultFacetConfigProvider) {
 		this(facetConfigs, defaultFacetConfigProvider, false);
@@ -50,12 +65,20 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 
 	@Override
 	protected AggregationBuilder getNestedValueAggregation(String nestedPathPrefix) {
-		return AggregationBuilders.terms(FACET_VALUES_AGG)
+		TermsAggregationBuilder valuesAgg = AggregationBuilders.terms(FACET_VALUES_AGG)
 				.field(FieldConstants.PATH_FACET_DATA + ".value")
-				.size(maxFacetValues)
-				.subAggregation(AggregationBuilders.terms(FACET_IDS_AGG)
-						.field(FieldConstants.PATH_FACET_DATA + ".id")
-						.size(1));
+				.size(maxFacetValues);
+		if (categoryHierarchy == null || isHierarchyIncomplete) {
+			valuesAgg.subAggregation(AggregationBuilders.terms(FACET_IDS_AGG)
+					.field(FieldConstants.PATH_FACET_DATA + ".id")
+					.size(1));
+		}
+		return valuesAgg;
+	}
+
+	@Override
+	protected boolean isValuePagingSupported() {
+		return true;
 	}
 
 	@Override
@@ -95,7 +118,7 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 		boolean isFiltered = isMatchingFilterType(facetFilter);
 
 		for (Bucket categoryBucket : catBuckets) {
-			CategoryExtract category = extractCategoryData(categoryBucket, context.idPathIndex);
+			CategoryExtract category = extractCategoryData(facetNameBucket.getKeyAsString(), categoryBucket, context.idPathIndex);
 
 			if (isFiltered && isSelectedPath(category, facetFilter)) {
 				category.isSelectedPath = Boolean.TRUE;
@@ -122,20 +145,24 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 			context.entries.values().forEach(facet.getEntries()::add);
 		}
 
-		getFacetSorter(facetConfig, facetFilter == null ? null : facetFilter.getField()).sort(facet);
+		FacetEntrySorter.of(facetConfig.getValueOrder()).sort(facet);
 
 		return Optional.of(facet);
 	}
 
-	private FacetEntrySorter getFacetSorter(FacetConfig facetConfig, Field field) {
-		return facetSorters.computeIfAbsent(facetConfig.getSourceField(), fieldName -> {
-			int estimatedFacetValues = field instanceof IndexedField ? ((IndexedField) field).getValueCardinality() : maxFacetValues;
-			return FacetEntrySorter.of(facetConfig.getValueOrder(), estimatedFacetValues);
-		});
-	}
-
-	private CategoryExtract extractCategoryData(Bucket categoryBucket, Map<String, String> idPathIndex) {
+	private CategoryExtract extractCategoryData(String facetName, Bucket categoryBucket, Map<String, String> idPathIndex) {
 		final String categoryPath = categoryBucket.getKeyAsString();
+		if (categoryHierarchy != null) {
+			CategoryHierarchy.Category category = categoryHierarchy.getCategory(facetName, categoryPath);
+			if (category != null) {
+				return new CategoryExtract(category);
+			}
+			if (!isHierarchyIncomplete) {
+				log.info("category {} of facet {} is not part of the category hierarchy, will aggregate the category IDs until it is reloaded",
+						categoryPath, facetName);
+				isHierarchyIncomplete = true;
+			}
+		}
 		final String categoryId = extractCategoryId(categoryBucket);
 		final String idPath = getIdPath(categoryPath, categoryId, idPathIndex);
 		return new CategoryExtract(categoryPath, categoryId, idPath);
@@ -143,6 +170,7 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 
 	private String extractCategoryId(Bucket categoryBucket) {
 		Terms idsAgg = (Terms) categoryBucket.getAggregations().get(FACET_IDS_AGG);
+		if (idsAgg == null) return null;
 		List<? extends Bucket> idBuckets = idsAgg.getBuckets();
 		String id = null;
 		if (idBuckets != null && !idBuckets.isEmpty()) {
@@ -156,6 +184,9 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 	}
 
 	private String getIdPath(String categoryPath, final String categoryId, Map<String, String> idPathIndex) {
+		// without ID, e.g. if it was not aggregated, there is no ID-path
+		if (categoryId == null) return null;
+
 		String parentIdPath = null;
 		int parentPathEndIndex = categoryPath.lastIndexOf(PATH_SEPARATOR);
 		if (parentPathEndIndex >= 0) {
@@ -199,23 +230,27 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 
 	private HierarchialFacetEntry createFacetEntryInHierarchy(CategoryExtract category, CategoryContext context) {
 		// make sure the whole path exists as a nested HierarchialFacetEntry,
-		// each element of the path being a HierarchialFacetEntr
-		HierarchialFacetEntry lastLevelEntry = context.entries.computeIfAbsent(category.path[0], c -> toFacetEntry(0, category, context));
-		for (int i = 1; i < category.path.length; i++) {
+		// each element of the path being a HierarchialFacetEntry. The entries
+		// are looked up by their path, so siblings don't have to be scanned.
+		HierarchialFacetEntry lastLevelEntry = null;
+		for (int i = 0; i < category.path.length; i++) {
 			// mark the whole path as selected if a child is selected
-			if (category.isSelectedPath) {
+			if (lastLevelEntry != null && category.isSelectedPath) {
 				lastLevelEntry.setSelected(Boolean.TRUE);
 			}
 
-			FacetEntry child = getChildByKey(lastLevelEntry, category.path[i]);
-			if (child != null) {
-				lastLevelEntry = (HierarchialFacetEntry) child;
-			}
-			else {
-				HierarchialFacetEntry newChild = toFacetEntry(i, category, context);
-				lastLevelEntry.addChild(newChild);
-				lastLevelEntry = newChild;
+			HierarchialFacetEntry entry = context.entriesByPath.get(category.pathPrefixes[i]);
+			if (entry == null) {
+				entry = toFacetEntry(i, category, context);
+				context.entriesByPath.put(category.pathPrefixes[i], entry);
+				if (lastLevelEntry == null) {
+					context.entries.put(category.path[0], entry);
+				}
+				else {
+					lastLevelEntry.addChild(entry);
+				}
 			}
+			lastLevelEntry = entry;
 		}
 		return lastLevelEntry;
 	}
@@ -272,7 +307,7 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 	protected String createLink(final int categoryPathIndex, final CategoryExtract category, final CategoryContext context) {
 		String link;
 		String pathFilterValue;
-		if (context.facetFilter != null && context.facetFilter.isFilterOnId()) {
+		if (context.facetFilter != null && context.facetFilter.isFilterOnId() && category.idPath != null) {
 			pathFilterValue = PATH_SEPARATOR + joinPartialPath(category.idPath, categoryPathIndex);
 		}
 		else {
@@ -290,7 +325,7 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 				if (value.equals(pathFilterValue)) {
 					// skip
 				}
-				else if (context.facetFilter.isFilterOnId() && value.equals(category.idPath[categoryPathIndex])) {
+				else if (context.facetFilter.isFilterOnId() && category.idPath != null && value.equals(category.idPath[categoryPathIndex])) {
 					// skip special case: a filter on single ID without the full path
 				}
 				else if (value.startsWith(pathFilterValue) || pathFilterValue.startsWith(value)) {
@@ -320,15 +355,6 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 		return StringUtils.join(pathValues, PATH_SEPARATOR, 0, endIndex + 1);
 	}
 
-	private FacetEntry getChildByKey(HierarchialFacetEntry entry, String childKey) {
-		for (FacetEntry e : entry.children) {
-			if (childKey.equals(e.getKey())) {
-				return e;
-			}
-		}
-		return null;
-	}
-
 	private void copyOnlySelectedPaths(Collection<HierarchialFacetEntry> rootEntries, Facet facet, Set<String> selectedPaths) {
 		for (HierarchialFacetEntry rootEntry : rootEntries) {
 			if (rootEntry.isSelected()) {
@@ -368,6 +394,7 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 		final String	id;
 		final String	idPathString;
 		final String[]	idPath;
+		final String[]	pathPrefixes;
 		boolean			isSelectedPath;
 
 		public CategoryExtract(final String categoryPathStr, final String categoryId, String idPathStr) {
@@ -376,6 +403,16 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 			idPathString = idPathStr;
 			path = StringUtils.split(categoryPathStr, PATH_SEPARATOR);
 			idPath = StringUtils.split(idPathStr, PATH_SEPARATOR);
+			pathPrefixes = CategoryHierarchy.getPathPrefixes(path);
+		}
+
+		CategoryExtract(final CategoryHierarchy.Category category) {
+			pathString = category.getPathString();
+			id = category.getId();
+			idPathString = category.getIdPathString();
+			path = category.path;
+			idPath = category.idPath;
+			pathPrefixes = category.pathPrefixes;
 		}
 	}
 
@@ -386,10 +423,12 @@ public class CategoryFacetCreator extends NestedFacetCreator {
 		FacetConfig									facetConfig;
 		final Map<String, String>					idPathIndex;
 		final Map<String, HierarchialFacetEntry>	entries;
+		final Map<String, HierarchialFacetEntry>	entriesByPath;
 
 		public CategoryContext(int expectedEntriesSize) {
 			idPathIndex = new HashMap<String, String>(expectedEntriesSize);
 			entries = new LinkedHashMap<>(expectedEntriesSize);
+			entriesByPath = new HashMap<>(expectedEntriesSize);
 		}
 	}
 }
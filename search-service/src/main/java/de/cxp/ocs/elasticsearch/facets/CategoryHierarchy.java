@@ -0,0 +1,160 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static de.cxp.ocs.elasticsearch.query.filter.PathResultFilter.PATH_SEPARATOR;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Immutable index of all categories of the category fields of an index. It
+ * maps each category path to its ID and full ID-path, so the
+ * {@link CategoryFacetCreator} neither has to fetch the IDs with every facet
+ * aggregation nor has to compute the ID-paths for every request.
+ */
+public class CategoryHierarchy {
+
+	public static final CategoryHierarchy EMPTY = new CategoryHierarchy(Collections.emptyMap());
+
+	private final Map<String, Map<String, Category>> categoriesByField;
+
+	@Getter
+	private final int size;
+
+	private CategoryHierarchy(Map<String, Map<String, Category>> categoriesByField) {
+		this.categoriesByField = categoriesByField;
+		size = categoriesByField.values().stream().mapToInt(Map::size).sum();
+	}
+
+	/**
+	 * @param fieldName
+	 *        name of the category field
+	 * @param categoryPath
+	 *        full category path as it's indexed, e.g. "Men/Shoes"
+	 * @return the category or null if it's unknown
+	 */
+	public Category getCategory(String fieldName, String categoryPath) {
+		Map<String, Category> categories = categoriesByField.get(fieldName);
+		return categories == null ? null : categories.get(categoryPath);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * A single category with its already split path and ID-path.
+	 */
+	public static class Category {
+
+		@Getter
+		private final String	pathString;
+		@Getter
+		private final String	id;
+		@Getter
+		private final String	idPathString;
+
+		final String[]	path;
+		final String[]	idPath;
+		final String[]	pathPrefixes;
+
+		Category(String pathString, String id, String idPathString) {
+			this.pathString = pathString;
+			this.id = id;
+			this.idPathString = idPathString;
+			path = StringUtils.split(pathString, PATH_SEPARATOR);
+			idPath = StringUtils.split(idPathString, PATH_SEPARATOR);
+			pathPrefixes = getPathPrefixes(path);
+		}
+	}
+
+	/**
+	 * @param path
+	 *        the split category path
+	 * @return the paths of the category and all its parents, starting with
+	 *         the root category
+	 */
+	static String[] getPathPrefixes(String[] path) {
+		String[] pathPrefixes = new String[path.length];
+		for (int i = 0; i < path.length; i++) {
+			pathPrefixes[i] = i == 0 ? path[0] : pathPrefixes[i - 1] + PATH_SEPARATOR + path[i];
+		}
+		return pathPrefixes;
+	}
+
+	@Slf4j
+	public static class Builder {
+
+		private final Map<String, Map<String, String>> idsByPathPerField = new HashMap<>();
+
+		private Builder() {}
+
+		/**
+		 * Add a category. The order does not matter, but parent categories
+		 * have to be added as well to get the complete ID-path.
+		 *
+		 * @param fieldName
+		 *        name of the category field
+		 * @param categoryPath
+		 *        full category path
+		 * @param categoryId
+		 *        the ID of the category, may be null, then the category and
+		 *        its children have no ID-path
+		 * @return fluid builder
+		 */
+		public Builder add(String fieldName, String categoryPath, String categoryId) {
+			String previousId = idsByPathPerField.computeIfAbsent(fieldName, f -> new HashMap<>()).putIfAbsent(categoryPath, categoryId);
+			if (previousId != null && !previousId.equals(categoryId)) {
+				log.warn("More than one ID for the same category can't be handled. Will use the first ID! id={} for field={} and path={}",
+						previousId, fieldName, categoryPath);
+			}
+			return this;
+		}
+
+		public CategoryHierarchy build() {
+			Map<String, Map<String, Category>> categoriesByField = new HashMap<>(idsByPathPerField.size());
+			for (Entry<String, Map<String, String>> fieldCategories : idsByPathPerField.entrySet()) {
+				Map<String, String> idsByPath = fieldCategories.getValue();
+				Map<String, String> idPathIndex = new HashMap<>(idsByPath.size());
+				Map<String, Category> categories = new HashMap<>(idsByPath.size());
+				for (Entry<String, String> category : idsByPath.entrySet()) {
+					String idPath = getIdPath(category.getKey(), idsByPath, idPathIndex);
+					categories.put(category.getKey(), new Category(category.getKey(), category.getValue(), idPath));
+				}
+				categoriesByField.put(fieldCategories.getKey(), Collections.unmodifiableMap(categories));
+			}
+			return new CategoryHierarchy(Collections.unmodifiableMap(categoriesByField));
+		}
+
+		private String getIdPath(String categoryPath, Map<String, String> idsByPath, Map<String, String> idPathIndex) {
+			String idPath = idPathIndex.get(categoryPath);
+			if (idPath != null) return idPath;
+
+			if (idPathIndex.containsKey(categoryPath)) return null;
+
+			String categoryId = idsByPath.get(categoryPath);
+			String parentIdPath = null;
+			int parentPathEndIndex = categoryPath.lastIndexOf(PATH_SEPARATOR);
+			if (categoryId != null && parentPathEndIndex >= 0) {
+				String parentPath = categoryPath.substring(0, parentPathEndIndex);
+				if (idsByPath.containsKey(parentPath)) {
+					parentIdPath = getIdPath(parentPath, idsByPath, idPathIndex);
+					// an incomplete ID-path would be wrong
+					if (parentIdPath == null) categoryId = null;
+				}
+			}
+
+			if (categoryId != null) {
+				idPath = parentIdPath != null ? parentIdPath + PATH_SEPARATOR + categoryId : PATH_SEPARATOR + categoryId;
+			}
+			idPathIndex.put(categoryPath, idPath);
+			return idPath;
+		}
+	}
+}
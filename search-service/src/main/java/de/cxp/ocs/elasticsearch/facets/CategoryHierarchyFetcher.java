@@ -0,0 +1,74 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static de.cxp.ocs.config.FieldConstants.PATH_FACET_DATA;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.Nested;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fetches all category paths with their IDs from the given index(es) and
+ * builds the {@link CategoryHierarchy} out of it. Uses a composite aggregation
+ * to page through all categories.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CategoryHierarchyFetcher {
+
+	private static final String	CATEGORIES_AGG	= "_categories";
+	private static final String	PATHS_AGG		= "_paths";
+
+	private static final int PAGE_SIZE = 1000;
+
+	private final RestHighLevelClient restClient;
+
+	public CategoryHierarchy fetchHierarchy(String indexName) throws IOException {
+		CategoryHierarchy.Builder hierarchyBuilder = CategoryHierarchy.builder();
+		Map<String, Object> afterKey = null;
+		do {
+			CompositeAggregationBuilder pathsAgg = AggregationBuilders.composite(PATHS_AGG, List.of(
+					new TermsValuesSourceBuilder("name").field(PATH_FACET_DATA + ".name"),
+					new TermsValuesSourceBuilder("value").field(PATH_FACET_DATA + ".value"),
+					new TermsValuesSourceBuilder("id").field(PATH_FACET_DATA + ".id").missingBucket(true)))
+					.size(PAGE_SIZE);
+			if (afterKey != null) pathsAgg.aggregateAfter(afterKey);
+
+			SearchSourceBuilder searchSource = SearchSourceBuilder.searchSource()
+					.size(0)
+					.aggregation(AggregationBuilders.nested(CATEGORIES_AGG, PATH_FACET_DATA).subAggregation(pathsAgg));
+			SearchResponse searchResponse = restClient.search(new SearchRequest(StringUtils.split(indexName, ',')).source(searchSource), RequestOptions.DEFAULT);
+
+			afterKey = null;
+			Nested categoriesAgg = searchResponse.getAggregations() == null ? null : searchResponse.getAggregations().get(CATEGORIES_AGG);
+			CompositeAggregation pathsResult = categoriesAgg == null ? null : categoriesAgg.getAggregations().get(PATHS_AGG);
+			if (pathsResult != null) {
+				for (CompositeAggregation.Bucket pathBucket : pathsResult.getBuckets()) {
+					Object categoryId = pathBucket.getKey().get("id");
+					hierarchyBuilder.add(String.valueOf(pathBucket.getKey().get("name")), String.valueOf(pathBucket.getKey().get("value")),
+							categoryId == null ? null : categoryId.toString());
+				}
+				if (pathsResult.getBuckets().size() >= PAGE_SIZE) afterKey = pathsResult.afterKey();
+			}
+		}
+		while (afterKey != null);
+
+		CategoryHierarchy hierarchy = hierarchyBuilder.build();
+		log.info("fetched {} categories from index {}", hierarchy.getSize(), indexName);
+		return hierarchy;
+	}
+}
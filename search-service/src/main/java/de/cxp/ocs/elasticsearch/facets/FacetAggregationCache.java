@@ -0,0 +1,141 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import de.cxp.ocs.config.FacetConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caches the facet aggregations of searches for a short time. The cache key
+ * only considers the final query, the post filter and the aggregations itself,
+ * so searches that only differ in sorting or paging (e.g. category browse
+ * pages) can reuse the aggregations of each other.
+ */
+@Slf4j
+public class FacetAggregationCache {
+
+	private final Cache<HashCode, Aggregations> cachedAggregations;
+
+	private final Counter	hitCounter;
+	private final Counter	missCounter;
+
+	public FacetAggregationCache(FacetConfiguration facetConfiguration, MeterRegistry registry, String indexName) {
+		int ttlSeconds = facetConfiguration.getAggregationCacheTtlSeconds();
+		cachedAggregations = ttlSeconds > 0
+				? CacheBuilder.newBuilder()
+						.maximumSize(facetConfiguration.getAggregationCacheMaxSize())
+						.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+						.build()
+				: null;
+
+		hitCounter = Counter.builder("facetAggregationCache").tag("indexName", indexName).tag("result", "hit").register(registry);
+		missCounter = Counter.builder("facetAggregationCache").tag("indexName", indexName).tag("result", "miss").register(registry);
+	}
+
+	public boolean isEnabled() {
+		return cachedAggregations != null;
+	}
+
+	/**
+	 * Build the cache key for the given search source, that must already
+	 * contain the final query and the aggregations. Sorting, paging and other
+	 * result related settings are not considered.
+	 *
+	 * @param searchSourceWithAggregations
+	 *        the complete search source
+	 * @return the cache key
+	 */
+	public static HashCode getCacheKey(SearchSourceBuilder searchSourceWithAggregations) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		if (searchSourceWithAggregations.query() != null) {
+			hasher.putString(Strings.toString(searchSourceWithAggregations.query()), StandardCharsets.UTF_8);
+		}
+		hasher.putChar('|');
+		if (searchSourceWithAggregations.postFilter() != null) {
+			hasher.putString(Strings.toString(searchSourceWithAggregations.postFilter()), StandardCharsets.UTF_8);
+		}
+		hasher.putChar('|');
+		if (searchSourceWithAggregations.aggregations() != null) {
+			hasher.putString(Strings.toString(searchSourceWithAggregations.aggregations()), StandardCharsets.UTF_8);
+		}
+		return hasher.hash();
+	}
+
+	/**
+	 * Get the cached aggregations for the given key and count the cache hit or
+	 * miss.
+	 *
+	 * @param cacheKey
+	 *        key built by {@link #getCacheKey(SearchSourceBuilder)}
+	 * @return the cached aggregations or null
+	 */
+	public Aggregations get(HashCode cacheKey) {
+		if (!isEnabled()) return null;
+		Aggregations aggregations = cachedAggregations.getIfPresent(cacheKey);
+		if (aggregations != null) {
+			hitCounter.increment();
+		}
+		else {
+			missCounter.increment();
+		}
+		return aggregations;
+	}
+
+	/**
+	 * Cache the aggregations of the given response, but only if it is complete.
+	 *
+	 * @param cacheKey
+	 *        key built by {@link #getCacheKey(SearchSourceBuilder)}
+	 * @param searchResponse
+	 *        the response of the search with aggregations
+	 */
+	public void put(HashCode cacheKey, SearchResponse searchResponse) {
+		if (!isEnabled() || searchResponse.getAggregations() == null) return;
+		if (searchResponse.isTimedOut() || searchResponse.getFailedShards() > 0) {
+			log.debug("not caching aggregations of incomplete search response");
+			return;
+		}
+		cachedAggregations.put(cacheKey, searchResponse.getAggregations());
+	}
+
+	/**
+	 * Remove all cached aggregations, e.g. because the index behind the alias
+	 * changed.
+	 */
+	public void invalidateAll() {
+		if (isEnabled()) {
+			cachedAggregations.invalidateAll();
+		}
+	}
+
+	/**
+	 * Creates a copy of the given search response with the given aggregations.
+	 *
+	 * @param searchResponse
+	 *        response of the search without aggregations
+	 * @param aggregations
+	 *        cached aggregations
+	 * @return search response with the aggregations
+	 */
+	public static SearchResponse withAggregations(SearchResponse searchResponse, Aggregations aggregations) {
+		SearchResponseSections sections = new SearchResponseSections(searchResponse.getHits(), aggregations, searchResponse.getSuggest(),
+				searchResponse.isTimedOut(), searchResponse.isTerminatedEarly(), null, searchResponse.getNumReducePhases());
+		return new SearchResponse(sections, searchResponse.getScrollId(), searchResponse.getTotalShards(), searchResponse.getSuccessfulShards(),
+				searchResponse.getSkippedShards(), searchResponse.getTook().millis(), searchResponse.getShardFailures(), searchResponse.getClusters());
+	}
+}
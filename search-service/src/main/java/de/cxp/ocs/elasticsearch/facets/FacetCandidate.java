@@ -0,0 +1,33 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Facet that can be created from an aggregation result, described only by the
+ * data that is necessary to decide if it should be created at all.
+ */
+@Getter
+@ToString
+public class FacetCandidate {
+
+	private final String fieldName;
+
+	private final String label;
+
+	private final int order;
+
+	/**
+	 * The absolute facet coverage the created facet would have, so that the
+	 * candidates can be ranked the same way as the created facets.
+	 */
+	private final long coverage;
+
+	public FacetCandidate(FacetConfig facetConfig, long coverage) {
+		fieldName = facetConfig.getSourceField();
+		label = facetConfig.getLabel() == null ? facetConfig.getSourceField() : facetConfig.getLabel();
+		order = facetConfig.getOrder();
+		this.coverage = coverage;
+	}
+}
@@ -4,7 +4,9 @@ import static de.cxp.ocs.elasticsearch.facets.FacetFactory.getLabel;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import org.elasticsearch.index.query.QueryBuilder;
@@ -14,6 +16,7 @@ import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.aggregations.bucket.filter.Filter;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.Nested;
 import org.elasticsearch.search.aggregations.bucket.sampler.Sampler;
 import org.elasticsearch.search.aggregations.bucket.sampler.SamplerAggregationBuilder;
 
@@ -42,11 +45,17 @@ public class FacetConfigurationApplyer {
 	 */
 	static final String IS_EXCLUDE_FROM_FACET_LIMIT = "isExcludedFromFacetLimit";
 
+	/**
+	 * meta key of the sampler aggregation to extrapolate the facet counts
+	 */
+	static final String ESTIMATE_COUNTS_META_KEY = "estimateCounts";
+
 	private final Function<String, FacetConfig>				defaultTermFacetConfigProvider;
 	private final Function<String, FacetConfig>				defaultNumberFacetConfigProvider;
 	private final Map<String, FacetConfig>					facetsBySourceField;
 	private final List<FacetCreator>						facetCreators			= new ArrayList<>();
 	private final Map<FacetCreatorClassifier, FacetCreator>	facetCreatorsByTypes	= new HashMap<>();
+	private final FieldConfigIndex							fieldConfigIndex;
 
 	private final int maxFacets;
 
@@ -61,6 +70,7 @@ public class FacetConfigurationApplyer {
 		defaultTermFacetConfigProvider = getDefaultFacetConfigProvider(facetConfiguration.getDefaultTermFacetConfiguration());
 		defaultNumberFacetConfigProvider = getDefaultFacetConfigProvider(facetConfiguration.getDefaultNumberFacetConfiguration());
 		maxFacets = facetConfiguration.getMaxFacets();
+		fieldConfigIndex = context.getFieldConfigIndex();
 
 		Map<String, Supplier<? extends CustomFacetCreator>> customFacetCreatorsByType = initCustomFacetCreators(facetConfiguration, customFacetCreatorSupplier);
 		facetsBySourceField = loadFacetConfig(context, customFacetCreatorsByType);
@@ -100,7 +110,8 @@ public class FacetConfigurationApplyer {
 	private Map<String, FacetConfig> loadFacetConfig(SearchContext context, Map<String, Supplier<? extends CustomFacetCreator>> customFacetCreators) {
 		Map<String, FacetConfig> _facetsBySourceField = new HashMap<>();
 
-		FacetCreatorInitializer creatorInit = new FacetCreatorInitializer(customFacetCreators, context.config, defaultTermFacetConfigProvider, defaultNumberFacetConfigProvider);
+		FacetCreatorInitializer creatorInit = new FacetCreatorInitializer(customFacetCreators, context.config, defaultTermFacetConfigProvider, defaultNumberFacetConfigProvider)
+				.setCategoryHierarchy(context.categoryHierarchy);
 
 		// put facet configs into according maps
 		for (FacetConfig facetConfig : context.config.getFacetConfiguration().getFacets()) {
@@ -265,6 +276,26 @@ public class FacetConfigurationApplyer {
 	 *         on the existance of post filters
 	 */
 	public List<AggregationBuilder> buildAggregators(FilterContext filterContext, int totalLimit) {
+		return buildAggregators(filterContext, totalLimit, false);
+	}
+
+	/**
+	 * Same as {@link #buildAggregators(FilterContext, int)}, but if a sampler
+	 * aggregation is used and 'estimateCounts' is set, the facet counts are
+	 * extrapolated from the sample to the total match count and the facets are
+	 * flagged as estimated.
+	 * 
+	 * @param filterContext
+	 *        context that holds the filter queries
+	 * @param totalLimit
+	 *        the amount of documents per shard that should be aggregated
+	 * @param estimateCounts
+	 *        true to extrapolate the counts of the sampled facets
+	 * @return
+	 *         list of filtered and/or unfiltered aggregation builders depending
+	 *         on the existance of post filters
+	 */
+	public List<AggregationBuilder> buildAggregators(FilterContext filterContext, int totalLimit, boolean estimateCounts) {
 		List<AggregationBuilder> aggregators = new ArrayList<>();
 
 		// if there are no post filters, add aggregations without filters
@@ -299,6 +330,9 @@ public class FacetConfigurationApplyer {
 
 		if (totalLimit > 0) {
 			SamplerAggregationBuilder samplerAgg = AggregationBuilders.sampler(SAMPLED_AGG_NAME).shardSize(totalLimit);
+			if (estimateCounts) {
+				samplerAgg.setMetadata(Collections.singletonMap(ESTIMATE_COUNTS_META_KEY, true));
+			}
 			aggregators.forEach(samplerAgg::subAggregation);
 			aggregators.clear();
 			aggregators.add(samplerAgg);
@@ -339,22 +373,161 @@ public class FacetConfigurationApplyer {
 		return facetCreators;
 	}
 
-	public List<Facet> getFacets(Aggregations aggregations, long matchCount,
-			FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
-		List<Facet> facets;
+	/**
+	 * Builds the aggregation to page through all values of a single facet. The
+	 * same filter semantics as for the normal facet aggregations are applied:
+	 * the post filters of all other facets are considered, but not the
+	 * facet's own filter.
+	 * 
+	 * @param filterContext
+	 *        context that holds the filter queries
+	 * @param facetName
+	 *        the name of the facet
+	 * @param cursor
+	 *        the cursor returned with the previous page or null for the first
+	 *        page
+	 * @param size
+	 *        the amount of values per page
+	 * @return the aggregation or empty if there is no facet with that name or
+	 *         if its values can't be paged
+	 */
+	public Optional<AggregationBuilder> buildFacetValuesAggregation(FilterContext filterContext, String facetName, String cursor, int size) {
+		FacetCreatorClassifier classifier = getValuePagingClassifier(facetName);
+		NestedFacetCreator facetCreator = getValuePagingFacetCreator(classifier);
+		if (facetCreator == null) return Optional.empty();
+
+		AggregationBuilder valuesAgg = facetCreator.buildValuesPageAggregation(facetName, filterContext, cursor, size);
+		if (classifier.onVariantLevel) {
+			valuesAgg = AggregationBuilders.nested(VariantFacetCreator.VARIANTS_AGG, FieldConstants.VARIANTS).subAggregation(valuesAgg);
+		}
 
-		if (aggregations.get(SAMPLED_AGG_NAME) != null) {
-			aggregations = ((Sampler) aggregations.get(SAMPLED_AGG_NAME)).getAggregations();
+		Map<String, QueryBuilder> postFilters = filterContext.getPostFilterQueries();
+		QueryBuilder postFilter = postFilters.containsKey(facetName) ? FilterContext.joinAllButOne(facetName, postFilters).orElse(null) : filterContext.getJoinedPostFilters();
+		if (postFilter != null) {
+			valuesAgg = AggregationBuilders.filter(FILTERED_AGG_NAME, postFilter).subAggregation(valuesAgg);
 		}
+		return Optional.of(valuesAgg);
+	}
 
-		if (filterContext.getPostFilterQueries().isEmpty()) {
-			facets = facetsFromUnfilteredAggregations(aggregations, filterContext, linkBuilder);
+	/**
+	 * Creates the facet with a single page of values from the result of the
+	 * aggregation built with
+	 * {@link #buildFacetValuesAggregation(FilterContext, String, String, int)}.
+	 * If there are more values, the facet has the cursor to the next page as
+	 * 'nextCursor' meta data.
+	 * 
+	 * @param aggregations
+	 *        the aggregation result
+	 * @param facetName
+	 *        the name of the facet
+	 * @param size
+	 *        the requested amount of values per page
+	 * @param filterContext
+	 *        context that holds the filter queries
+	 * @param linkBuilder
+	 *        link builder
+	 * @return the facet or empty if its values can't be paged
+	 */
+	public Optional<Facet> getFacetValues(Aggregations aggregations, String facetName, int size, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
+		FacetCreatorClassifier classifier = getValuePagingClassifier(facetName);
+		NestedFacetCreator facetCreator = getValuePagingFacetCreator(classifier);
+		if (facetCreator == null || aggregations == null) return Optional.empty();
+
+		Filter filteredAggregation = aggregations.get(FILTERED_AGG_NAME);
+		if (filteredAggregation != null) {
+			aggregations = filteredAggregation.getAggregations();
 		}
-		else {
-			facets = facetsFromFilteredAggregations(aggregations, filterContext, linkBuilder);
+		if (classifier.onVariantLevel) {
+			aggregations = ((Nested) aggregations.get(VariantFacetCreator.VARIANTS_AGG)).getAggregations();
 		}
+		return Optional.of(facetCreator.createValuesPage(aggregations, facetName, filterContext, linkBuilder, size));
+	}
 
-		filterFacets(facets, filterContext, matchCount);
+	/**
+	 * Classify the facet creator for the given facet. Facets of fields that
+	 * exist on both levels are paged on master level.
+	 */
+	private FacetCreatorClassifier getValuePagingClassifier(String facetName) {
+		Optional<Field> facetField = fieldConfigIndex.getField(facetName);
+		if (!facetField.isPresent()) return null;
+
+		FacetConfig facetConfig = facetsBySourceField.get(facetName);
+		String facetType = facetConfig != null ? facetConfig.getType() : null;
+		if (facetType == null) {
+			facetType = getDefaultFacetType(facetField.get().getType()).name();
+		}
+		return new FacetCreatorClassifier(!facetField.get().isMasterLevel(), facetType, facetConfig != null && facetConfig.isMandatoryFacet());
+	}
+
+	private NestedFacetCreator getValuePagingFacetCreator(FacetCreatorClassifier classifier) {
+		if (classifier == null) return null;
+		FacetCreator facetCreator = facetCreatorsByTypes.get(classifier);
+		Collection<FacetCreator> candidates = facetCreator instanceof VariantFacetCreator
+				? ((VariantFacetCreator) facetCreator).getInnerCreators()
+				: Collections.singleton(facetCreator);
+		for (FacetCreator candidate : candidates) {
+			if (candidate instanceof NestedFacetCreator && ((NestedFacetCreator) candidate).isValuePagingSupported()) {
+				return (NestedFacetCreator) candidate;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the facets from the aggregation result in two phases: first only
+	 * the facet candidates are collected from the aggregation result and sorted
+	 * by their configured order. Afterwards the facets are created in that
+	 * order until the max-facets limit is reached with facets that pass the
+	 * facet filters. That way each displayed facet is created once with its
+	 * links and the facets beyond the limit are not created at all. Facets with
+	 * the same order are picked by the document count of their aggregation
+	 * bucket, which approximates their facet coverage.
+	 */
+	public List<Facet> getFacets(Aggregations aggregations, long matchCount,
+			FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
+		return getFacets(aggregations, matchCount, filterContext, linkBuilder, FacetMetrics.NOOP);
+	}
+
+	/**
+	 * Same as {@link #getFacets(Aggregations, long, FilterContext, DefaultLinkBuilder)}
+	 * but reports the build time and bucket count of each facet to the given
+	 * recorder.
+	 */
+	public List<Facet> getFacets(Aggregations aggregations, long matchCount,
+			FilterContext filterContext, DefaultLinkBuilder linkBuilder, FacetMetrics.Recorder recorder) {
+		double countFactor = 1;
+		Sampler sampler = aggregations.get(SAMPLED_AGG_NAME);
+		if (sampler != null) {
+			aggregations = sampler.getAggregations();
+			if (sampler.getMetadata() != null && Boolean.TRUE.equals(sampler.getMetadata().get(ESTIMATE_COUNTS_META_KEY))
+					&& sampler.getDocCount() > 0 && sampler.getDocCount() < matchCount) {
+				countFactor = (double) matchCount / sampler.getDocCount();
+			}
+		}
+		FacetCountEstimation countEstimation = new FacetCountEstimation(countFactor, matchCount);
+
+		List<MergedCandidate> candidates = getFacetCandidates(aggregations, filterContext);
+		Map<String, Facet> visibleFacets = new HashMap<>();
+
+		// the facets that are excluded from the limit extend it if they are
+		// displayed, so they have to be created anyways
+		List<MergedCandidate> excludedCandidates = candidates.stream().filter(c -> c.isExcludedFromLimit).toList();
+		visibleFacets.putAll(createVisibleFacets(excludedCandidates, aggregations, matchCount, filterContext, linkBuilder, countEstimation, recorder));
+		int actualMaxFacets = maxFacets + visibleFacets.size();
+
+		List<Facet> facets = new ArrayList<>();
+		for (int i = 0; i < candidates.size() && facets.size() < actualMaxFacets; i++) {
+			if (!candidates.get(i).isCreated) {
+				// create as many facets at once as necessary to fill the
+				// remaining slots, if all of them are visible
+				List<MergedCandidate> batch = candidates.subList(i, Math.min(candidates.size(), i + actualMaxFacets - facets.size())).stream()
+						.filter(c -> !c.isCreated)
+						.toList();
+				visibleFacets.putAll(createVisibleFacets(batch, aggregations, matchCount, filterContext, linkBuilder, countEstimation, recorder));
+			}
+			Facet facet = visibleFacets.get(candidates.get(i).label);
+			if (facet != null) facets.add(facet);
+		}
 
 		// sort by order and facet coverage
 		facets.sort(new Comparator<Facet>() {
@@ -375,12 +548,115 @@ public class FacetConfigurationApplyer {
 			}
 
 		});
+		return facets;
+	}
+
+	/**
+	 * The facet candidates of all data fields with the same label, since their
+	 * facets are merged into one.
+	 */
+	private static class MergedCandidate {
+
+		final String		label;
+		final int			order;
+		final Set<String>	fieldNames	= new HashSet<>();
+		long				coverage;
+		boolean				isFiltered;
+		boolean				isExcludedFromLimit;
+		boolean				isCreated;
+
+		MergedCandidate(FacetCandidate candidate) {
+			label = candidate.getLabel();
+			order = candidate.getOrder();
+		}
+	}
+
+	/**
+	 * Collect the facet candidates of all data fields and sort them the same
+	 * way as the final facets, but with the approximated facet coverage.
+	 */
+	private List<MergedCandidate> getFacetCandidates(Aggregations aggregations, FilterContext filterContext) {
+		Map<String, MergedCandidate> candidatesByLabel = new HashMap<>();
+		forEachFacetSource(aggregations, filterContext, (facetCreators, sourceAggregations) -> {
+			for (FacetCreator fc : facetCreators) {
+				for (FacetCandidate candidate : fc.getFacetCandidates(sourceAggregations, filterContext)) {
+					MergedCandidate mergedCandidate = candidatesByLabel.computeIfAbsent(candidate.getLabel(), label -> new MergedCandidate(candidate));
+					mergedCandidate.fieldNames.add(candidate.getFieldName());
+					mergedCandidate.coverage = Math.max(mergedCandidate.coverage, candidate.getCoverage());
+					mergedCandidate.isFiltered |= filterContext.getInternalFilters().containsKey(candidate.getFieldName());
+
+					FacetConfig facetConfig = facetsBySourceField.get(candidate.getFieldName());
+					mergedCandidate.isExcludedFromLimit |= facetConfig != null && facetConfig.isExcludeFromFacetLimit();
+				}
+			}
+		});
+
+		List<MergedCandidate> candidates = new ArrayList<>(candidatesByLabel.values());
+		candidates.sort(Comparator.<MergedCandidate> comparingInt(c -> c.order)
+				.thenComparing(c -> !c.isFiltered)
+				.thenComparing(Comparator.<MergedCandidate> comparingLong(c -> c.coverage).reversed()));
+		return candidates;
+	}
+
+	/**
+	 * Create the facets of the given candidates and apply the facet filters.
+	 * 
+	 * @return the remaining facets by their label
+	 */
+	private Map<String, Facet> createVisibleFacets(List<MergedCandidate> candidates, Aggregations aggregations, long matchCount, FilterContext filterContext,
+			DefaultLinkBuilder linkBuilder, FacetCountEstimation countEstimation, FacetMetrics.Recorder recorder) {
+		if (candidates.isEmpty()) return Collections.emptyMap();
+		Set<String> fieldNames = new HashSet<>();
+		for (MergedCandidate candidate : candidates) {
+			fieldNames.addAll(candidate.fieldNames);
+			candidate.isCreated = true;
+		}
+
+		List<Facet> facets = createFacets(aggregations, filterContext, linkBuilder, fieldNames::contains, countEstimation, recorder);
+		filterFacets(facets, filterContext, matchCount);
+
+		Map<String, Facet> facetsByLabel = new HashMap<>();
+		for (Facet facet : facets) {
+			facetsByLabel.put(getLabel(facet), facet);
+		}
+		return facetsByLabel;
+	}
+
+	private List<Facet> createFacets(Aggregations aggregations, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter,
+			FacetCountEstimation countEstimation, FacetMetrics.Recorder recorder) {
+		Map<String, Facet> facetsByLabel = new HashMap<>();
+		forEachFacetSource(aggregations, filterContext,
+				(facetCreators, sourceAggregations) -> collectFacets(facetsByLabel, facetCreators, sourceAggregations, filterContext, linkBuilder, facetNameFilter, recorder));
+		List<Facet> facets = new ArrayList<>(facetsByLabel.values());
+
+		// extrapolate before filtering, since the facet filters consider the counts
+		if (countEstimation.isEstimated()) {
+			facets.forEach(countEstimation::extrapolate);
+		}
+		return facets;
+	}
 
-		int actualMaxFacets = maxFacets + (int) facets.stream()
-				.filter(f -> (boolean) f.meta.getOrDefault(IS_EXCLUDE_FROM_FACET_LIMIT, false))
-				.count();
+	/**
+	 * Pass each aggregation result that contains facets to the given consumer,
+	 * together with the facet creators that are responsible for it.
+	 */
+	private void forEachFacetSource(Aggregations aggregations, FilterContext filterContext, BiConsumer<List<FacetCreator>, Aggregations> consumer) {
+		if (filterContext.getPostFilterQueries().isEmpty()) {
+			consumer.accept(facetCreators, aggregations);
+			return;
+		}
+
+		Filter filteredAggregation = aggregations.get(FILTERED_AGG_NAME);
+		if (filteredAggregation != null) {
+			consumer.accept(facetCreators, filteredAggregation.getAggregations());
+		}
 
-		return facets.size() > actualMaxFacets ? facets.subList(0, actualMaxFacets) : facets;
+		for (String postFilterName : filterContext.getPostFilterQueries().keySet()) {
+			Filter exclusiveAgg = aggregations.get(EXCLUSIVE_AGG_PREFIX + postFilterName);
+			if (exclusiveAgg != null && exclusiveAgg.getDocCount() > 0L) {
+				consumer.accept(getResponsibleFacetCreators(filterContext.getInternalFilters().get(postFilterName)), exclusiveAgg.getAggregations());
+			}
+		}
 	}
 
 	private void filterFacets(List<Facet> facets, FilterContext filterContext, long matchCount) {
@@ -412,37 +688,12 @@ public class FacetConfigurationApplyer {
 		}
 	}
 
-	private List<Facet> facetsFromFilteredAggregations(Aggregations aggregations, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
-		Map<String, Facet> facets = new HashMap<>();
-
-		Filter filteredAggregation = aggregations.get(FILTERED_AGG_NAME);
-		if (filteredAggregation != null) {
-			collectFacets(facets, facetCreators, filteredAggregation.getAggregations(), filterContext, linkBuilder);
-		}
-
-		for (String postFilterName : filterContext.getPostFilterQueries().keySet()) {
-			Filter exclusiveAgg = aggregations.get(EXCLUSIVE_AGG_PREFIX + postFilterName);
-			if (exclusiveAgg != null && exclusiveAgg.getDocCount() > 0L) {
-				List<FacetCreator> matchingFacetCreators = getResponsibleFacetCreators(filterContext.getInternalFilters().get(postFilterName));
-				collectFacets(facets, matchingFacetCreators, exclusiveAgg.getAggregations(), filterContext, linkBuilder);
-			}
-		}
-
-		return new ArrayList<>(facets.values());
-	}
-
-	private List<Facet> facetsFromUnfilteredAggregations(Aggregations aggregations, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
-		Map<String, Facet> facets = new HashMap<>();
-		collectFacets(facets, facetCreators, aggregations, filterContext, linkBuilder);
-		return new ArrayList<>(facets.values());
-	}
-
 	private void collectFacets(Map<String, Facet> facets, List<FacetCreator> facetCreators, Aggregations aggregations, FilterContext filterContext,
-			DefaultLinkBuilder linkBuilder) {
+			DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter, FacetMetrics.Recorder recorder) {
 		Set<String> appliedFilters = filterContext.getInternalFilters().keySet();
 
 		for (FacetCreator fc : facetCreators) {
-			Collection<Facet> createdFacets = fc.createFacets(aggregations, filterContext, linkBuilder);
+			Collection<Facet> createdFacets = fc.createFacets(aggregations, filterContext, linkBuilder, facetNameFilter, recorder);
 
 			for (Facet f : createdFacets) {
 				Facet previousFacet = facets.get(getLabel(f));
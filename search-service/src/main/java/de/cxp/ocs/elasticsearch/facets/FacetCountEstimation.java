@@ -0,0 +1,46 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import de.cxp.ocs.model.result.Facet;
+import de.cxp.ocs.model.result.FacetEntry;
+import de.cxp.ocs.model.result.HierarchialFacetEntry;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Extrapolates the document counts of facets that were aggregated on a sample
+ * of the matched documents.
+ */
+@RequiredArgsConstructor
+class FacetCountEstimation {
+
+	/**
+	 * ratio of all matched documents to the sampled documents
+	 */
+	private final double countFactor;
+
+	private final long matchCount;
+
+	public boolean isEstimated() {
+		return countFactor != 1;
+	}
+
+	public void extrapolate(Facet facet) {
+		facet.absoluteFacetCoverage = extrapolate(facet.absoluteFacetCoverage);
+		for (FacetEntry entry : facet.entries) {
+			extrapolate(entry);
+		}
+		facet.setEstimated(true);
+	}
+
+	private void extrapolate(FacetEntry entry) {
+		entry.docCount = extrapolate(entry.docCount);
+		if (entry instanceof HierarchialFacetEntry) {
+			for (FacetEntry child : ((HierarchialFacetEntry) entry).getChildren()) {
+				extrapolate(child);
+			}
+		}
+	}
+
+	private long extrapolate(long sampledCount) {
+		return Math.min(matchCount, Math.round(sampledCount * countFactor));
+	}
+}
@@ -1,8 +1,11 @@
 package de.cxp.ocs.elasticsearch.facets;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.Aggregations;
@@ -40,6 +43,20 @@ public interface FacetCreator {
 	 */
 	AggregationBuilder buildExcludeFilteredAggregation(FilterContext filterContext, Set<String> excludeNames);
 
+	/**
+	 * Get the facets that can be derived from the aggregation result without
+	 * creating them. This is used to pick the facets that should be displayed,
+	 * so only those have to be created.
+	 * 
+	 * @param aggResult
+	 *        ES aggregagtion result
+	 * @param filterContext
+	 *        the filter context
+	 * @return a candidate for each facet that can be derived from the
+	 *         aggregation result
+	 */
+	Collection<FacetCandidate> getFacetCandidates(Aggregations aggResult, FilterContext filterContext);
+
 	/**
 	 * create facets from aggregation result.
 	 * 
@@ -53,6 +70,65 @@ public interface FacetCreator {
 	 */
 	Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder);
 
+	/**
+	 * create facets from aggregation result, but only for the data fields that
+	 * are accepted by the given filter. Implementations should skip the other
+	 * fields before their facets are created, since per default all facets are
+	 * created and filtered afterwards.
+	 * 
+	 * @param aggResult
+	 *        ES aggregagtion result
+	 * @param filterContext
+	 *        the filter context
+	 * @param linkBuilder
+	 *        a link builder to create facet-entry-links
+	 * @param facetNameFilter
+	 *        accepts the names of the data fields for which facets should be
+	 *        created
+	 * @return a list of facets for the accepted fields
+	 */
+	default Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter) {
+		List<Facet> facets = new ArrayList<>();
+		for (Facet facet : createFacets(aggResult, filterContext, linkBuilder)) {
+			if (facetNameFilter.test(facet.getFieldName())) facets.add(facet);
+		}
+		return facets;
+	}
+
+	/**
+	 * Same as
+	 * {@link #createFacets(Aggregations, FilterContext, DefaultLinkBuilder, Predicate)},
+	 * but the build time and the bucket count of each created facet is
+	 * reported to the given recorder. Per default the time of the whole call
+	 * is split evenly to the created facets and the amount of facet entries is
+	 * reported as bucket count.
+	 * 
+	 * @param aggResult
+	 *        ES aggregagtion result
+	 * @param filterContext
+	 *        the filter context
+	 * @param linkBuilder
+	 *        a link builder to create facet-entry-links
+	 * @param facetNameFilter
+	 *        accepts the names of the data fields for which facets should be
+	 *        created
+	 * @param recorder
+	 *        receives the measurements of the created facets
+	 * @return a list of facets for the accepted fields
+	 */
+	default Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter,
+			FacetMetrics.Recorder recorder) {
+		long start = System.nanoTime();
+		Collection<Facet> facets = createFacets(aggResult, filterContext, linkBuilder, facetNameFilter);
+		if (!facets.isEmpty()) {
+			long nanosPerFacet = (System.nanoTime() - start) / facets.size();
+			for (Facet facet : facets) {
+				recorder.record(facet.getType(), facet.getFieldName(), facet.getEntries().size(), nanosPerFacet);
+			}
+		}
+		return facets;
+	}
+
 	/**
 	 * Try to merge facets with same label. If not possible, return
 	 * Optional.empty.
@@ -66,6 +66,7 @@ class FacetCreatorInitializer {
 	private final Map<FacetCreatorClassifier, CustomFacetCreator>	customFacetCreators	= new HashMap<>();
 	private final Set<Field>										customFacetFields	= new HashSet<>();
 	private final Locale											locale;
+	private CategoryHierarchy										categoryHierarchy;
 
 	public FacetCreatorInitializer(Map<String, Supplier<? extends CustomFacetCreator>> customFacetCreatorSupplier, SearchConfiguration config, Function<String, FacetConfig> defaultTermFacetConfigProvider, Function<String, FacetConfig> defaultNumberFacetConfigProvider) {
 		this.customFacetCreatorSupplier = customFacetCreatorSupplier;
@@ -88,6 +89,17 @@ class FacetCreatorInitializer {
 		this.locale = locale;
 	}
 
+	/**
+	 * @param categoryHierarchy
+	 *        prebuilt category hierarchy for the category facets or null if
+	 *        not available
+	 * @return this initializer
+	 */
+	FacetCreatorInitializer setCategoryHierarchy(CategoryHierarchy categoryHierarchy) {
+		this.categoryHierarchy = categoryHierarchy;
+		return this;
+	}
+
 	void addFacet(Field field, FacetConfig facetConfig) {
 		if ("ignore".equalsIgnoreCase(facetConfig.getType())) {
 			ignoredFields.add(field);
@@ -169,6 +181,7 @@ class FacetCreatorInitializer {
 		// build all generic facet creators passing the specific configs to it
 		CategoryFacetCreator categoryFacetCreator = new CategoryFacetCreator(getConfigs(hierarchicalFacet), null);
 		categoryFacetCreator.setGeneralExcludedFields(getIgnoredFieldsOfType(FieldType.CATEGORY));
+		categoryFacetCreator.setCategoryHierarchy(categoryHierarchy);
 		facetCreatorsByTypes.put(hierarchicalFacet, categoryFacetCreator);
 
 		NestedFacetCreator masterTermFacetCreator = new TermFacetCreator(getConfigs(masterTermFacet), defaultTermFacetConfigProvider, locale)
@@ -313,7 +326,7 @@ class FacetCreatorInitializer {
 			case RANGE:
 				return new RangeFacetCreator(explicitConfigs, null).setExplicitFacetCreator(true);
 			case HIERARCHICAL:
-				return new CategoryFacetCreator(explicitConfigs, null, true);
+				return new CategoryFacetCreator(explicitConfigs, null, true).setCategoryHierarchy(categoryHierarchy);
 			default:
 				log.warn("Not implemented: there is no support for explicit facet creation on type {} for facets ", facetType);
 				return null;
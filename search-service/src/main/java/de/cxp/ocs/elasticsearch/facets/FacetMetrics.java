@@ -0,0 +1,158 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import de.cxp.ocs.config.FacetConfiguration;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Measures the time it takes to build each facet and the amount of buckets
+ * that were aggregated for it. Both are recorded with the facet type and the
+ * field name as tags ('facetBuild' timer and 'facetBuckets' summary). To
+ * limit the tag cardinality, only a configured amount of distinct field names
+ * is used as tag, all further fields are recorded as '_other'.
+ */
+public class FacetMetrics {
+
+	static final String OTHER_FIELDS_TAG = "_other";
+
+	/**
+	 * Recorder that does nothing.
+	 */
+	public static final Recorder NOOP = (facetType, fieldName, bucketCount, buildNanos) -> {};
+
+	private final MeterRegistry	registry;
+	private final String		indexName;
+	private final int			maxTaggedFields;
+
+	private final Set<String>						taggedFields	= ConcurrentHashMap.newKeySet();
+	private final Map<String, Timer>				buildTimers		= new ConcurrentHashMap<>();
+	private final Map<String, DistributionSummary>	bucketSummaries	= new ConcurrentHashMap<>();
+
+	public FacetMetrics(FacetConfiguration facetConfiguration, MeterRegistry registry, String indexName) {
+		this.registry = registry;
+		this.indexName = indexName;
+		maxTaggedFields = facetConfiguration.getMetricsMaxFields();
+	}
+
+	/**
+	 * Receives the measurements of the single facets.
+	 */
+	@FunctionalInterface
+	public interface Recorder {
+
+		/**
+		 * @param facetType
+		 *        type of the facet
+		 * @param fieldName
+		 *        name of the facet field
+		 * @param bucketCount
+		 *        amount of aggregated buckets for that facet
+		 * @param buildNanos
+		 *        time it took to build the facet
+		 */
+		void record(String facetType, String fieldName, int bucketCount, long buildNanos);
+	}
+
+	/**
+	 * Create a recorder for a single request.
+	 *
+	 * @param withTrace
+	 *        if true, the measurements are also collected to report the
+	 *        slowest facets of that request
+	 * @return a new recorder
+	 */
+	public RequestRecorder newRecorder(boolean withTrace) {
+		return new RequestRecorder(withTrace);
+	}
+
+	private String getFieldTag(String fieldName) {
+		if (taggedFields.contains(fieldName)) return fieldName;
+		// not strictly limited under concurrency, but close enough to guard
+		// the cardinality
+		if (maxTaggedFields > 0 && taggedFields.size() < maxTaggedFields) {
+			taggedFields.add(fieldName);
+			return fieldName;
+		}
+		return OTHER_FIELDS_TAG;
+	}
+
+	public class RequestRecorder implements Recorder {
+
+		private final Map<String, FacetTrace> traces;
+
+		private RequestRecorder(boolean withTrace) {
+			traces = withTrace ? new HashMap<>() : null;
+		}
+
+		@Override
+		public void record(String facetType, String fieldName, int bucketCount, long buildNanos) {
+			String type = facetType == null ? "unknown" : facetType.toLowerCase(Locale.ROOT);
+			String fieldTag = getFieldTag(fieldName);
+			String meterKey = type + ":" + fieldTag;
+			buildTimers.computeIfAbsent(meterKey, k -> Timer.builder("facetBuild")
+					.tag("indexName", indexName)
+					.tag("type", type)
+					.tag("field", fieldTag)
+					.register(registry))
+					.record(buildNanos, TimeUnit.NANOSECONDS);
+			bucketSummaries.computeIfAbsent(meterKey, k -> DistributionSummary.builder("facetBuckets")
+					.tag("indexName", indexName)
+					.tag("type", type)
+					.tag("field", fieldTag)
+					.register(registry))
+					.record(bucketCount);
+
+			if (traces != null) {
+				// a facet may be built several times, e.g. first without and
+				// then with links
+				FacetTrace trace = traces.computeIfAbsent(fieldName, f -> new FacetTrace(f, type));
+				trace.buildNanos += buildNanos;
+				trace.bucketCount = Math.max(trace.bucketCount, bucketCount);
+			}
+		}
+
+		/**
+		 * Get the slowest facets of the request, if the trace was requested.
+		 *
+		 * @param limit
+		 *        maximum amount of facets
+		 * @return list of facet traces with field, type, buckets and time in
+		 *         milliseconds, the slowest first
+		 */
+		public List<Map<String, Object>> getSlowestFacets(int limit) {
+			if (traces == null) return Collections.emptyList();
+			return traces.values().stream()
+					.sorted(Comparator.comparingLong((FacetTrace t) -> t.buildNanos).reversed())
+					.limit(limit)
+					.map(FacetTrace::toMap)
+					.toList();
+		}
+	}
+
+	private static class FacetTrace {
+
+		final String	fieldName;
+		final String	type;
+		long			buildNanos;
+		int				bucketCount;
+
+		FacetTrace(String fieldName, String type) {
+			this.fieldName = fieldName;
+			this.type = type;
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> trace = new LinkedHashMap<>();
+			trace.put("field", fieldName);
+			trace.put("type", type);
+			trace.put("buckets", bucketCount);
+			trace.put("ms", buildNanos / 1_000_000d);
+			return trace;
+		}
+	}
+}
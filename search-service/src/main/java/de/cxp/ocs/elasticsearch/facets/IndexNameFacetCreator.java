@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -40,6 +41,24 @@ public class IndexNameFacetCreator implements FacetCreator {
 		return buildAggregation(filterContext);
 	}
 
+	@Override
+	public Collection<FacetCandidate> getFacetCandidates(Aggregations aggResult, FilterContext filterContext) {
+		Terms indexTermAggResult = aggResult.get("_indexes");
+		if (indexTermAggResult == null) return Collections.emptyList();
+
+		long sum = 0;
+		for (Terms.Bucket bucket : indexTermAggResult.getBuckets()) {
+			sum += bucket.getDocCount();
+		}
+		return Collections.singletonList(new FacetCandidate(indexFacetConfig, sum));
+	}
+
+	@Override
+	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter) {
+		if (!facetNameFilter.test(indexFacetConfig.getSourceField())) return Collections.emptyList();
+		return createFacets(aggResult, filterContext, linkBuilder);
+	}
+
 	@Override
 	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
 		Terms indexTermAggResult = aggResult.get("_indexes");
@@ -77,6 +77,15 @@ public class IntervalFacetCreator extends NestedFacetCreator {
 				.minDocCount(1);
 	}
 
+	@Override
+	protected long getFacetCoverage(Terms.Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter) {
+		if (facetFilter != null && !facetFilter.isNegated() && facetFilter instanceof NumberResultFilter
+				&& !facetConfig.isMultiSelect() && !facetConfig.isShowUnselectedOptions()) {
+			return getDocCount(facetNameBucket);
+		}
+		return super.getFacetCoverage(facetNameBucket, facetConfig, facetFilter);
+	}
+
 	@Override
 	protected Optional<Facet> createFacet(Terms.Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter,
 			DefaultLinkBuilder linkBuilder) {
@@ -1,8 +1,10 @@
 package de.cxp.ocs.elasticsearch.facets;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -12,6 +14,12 @@ import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilder.BucketCardinality;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.filter.ParsedFilter;
 import org.elasticsearch.search.aggregations.bucket.nested.Nested;
@@ -19,9 +27,11 @@ import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms.Bucket;
 
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
+import de.cxp.ocs.config.FacetType;
 import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
 import de.cxp.ocs.elasticsearch.query.filter.FilterContext;
 import de.cxp.ocs.model.result.Facet;
+import de.cxp.ocs.model.result.FacetEntry;
 import de.cxp.ocs.util.DefaultLinkBuilder;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -37,6 +47,9 @@ public abstract class NestedFacetCreator implements FacetCreator {
 	static final String	FACET_VALUES_AGG	= "_values";
 	static final String	FACET_IDS_AGG		= "_ids";
 
+	static final String	VALUES_PAGE_SOURCE		= "value";
+	static final String	NEXT_CURSOR_META_KEY	= "nextCursor";
+
 	@Setter
 	private int maxFacets = 2;
 
@@ -77,6 +90,14 @@ public abstract class NestedFacetCreator implements FacetCreator {
 
 	protected abstract Optional<Facet> createFacet(Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter, DefaultLinkBuilder linkBuilder);
 
+	/**
+	 * @return true if the values of a single facet can be paged with
+	 *         {@link #buildValuesPageAggregation(String, FilterContext, String, int)}
+	 */
+	protected boolean isValuePagingSupported() {
+		return false;
+	}
+
 	@Override
 	public AggregationBuilder buildAggregation(FilterContext filterContext) {
 		return buildFilteredAggregation(filterContext, Collections.emptySet(), Collections.emptySet());
@@ -223,12 +244,23 @@ public abstract class NestedFacetCreator implements FacetCreator {
 
 	@Override
 	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
+		return createFacets(aggResult, filterContext, linkBuilder, facetName -> true);
+	}
+
+	@Override
+	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter) {
+		return createFacets(aggResult, filterContext, linkBuilder, facetNameFilter, FacetMetrics.NOOP);
+	}
+
+	@Override
+	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter,
+			FacetMetrics.Recorder recorder) {
 		Nested nestedAggResult = ((Nested) aggResult.get(uniqueAggregationName));
 		
 		List<Facet> extractedFacets = new ArrayList<>();
 		for (Aggregation filtersAgg : nestedAggResult.getAggregations()) {
 			Terms facetNamesAggregation = ((ParsedFilter) filtersAgg).getAggregations().get(FACET_NAMES_AGG);
-			extractedFacets.addAll(extractFacets(facetNamesAggregation, filterContext, linkBuilder));
+			extractedFacets.addAll(extractFacets(facetNamesAggregation, filterContext, linkBuilder, facetNameFilter, recorder));
 		}
 		
 		// ParsedFilter filtersAgg = nestedAggResult.getAggregations().get(FILTERED_AGG);
@@ -239,20 +271,209 @@ public abstract class NestedFacetCreator implements FacetCreator {
 		return extractedFacets;
 	}
 
-	protected List<Facet> extractFacets(Terms facetNames, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
+	@Override
+	public Collection<FacetCandidate> getFacetCandidates(Aggregations aggResult, FilterContext filterContext) {
+		Nested nestedAggResult = ((Nested) aggResult.get(uniqueAggregationName));
+
+		List<FacetCandidate> candidates = new ArrayList<>();
+		for (Aggregation filtersAgg : nestedAggResult.getAggregations()) {
+			Terms facetNamesAggregation = ((ParsedFilter) filtersAgg).getAggregations().get(FACET_NAMES_AGG);
+			for (Terms.Bucket facetNameBucket : facetNamesAggregation.getBuckets()) {
+				String facetName = facetNameBucket.getKeyAsString();
+				FacetConfig facetConfig = getFacetConfig(facetName);
+				InternalResultFilter facetFilter = filterContext.getInternalFilters().get(facetName);
+				candidates.add(new FacetCandidate(facetConfig, getFacetCoverage(facetNameBucket, facetConfig, facetFilter)));
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Get the absolute facet coverage of the facet that
+	 * {@link #createFacet(Bucket, FacetConfig, InternalResultFilter, DefaultLinkBuilder)}
+	 * would create from the given bucket, without creating it. Per default
+	 * that's the sum of the (corrected) document counts of the value buckets.
+	 * 
+	 * @param facetNameBucket
+	 *        the aggregation bucket of the facet
+	 * @param facetConfig
+	 *        the facet config
+	 * @param facetFilter
+	 *        the filter on that facet or null
+	 * @return the absolute facet coverage
+	 */
+	protected long getFacetCoverage(Terms.Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter) {
+		for (Aggregation valuesAgg : facetNameBucket.getAggregations()) {
+			if (valuesAgg instanceof MultiBucketsAggregation) {
+				long coverage = 0;
+				for (MultiBucketsAggregation.Bucket valueBucket : ((MultiBucketsAggregation) valuesAgg).getBuckets()) {
+					coverage += nestedFacetCorrector != null && correctedNestedDocumentCount()
+							? nestedFacetCorrector.getCorrectedDocumentCount(valueBucket)
+							: valueBucket.getDocCount();
+				}
+				return coverage;
+			}
+		}
+		return facetNameBucket.getDocCount();
+	}
+
+	protected FacetConfig getFacetConfig(String facetName) {
+		FacetConfig facetConfig = facetConfigs.get(facetName);
+		return facetConfig != null ? facetConfig : defaultFacetConfigProvider.apply(facetName);
+	}
+
+	/**
+	 * Builds a composite aggregation that pages through all values of a single
+	 * facet in the order of the values. In contrast to the normal facet
+	 * aggregation it is not limited to a certain amount of values.
+	 * 
+	 * @param facetName
+	 *        name of the facet
+	 * @param filterContext
+	 *        context that holds the active filters
+	 * @param cursor
+	 *        the cursor of the previous page or null for the first page
+	 * @param size
+	 *        the amount of values per page
+	 * @return the aggregation builder
+	 */
+	AggregationBuilder buildValuesPageAggregation(String facetName, FilterContext filterContext, String cursor, int size) {
+		String nestedPathPrefix = "";
+		if (nestedFacetCorrector != null) nestedPathPrefix = nestedFacetCorrector.getNestedPathPrefix();
+		nestedPathPrefix += getNestedPath();
+
+		BoolQueryBuilder facetFilterQuery = QueryBuilders.boolQuery().must(QueryBuilders.termQuery(nestedPathPrefix + ".name", facetName));
+		InternalResultFilter facetFilter = filterContext == null ? null : filterContext.getInternalFilters().get(facetName);
+		if (facetFilter != null && getFacetConfig(facetName).isFilterSensitive()) {
+			facetFilterQuery.must(QueryBuilders.termsQuery(nestedPathPrefix + (facetFilter.isFilterOnId() ? ".id" : ".value"), facetFilter.getValues()));
+		}
+
+		List<CompositeValuesSourceBuilder<?>> valueSource = Collections.singletonList(new TermsValuesSourceBuilder(VALUES_PAGE_SOURCE).field(nestedPathPrefix + ".value"));
+		CompositeAggregationBuilder valuesAgg = AggregationBuilders.composite(FACET_VALUES_AGG, valueSource)
+				.size(size)
+				.aggregateAfter(decodeValuesPageCursor(cursor));
+		valuesAgg.subAggregation(AggregationBuilders.terms(FACET_IDS_AGG)
+				.field(nestedPathPrefix + ".id")
+				.size(1));
+		if (nestedFacetCorrector != null && correctedNestedDocumentCount()) nestedFacetCorrector.correctValueAggBuilder(valuesAgg);
+
+		return AggregationBuilders.nested(uniqueAggregationName, nestedPathPrefix)
+				.subAggregation(AggregationBuilders.filter(FILTERED_AGG, facetFilterQuery).subAggregation(valuesAgg));
+	}
+
+	/**
+	 * Creates a flat facet from the result of the aggregation built with
+	 * {@link #buildValuesPageAggregation(String, FilterContext, String, int)}.
+	 * If there might be more values, the cursor for the next page is set as
+	 * 'nextCursor' meta data.
+	 * 
+	 * @param aggResult
+	 *        aggregation result
+	 * @param facetName
+	 *        name of the facet
+	 * @param filterContext
+	 *        context that holds the active filters
+	 * @param linkBuilder
+	 *        link builder
+	 * @param size
+	 *        the requested amount of values per page
+	 * @return the facet with the values of the requested page
+	 */
+	Facet createValuesPage(Aggregations aggResult, String facetName, FilterContext filterContext, DefaultLinkBuilder linkBuilder, int size) {
+		FacetConfig facetConfig = getFacetConfig(facetName);
+		Facet facet = FacetFactory.create(facetConfig, FacetType.TERM);
+
+		Nested nestedAggResult = aggResult.get(uniqueAggregationName);
+		CompositeAggregation valuesAgg = ((Filter) nestedAggResult.getAggregations().get(FILTERED_AGG)).getAggregations().get(FACET_VALUES_AGG);
+		InternalResultFilter facetFilter = filterContext == null ? null : filterContext.getInternalFilters().get(facetName);
+		if (facetFilter != null && (facetFilter.isNegated() || !isMatchingFilterType(facetFilter))) facetFilter = null;
+		facet.setFiltered(facetFilter != null);
+
+		long absDocCount = 0;
+		for (CompositeAggregation.Bucket valueBucket : valuesAgg.getBuckets()) {
+			String value = String.valueOf(valueBucket.getKey().get(VALUES_PAGE_SOURCE));
+			Terms idsAgg = valueBucket.getAggregations().get(FACET_IDS_AGG);
+			String id = idsAgg == null || idsAgg.getBuckets().isEmpty() ? null : idsAgg.getBuckets().get(0).getKeyAsString();
+			long docCount = nestedFacetCorrector != null && correctedNestedDocumentCount()
+					? nestedFacetCorrector.getCorrectedDocumentCount(valueBucket)
+					: valueBucket.getDocCount();
+
+			facet.addEntry(createValuesPageEntry(value, id, docCount, facetConfig, facetFilter, linkBuilder));
+			absDocCount += docCount;
+		}
+		facet.setAbsoluteFacetCoverage(absDocCount);
+
+		if (valuesAgg.afterKey() != null && valuesAgg.getBuckets().size() >= size) {
+			facet.meta.put(NEXT_CURSOR_META_KEY, encodeValuesPageCursor(valuesAgg.afterKey()));
+		}
+		return facet;
+	}
+
+	/**
+	 * Create a single entry of a paged facet.
+	 * 
+	 * @param value
+	 *        the facet value
+	 * @param id
+	 *        the optional id of that value
+	 * @param docCount
+	 *        the document count of that value
+	 * @param facetConfig
+	 *        the according facet configuration
+	 * @param facetFilter
+	 *        the active filter of that facet or null
+	 * @param linkBuilder
+	 *        link builder
+	 * @return facet entry
+	 */
+	protected FacetEntry createValuesPageEntry(String value, String id, long docCount, FacetConfig facetConfig, InternalResultFilter facetFilter, DefaultLinkBuilder linkBuilder) {
+		String filterValue = facetFilter != null && facetFilter.isFilterOnId() && id != null ? id : value;
+		boolean isSelected = facetFilter != null && Arrays.asList(facetFilter.getValues()).contains(filterValue);
+		String link = isSelected ? linkBuilder.withoutFilterAsLink(facetConfig, filterValue) : linkBuilder.withFilterAsLink(facetConfig, filterValue);
+		return new FacetEntry(value, id, docCount, link, isSelected);
+	}
+
+	static String encodeValuesPageCursor(Map<String, Object> afterKey) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(afterKey.get(VALUES_PAGE_SOURCE)).getBytes(StandardCharsets.UTF_8));
+	}
+
+	static Map<String, Object> decodeValuesPageCursor(String cursor) {
+		if (cursor == null || cursor.isEmpty()) return null;
+		try {
+			return Collections.singletonMap(VALUES_PAGE_SOURCE, new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid cursor '" + cursor + "'", e);
+		}
+	}
+
+	protected List<Facet> extractFacets(Terms facetNames, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter) {
+		return extractFacets(facetNames, filterContext, linkBuilder, facetNameFilter, FacetMetrics.NOOP);
+	}
+
+	protected List<Facet> extractFacets(Terms facetNames, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter,
+			FacetMetrics.Recorder recorder) {
 		List<Facet> facets = new ArrayList<>();
 		for (Terms.Bucket facetNameBucket : facetNames.getBuckets()) {
 			String facetName = facetNameBucket.getKeyAsString();
+			if (!facetNameFilter.test(facetName)) continue;
 
-			FacetConfig facetConfig = facetConfigs.get(facetName);
-			if (facetConfig == null) facetConfig = defaultFacetConfigProvider.apply(facetName);
+			FacetConfig facetConfig = getFacetConfig(facetName);
 
 			InternalResultFilter facetFilter = filterContext.getInternalFilters().get(facetName);
 
-			createFacet(facetNameBucket, facetConfig, facetFilter, linkBuilder).ifPresent(facets::add);
+			long start = System.nanoTime();
+			Optional<Facet> facet = createFacet(facetNameBucket, facetConfig, facetFilter, linkBuilder);
+			recorder.record(facet.map(Facet::getType).orElse(facetConfig.getType()), facetName, getBucketCount(facetNameBucket), System.nanoTime() - start);
+			facet.ifPresent(facets::add);
 		}
 		return facets;
 	}
 
+	private int getBucketCount(Terms.Bucket facetNameBucket) {
+		Aggregation valuesAgg = facetNameBucket.getAggregations().get(FACET_VALUES_AGG);
+		return valuesAgg instanceof MultiBucketsAggregation ? ((MultiBucketsAggregation) valuesAgg).getBuckets().size() : 0;
+	}
+
 
 }
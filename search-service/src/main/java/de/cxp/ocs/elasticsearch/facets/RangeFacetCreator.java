@@ -79,6 +79,11 @@ public class RangeFacetCreator extends NestedFacetCreator {
 				.field(nestedPathPrefix + ".value");
 	}
 
+	@Override
+	protected long getFacetCoverage(Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter) {
+		return ((ParsedStats) facetNameBucket.getAggregations().get(AGGREGATION_NAME)).getCount();
+	}
+
 	@Override
 	protected Optional<Facet> createFacet(Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter, DefaultLinkBuilder linkBuilder) {
 		ParsedStats stats = facetNameBucket.getAggregations().get(AGGREGATION_NAME);
@@ -89,7 +94,7 @@ public class RangeFacetCreator extends NestedFacetCreator {
 			// work around floating-point imprecision that might lead to ugly values
 			BigDecimal lowerBound = new BigDecimal(stats.getMin()).setScale(2, RoundingMode.HALF_DOWN);
 			BigDecimal upperBound = new BigDecimal(stats.getMax()).setScale(2, RoundingMode.HALF_UP);
-			RangeFacetEntry rangeFacetEntry = new RangeFacetEntry(lowerBound.doubleValue(), upperBound.doubleValue(), stats.getCount(), linkBuilder.toString(), facetFilter != null);
+			RangeFacetEntry rangeFacetEntry = new RangeFacetEntry(lowerBound.doubleValue(), upperBound.doubleValue(), stats.getCount(), linkBuilder.currentLink(), facetFilter != null);
 			if (facetFilter != null && !facetFilter.isNegated() && facetFilter instanceof NumberResultFilter) {
 				rangeFacetEntry.setSelectedMin(((NumberResultFilter) facetFilter).getLowerBound());
 				rangeFacetEntry.setSelectedMax(((NumberResultFilter) facetFilter).getUpperBound());
@@ -1,7 +1,6 @@
 package de.cxp.ocs.elasticsearch.facets;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import org.elasticsearch.search.aggregations.AggregationBuilder;
@@ -11,9 +10,7 @@ import org.elasticsearch.search.aggregations.bucket.terms.Terms.Bucket;
 
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
 import de.cxp.ocs.config.FacetType;
-import de.cxp.ocs.config.Field;
 import de.cxp.ocs.config.FieldConstants;
-import de.cxp.ocs.config.IndexedField;
 import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
 import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
 import de.cxp.ocs.model.result.Facet;
@@ -31,7 +28,6 @@ public class TermFacetCreator extends NestedFacetCreator {
 	@Setter
 	private int									maxFacetValues	= 100;
 	private final Locale						locale;
-	private final Map<String, FacetEntrySorter>	facetSorters	= new ConcurrentHashMap<>();
 	private final boolean						isExplicitFacetCreator;
 
 	public TermFacetCreator(Map<String, FacetConfig> facetConfigs, Function<String, FacetConfig> defaultFacetConfigProvider, Locale l) {
@@ -64,6 +60,20 @@ public class TermFacetCreator extends NestedFacetCreator {
 		return internalResultFilter instanceof TermResultFilter;
 	}
 
+	@Override
+	protected boolean isValuePagingSupported() {
+		return true;
+	}
+
+	@Override
+	protected FacetEntry createValuesPageEntry(String value, String id, long docCount, FacetConfig facetConfig, InternalResultFilter facetFilter, DefaultLinkBuilder linkBuilder) {
+		String normalizedValue = value.toLowerCase(locale);
+		TermResultFilter termFilter = facetFilter instanceof TermResultFilter ? (TermResultFilter) facetFilter : null;
+		boolean isSelected = termFilter != null && Arrays.asList(termFilter.getValues()).contains(termFilter.isFilterOnId() ? id : normalizedValue);
+		String link = createFacetLink(termFilter, facetConfig, linkBuilder, normalizedValue, id, isSelected);
+		return new FacetEntry(value, id, docCount, link, isSelected);
+	}
+
 	@Override
 	protected AggregationBuilder getNestedValueAggregation(String nestedPathPrefix) {
 		return AggregationBuilders.terms(FACET_VALUES_AGG)
@@ -92,18 +102,11 @@ public class TermFacetCreator extends NestedFacetCreator {
 			fillFacet(facet, facetNameBucket, null, facetConfig, linkBuilder);
 		}
 
-		getFacetSorter(facetConfig, facetFilter == null ? null : facetFilter.getField()).sort(facet);
+		FacetEntrySorter.of(facetConfig.getValueOrder()).sort(facet);
 
 		return facet.entries.isEmpty() ? Optional.empty() : Optional.of(facet);
 	}
 
-	private FacetEntrySorter getFacetSorter(FacetConfig facetConfig, Field field) {
-		return facetSorters.computeIfAbsent(facetConfig.getSourceField(), fieldName -> {
-			int estimatedFacetValues = field instanceof IndexedField ? ((IndexedField) field).getValueCardinality() : maxFacetValues;
-			return FacetEntrySorter.of(facetConfig.getValueOrder(), estimatedFacetValues);
-		});
-	}
-
 	@Override
 	public Optional<Facet> mergeFacets(Facet first, Facet second) {
 		if (!FacetType.TERM.name().toLowerCase().equals(first.getType())
@@ -140,9 +143,9 @@ public class TermFacetCreator extends NestedFacetCreator {
 
 		second.getMeta().forEach(first.getMeta()::putIfAbsent);
 
-		// facet was created before, so if there was a special sorter configured, it should be in the cache
-		FacetEntrySorter facetEntrySorter = facetSorters.get(first.getFieldName());
-		if (facetEntrySorter != null) facetEntrySorter.sort(first);
+		// use the sorter of the configured value order
+		FacetEntrySorter facetEntrySorter = FacetEntrySorter.of(getFacetConfig(first.getFieldName()).getValueOrder());
+		if (facetEntrySorter != FacetEntrySorter.NOOP) facetEntrySorter.sort(first);
 		// otherwise sort by doc-count
 		else Collections.sort(first.getEntries(), Comparator.comparingLong(FacetEntry::getDocCount).reversed());
 
@@ -158,24 +161,11 @@ public class TermFacetCreator extends NestedFacetCreator {
 
 			String facetValue = valueBucket.getKeyAsString();
 			String normalizedValue = facetValue.toLowerCase(locale);
-
-			final String facetValueId;
-			Terms facetValueAgg = (Terms) valueBucket.getAggregations().get(FACET_IDS_AGG);
-			if (facetValueAgg != null && !facetValueAgg.getBuckets().isEmpty()) {
-				facetValueId = facetValueAgg.getBuckets().get(0).getKeyAsString();
-			}
-			else {
-				facetValueId = null;
-			}
+			String facetValueId = getFacetValueId(valueBucket);
 
 			boolean isSelected = false;
 			if (facetFilter != null) {
-				if (facetFilter.isFilterOnId()) {
-					isSelected = filterValues.contains(facetValueId);
-				}
-				else {
-					isSelected = filterValues.contains(normalizedValue);
-				}
+				isSelected = isSelected(facetFilter, filterValues, normalizedValue, facetValueId);
 
 				if (!facetConfig.isMultiSelect() && !facetConfig.isShowUnselectedOptions() && !isSelected) {
 					continue;
@@ -201,6 +191,35 @@ public class TermFacetCreator extends NestedFacetCreator {
 		facet.setAbsoluteFacetCoverage(absDocCount);
 	}
 
+	@Override
+	protected long getFacetCoverage(Bucket facetNameBucket, FacetConfig facetConfig, InternalResultFilter facetFilter) {
+		if (facetFilter == null || facetFilter.isNegated() || !(facetFilter instanceof TermResultFilter)
+				|| facetConfig.isMultiSelect() || facetConfig.isShowUnselectedOptions()) {
+			return super.getFacetCoverage(facetNameBucket, facetConfig, facetFilter);
+		}
+
+		// filtered single-select facets only contain the selected values
+		Terms facetValues = ((Terms) facetNameBucket.getAggregations().get(FACET_VALUES_AGG));
+		Set<String> filterValues = asSet(facetFilter.getValues());
+		long coverage = 0;
+		for (Bucket valueBucket : facetValues.getBuckets()) {
+			String normalizedValue = valueBucket.getKeyAsString().toLowerCase(locale);
+			if (isSelected((TermResultFilter) facetFilter, filterValues, normalizedValue, getFacetValueId(valueBucket))) {
+				coverage += getDocumentCount(valueBucket);
+			}
+		}
+		return coverage;
+	}
+
+	private String getFacetValueId(Bucket valueBucket) {
+		Terms facetValueAgg = (Terms) valueBucket.getAggregations().get(FACET_IDS_AGG);
+		return facetValueAgg != null && !facetValueAgg.getBuckets().isEmpty() ? facetValueAgg.getBuckets().get(0).getKeyAsString() : null;
+	}
+
+	private boolean isSelected(TermResultFilter facetFilter, Set<String> filterValues, String normalizedValue, String facetValueId) {
+		return facetFilter.isFilterOnId() ? filterValues.contains(facetValueId) : filterValues.contains(normalizedValue);
+	}
+
 	public String createFacetLink(TermResultFilter facetFilter, FacetConfig facetConfig, DefaultLinkBuilder linkBuilder, String facetValue, String facetValueId,
 			boolean isSelected) {
 		String link;
@@ -2,6 +2,7 @@ package de.cxp.ocs.elasticsearch.facets;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -18,6 +19,8 @@ import lombok.Getter;
 
 public class VariantFacetCreator implements FacetCreator {
 
+	static final String VARIANTS_AGG = "_variants";
+
 	@Getter(value = AccessLevel.PACKAGE)
 	private final Collection<FacetCreator> innerCreators;
 
@@ -46,19 +49,40 @@ public class VariantFacetCreator implements FacetCreator {
 
 	public AggregationBuilder _buildAggregation(Function<FacetCreator, AggregationBuilder> subAggCreatorCall) {
 		if (innerCreators.isEmpty()) return null;
-		NestedAggregationBuilder nestedAggBuilder = AggregationBuilders.nested("_variants", FieldConstants.VARIANTS);
+		NestedAggregationBuilder nestedAggBuilder = AggregationBuilders.nested(VARIANTS_AGG, FieldConstants.VARIANTS);
 		innerCreators.forEach(creator -> {
 			nestedAggBuilder.subAggregation(subAggCreatorCall.apply(creator));
 		});
 		return nestedAggBuilder;
 	}
 
+	@Override
+	public Collection<FacetCandidate> getFacetCandidates(Aggregations aggResult, FilterContext filterContext) {
+		List<FacetCandidate> candidates = new ArrayList<>();
+		Nested nestedAgg = (Nested) aggResult.get(VARIANTS_AGG);
+		for (FacetCreator creator : innerCreators) {
+			candidates.addAll(creator.getFacetCandidates(nestedAgg.getAggregations(), filterContext));
+		}
+		return candidates;
+	}
+
 	@Override
 	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder) {
+		return createFacets(aggResult, filterContext, linkBuilder, facetName -> true);
+	}
+
+	@Override
+	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter) {
+		return createFacets(aggResult, filterContext, linkBuilder, facetNameFilter, FacetMetrics.NOOP);
+	}
+
+	@Override
+	public Collection<Facet> createFacets(Aggregations aggResult, FilterContext filterContext, DefaultLinkBuilder linkBuilder, Predicate<String> facetNameFilter,
+			FacetMetrics.Recorder recorder) {
 		List<Facet> facets = new ArrayList<>();
-		Nested nestedAgg = (Nested) aggResult.get("_variants");
+		Nested nestedAgg = (Nested) aggResult.get(VARIANTS_AGG);
 		for (FacetCreator creator : innerCreators) {
-			facets.addAll(creator.createFacets(nestedAgg.getAggregations(), filterContext, linkBuilder));
+			facets.addAll(creator.createFacets(nestedAgg.getAggregations(), filterContext, linkBuilder, facetNameFilter, recorder));
 		}
 		return facets;
 	}
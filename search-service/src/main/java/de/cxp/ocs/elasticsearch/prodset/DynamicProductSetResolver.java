@@ -14,6 +14,7 @@ import de.cxp.ocs.model.params.SearchQuery;
 import de.cxp.ocs.model.params.StaticProductSet;
 import de.cxp.ocs.model.result.ResultHit;
 import de.cxp.ocs.model.result.SearchResult;
+import de.cxp.ocs.util.Deadline;
 import de.cxp.ocs.util.InternalSearchParams;
 import de.cxp.ocs.util.SearchParamsParser;
 
@@ -21,6 +22,11 @@ public class DynamicProductSetResolver implements ProductSetResolver {
 
 	@Override
 	public StaticProductSet resolve(ProductSet dynamicProductSet, Set<String> excludedIds, Searcher searcher, SearchContext searchContext) {
+		return resolve(dynamicProductSet, excludedIds, searcher, searchContext, Deadline.NONE);
+	}
+
+	@Override
+	public StaticProductSet resolve(ProductSet dynamicProductSet, Set<String> excludedIds, Searcher searcher, SearchContext searchContext, Deadline deadline) {
 		DynamicProductSet dynamicSet = (DynamicProductSet) dynamicProductSet;
 
 		SearchQuery searchQuery = new SearchQuery();
@@ -35,6 +41,7 @@ public class DynamicProductSetResolver implements ProductSetResolver {
 				searchContext);
 		productSetParams.excludedIds = excludedIds;
 		productSetParams.setWithResultData(false);
+		productSetParams.deadline = deadline;
 
 		// TODO: add caching
 		StaticProductSet resolvedSet = search(dynamicProductSet, searcher, productSetParams);
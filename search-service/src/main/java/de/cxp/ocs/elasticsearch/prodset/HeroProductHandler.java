@@ -21,6 +21,7 @@ import de.cxp.ocs.model.params.StaticProductSet;
 import de.cxp.ocs.model.result.ResultHit;
 import de.cxp.ocs.model.result.SearchResult;
 import de.cxp.ocs.model.result.SearchResultSlice;
+import de.cxp.ocs.util.Deadline;
 import de.cxp.ocs.util.InternalSearchParams;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -79,6 +80,25 @@ public class HeroProductHandler {
 	 * @return array of resolved product sets
 	 */
 	public StaticProductSet[] resolve(ProductSet[] productSets, Searcher searcher, SearchContext searchContext) {
+		return resolve(productSets, searcher, searchContext, Deadline.NONE);
+	}
+
+	/**
+	 * Same as {@link #resolve(ProductSet[], Searcher, SearchContext)} but
+	 * within the given deadline. If the deadline is exceeded, the remaining
+	 * product sets are resolved to empty sets.
+	 * 
+	 * @param productSets
+	 *        array of product sets to be resolved to static product sets
+	 * @param searcher
+	 *        matching Searcher instance for these products
+	 * @param searchContext
+	 *        context
+	 * @param deadline
+	 *        deadline of the search request
+	 * @return array of resolved product sets
+	 */
+	public StaticProductSet[] resolve(ProductSet[] productSets, Searcher searcher, SearchContext searchContext, Deadline deadline) {
 		StaticProductSet[] resolvedSets = new StaticProductSet[productSets.length];
 		int nextPos = 0;
 		Set<String> foundIds = new HashSet<String>(Arrays.stream(productSets).mapToInt(ProductSet::getSize).sum());
@@ -91,6 +111,10 @@ public class HeroProductHandler {
 				log.error("No resolver found for product set type '{}'", set.getType());
 				resolvedSets[position] = new StaticProductSet().setIds(new String[0]).setName(set.getName());
 			}
+			else if (deadline.isExceeded()) {
+				searcher.recordBudgetExhausted(deadline, "product_sets");
+				resolvedSets[position] = new StaticProductSet().setIds(new String[0]).setName(set.getName());
+			}
 			// dropped support for async resolving, because it may put unnecessary concurrent load on Elasticsearch from
 			// a single request and cause a DOS effect
 			// else if (resolver.runAsync() && productSets.length > 1) {
@@ -101,7 +125,7 @@ public class HeroProductHandler {
 			// });
 			// }
 			else {
-				resolvedSets[position] = resolver.resolve(set, foundIds, searcher, searchContext);
+				resolvedSets[position] = resolver.resolve(set, foundIds, searcher, searchContext, deadline);
 				foundIds.addAll(Arrays.asList(resolvedSets[position].getIds()));
 			}
 		}
@@ -6,6 +6,7 @@ import de.cxp.ocs.SearchContext;
 import de.cxp.ocs.elasticsearch.Searcher;
 import de.cxp.ocs.model.params.ProductSet;
 import de.cxp.ocs.model.params.StaticProductSet;
+import de.cxp.ocs.util.Deadline;
 
 public interface ProductSetResolver {
 
@@ -28,4 +29,25 @@ public interface ProductSetResolver {
 
 	StaticProductSet resolve(ProductSet set, Set<String> excludedIds, Searcher searcher, SearchContext searchContext);
 
+	/**
+	 * Resolve the product set within the given deadline. Resolvers that run
+	 * Elasticsearch requests should pass the deadline to them. Per default the
+	 * deadline is ignored.
+	 * 
+	 * @param set
+	 *        product set to resolve
+	 * @param excludedIds
+	 *        IDs that should not be part of the resolved set
+	 * @param searcher
+	 *        matching Searcher instance
+	 * @param searchContext
+	 *        context
+	 * @param deadline
+	 *        deadline of the search request
+	 * @return resolved product set
+	 */
+	default StaticProductSet resolve(ProductSet set, Set<String> excludedIds, Searcher searcher, SearchContext searchContext, Deadline deadline) {
+		return resolve(set, excludedIds, searcher, searchContext);
+	}
+
 }
@@ -8,6 +8,7 @@ import de.cxp.ocs.model.params.SearchQuery;
 import de.cxp.ocs.model.params.StaticProductSet;
 import de.cxp.ocs.model.result.ResultHit;
 import de.cxp.ocs.model.result.SearchResult;
+import de.cxp.ocs.util.Deadline;
 import de.cxp.ocs.util.InternalSearchParams;
 import de.cxp.ocs.util.SearchParamsParser;
 
@@ -22,6 +23,11 @@ public class QueryStringProductSetResolver implements ProductSetResolver {
 
     @Override
     public StaticProductSet resolve(ProductSet set, Set<String> excludedIds, Searcher searcher, SearchContext searchContext) {
+        return resolve(set, excludedIds, searcher, searchContext, Deadline.NONE);
+    }
+
+    @Override
+    public StaticProductSet resolve(ProductSet set, Set<String> excludedIds, Searcher searcher, SearchContext searchContext, Deadline deadline) {
         QueryStringProductSet queryStringProductSet = (QueryStringProductSet) set;
 
         SearchQuery searchQuery = new SearchQuery();
@@ -36,6 +42,7 @@ public class QueryStringProductSetResolver implements ProductSetResolver {
                 searchContext);
         parameters.excludedIds = excludedIds;
         parameters.setWithResultData(false);
+        parameters.deadline = deadline;
 
         StaticProductSet resolvedSet = search(queryStringProductSet, searcher, parameters);
         resolvedSet.setAsSeparateSlice(queryStringProductSet.asSeparateSlice);
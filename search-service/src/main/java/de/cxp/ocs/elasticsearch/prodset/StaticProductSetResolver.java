@@ -21,6 +21,7 @@ import de.cxp.ocs.config.FieldConstants;
 import de.cxp.ocs.elasticsearch.Searcher;
 import de.cxp.ocs.model.params.ProductSet;
 import de.cxp.ocs.model.params.StaticProductSet;
+import de.cxp.ocs.util.Deadline;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -30,6 +31,11 @@ public class StaticProductSetResolver implements ProductSetResolver {
 
 	@Override
 	public StaticProductSet resolve(final ProductSet productSet, Set<String> excludedIds, Searcher searcher, SearchContext searchContext) {
+		return resolve(productSet, excludedIds, searcher, searchContext, Deadline.NONE);
+	}
+
+	@Override
+	public StaticProductSet resolve(final ProductSet productSet, Set<String> excludedIds, Searcher searcher, SearchContext searchContext, Deadline deadline) {
 		StaticProductSet staticSet = (StaticProductSet) productSet;
 
 		int expectedHitCount = staticSet.getSize();
@@ -68,7 +74,7 @@ public class StaticProductSetResolver implements ProductSetResolver {
 			SearchResponse searchResponse = searcher.executeSearchRequest(SearchSourceBuilder.searchSource()
 					.query(requestIdsQuery)
 					.fetchSource(false)
-					.size(expectedHitCount));
+					.size(expectedHitCount), deadline);
 			if (searchResponse.getHits().getTotalHits().value == 0) {
 				staticSet.setIds(new String[0]);
 			}
@@ -40,6 +40,20 @@ public class ScoringContext {
 		boostingQueries.add(query);
 	}
 
+	/**
+	 * @return a copy with own lists, that can be extended without affecting
+	 *         this context
+	 */
+	public ScoringContext copy() {
+		ScoringContext copy = new ScoringContext();
+		copy.boostMode = boostMode;
+		copy.scoreMode = scoreMode;
+		copy.mainScoringFunctions.addAll(mainScoringFunctions);
+		copy.variantScoringFunctions.addAll(variantScoringFunctions);
+		copy.boostingQueries.addAll(boostingQueries);
+		return copy;
+	}
+
 	public QueryBuilder wrapMasterLevelQuery(QueryBuilder query) {
 		if (!boostingQueries.isEmpty()) {
 			BoolQueryBuilder boolQueryBuilder;
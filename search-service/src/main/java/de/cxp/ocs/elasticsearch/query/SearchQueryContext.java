@@ -4,10 +4,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
 
+import de.cxp.ocs.elasticsearch.MultiSearchBatch;
 import de.cxp.ocs.elasticsearch.prodset.HeroProductsQuery;
 import de.cxp.ocs.elasticsearch.query.filter.FilterContext;
+import de.cxp.ocs.util.Deadline;
 import lombok.Data;
 
 /**
@@ -28,4 +31,30 @@ public class SearchQueryContext {
 
 	public HeroProductsQuery heroProducts;
 
+	public List<AggregationBuilder> aggregations = new ArrayList<>();
+
+	/**
+	 * If set to false, the variant queries are built without inner hits,
+	 * because no hits are returned anyways.
+	 */
+	public boolean withVariantInnerHits = true;
+
+	/**
+	 * Deadline of the search request, passed to all according Elasticsearch
+	 * requests.
+	 */
+	public Deadline deadline = Deadline.NONE;
+
+	/**
+	 * Optional member of a multi-search batch, used for the first search
+	 * request.
+	 */
+	public MultiSearchBatch.Member multiSearchMember;
+
+	/**
+	 * Index of the first query stage that is executed. It is greater than 0 if
+	 * previous stages are skipped because of a learned query stage.
+	 */
+	public int queryStageOffset = 0;
+
 }
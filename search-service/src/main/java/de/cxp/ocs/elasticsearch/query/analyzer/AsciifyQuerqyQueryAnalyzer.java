@@ -1,5 +1,6 @@
 package de.cxp.ocs.elasticsearch.query.analyzer;
 
+import java.io.IOException;
 import java.util.*;
 
 import de.cxp.ocs.elasticsearch.model.query.MultiVariantQuery;
@@ -19,15 +20,38 @@ import de.cxp.ocs.util.StringUtils;
  * 
  * @author rudolf.batt@commerce-experts.com
  */
-public class AsciifyQuerqyQueryAnalyzer implements UserQueryAnalyzer, ConfigurableExtension {
+public class AsciifyQuerqyQueryAnalyzer implements UserQueryAnalyzer, ConfigurableExtension, ReloadableQueryAnalyzer {
 
-	final QuerqyQueryExpander querqy = new QuerqyQueryExpander();
+	final QuerqyQueryExpander querqy;
+
+	public AsciifyQuerqyQueryAnalyzer() {
+		this(new QuerqyQueryExpander());
+	}
+
+	private AsciifyQuerqyQueryAnalyzer(QuerqyQueryExpander querqy) {
+		this.querqy = querqy;
+	}
 
 	@Override
 	public void initialize(Map<String, String> settings) {
 		querqy.initialize(settings);
 	}
 
+	@Override
+	public long getVersion() {
+		return querqy.getVersion();
+	}
+
+	@Override
+	public boolean reload() throws IOException {
+		return querqy.reload();
+	}
+
+	@Override
+	public AsciifyQuerqyQueryAnalyzer withRules(String rules) throws IOException {
+		return new AsciifyQuerqyQueryAnalyzer(querqy.withRules(rules));
+	}
+
 	@Override
 	public ExtendedQuery analyze(String userQuery) {
 		ExtendedQuery finalAnalyzedTerms;
@@ -0,0 +1,175 @@
+package de.cxp.ocs.elasticsearch.query.analyzer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.cxp.ocs.elasticsearch.model.query.AnalyzedQuery;
+import de.cxp.ocs.elasticsearch.model.query.ExtendedQuery;
+import de.cxp.ocs.elasticsearch.model.query.MatchAllQuery;
+import de.cxp.ocs.elasticsearch.model.query.MultiTermQuery;
+import de.cxp.ocs.elasticsearch.model.query.MultiVariantQuery;
+import de.cxp.ocs.elasticsearch.model.query.QueryBoosting;
+import de.cxp.ocs.elasticsearch.model.query.SingleTermQuery;
+import de.cxp.ocs.elasticsearch.model.term.AssociatedTerm;
+import de.cxp.ocs.elasticsearch.model.term.ConceptTerm;
+import de.cxp.ocs.elasticsearch.model.term.QueryFilterTerm;
+import de.cxp.ocs.elasticsearch.model.term.QueryStringTerm;
+import de.cxp.ocs.elasticsearch.model.term.RawTerm;
+import de.cxp.ocs.elasticsearch.model.term.WeightedTerm;
+import de.cxp.ocs.spi.search.UserQueryAnalyzer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caches the results of another {@link UserQueryAnalyzer}, so that frequent
+ * queries are not analyzed again. The results are cached by the
+ * whitespace-normalized query. If the analyzer is a
+ * {@link VersionedQueryAnalyzer}, its version is part of the cache key and
+ * the cache is dropped as soon as the version changes.
+ * <p>
+ * The analyzed queries are mutable and may be changed by the caller, e.g. with
+ * spell corrections. Therefore the cache holds its own copy and each request
+ * gets a fresh copy of it. Queries with parts unknown to this class can't be
+ * copied and are not cached.
+ */
+@Slf4j
+public class CachingUserQueryAnalyzer implements UserQueryAnalyzer {
+
+	@Getter
+	private final UserQueryAnalyzer delegate;
+
+	private final Cache<String, ExtendedQuery> analyzedQueries;
+
+	private volatile long cachedVersion;
+
+	private final Counter	hitCounter;
+	private final Counter	missCounter;
+
+	public CachingUserQueryAnalyzer(UserQueryAnalyzer delegate, int maxSize, MeterRegistry registry, String indexName) {
+		this.delegate = delegate;
+		analyzedQueries = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+		cachedVersion = getDelegateVersion();
+
+		hitCounter = Counter.builder("queryAnalysisCache").tag("indexName", indexName).tag("result", "hit").register(registry);
+		missCounter = Counter.builder("queryAnalysisCache").tag("indexName", indexName).tag("result", "miss").register(registry);
+		Gauge.builder("queryAnalysisCacheSize", analyzedQueries, Cache::size).tag("indexName", indexName).register(registry);
+	}
+
+	@Override
+	public void initialize(Map<String, String> settings) {
+		// the delegate is already initialized
+	}
+
+	@Override
+	public ExtendedQuery analyze(String userQuery) {
+		long version = getDelegateVersion();
+		if (version != cachedVersion) {
+			analyzedQueries.invalidateAll();
+			cachedVersion = version;
+		}
+
+		// the version is also part of the key, so that results of a
+		// concurrent analysis with the previous version are never used
+		String cacheKey = version + ":" + StringUtils.normalizeSpace(userQuery);
+		ExtendedQuery cachedQuery = analyzedQueries.getIfPresent(cacheKey);
+		if (cachedQuery != null) {
+			hitCounter.increment();
+			return copy(cachedQuery);
+		}
+
+		missCounter.increment();
+		ExtendedQuery analyzedQuery = delegate.analyze(userQuery);
+		try {
+			analyzedQueries.put(cacheKey, copy(analyzedQuery));
+		}
+		catch (UnsupportedOperationException e) {
+			log.debug("analyzed query for '{}' is not cached: {}", userQuery, e.getMessage());
+		}
+		return analyzedQuery;
+	}
+
+	private long getDelegateVersion() {
+		return delegate instanceof VersionedQueryAnalyzer ? ((VersionedQueryAnalyzer) delegate).getVersion() : 0;
+	}
+
+	private static ExtendedQuery copy(ExtendedQuery query) {
+		List<QueryBoosting> boostings = new ArrayList<>(query.getBoostings().size());
+		for (QueryBoosting boosting : query.getBoostings()) {
+			boostings.add(new QueryBoosting(boosting.getField(), boosting.getRawTerm(), boosting.getType(), boosting.getWeight()));
+		}
+		return new ExtendedQuery(copy(query.getSearchQuery()), copyTerms(query.getFilters()), boostings);
+	}
+
+	private static AnalyzedQuery copy(AnalyzedQuery query) {
+		if (query.getClass() == MatchAllQuery.class) {
+			return query;
+		}
+		if (query.getClass() == ExtendedQuery.class) {
+			return copy((ExtendedQuery) query);
+		}
+		if (query.getClass() == SingleTermQuery.class) {
+			return new SingleTermQuery(query.getInputTerms().get(0), copy(((SingleTermQuery) query).getTerm()));
+		}
+		if (query.getClass() == MultiTermQuery.class) {
+			return new MultiTermQuery(query.getInputTerms(), copyTerms(((MultiTermQuery) query).getTerms()));
+		}
+		if (query.getClass() == MultiVariantQuery.class) {
+			List<AnalyzedQuery> queryVariations = new ArrayList<>();
+			for (AnalyzedQuery queryVariation : ((MultiVariantQuery) query).getQueryVariation()) {
+				queryVariations.add(copy(queryVariation));
+			}
+			return new MultiVariantQuery(new ArrayList<>(query.getInputTerms()), queryVariations);
+		}
+		throw new UnsupportedOperationException("unknown query type " + query.getClass().getName());
+	}
+
+	private static List<QueryStringTerm> copyTerms(List<QueryStringTerm> terms) {
+		List<QueryStringTerm> copies = new ArrayList<>(terms.size());
+		for (QueryStringTerm term : terms) {
+			copies.add(copy(term));
+		}
+		return copies;
+	}
+
+	private static QueryStringTerm copy(QueryStringTerm term) {
+		if (term.getClass() == RawTerm.class) {
+			return term;
+		}
+		if (term.getClass() == WeightedTerm.class) {
+			WeightedTerm weightedTerm = (WeightedTerm) term;
+			return new WeightedTerm(weightedTerm.getRawTerm(), weightedTerm.getWeight(), weightedTerm.isFuzzy(), weightedTerm.isQuoted(), weightedTerm.getOccur());
+		}
+		if (term.getClass() == QueryFilterTerm.class) {
+			QueryFilterTerm filterTerm = (QueryFilterTerm) term;
+			return new QueryFilterTerm(filterTerm.getField(), filterTerm.getRawTerm(), filterTerm.getOccur());
+		}
+		if (term.getClass() == AssociatedTerm.class) {
+			AssociatedTerm associatedTerm = (AssociatedTerm) term;
+			Map<String, QueryStringTerm> relatedTerms = new LinkedHashMap<>();
+			associatedTerm.getRelatedTerms().forEach((key, relatedTerm) -> relatedTerms.put(key, copy(relatedTerm)));
+			return new AssociatedTerm(copy(associatedTerm.getMainTerm()), associatedTerm.getOccur(), relatedTerms);
+		}
+		if (term.getClass() == ConceptTerm.class) {
+			ConceptTerm conceptTerm = (ConceptTerm) term;
+			return new ConceptTerm(copyTerms(conceptTerm.getTerms()))
+					.setWeight(conceptTerm.getWeight())
+					.setOccur(conceptTerm.getOccur())
+					.setQuoted(conceptTerm.isQuoted());
+		}
+		throw new UnsupportedOperationException("unknown term type " + term.getClass().getName());
+	}
+
+	public long size() {
+		return analyzedQueries.size();
+	}
+}
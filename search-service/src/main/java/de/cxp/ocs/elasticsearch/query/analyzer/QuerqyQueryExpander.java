@@ -1,13 +1,23 @@
 package de.cxp.ocs.elasticsearch.query.analyzer;
 
 import java.io.*;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.google.common.hash.Hashing;
+
 import de.cxp.ocs.elasticsearch.model.query.*;
 import de.cxp.ocs.elasticsearch.model.term.*;
 import de.cxp.ocs.elasticsearch.model.util.EscapeUtil;
@@ -18,6 +28,7 @@ import de.cxp.ocs.elasticsearch.query.analyzer.querqy.TransformingWhitespaceQuer
 import de.cxp.ocs.spi.search.ConfigurableExtension;
 import de.cxp.ocs.spi.search.UserQueryAnalyzer;
 import de.cxp.ocs.util.StringUtils;
+import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import querqy.model.*;
@@ -32,63 +43,182 @@ import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
 import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
 import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
 
+/**
+ * Analyzer that uses the Querqy common rules rewriter to enrich the user query
+ * with synonyms, filters and boostings.
+ * <p>
+ * The rules are loaded from the location set with the
+ * {@value #RULES_URL_PROPERTY_NAME} setting, which can be a http(s) URL, a file
+ * path or a classpath resource. They can be reloaded at runtime with
+ * {@link #reload()} or periodically by setting
+ * {@value #RULES_RELOAD_INTERVAL_PROPERTY_NAME}. Periodic reloads run on their
+ * own scheduler thread, independent of incoming queries. The new rules are only
+ * compiled if their checksum changed and are activated atomically, so that
+ * running analyses always use a consistent parser and rewrite chain.
+ * </p>
+ */
 @Slf4j
-public class QuerqyQueryExpander implements UserQueryAnalyzer, ConfigurableExtension {
+public class QuerqyQueryExpander implements UserQueryAnalyzer, ConfigurableExtension, ReloadableQueryAnalyzer {
 
 	public final static String	RULES_URL_PROPERTY_NAME				= "common_rules_url";
 	public final static String	DO_ASCIIFY_RULES_PROPERTY_NAME		= "do_asciiy_rules";
 	public final static String	DO_LOWERCASE_RULES_PROPERTY_NAME	= "do_lowercase_rules";
+	public final static String	RULES_RELOAD_INTERVAL_PROPERTY_NAME	= "rules_reload_interval_seconds";
+
+	private final static WhiteSpaceQuerqyParser defaultParser = new WhiteSpaceQuerqyParser();
+
+	/**
+	 * Shared by all expanders to load their rules periodically. Loading can
+	 * block on http requests, so it's not done at the common pool.
+	 */
+	private final static ScheduledExecutorService reloadScheduler = Executors.newSingleThreadScheduledExecutor(
+			Thread.ofPlatform().name("querqy-rules-reload").daemon().factory());
 
-	private final WhiteSpaceQuerqyParser defaultParser = new WhiteSpaceQuerqyParser();
-	private       QuerqyParser           parser        = defaultParser;
-	private RewriteChain			rewriteChain			= null;
+	private volatile LoadedRules	rules					= LoadedRules.NONE;
 	private boolean					loggedMissingRewriter	= false;
 
+	private String	rulesLocation;
+	private boolean	asciifyRules;
+	private boolean	lowercaseRules;
+
+	/**
+	 * Parser and rewrite chain that were compiled from the same rules. They are
+	 * always replaced together.
+	 */
+	@AllArgsConstructor
+	private static class LoadedRules {
+
+		static final LoadedRules NONE = new LoadedRules(defaultParser, null, null, 0);
+
+		final QuerqyParser	parser;
+		final RewriteChain	rewriteChain;
+		final String		checksum;
+		final long			version;
+	}
+
 	@Override
 	public void initialize(Map<String, String> settings) {
-		String commonRulesLocation = settings == null ? null : settings.get(RULES_URL_PROPERTY_NAME);
-		boolean isAsciifyRules = Boolean.parseBoolean(settings.get(DO_ASCIIFY_RULES_PROPERTY_NAME));
-		boolean isLowercaseRules = Boolean.parseBoolean(settings.get(DO_LOWERCASE_RULES_PROPERTY_NAME));
+		rulesLocation = settings == null ? null : settings.get(RULES_URL_PROPERTY_NAME);
+		asciifyRules = settings != null && Boolean.parseBoolean(settings.get(DO_ASCIIFY_RULES_PROPERTY_NAME));
+		lowercaseRules = settings != null && Boolean.parseBoolean(settings.get(DO_LOWERCASE_RULES_PROPERTY_NAME));
+		if (rulesLocation == null) {
+			log.error("no 'common_rules_url' provided! Won't enrich queries with querqy.");
+			return;
+		}
+
 		try {
-			if (commonRulesLocation == null) {
-				log.error("no 'common_rules_url' provided! Won't enrich queries with querqy.");
-			}
-			else if (commonRulesLocation.startsWith("http")) {
-				URL url = new URL(commonRulesLocation);
-				BufferedInputStream resourceStream = new BufferedInputStream(url.openStream());
-				rewriteChain = initFromStream(resourceStream, isAsciifyRules, isLowercaseRules);
+			reload();
+		}
+		catch (Exception e) {
+			log.error("Failed to load common rules from url {}", rulesLocation, e);
+		}
+
+		long reloadIntervalSeconds = Long.parseLong(settings.getOrDefault(RULES_RELOAD_INTERVAL_PROPERTY_NAME, "0"));
+		if (reloadIntervalSeconds > 0) {
+			scheduleReload(this, reloadIntervalSeconds);
+		}
+	}
+
+	/**
+	 * Reloads the rules of the given expander with a fixed delay, so reloads
+	 * never overlap. The scheduled task only holds a weak reference, so
+	 * expanders of replaced configurations are not kept alive and their task
+	 * is cancelled.
+	 */
+	private static void scheduleReload(QuerqyQueryExpander expander, long intervalSeconds) {
+		WeakReference<QuerqyQueryExpander> expanderRef = new WeakReference<>(expander);
+		AtomicReference<Future<?>> scheduledTask = new AtomicReference<>();
+		scheduledTask.set(reloadScheduler.scheduleWithFixedDelay(() -> {
+			QuerqyQueryExpander scheduledExpander = expanderRef.get();
+			if (scheduledExpander == null) {
+				scheduledTask.get().cancel(false);
+				return;
+			}
+			try {
+				scheduledExpander.reload();
+			}
+			catch (Exception e) {
+				log.error("Failed to reload common rules from {}, keeping previous rules", scheduledExpander.rulesLocation, e);
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Load the rules from the configured location again. The rules are only
+	 * compiled and activated if their checksum changed. If they can't be
+	 * loaded or compiled, the previous rules stay active.
+	 * 
+	 * @return true if new rules were activated
+	 * @throws IOException
+	 *         if the rules can't be loaded or are invalid
+	 */
+	@Override
+	public boolean reload() throws IOException {
+		if (rulesLocation == null) return false;
+
+		byte[] rulesData = readRules(rulesLocation);
+		String checksum = Hashing.sha256().hashBytes(rulesData).toString();
+		synchronized (this) {
+			LoadedRules currentRules = rules;
+			if (checksum.equals(currentRules.checksum)) {
+				log.debug("rules at {} not changed", rulesLocation);
+				return false;
 			}
-			else {
-				InputStream resourceStream;
+			rules = compileRules(new InputStreamReader(new ByteArrayInputStream(rulesData), StandardCharsets.UTF_8), checksum, currentRules.version + 1);
+		}
+		log.info("Successfully initialized querqy from rules at {}", rulesLocation);
+		return true;
+	}
 
-				File rulesFile = new File(commonRulesLocation);
-				if (rulesFile.exists()) {
-					resourceStream = new FileInputStream(rulesFile);
-				}
-				else {
-					resourceStream = this.getClass().getClassLoader().getResourceAsStream(commonRulesLocation);
-				}
+	/**
+	 * Compiles the given rules into a separate analyzer with the same settings,
+	 * without activating them at this analyzer.
+	 * 
+	 * @param rulesText
+	 *        common rules definition
+	 * @return an analyzer that uses the given rules
+	 * @throws IOException
+	 *         if the rules are invalid
+	 */
+	@Override
+	public QuerqyQueryExpander withRules(String rulesText) throws IOException {
+		QuerqyQueryExpander detachedExpander = new QuerqyQueryExpander();
+		detachedExpander.asciifyRules = asciifyRules;
+		detachedExpander.lowercaseRules = lowercaseRules;
+		detachedExpander.rules = compileRules(new StringReader(rulesText), Hashing.sha256().hashString(rulesText, StandardCharsets.UTF_8).toString(), 1);
+		return detachedExpander;
+	}
 
-				if (resourceStream != null) {
-					rewriteChain = initFromStream(resourceStream, isAsciifyRules, isLowercaseRules);
-				}
-				else {
-					log.error("resource '{}' not found. querqy rewriter not initialized", commonRulesLocation);
-				}
+	/**
+	 * @return the version of the loaded rules, that changes with every
+	 *         (re)load
+	 */
+	@Override
+	public long getVersion() {
+		return rules.version;
+	}
+
+	private byte[] readRules(String location) throws IOException {
+		if (location.startsWith("http")) {
+			try (InputStream resourceStream = new URL(location).openStream()) {
+				return resourceStream.readAllBytes();
 			}
 		}
-		catch (Exception e) {
-			log.error("Failed to load common rules from url {}", commonRulesLocation, e);
+
+		File rulesFile = new File(location);
+		if (rulesFile.exists()) {
+			return Files.readAllBytes(rulesFile.toPath());
 		}
-		if (rewriteChain != null) {
-			log.info("Successfully initialized querqy from rules at {}", commonRulesLocation);
+
+		try (InputStream resourceStream = this.getClass().getClassLoader().getResourceAsStream(location)) {
+			if (resourceStream == null) {
+				throw new FileNotFoundException("resource '" + location + "' not found");
+			}
+			return resourceStream.readAllBytes();
 		}
 	}
 
-	@SuppressWarnings("resource")
-	private RewriteChain initFromStream(InputStream resourceStream, boolean asciifyRules, boolean lowercaseRules) throws IOException {
-		Reader inputReader = new InputStreamReader(resourceStream);
-
+	private LoadedRules compileRules(Reader inputReader, String checksum, long version) throws IOException {
 		Collection<TransformingWhitespaceQuerqyParser.TransformationFlags> transformationFlags = new ArrayList<>(2);
 		if (asciifyRules) {
 			inputReader = StringUtils.asAsciifyCharFilter(inputReader);
@@ -100,7 +230,6 @@ public class QuerqyQueryExpander implements UserQueryAnalyzer, ConfigurableExten
 		}
 
 		QuerqyParserFactory parserFactory = transformationFlags.isEmpty() ? new WhiteSpaceQuerqyParserFactory() : new TransformingWhitespaceQuerqyParserFactory(EnumSet.copyOf(transformationFlags));
-		parser = parserFactory.createParser();
 
 		List<RewriterFactory> factories = Collections.singletonList(
 				new SimpleCommonRulesRewriterFactory(
@@ -111,11 +240,17 @@ public class QuerqyQueryExpander implements UserQueryAnalyzer, ConfigurableExten
 						true,
 						Collections.emptyMap(),
 						new ExpressionCriteriaSelectionStrategyFactory(), false));
-		return new RewriteChain(factories);
+		return new LoadedRules(parserFactory.createParser(), new RewriteChain(factories), checksum, version);
 	}
 
 	@Override
 	public ExtendedQuery analyze(String userQuery) {
+		return analyze(userQuery, rules);
+	}
+
+	private ExtendedQuery analyze(String userQuery, LoadedRules rules) {
+		QuerqyParser parser = rules.parser;
+		RewriteChain rewriteChain = rules.rewriteChain;
 		// TODO: add extension point for "QueryExpander" and to be like that
 		// if a different analyzer is used, it should also be possible to
 		// construct an expanded query from a list of QueryStringTerm-s
@@ -0,0 +1,36 @@
+package de.cxp.ocs.elasticsearch.query.analyzer;
+
+import java.io.IOException;
+
+import de.cxp.ocs.spi.search.UserQueryAnalyzer;
+
+/**
+ * {@link VersionedQueryAnalyzer} whose rules can be reloaded at runtime
+ * without rebuilding the whole search configuration.
+ */
+public interface ReloadableQueryAnalyzer extends VersionedQueryAnalyzer {
+
+	/**
+	 * Load the rules again from their source. Changed rules must be activated
+	 * atomically and increase the version. If the new rules are invalid, the
+	 * previous rules must stay active.
+	 * 
+	 * @return true if changed rules were activated, false if nothing changed
+	 * @throws IOException
+	 *         if the rules can't be loaded or are invalid
+	 */
+	boolean reload() throws IOException;
+
+	/**
+	 * Create a separate analyzer with the given rules, e.g. to validate them
+	 * with a few sample queries. The rules of this analyzer are not changed.
+	 * 
+	 * @param rules
+	 *        rules definition
+	 * @return analyzer that uses the given rules
+	 * @throws IOException
+	 *         if the rules are invalid
+	 */
+	UserQueryAnalyzer withRules(String rules) throws IOException;
+
+}
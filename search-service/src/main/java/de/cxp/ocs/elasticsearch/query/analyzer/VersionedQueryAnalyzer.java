@@ -0,0 +1,18 @@
+package de.cxp.ocs.elasticsearch.query.analyzer;
+
+import de.cxp.ocs.spi.search.UserQueryAnalyzer;
+
+/**
+ * {@link UserQueryAnalyzer} whose results depend on data that can change at
+ * runtime, like a rule set. The version must change whenever the same query
+ * may be analyzed differently, so that cached analysis results can be
+ * dropped.
+ */
+public interface VersionedQueryAnalyzer {
+
+	/**
+	 * @return the version of the data the analysis depends on
+	 */
+	long getVersion();
+
+}
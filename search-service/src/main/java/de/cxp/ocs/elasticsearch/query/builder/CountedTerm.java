@@ -11,6 +11,7 @@ import lombok.experimental.Delegate;
 @AllArgsConstructor
 public class CountedTerm implements QueryStringTerm {
 
+	@Getter
 	@Delegate
 	private final QueryStringTerm decorated;
 
@@ -37,7 +37,8 @@ public class ESQueryFactoryBuilder {
 
 	private final Map<String, Supplier<? extends ESQueryFactory>> knownQueryFactories;
 
-	public ESQueryFactoryBuilder(RestHighLevelClient restClient, SearchContext context, Map<String, Supplier<? extends ESQueryFactory>> esQueryFactorySuppliers) {
+	public ESQueryFactoryBuilder(RestHighLevelClient restClient, SearchContext context, Map<String, Supplier<? extends ESQueryFactory>> esQueryFactorySuppliers,
+			QueryPredictionCache predictionCache) {
 		this.restClient = restClient;
 		this.indexName = context.config.getIndexName();
 		this.context = context;
@@ -45,8 +46,8 @@ public class ESQueryFactoryBuilder {
 		this.queryConfigs.forEach(qc -> queryConfigIndex.put(qc.getName(), qc));
 		
 		ExtensionSupplierRegistry<ESQueryFactory> esQueryFactoryRegistry = new ExtensionSupplierRegistry<ESQueryFactory>();
-		esQueryFactoryRegistry.register(PredictionQueryFactory.class, () -> new PredictionQueryFactory(new QueryPredictor(restClient, indexName)));
-		esQueryFactoryRegistry.register(RelaxedQueryFactory.class, () -> new RelaxedQueryFactory(new QueryPredictor(restClient, indexName)));
+		esQueryFactoryRegistry.register(PredictionQueryFactory.class, () -> new PredictionQueryFactory(new QueryPredictor(restClient, indexName, predictionCache)));
+		esQueryFactoryRegistry.register(RelaxedQueryFactory.class, () -> new RelaxedQueryFactory(new QueryPredictor(restClient, indexName, predictionCache)));
 		esQueryFactoryRegistry.register(ConfigurableQueryFactory.class, ConfigurableQueryFactory::new);
 		esQueryFactoryRegistry.register(NgramQueryFactory.class, NgramQueryFactory::new);
 		esQueryFactoryRegistry.register(DefaultQueryFactory.class, DefaultQueryFactory::new);
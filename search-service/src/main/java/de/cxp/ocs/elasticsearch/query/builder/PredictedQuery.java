@@ -2,6 +2,7 @@ package de.cxp.ocs.elasticsearch.query.builder;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,6 +41,21 @@ class PredictedQuery {
 		queryString = newQueryString;
 	}
 
+	/**
+	 * @return a copy with own term collections, that can be modified without
+	 *         affecting this predicted query
+	 */
+	PredictedQuery copy() {
+		PredictedQuery copy = new PredictedQuery();
+		copy.matchCount = matchCount;
+		copy.termsUnique = new LinkedHashMap<>(termsUnique);
+		copy.unknownTerms = new HashSet<>(unknownTerms);
+		copy.containsAllTerms = containsAllTerms;
+		copy.originalTermCount = originalTermCount;
+		copy.queryString = queryString;
+		return copy;
+	}
+
 	public int getCorrectedTermCount() {
 		if (correctedTermCount == -1) {
 			correctedTermCount = (int) unknownTerms.stream().filter(q -> (q instanceof AssociatedTerm)).count();
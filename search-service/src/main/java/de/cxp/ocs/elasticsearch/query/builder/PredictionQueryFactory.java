@@ -213,7 +213,7 @@ public class PredictionQueryFactory implements ESQueryFactory, FallbackConsumer
 		 */
 		QueryBuilder variantScoreQuery = variantQueryFactory.createMatchAnyTermQuery(parsedQuery);
 
-		return new TextMatchQuery<>(mainQuery, variantScoreQuery, true, unmatchedTerms.isEmpty(), queryDescription.toString());
+		return new TextMatchQuery<>(mainQuery, variantScoreQuery, true, unmatchedTerms.isEmpty(), queryDescription.toString(), expectedMatchCount);
 	}
 
 	private boolean termHasMatches(QueryStringTerm unknownTerm) {
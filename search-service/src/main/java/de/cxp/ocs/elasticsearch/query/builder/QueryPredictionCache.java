@@ -0,0 +1,119 @@
+package de.cxp.ocs.elasticsearch.query.builder;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.cxp.ocs.config.QueryProcessingConfiguration;
+import de.cxp.ocs.elasticsearch.model.query.ExtendedQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Caches the predicted queries of the {@link QueryPredictor}, so that the
+ * prediction request with its score histogram is not sent again for frequent
+ * queries. Since the predicted queries are modified by the query factories,
+ * copies are stored and returned.
+ * Independent of the cache, the time of each prediction request is recorded.
+ */
+public class QueryPredictionCache {
+
+	private final Cache<String, List<PredictedQuery>> predictions;
+
+	private final Counter	hitCounter;
+	private final Counter	missCounter;
+	private final Timer		predictionTimer;
+
+	public QueryPredictionCache(QueryProcessingConfiguration queryProcessing, MeterRegistry registry, String indexName) {
+		predictions = queryProcessing.getPredictionCacheSize() > 0
+				? CacheBuilder.newBuilder()
+						.maximumSize(queryProcessing.getPredictionCacheSize())
+						.expireAfterWrite(Duration.ofSeconds(queryProcessing.getPredictionCacheTtlSeconds()))
+						.build()
+				: null;
+
+		hitCounter = Counter.builder("queryPredictionCache").tag("indexName", indexName).tag("result", "hit").register(registry);
+		missCounter = Counter.builder("queryPredictionCache").tag("indexName", indexName).tag("result", "miss").register(registry);
+		predictionTimer = Timer.builder("queryPrediction")
+				.tag("indexName", indexName)
+				.publishPercentiles(0.5, 0.8, 0.9, 0.95)
+				.register(registry);
+		if (predictions != null) {
+			Gauge.builder("queryPredictionCacheSize", predictions, Cache::size).tag("indexName", indexName).register(registry);
+		}
+	}
+
+	public boolean isEnabled() {
+		return predictions != null;
+	}
+
+	/**
+	 * Build the cache key from everything the prediction request depends on:
+	 * the searched fields, the analyzer and the analyzed query including its
+	 * exclude filters. Other filters are not part of the prediction request.
+	 *
+	 * @param parsedQuery
+	 *        analyzed query
+	 * @param searchFields
+	 *        fields the prediction is done for
+	 * @param analyzer
+	 *        optional search analyzer
+	 * @return the cache key
+	 */
+	static String getCacheKey(ExtendedQuery parsedQuery, Collection<String> searchFields, String analyzer) {
+		return searchFields.stream().sorted().collect(Collectors.joining(","))
+				+ "|" + (analyzer == null ? "" : analyzer)
+				+ "|" + parsedQuery.getSearchQuery().toQueryString()
+				+ "|" + parsedQuery.getInputTerms();
+	}
+
+	/**
+	 * Get copies of the cached predictions and count the cache hit or miss.
+	 *
+	 * @param cacheKey
+	 *        key built by {@link #getCacheKey(ExtendedQuery, Collection, String)}
+	 * @return the predicted queries or null
+	 */
+	List<PredictedQuery> get(String cacheKey) {
+		if (!isEnabled()) return null;
+		List<PredictedQuery> cachedPredictions = predictions.getIfPresent(cacheKey);
+		if (cachedPredictions == null) {
+			missCounter.increment();
+			return null;
+		}
+		hitCounter.increment();
+		return copy(cachedPredictions);
+	}
+
+	void put(String cacheKey, List<PredictedQuery> predictedQueries) {
+		if (isEnabled()) {
+			predictions.put(cacheKey, copy(predictedQueries));
+		}
+	}
+
+	void recordPredictionTime(long nanos) {
+		predictionTimer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	private static List<PredictedQuery> copy(List<PredictedQuery> predictedQueries) {
+		List<PredictedQuery> copies = new ArrayList<>(predictedQueries.size());
+		predictedQueries.forEach(predictedQuery -> copies.add(predictedQuery.copy()));
+		return copies;
+	}
+
+	public void invalidateAll() {
+		if (isEnabled()) {
+			predictions.invalidateAll();
+		}
+	}
+
+	public long size() {
+		return isEnabled() ? predictions.size() : 0;
+	}
+}
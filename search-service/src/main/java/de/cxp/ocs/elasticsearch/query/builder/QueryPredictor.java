@@ -3,6 +3,7 @@ package de.cxp.ocs.elasticsearch.query.builder;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -44,12 +45,23 @@ class QueryPredictor {
 
 	private final RestHighLevelClient	restClient;
 	private final String				indices;
+	private final QueryPredictionCache	predictionCache;
 
 	@Setter
 	private String analyzer;
 
+	// the search fields are fixed per query factory, so usually there is only one
+	private final Map<Set<String>, SpellCorrector> spellCorrectors = new ConcurrentHashMap<>();
+
 	protected List<PredictedQuery> getQueryMetaData(final @NonNull ExtendedQuery parsedQuery, final Map<String, Float> fieldWeights)
 			throws IOException {
+		String cacheKey = predictionCache.isEnabled() ? QueryPredictionCache.getCacheKey(parsedQuery, fieldWeights.keySet(), analyzer) : null;
+		if (cacheKey != null) {
+			List<PredictedQuery> cachedPredictions = predictionCache.get(cacheKey);
+			if (cachedPredictions != null) return cachedPredictions;
+		}
+		long start = System.nanoTime();
+
 		// put "must-not" terms into separate list
 		List<QueryStringTerm> searchWordsCleaned = new ArrayList<>(parsedQuery.getInputTerms().size());
 		List<QueryStringTerm> excludeFilters = new ArrayList<>(parsedQuery.getFilters().size());
@@ -83,7 +95,7 @@ class QueryPredictor {
 		final Set<QueryStringTerm> actualSearchTerms = new HashSet<>(searchWordsCleaned);
 		shingles.keySet().forEach(shingleWord -> actualSearchTerms.add(new WeightedTerm(shingleWord)));
 
-		final SpellCorrector corrector = new SpellCorrector(fieldWeights.keySet());
+		final SpellCorrector corrector = spellCorrectors.computeIfAbsent(Set.copyOf(fieldWeights.keySet()), SpellCorrector::new);
 		final Map<Float, CountedTerm> predictionWords = new LinkedHashMap<>();
 		final SearchResponse searchResponse = runTermAnalysis(
 				fieldWeights.keySet(),
@@ -190,7 +202,13 @@ class QueryPredictor {
 
 		redundantQueries.forEach(rq -> predictedQueries.remove(rq));
 
-		return new ArrayList<>(predictedQueries.values());
+		List<PredictedQuery> predictions = new ArrayList<>(predictedQueries.values());
+		predictionCache.recordPredictionTime(System.nanoTime() - start);
+		// incomplete predictions should not be reused
+		if (cacheKey != null && !searchResponse.isTimedOut()) {
+			predictionCache.put(cacheKey, predictions);
+		}
+		return predictions;
 	}
 
 	private void putOrMerge(final Map<String, PredictedQuery> allQueries, final PredictedQuery addQuery) {
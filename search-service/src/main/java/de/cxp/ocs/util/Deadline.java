@@ -0,0 +1,127 @@
+package de.cxp.ocs.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.client.config.RequestConfig;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.core.TimeValue;
+
+/**
+ * Point in time until a search request should be answered, derived from the
+ * latency budget of the tenant or the request. It is passed to all
+ * Elasticsearch requests of a single search request as search timeout and as
+ * client-side socket timeout. Stages that were skipped or degraded because the
+ * budget was exhausted are collected to flag the result.
+ */
+public class Deadline {
+
+	/**
+	 * Deadline that is never exceeded.
+	 */
+	public static final Deadline NONE = new Deadline(0);
+
+	/**
+	 * Minimum timeout passed to Elasticsearch, even if the deadline is already
+	 * exceeded, so that a single final request still has the chance to return
+	 * something.
+	 */
+	static final long MIN_TIMEOUT_MS = 10;
+
+	/**
+	 * Extra time the client waits for the response after the search timeout,
+	 * since Elasticsearch only checks the timeout from time to time.
+	 */
+	static final long CLIENT_TIMEOUT_GRACE_MS = 100;
+
+	private final long budgetMillis;
+
+	private final long deadlineNanos;
+
+	private final List<String> exhaustedStages = Collections.synchronizedList(new ArrayList<>());
+
+	private Deadline(long budgetMillis) {
+		this.budgetMillis = budgetMillis;
+		deadlineNanos = System.nanoTime() + budgetMillis * 1_000_000;
+	}
+
+	/**
+	 * Start a deadline with the given budget.
+	 *
+	 * @param budgetMillis
+	 *        latency budget in milliseconds. Values &lt;= 0 disable the
+	 *        deadline.
+	 * @return a new deadline or {@link #NONE}
+	 */
+	public static Deadline of(long budgetMillis) {
+		return budgetMillis > 0 ? new Deadline(budgetMillis) : NONE;
+	}
+
+	public boolean isSet() {
+		return budgetMillis > 0;
+	}
+
+	public long getBudgetMillis() {
+		return budgetMillis;
+	}
+
+	/**
+	 * @return remaining milliseconds, never less than 0 or
+	 *         {@link Long#MAX_VALUE} if no deadline is set
+	 */
+	public long getRemainingMillis() {
+		if (!isSet()) return Long.MAX_VALUE;
+		return Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000);
+	}
+
+	public boolean isExceeded() {
+		return isSet() && deadlineNanos - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * @return the remaining time as search timeout or null if no deadline is
+	 *         set
+	 */
+	public TimeValue getSearchTimeout() {
+		if (!isSet()) return null;
+		return TimeValue.timeValueMillis(Math.max(MIN_TIMEOUT_MS, getRemainingMillis()));
+	}
+
+	/**
+	 * @return request options that abort the request on client side, if the
+	 *         response does not arrive shortly after the search timeout
+	 */
+	public RequestOptions getRequestOptions() {
+		if (!isSet()) return RequestOptions.DEFAULT;
+		long socketTimeout = getSearchTimeout().millis() + CLIENT_TIMEOUT_GRACE_MS;
+		return RequestOptions.DEFAULT.toBuilder()
+				.setRequestConfig(RequestConfig.custom()
+						.setConnectTimeout(RestClientBuilder.DEFAULT_CONNECT_TIMEOUT_MILLIS)
+						.setSocketTimeout((int) Math.min(Integer.MAX_VALUE, socketTimeout))
+						.build())
+				.build();
+	}
+
+	/**
+	 * Mark a stage as skipped or degraded because of an exhausted budget.
+	 *
+	 * @param stage
+	 *        name of the stage
+	 */
+	public void markExhausted(String stage) {
+		if (isSet() && !exhaustedStages.contains(stage)) {
+			exhaustedStages.add(stage);
+		}
+	}
+
+	public List<String> getExhaustedStages() {
+		return Collections.unmodifiableList(exhaustedStages);
+	}
+
+	@Override
+	public String toString() {
+		return isSet() ? budgetMillis + "ms (" + getRemainingMillis() + "ms remaining)" : "none";
+	}
+}
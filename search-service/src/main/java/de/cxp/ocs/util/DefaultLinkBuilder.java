@@ -5,11 +5,11 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
@@ -19,8 +19,24 @@ import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
 import de.cxp.ocs.config.Field;
 import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
 import de.cxp.ocs.elasticsearch.query.sort.SortInstruction;
+import de.cxp.ocs.model.params.LinkMode;
 import de.cxp.ocs.model.result.SortOrder;
-
+import lombok.NonNull;
+
+/**
+ * <p>
+ * Builds the links (raw query strings) for the current search state.
+ * </p>
+ * <p>
+ * The parameters of the current state are parsed and url-encoded only once at construction time. All links are
+ * assembled by concatenating those pre-encoded parameter fragments, so no URI parsing or regular expressions are
+ * necessary per link. The produced links are the same as the ones built with the {@link URIBuilder}.
+ * </p>
+ * <p>
+ * Depending on the {@link LinkMode} of the search parameters, the links either contain the full query, only the
+ * changed parameter or no link is built at all (null is returned).
+ * </p>
+ */
 public final class DefaultLinkBuilder implements LinkBuilder {
 
 	public static final String VALUE_DELIMITER         = ",";
@@ -31,7 +47,30 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 
 	private final Map<String, InternalResultFilter>	filters;
 	private final Map<String, String> urlParams;
-	private final URI searchQueryLink;
+
+	/**
+	 * The url parameters in the order of the current link with their encoded representation.
+	 */
+	private final List<UrlParam> encodedParams;
+
+	/**
+	 * The complete raw query of the current state or null if there are no parameters.
+	 */
+	private final String rawQuery;
+
+	private final LinkMode linkMode;
+
+	/**
+	 * A single url parameter of the current search state, with its name and value in decoded and encoded form.
+	 */
+	private record UrlParam(String name, String value, String rawName, String rawValue, String rawFragment) {
+
+		static UrlParam of(String name, String value) {
+			String rawFragment = encodeParameter(name, value);
+			int valueStart = rawFragment.indexOf('=');
+			return new UrlParam(name, value, rawFragment.substring(0, valueStart), rawFragment.substring(valueStart + 1), rawFragment);
+		}
+	}
 
 	public DefaultLinkBuilder(InternalSearchParams params) {
 		filters = new HashMap<>(params.filters.size());
@@ -41,13 +80,34 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 
 		urlParams = toUrlParams(params);
 
-		URIBuilder linkBuilder = new URIBuilder();
-		urlParams.forEach(linkBuilder::addParameter);
-		try {
-			searchQueryLink = linkBuilder.build();
-		} catch (URISyntaxException e) {
-			throw new IllegalStateException("Unexpected Error. Most likely some invalid parameter caused it", e);
-		}
+		List<UrlParam> encodedParams = new ArrayList<>(urlParams.size());
+		urlParams.forEach((name, value) -> encodedParams.add(UrlParam.of(name, value)));
+		this.encodedParams = Collections.unmodifiableList(encodedParams);
+		rawQuery = buildQuery(null, null, null);
+		linkMode = params.linkMode == null ? LinkMode.FULL : params.linkMode;
+	}
+
+	private DefaultLinkBuilder(DefaultLinkBuilder other, LinkMode linkMode) {
+		filters = other.filters;
+		urlParams = other.urlParams;
+		encodedParams = other.encodedParams;
+		rawQuery = other.rawQuery;
+		this.linkMode = linkMode;
+	}
+
+	/**
+	 * Get a link builder for the same search state but with a different link mode. The encoded parameters are shared.
+	 * 
+	 * @param linkMode
+	 *        the link mode of the returned builder
+	 * @return this builder if it already uses the given link mode, otherwise a copy with that link mode
+	 */
+	public DefaultLinkBuilder withLinkMode(@NonNull LinkMode linkMode) {
+		return this.linkMode.equals(linkMode) ? this : new DefaultLinkBuilder(this, linkMode);
+	}
+
+	public LinkMode getLinkMode() {
+		return linkMode;
 	}
 
 	private static Map<String, String> toUrlParams(InternalSearchParams params) {
@@ -91,24 +151,29 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	}
 
 	public String withSortingLink(Field sortField, SortOrder sortOrder) {
-		String sortString = sortStringRepresentation(sortField.getName(), sortOrder);
-		URIBuilder linkBuilder = new URIBuilder();
-		urlParams.forEach((param, value) -> {
-			if (!"sort".equals(param)) {
-				linkBuilder.addParameter(param, value);
-			}
-		});
-		linkBuilder.addParameter("sort", sortString);
-		try {
-			return linkBuilder.build().getRawQuery();
-		} catch (URISyntaxException e) {
-			throw new IllegalArgumentException("parameter caused URISyntaxException: sort=" + sortString, e);
-		}
+		if (LinkMode.NONE.equals(linkMode)) return null;
+		return buildLink("sort", "sort", sortStringRepresentation(sortField.getName(), sortOrder));
 	}
 
 	public boolean isSortingActive(Field sortField, SortOrder order) {
-		return urlParams.containsKey("sort") 
-				&& urlParams.get("sort").matches("(^|.*,)"+Pattern.quote(sortStringRepresentation(sortField.getName(), order))+"($|,.*)");
+		String sortValue = urlParams.get("sort");
+		return sortValue != null && containsDelimitedValue(sortValue, sortStringRepresentation(sortField.getName(), order));
+	}
+
+	/**
+	 * Checks if the given value is one of the values separated by the value delimiter.
+	 */
+	private static boolean containsDelimitedValue(String joinedValues, String value) {
+		int index = joinedValues.indexOf(value);
+		while (index >= 0) {
+			int valueEnd = index + value.length();
+			if ((index == 0 || joinedValues.startsWith(VALUE_DELIMITER, index - 1))
+					&& (valueEnd == joinedValues.length() || joinedValues.startsWith(VALUE_DELIMITER, valueEnd))) {
+				return true;
+			}
+			index = joinedValues.indexOf(value, index + 1);
+		}
+		return false;
 	}
 
 	public static String sortStringRepresentation(String fieldName, SortOrder order) {
@@ -145,38 +210,24 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	}
 
 	public String withoutFilterAsLink(FacetConfig facetConfig, String... filterValues) {
+		if (LinkMode.NONE.equals(linkMode)) return null;
 		String filterName = getFilterName(facetConfig);
 		String removeValue = joinParameterValues(filterValues);
 		if (isFilterSelected(filterName, removeValue)) {
-			URIBuilder linkBuilder = new URIBuilder(searchQueryLink);
 			if (facetConfig.isMultiSelect()) {
-				Optional<Set<String>> existingFilterValues = linkBuilder.getQueryParams().stream()
-						.filter(param -> filterName.equals(param.getName())).findFirst()
-						.map(NameValuePair::getValue).map(value -> StringUtils.split(value, VALUE_DELIMITER))
+				Optional<Set<String>> existingFilterValues = getParameterValue(filterName)
+						.map(value -> StringUtils.split(value, VALUE_DELIMITER))
 						.map(Sets::newHashSet);
 
 				if (existingFilterValues.isPresent() && existingFilterValues.get().size() > 1) {
 					Set<String> values = existingFilterValues.get();
 					values.remove(removeValue);
-					linkBuilder.setParameter(filterName, StringUtils.join(values, VALUE_DELIMITER));
-				} else {
-					List<NameValuePair> queryParams = linkBuilder.getQueryParams();
-					queryParams.removeIf(nvp -> nvp.getName().equals(filterName));
-					linkBuilder.setParameters(queryParams);
+					return buildLink(filterName, filterName, StringUtils.join(values, VALUE_DELIMITER));
 				}
-			} else {
-				List<NameValuePair> queryParams = linkBuilder.getQueryParams();
-				queryParams.removeIf(nvp -> nvp.getName().equals(filterName));
-				linkBuilder.setParameters(queryParams);
-			}
-			try {
-				return linkBuilder.build().getRawQuery();
-			} catch (URISyntaxException e) {
-				throw new IllegalArgumentException(
-						"parameter caused URISyntaxException: " + facetConfig.getSourceField() + "=" + removeValue, e);
 			}
+			return buildLink(filterName, null, null);
 		} else {
-			return searchQueryLink.getRawQuery();
+			return unchangedLink(filterName);
 		}
 	}
 
@@ -200,21 +251,12 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	 */
 	@Override
 	public String withoutFilterAsLink(String filterName) {
+		if (LinkMode.NONE.equals(linkMode)) return null;
 		if (containsParameter(filterName)) {
-			URIBuilder linkBuilder = new URIBuilder(searchQueryLink);
-			List<NameValuePair> queryParams = linkBuilder.getQueryParams();
-			queryParams.removeIf(nvp -> nvp.getName().equals(filterName));
-			linkBuilder.setParameters(queryParams);
-			try {
-				return linkBuilder.build().getRawQuery();
-			}
-			catch (URISyntaxException e) {
-				// should be impossible
-				throw new IllegalArgumentException("removing parameter " + filterName + " caused URISyntaxException", e);
-			}
+			return buildLink(filterName, null, null);
 		}
 		else {
-			return searchQueryLink.getRawQuery();
+			return unchangedLink(filterName);
 		}
 	}
 
@@ -235,26 +277,18 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 
 	@Override
 	public String withFilterAsLink(String filterName, boolean mergeValues, String... filterInputValues) {
+		if (LinkMode.NONE.equals(linkMode)) return null;
 		String filterValues = joinParameterValues(filterInputValues);
 		if (isFilterSelected(filterName, filterValues)) {
-			return searchQueryLink.getRawQuery();
+			return unchangedLink(filterName);
 		}
-		if (searchQueryLink.toString().matches(".*[?&]" + Pattern.quote(filterName) + "=.*")) {
-			URIBuilder linkBuilder = new URIBuilder(searchQueryLink);
+		if (containsRawParameter(filterName)) {
 			if (mergeValues) {
-				Optional<String> otherValues = linkBuilder.getQueryParams().stream()
-						.filter(param -> filterName.equals(param.getName())).findFirst()
-						.map(NameValuePair::getValue);
-				linkBuilder.setParameter(filterName, otherValues
+				Optional<String> otherValues = getParameterValue(filterName);
+				return buildLink(filterName, filterName, otherValues
 						.map(val -> val + VALUE_DELIMITER + filterValues).orElse(filterValues));
 			} else {
-				linkBuilder.setParameter(filterName, filterValues);
-			}
-			try {
-				return linkBuilder.build().getRawQuery();
-			} catch (URISyntaxException e) {
-				throw new IllegalArgumentException(
-						"parameter caused URISyntaxException: " + filterName + "=" + filterValues, e);
+				return buildLink(filterName, filterName, filterValues);
 			}
 		} else {
 			return withParameterAppended(filterName, filterValues);
@@ -263,12 +297,11 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 
 	private String withParameterAppended(String filterName, String filterValues) {
 		String newParam = filterName + "=" + urlEncodeValue(filterValues);
-		String query = searchQueryLink.getRawQuery();
-		if (query == null || query.isEmpty()) {
+		if (rawQuery == null || rawQuery.isEmpty() || LinkMode.COMPACT.equals(linkMode)) {
 			return newParam;
 		}
 		else {
-			return query + "&" + newParam;
+			return rawQuery + "&" + newParam;
 		}
 	}
 
@@ -289,18 +322,11 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	 * @return url as string
 	 */
 	public String withExactFilterAsLink(FacetConfig facetConfig, String... filterInputValues) {
+		if (LinkMode.NONE.equals(linkMode)) return null;
 		String filterName = getFilterName(facetConfig);
 		String filterValues = joinParameterValues(filterInputValues);
 		if (containsParameter(filterName)) {
-			URIBuilder linkBuilder = new URIBuilder(searchQueryLink);
-			linkBuilder.setParameter(filterName, filterValues);
-			try {
-				return linkBuilder.build().getRawQuery();
-			}
-			catch (URISyntaxException e) {
-				throw new IllegalArgumentException(
-						"parameter caused URISyntaxException: " + filterName + "=" + filterValues, e);
-			}
+			return buildLink(filterName, filterName, filterValues);
 		}
 		else {
 			return withParameterAppended(filterName, filterValues);
@@ -308,7 +334,92 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	}
 
 	private boolean containsParameter(String filterName) {
-		return searchQueryLink.getQuery() != null && searchQueryLink.getRawQuery().contains(filterName + "=");
+		return rawQuery != null && rawQuery.contains(filterName + "=");
+	}
+
+	/**
+	 * Checks if any of the encoded parameters of the current link starts with the given (unencoded) name.
+	 */
+	private boolean containsRawParameter(String filterName) {
+		for (UrlParam param : encodedParams) {
+			if (param.rawFragment().startsWith(filterName) && param.rawFragment().startsWith("=", filterName.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Optional<String> getParameterValue(String paramName) {
+		for (UrlParam param : encodedParams) {
+			if (param.name().equals(paramName)) {
+				return Optional.of(param.value());
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return the link of the current search state or null, if only the full link mode is used.
+	 */
+	public String currentLink() {
+		return LinkMode.FULL.equals(linkMode) ? rawQuery : null;
+	}
+
+	/**
+	 * Link for the case that the given parameter does not change. With the compact link mode, that's the current
+	 * parameter.
+	 */
+	private String unchangedLink(String paramName) {
+		if (LinkMode.COMPACT.equals(linkMode)) {
+			for (UrlParam param : encodedParams) {
+				if (param.name().equals(paramName)) {
+					return param.rawFragment();
+				}
+			}
+			return encodeParameter(paramName, "");
+		}
+		return rawQuery;
+	}
+
+	/**
+	 * Builds the link according to the link mode: either the full query or only the changed parameter.
+	 */
+	private String buildLink(String removeParam, String appendParam, String appendValue) {
+		if (LinkMode.COMPACT.equals(linkMode)) {
+			return appendParam != null ? encodeParameter(appendParam, appendValue) : encodeParameter(removeParam, "");
+		}
+		return buildQuery(removeParam, appendParam, appendValue);
+	}
+
+	/**
+	 * Assembles the raw query from the pre-encoded parameters of the current link. Same as the {@link URIBuilder}
+	 * behaves on 'setParameter', the replaced parameter is removed and the new parameter is appended to the end.
+	 * 
+	 * @param removeParam
+	 *        name of the parameter to remove or null
+	 * @param appendParam
+	 *        name of the parameter to append or null
+	 * @param appendValue
+	 *        the unencoded value of the appended parameter
+	 * @return the raw query or null, if there are no parameters
+	 */
+	private String buildQuery(String removeParam, String appendParam, String appendValue) {
+		StringBuilder query = new StringBuilder(rawQuery == null ? 32 : rawQuery.length() + 32);
+		for (UrlParam param : encodedParams) {
+			if (removeParam == null || !removeParam.equals(param.name())) {
+				if (!query.isEmpty()) query.append('&');
+				query.append(param.rawFragment());
+			}
+		}
+		if (appendParam != null) {
+			if (!query.isEmpty()) query.append('&');
+			query.append(encodeParameter(appendParam, appendValue));
+		}
+		return query.isEmpty() ? null : query.toString();
+	}
+
+	private static String encodeParameter(String name, String value) {
+		return URLEncodedUtils.format(Collections.singletonList(new BasicNameValuePair(name, value)), StandardCharsets.UTF_8);
 	}
 
 	/**
@@ -325,9 +436,17 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	 * @return true if that filter is active with the given value.
 	 */
 	private boolean isFilterSelected(String paramName, String filterValue) {
-		return searchQueryLink.getQuery() != null && searchQueryLink.getRawQuery().matches("(^|.*?&)"
-				+ Pattern.quote(urlEncodeValue(paramName)) + "=[^&]*?"
-				+ Pattern.quote(urlEncodeValue(filterValue)) + "($|&|%2C).*");
+		if (rawQuery == null) return false;
+		String encodedName = urlEncodeValue(paramName);
+		String encodedValue = urlEncodeValue(filterValue);
+		for (UrlParam param : encodedParams) {
+			// the encoded value has to be at the end of the parameter value or followed by an encoded delimiter
+			if (param.rawName().equals(encodedName)
+					&& (param.rawValue().endsWith(encodedValue) || param.rawValue().contains(encodedValue + VALUE_DELIMITER_ENCODED))) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private String urlEncodeValue(String value) {
@@ -347,7 +466,7 @@ public final class DefaultLinkBuilder implements LinkBuilder {
 	}
 
 	public String toString() {
-		return searchQueryLink.getRawQuery();
+		return rawQuery;
 	}
 
 }
@@ -1,118 +1,126 @@
 package de.cxp.ocs.util;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
-import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig.ValueOrder;
 import de.cxp.ocs.model.result.Facet;
 import de.cxp.ocs.model.result.FacetEntry;
 import de.cxp.ocs.model.result.HierarchialFacetEntry;
 
+/**
+ * Sorts the entries of a facet according to a {@link ValueOrder}. The sorters
+ * are immutable and stateless, so there is a single shared instance per value
+ * order that can be used concurrently.
+ */
 public class FacetEntrySorter {
 
-	public final static FacetEntrySorter NOOP = new FacetEntrySorter(null, 0);
+	private final static Comparator<FacetEntry> KEY_COMPARATOR = Comparator.comparing(FacetEntry::getKey);
+
+	private final static Pattern NUMBER_PATTERN = Pattern.compile("\\p{N}+");
+
+	public final static FacetEntrySorter NOOP = new FacetEntrySorter(null);
 
-	private final static EnumMap<ValueOrder, FacetEntrySorter> DEFAULT_INSTANCES = new EnumMap<>(ValueOrder.class);
+	private final static EnumMap<ValueOrder, FacetEntrySorter> INSTANCES = new EnumMap<>(ValueOrder.class);
 	static {
-		// Some sorting variants are basically state-less and can be reused across facets
-		DEFAULT_INSTANCES.put(ValueOrder.ALPHANUM_ASC, new FacetEntrySorter(ValueOrder.ALPHANUM_ASC, 0));
-		DEFAULT_INSTANCES.put(ValueOrder.ALPHANUM_DESC, new FacetEntrySorter(ValueOrder.ALPHANUM_DESC, 0));
-		DEFAULT_INSTANCES.put(ValueOrder.COUNT, new FacetEntrySorter(ValueOrder.COUNT, 0));
+		for (ValueOrder valueOrder : ValueOrder.values()) {
+			INSTANCES.put(valueOrder, new FacetEntrySorter(valueOrder));
+		}
 	}
 
-	public static FacetEntrySorter of(ValueOrder valueOrder, int estimatedFacetValues) {
+	public static FacetEntrySorter of(ValueOrder valueOrder) {
 		if (valueOrder == null) return NOOP;
-		return Optional.ofNullable(DEFAULT_INSTANCES.get(valueOrder))
-				.orElseGet(() -> new FacetEntrySorter(valueOrder, estimatedFacetValues));
+		return INSTANCES.get(valueOrder);
 	}
 
-	private final Integer						defaultOrderValue;
-	private final LoadingCache<String, Integer>	numericTextParseCache;
-	private final Comparator<FacetEntry>		valueComparator;
-
-	private final Pattern numberPattern = Pattern.compile("\\p{N}+");
-
-	private FacetEntrySorter(ValueOrder valueOrder, int estimatedValueCardinality) {
-		if (ValueOrder.HUMAN_NUMERIC_ASC.equals(valueOrder) || ValueOrder.HUMAN_NUMERIC_DESC.equals(valueOrder)) {
-			defaultOrderValue = ValueOrder.HUMAN_NUMERIC_ASC.equals(valueOrder) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
-			numericTextParseCache = initParserCache(estimatedValueCardinality);
-		}
-		else {
-			defaultOrderValue = 0;
-			numericTextParseCache = null;
-		}
+	private final boolean					isHumanNumeric;
+	private final boolean					isDescending;
+	private final int						defaultOrderValue;
+	private final Comparator<FacetEntry>	valueComparator;
 
+	private FacetEntrySorter(ValueOrder valueOrder) {
+		isHumanNumeric = ValueOrder.HUMAN_NUMERIC_ASC.equals(valueOrder) || ValueOrder.HUMAN_NUMERIC_DESC.equals(valueOrder);
+		isDescending = ValueOrder.HUMAN_NUMERIC_DESC.equals(valueOrder);
+		// values without number are always sorted to the end
+		defaultOrderValue = isDescending ? Integer.MIN_VALUE : Integer.MAX_VALUE;
 		valueComparator = valueOrder != null ? initComparators(valueOrder) : null;
 	}
 
 	private Comparator<FacetEntry> initComparators(ValueOrder valueOrder) {
 		switch (valueOrder) {
 			case ALPHANUM_ASC:
-				return Comparator.comparing(FacetEntry::getKey);
+				return KEY_COMPARATOR;
 			case ALPHANUM_DESC:
-				return Comparator.comparing(FacetEntry::getKey).reversed();
-			case HUMAN_NUMERIC_ASC:
-				return Comparator.comparing(this::parseNumber).thenComparing(FacetEntry::getKey);
-			case HUMAN_NUMERIC_DESC:
-				return Comparator.comparing(this::parseNumber).thenComparing(FacetEntry::getKey).reversed();
+				return KEY_COMPARATOR.reversed();
 			case COUNT:
-				return Comparator.comparing(FacetEntry::getDocCount).reversed();
+				return Comparator.comparingLong(FacetEntry::getDocCount).reversed();
 			default:
 				return null;
 		}
 	}
 
-	private LoadingCache<String, Integer> initParserCache(int estimatedValueCardinality) {
-		return CacheBuilder.newBuilder().maximumSize(estimatedValueCardinality)
-				.build(new CacheLoader<String, Integer>() {
-
-					@Override
-					public Integer load(String value) {
-						if (value == null || value.isBlank()) {
-							return defaultOrderValue;
-						}
-						Matcher numberMatcher = numberPattern.matcher(value);
-						if (numberMatcher.find()) {
-							String match = numberMatcher.group();
-							return Util.tryToParseAsNumber(match).map(Number::intValue).orElse(defaultOrderValue);
-						}
-						else {
-							return defaultOrderValue;
-						}
-					}
-				});
+	public void sort(Facet facet) {
+		if (valueComparator != null || isHumanNumeric) {
+			sortEntries(facet.entries);
+			facet.entries.forEach(this::sortChildren);
+		}
 	}
 
-	private Integer parseNumber(FacetEntry entry) {
-		try {
-			return numericTextParseCache.get(entry.getKey());
+	private void sortChildren(FacetEntry parent) {
+		if (parent instanceof HierarchialFacetEntry && ((HierarchialFacetEntry) parent).getChildren().size() > 1) {
+			sortEntries(((HierarchialFacetEntry) parent).getChildren());
+			((HierarchialFacetEntry) parent).getChildren().forEach(this::sortChildren);
 		}
-		catch (ExecutionException e) {
-			return defaultOrderValue;
+	}
+
+	private void sortEntries(List<FacetEntry> entries) {
+		if (isHumanNumeric) {
+			sortByNumericKey(entries);
+		}
+		else {
+			Collections.sort(entries, valueComparator);
 		}
 	}
 
-	public void sort(Facet facet) {
-		if (valueComparator != null) {
-			Collections.sort(facet.entries, valueComparator);
-			facet.entries.forEach(parent -> sortChildren(parent, valueComparator));
+	/**
+	 * Sorts the entries by the first number in their key and afterwards by the
+	 * key itself. The number of each entry is only parsed once and combined
+	 * with the rank of the entry's key into a single primitive sort key, so the
+	 * sorting itself does not need any object comparisons.
+	 */
+	private void sortByNumericKey(List<FacetEntry> entries) {
+		int size = entries.size();
+		if (size < 2) return;
+
+		FacetEntry[] keySortedEntries = entries.toArray(new FacetEntry[size]);
+		Arrays.sort(keySortedEntries, KEY_COMPARATOR);
+
+		long[] sortKeys = new long[size];
+		for (int rank = 0; rank < size; rank++) {
+			sortKeys[rank] = ((long) parseNumber(keySortedEntries[rank].getKey()) << 32) | rank;
+		}
+		Arrays.sort(sortKeys);
+
+		for (int i = 0; i < size; i++) {
+			long sortKey = sortKeys[isDescending ? size - 1 - i : i];
+			entries.set(i, keySortedEntries[(int) sortKey]);
 		}
 	}
 
-	private void sortChildren(FacetEntry parent, Comparator<FacetEntry> valueComparator) {
-		if (parent instanceof HierarchialFacetEntry && ((HierarchialFacetEntry) parent).getChildren().size() > 1) {
-			Collections.sort(((HierarchialFacetEntry) parent).getChildren(), valueComparator);
-			((HierarchialFacetEntry) parent).getChildren().forEach(subParent -> sortChildren(subParent, valueComparator));
+	private int parseNumber(String value) {
+		if (value == null || value.isBlank()) {
+			return defaultOrderValue;
+		}
+		Matcher numberMatcher = NUMBER_PATTERN.matcher(value);
+		if (numberMatcher.find()) {
+			return Util.tryToParseAsNumber(numberMatcher.group()).map(Number::intValue).orElse(defaultOrderValue);
 		}
+		return defaultOrderValue;
 	}
 
 }
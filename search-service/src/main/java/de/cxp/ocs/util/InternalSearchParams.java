@@ -5,10 +5,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import de.cxp.ocs.elasticsearch.MultiSearchBatch;
 import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
 import de.cxp.ocs.elasticsearch.query.sort.SortInstruction;
+import de.cxp.ocs.model.params.LinkMode;
 import de.cxp.ocs.model.params.StaticProductSet;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.experimental.Accessors;
 
@@ -34,6 +37,17 @@ public class InternalSearchParams {
 	 */
 	public boolean withFacets = true;
 
+	/**
+	 * flag to specify if hits are necessary. If set to false, only the facets
+	 * and the match count are built.
+	 */
+	public boolean withHits = true;
+
+	/**
+	 * Defines how the links of facet entries and sort options are rendered.
+	 */
+	public LinkMode linkMode = LinkMode.FULL;
+
 	/**
 	 * Flag to specify if the full documents should be returned or not. Default:
 	 * true.
@@ -63,6 +77,21 @@ public class InternalSearchParams {
 
 	public TraceOptions trace;
 
+	/**
+	 * Deadline derived from the latency budget. It's shared with all
+	 * sub-searches of the same request, e.g. to resolve product sets.
+	 */
+	@EqualsAndHashCode.Exclude
+	public Deadline deadline = Deadline.NONE;
+
+	/**
+	 * Optional member of a multi-search batch. If set, the first search
+	 * request is sent together with the requests of the other searches of
+	 * that batch.
+	 */
+	@EqualsAndHashCode.Exclude
+	public MultiSearchBatch.Member multiSearchMember;
+
 	public InternalSearchParams withSorting(SortInstruction sorting) {
 		sortings.add(sorting);
 		return this;
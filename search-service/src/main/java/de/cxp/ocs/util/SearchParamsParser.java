@@ -53,6 +53,8 @@ public class SearchParamsParser {
 		}
 
 		parameters.withFacets = searchQuery.withFacets;
+		parameters.withHits = searchQuery.withHits;
+		parameters.linkMode = Optional.ofNullable(searchQuery.links).orElseGet(() -> searchContext.config.getFacetConfiguration().getLinkMode());
 		parameters.userQuery = searchQuery.q;
 
 		if (searchQuery.sort != null) {
@@ -74,6 +76,14 @@ public class SearchParamsParser {
 
 		parameters.trace = Optional.ofNullable(parameters.customParams.get("trace")).map(TraceOptions::parse).orElse(TraceOptions.OFF);
 
+		// a requested latency budget may only lower the budget of the tenant
+		long latencyBudget = searchContext.config.getLatencyBudgetMs();
+		long requestedLatencyBudget = Optional.ofNullable(customParams.remove("latencyBudget")).map(Long::parseLong).orElse(0L);
+		if (requestedLatencyBudget > 0 && (latencyBudget <= 0 || requestedLatencyBudget < latencyBudget)) {
+			latencyBudget = requestedLatencyBudget;
+		}
+		parameters.deadline = Deadline.of(latencyBudget);
+
 		return parameters;
 	}
 
@@ -12,7 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 public class TraceOptions {
 
 	public enum TraceFlag {
-		Request, EsQuery
+		Request, EsQuery, Facets
 	}
 
 	private static final Map<String, TraceFlag> lowercaseMapping = new HashMap<>(TraceFlag.values().length);
@@ -0,0 +1,43 @@
+package de.cxp.ocs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+
+import de.cxp.ocs.config.FieldConfigIndex;
+import de.cxp.ocs.config.FieldConfiguration;
+import de.cxp.ocs.config.SearchConfiguration;
+import de.cxp.ocs.elasticsearch.facets.CategoryHierarchy;
+
+public class SearchControllerTest {
+
+	@Mock
+	private SearchContextLoader searchContextLoader;
+
+	@InjectMocks
+	private SearchController underTest;
+
+	@BeforeEach
+	public void setup() {
+		MockitoAnnotations.openMocks(this);
+	}
+
+	@Test
+	public void testFlushWithUnchangedConfig() {
+		SearchConfiguration config = new SearchConfiguration().setIndexName("test");
+		// each flush fetches a new category hierarchy
+		when(searchContextLoader.loadContext("test")).thenAnswer(invocation -> new SearchContext(new FieldConfigIndex(new FieldConfiguration()),
+				config, Collections.emptyList(), null, CategoryHierarchy.builder().add("category", "Men", "1").build()));
+
+		assertEquals(HttpStatus.CREATED, underTest.flushConfig("test").getStatusCode());
+		assertEquals(HttpStatus.NOT_MODIFIED, underTest.flushConfig("test").getStatusCode());
+	}
+}
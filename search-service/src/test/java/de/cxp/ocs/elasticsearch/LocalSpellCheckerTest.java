@@ -0,0 +1,103 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.elasticsearch.model.term.AssociatedTerm;
+import de.cxp.ocs.elasticsearch.query.builder.CountedTerm;
+
+public class LocalSpellCheckerTest {
+
+	private static final float MIN_SCORE = 0.75f;
+
+	@Test
+	public void testCorrectionsOfFixtureCorpus() throws IOException {
+		LocalSpellChecker underTest = new LocalSpellChecker();
+		underTest.load(readVocabulary());
+
+		for (String[] fixture : readFixture("spellcheck-corrections.tsv")) {
+			String term = fixture[0];
+			List<String> expectedCorrections = fixture.length > 1 ? Arrays.asList(fixture[1].split(",")) : Collections.emptyList();
+
+			AssociatedTerm correctedWord = underTest.correct(List.of(term), MIN_SCORE).get(term);
+			List<String> actualCorrections = correctedWord == null ? Collections.emptyList() : new ArrayList<>(correctedWord.getRelatedTerms().keySet());
+			assertEquals(expectedCorrections, actualCorrections, "unexpected corrections for '" + term + "'");
+		}
+	}
+
+	@Test
+	public void testCorrectionScoreAndFrequency() throws IOException {
+		LocalSpellChecker underTest = new LocalSpellChecker();
+		underTest.load(readVocabulary());
+
+		Map<String, AssociatedTerm> corrections = underTest.correct(List.of("iphnoe", "case", "cabel"), MIN_SCORE);
+		assertEquals(Set.of("iphnoe", "cabel"), corrections.keySet());
+
+		CountedTerm correction = (CountedTerm) corrections.get("iphnoe").getRelatedTerms().get("iphone");
+		assertEquals(120, correction.getTermFrequency());
+		assertTrue(correction.toQueryString().endsWith("^0.8333333"), correction.toQueryString());
+	}
+
+	@Test
+	public void testReloadReplacesVocabulary() {
+		LocalSpellChecker underTest = new LocalSpellChecker();
+		assertFalse(underTest.isLoaded());
+		assertTrue(underTest.correct(List.of("laptp"), MIN_SCORE).isEmpty());
+
+		underTest.load(Map.of("laptop", 10));
+		assertTrue(underTest.isLoaded());
+		assertEquals(1, underTest.correct(List.of("laptp"), MIN_SCORE).size());
+
+		underTest.load(Map.of("laptp", 1));
+		assertEquals(1, underTest.size());
+		assertTrue(underTest.correct(List.of("laptp"), MIN_SCORE).isEmpty());
+	}
+
+	@Test
+	public void testEditDistance() {
+		assertEquals(0, LocalSpellChecker.getEditDistance("shoes", "shoes"));
+		assertEquals(1, LocalSpellChecker.getEditDistance("iphnoe", "iphone"));
+		assertEquals(1, LocalSpellChecker.getEditDistance("jackt", "jacket"));
+		assertEquals(2, LocalSpellChecker.getEditDistance("snekaer", "sneakers"));
+		assertEquals(3, LocalSpellChecker.getEditDistance("abc", "xyz"));
+	}
+
+	@Test
+	public void testSpellCorrectorUsesLoadedLocalSpellChecker() throws IOException {
+		LocalSpellChecker localSpellChecker = new LocalSpellChecker();
+		SpellCorrector spellCorrector = new SpellCorrector(List.of("title"), null, localSpellChecker);
+		assertEquals("iphnoe case", spellCorrector.buildSpellCorrectionQuery("iphnoe case").getGlobalText());
+
+		localSpellChecker.load(readVocabulary());
+		assertEquals(null, spellCorrector.buildSpellCorrectionQuery("iphnoe case"));
+		assertEquals(Set.of("iphnoe"), spellCorrector.getCorrections("iphnoe case", null).keySet());
+	}
+
+	private Map<String, Integer> readVocabulary() throws IOException {
+		Map<String, Integer> vocabulary = new HashMap<>();
+		readFixture("spellcheck-vocabulary.tsv").forEach(line -> vocabulary.put(line[0], Integer.parseInt(line[1])));
+		return vocabulary;
+	}
+
+	private List<String[]> readFixture(String fileName) throws IOException {
+		List<String[]> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream(fileName), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isBlank() && !line.startsWith("#")) {
+					lines.add(line.split("\t"));
+				}
+			}
+		}
+		return lines;
+	}
+}
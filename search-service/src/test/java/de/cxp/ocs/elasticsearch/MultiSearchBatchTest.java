@@ -0,0 +1,143 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import de.cxp.ocs.util.Deadline;
+
+public class MultiSearchBatchTest {
+
+	private final RestHighLevelClient restClient = mock(RestHighLevelClient.class);
+
+	@Test
+	public void testFirstRequestsAreSentTogether() throws Exception {
+		SearchResponse response0 = mock(SearchResponse.class);
+		// the submission order depends on the threads, so answer by index
+		when(restClient.msearch(any(MultiSearchRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+			MultiSearchRequest multiSearchRequest = invocation.getArgument(0);
+			return new MultiSearchResponse(multiSearchRequest.requests().stream()
+					.map(request -> "index0".equals(request.indices()[0])
+							? new MultiSearchResponse.Item(response0, null)
+							: new MultiSearchResponse.Item(null, new ElasticsearchException("Elasticsearch exception [type=index_not_found_exception, reason=no such index]")))
+					.toArray(MultiSearchResponse.Item[]::new), 1);
+		});
+
+		MultiSearchBatch underTest = new MultiSearchBatch(restClient, 3);
+		SearchRequest request0 = new SearchRequest("index0");
+		SearchRequest request1 = new SearchRequest("index1");
+		CompletableFuture<SearchResponse> search0 = submit(underTest.getMember(0), request0);
+		CompletableFuture<SearchResponse> search1 = submit(underTest.getMember(1), request1);
+
+		// the batch is not sent until all members submitted or left
+		Thread.sleep(50);
+		assertFalse(search0.isDone());
+		verify(restClient, never()).msearch(any(), any());
+
+		underTest.getMember(2).leave();
+
+		assertSame(response0, search0.get(5, TimeUnit.SECONDS));
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> search1.get(5, TimeUnit.SECONDS));
+		assertTrue(failure.getCause() instanceof ElasticsearchStatusException);
+		assertTrue(failure.getCause().getMessage().contains("type=index_not_found_exception"));
+
+		ArgumentCaptor<MultiSearchRequest> sentRequest = ArgumentCaptor.forClass(MultiSearchRequest.class);
+		verify(restClient, times(1)).msearch(sentRequest.capture(), any());
+		assertEquals(2, sentRequest.getValue().requests().size());
+		assertFalse(underTest.getMember(0).isOpen());
+		assertFalse(underTest.getMember(2).isOpen());
+	}
+
+	@Test
+	public void testNothingIsSentIfAllMembersLeave() throws Exception {
+		MultiSearchBatch underTest = new MultiSearchBatch(restClient, 2);
+		underTest.getMember(0).leave();
+		underTest.getMember(1).leave();
+		// leaving twice has no effect
+		underTest.getMember(1).leave();
+		verify(restClient, never()).msearch(any(), any());
+	}
+
+	@Test
+	public void testConnectionErrorFailsAllMembers() throws Exception {
+		when(restClient.msearch(any(MultiSearchRequest.class), any(RequestOptions.class))).thenThrow(new ConnectException("connection refused"));
+
+		MultiSearchBatch underTest = new MultiSearchBatch(restClient, 2);
+		CompletableFuture<SearchResponse> search0 = submit(underTest.getMember(0), new SearchRequest("index"));
+		assertThrows(ConnectException.class, () -> underTest.getMember(1).search(new SearchRequest("index"), Deadline.NONE));
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> search0.get(5, TimeUnit.SECONDS));
+		assertTrue(failure.getCause() instanceof ConnectException);
+	}
+
+	@Test
+	public void testMemberFallsBackToSingleSearchAfterDeadline() throws Exception {
+		SearchResponse singleResponse = mock(SearchResponse.class);
+		SearchResponse batchResponse = mock(SearchResponse.class);
+		when(restClient.search(any(SearchRequest.class), any(RequestOptions.class))).thenReturn(singleResponse);
+		when(restClient.msearch(any(MultiSearchRequest.class), any(RequestOptions.class)))
+				.thenReturn(new MultiSearchResponse(new MultiSearchResponse.Item[] { new MultiSearchResponse.Item(batchResponse, null) }, 1));
+
+		MultiSearchBatch underTest = new MultiSearchBatch(restClient, 3);
+		SearchRequest request0 = new SearchRequest("index0");
+		// the other members are too slow for that deadline
+		assertSame(singleResponse, underTest.getMember(0).search(request0, Deadline.of(20)));
+		verify(restClient).search(eq(request0), any(RequestOptions.class));
+
+		// the timed out request is not part of the batch anymore
+		CompletableFuture<SearchResponse> search1 = submit(underTest.getMember(1), new SearchRequest("index1"), Deadline.of(5_000));
+		underTest.getMember(2).leave();
+		assertSame(batchResponse, search1.get(5, TimeUnit.SECONDS));
+
+		ArgumentCaptor<MultiSearchRequest> sentRequest = ArgumentCaptor.forClass(MultiSearchRequest.class);
+		ArgumentCaptor<RequestOptions> sentOptions = ArgumentCaptor.forClass(RequestOptions.class);
+		verify(restClient, times(1)).msearch(sentRequest.capture(), sentOptions.capture());
+		assertEquals(1, sentRequest.getValue().requests().size());
+		assertEquals("index1", sentRequest.getValue().requests().get(0).indices()[0]);
+		// the request is aborted with the deadline of the member
+		assertTrue(sentOptions.getValue().getRequestConfig().getSocketTimeout() <= 5_100);
+	}
+
+	private static CompletableFuture<SearchResponse> submit(MultiSearchBatch.Member member, SearchRequest request) {
+		return submit(member, request, Deadline.NONE);
+	}
+
+	private static CompletableFuture<SearchResponse> submit(MultiSearchBatch.Member member, SearchRequest request, Deadline deadline) {
+		CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+		new Thread(() -> {
+			try {
+				result.complete(member.search(request, deadline));
+			}
+			catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}).start();
+		return result;
+	}
+}
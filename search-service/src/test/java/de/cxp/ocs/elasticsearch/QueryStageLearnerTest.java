@@ -0,0 +1,75 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.cxp.ocs.spi.search.ESQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class QueryStageLearnerTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	private final List<ESQueryFactory> stages = List.of(stage("strict"), stage("relaxed"), stage("fuzzy"));
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testLearnedStage() {
+		QueryStageLearner underTest = new QueryStageLearner(100, 3600, null, Locale.ROOT, registry, "test");
+		assertEquals(0, underTest.getStartStage("ABC 123", stages));
+
+		underTest.learn("ABC 123", "fuzzy", 2);
+		assertEquals(2, underTest.getStartStage("abc   123", stages));
+		// unknown stages are ignored
+		assertEquals(0, underTest.getStartStage("abc 123", List.of(stage("strict"), stage("relaxed"))));
+
+		assertEquals(1, registry.find("queryStageLearner").tag("result", "hit").counter().count());
+		assertEquals(2, registry.find("queryStageLearner").tag("result", "miss").counter().count());
+		assertEquals(2, registry.find("queryStageLearnerSkippedStages").counter().count());
+
+		// sufficient results of the first stage remove the learned stage
+		underTest.learn("abc 123", "strict", 0);
+		assertEquals(0, underTest.getStartStage("abc 123", stages));
+		assertEquals(0, underTest.size());
+
+		underTest.learn("abc 123", "relaxed", 1);
+		underTest.forget("ABC 123");
+		assertEquals(0, underTest.getStartStage("abc 123", stages));
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		Path file = tempDir.resolve("stages.tsv");
+		QueryStageLearner underTest = new QueryStageLearner(100, 3600, file, Locale.ROOT, registry, "test");
+		underTest.learn("abc 123", "fuzzy", 2);
+		underTest.learn("xyz", "relaxed", 1);
+		underTest.save();
+
+		Files.writeString(file, "expired\tfuzzy\t1000\nbroken line\n", StandardOpenOption.APPEND);
+
+		QueryStageLearner reloaded = new QueryStageLearner(100, 3600, file, Locale.ROOT, new SimpleMeterRegistry(), "test");
+		assertEquals(2, reloaded.size());
+		assertEquals(2, reloaded.getStartStage("abc 123", stages));
+		assertEquals(1, reloaded.getStartStage("xyz", stages));
+		assertEquals(0, reloaded.getStartStage("expired", stages));
+	}
+
+	private static ESQueryFactory stage(String name) {
+		ESQueryFactory stage = mock(ESQueryFactory.class);
+		when(stage.getName()).thenReturn(name);
+		return stage;
+	}
+}
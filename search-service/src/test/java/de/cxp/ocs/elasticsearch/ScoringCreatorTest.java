@@ -0,0 +1,93 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.SearchContext;
+import de.cxp.ocs.config.*;
+import de.cxp.ocs.config.ScoringConfiguration.ScoringFunction;
+import de.cxp.ocs.elasticsearch.query.ScoringContext;
+import de.cxp.ocs.util.InternalSearchParams;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ScoringCreatorTest {
+
+	private final FieldConfiguration fields = new FieldConfiguration()
+			.addField(new Field("rating").setUsage(FieldUsage.SCORE))
+			.addField(new Field("stock").setUsage(FieldUsage.SCORE).setFieldLevel(FieldLevel.VARIANT))
+			.addField(new Field("sales").setUsage(FieldUsage.SCORE));
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void testStaticScoringContextIsShared() {
+		ScoringCreator underTest = createScoringCreator(
+				new ScoringFunction().setField("rating"),
+				new ScoringFunction().setField("stock"),
+				new ScoringFunction().setType(ScoreType.WEIGHT).setWeight(2f));
+
+		ScoringContext scoringContext = underTest.getScoringContext(new InternalSearchParams());
+		assertSame(scoringContext, underTest.getScoringContext(new InternalSearchParams()));
+		assertEquals(2, scoringContext.getMainScoringFunctions().size());
+		assertEquals(1, scoringContext.getVariantScoringFunctions().size());
+		assertTrue(underTest.getDiscardedScoreFunctions().isEmpty());
+	}
+
+	@Test
+	public void testInvalidFunctionsAreDiscardedAtLoadTime() {
+		ScoringCreator underTest = createScoringCreator(
+				new ScoringFunction().setField("unknown"),
+				new ScoringFunction().setType(ScoreType.DECAY_GAUSS).setField("rating"),
+				new ScoringFunction().setType(ScoreType.SCRIPT_SCORE),
+				new ScoringFunction().setField("rating").setOptions(options(ScoreOption.MODIFIER, "invalid")),
+				new ScoringFunction().setField("rating").setOptions(options(ScoreOption.USE_FOR_VARIANTS, "true")),
+				new ScoringFunction().setField("sales"));
+
+		assertEquals(5, underTest.getDiscardedScoreFunctions().size());
+		assertEquals(5, registry.find("scoringFunctionsDiscarded").counter().count());
+		assertEquals(1, underTest.getScoringContext(new InternalSearchParams()).getMainScoringFunctions().size());
+	}
+
+	@Test
+	public void testDynamicRankFeature() {
+		Map<ScoreOption, String> dynamicOptions = options(ScoreOption.DYNAMIC_PARAM, "channel");
+		ScoringCreator underTest = createScoringCreator(
+				new ScoringFunction().setField("rating"),
+				new ScoringFunction().setType(ScoreType.RANK_FEATURE).setField("sales").setOptions(dynamicOptions));
+
+		ScoringContext withoutParam = underTest.getScoringContext(new InternalSearchParams().setCustomParams(Collections.emptyMap()));
+		assertEquals(1, withoutParam.getMainScoringFunctions().size());
+		assertTrue(withoutParam.getBoostingQueries().isEmpty());
+
+		ScoringContext withParam = underTest.getScoringContext(new InternalSearchParams().setCustomParams(Map.of("channel", "web")));
+		assertNotSame(withoutParam, withParam);
+		assertEquals(1, withParam.getMainScoringFunctions().size());
+		assertEquals(1, withParam.getBoostingQueries().size());
+		assertTrue(withParam.getBoostingQueries().get(0).toString().contains("\"scores.sales.web\""));
+
+		// the dynamic part must not leak into the precompiled context
+		assertTrue(underTest.getScoringContext(new InternalSearchParams().setCustomParams(Collections.emptyMap())).getBoostingQueries().isEmpty());
+	}
+
+	private ScoringCreator createScoringCreator(ScoringFunction... scoringFunctions) {
+		SearchConfiguration config = new SearchConfiguration().setIndexName("test")
+				.setScoring(new ScoringConfiguration().setScoreFunctions(List.of(scoringFunctions)));
+		return new ScoringCreator(new SearchContext(new FieldConfigIndex(fields), config, Collections.emptyList(), null, null), registry);
+	}
+
+	private static Map<ScoreOption, String> options(ScoreOption option, String value) {
+		Map<ScoreOption, String> options = new HashMap<>();
+		options.put(option, value);
+		return options;
+	}
+}
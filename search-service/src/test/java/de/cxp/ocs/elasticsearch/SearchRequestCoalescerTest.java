@@ -0,0 +1,305 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.config.Field;
+import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
+import de.cxp.ocs.elasticsearch.query.sort.SortInstruction;
+import de.cxp.ocs.model.index.Document;
+import de.cxp.ocs.model.params.LinkMode;
+import de.cxp.ocs.model.params.StaticProductSet;
+import de.cxp.ocs.model.result.*;
+import de.cxp.ocs.util.Deadline;
+import de.cxp.ocs.util.InternalSearchParams;
+import de.cxp.ocs.util.TraceOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SearchRequestCoalescerTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void testConcurrentIdenticalSearchesShareExecution() throws Exception {
+		SearchRequestCoalescer underTest = new SearchRequestCoalescer(5_000, registry, "test");
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger executions = new AtomicInteger();
+		SearchResult leaderResult = createResult();
+
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try {
+			Future<SearchResult> leader = executor.submit(() -> underTest.execute(params("shoes"), () -> {
+				executions.incrementAndGet();
+				await(release);
+				return leaderResult;
+			}));
+			// wait until the leader is running
+			while (executions.get() == 0) Thread.sleep(1);
+
+			List<Future<SearchResult>> followers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				followers.add(executor.submit(() -> underTest.execute(params(" shoes "), () -> {
+					executions.incrementAndGet();
+					return new SearchResult();
+				})));
+			}
+			// give the followers time to wait for the leader
+			Thread.sleep(100);
+			release.countDown();
+
+			assertSame(leaderResult, leader.get());
+			for (Future<SearchResult> follower : followers) {
+				SearchResult followerResult = follower.get();
+				assertNotSame(leaderResult, followerResult);
+				assertEquals(leaderResult.slices, followerResult.slices);
+				assertEquals(leaderResult.sortOptions, followerResult.sortOptions);
+				assertEquals(true, followerResult.meta.get("coalesced"));
+			}
+			assertEquals(1, executions.get());
+			assertEquals(4, registry.find("searchRequestCoalescing").tag("result", "coalesced").counter().count());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testBoundedWait() throws Exception {
+		SearchRequestCoalescer underTest = new SearchRequestCoalescer(10, registry, "test");
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(() -> underTest.execute(params("shoes"), () -> {
+				started.countDown();
+				await(release);
+				return new SearchResult();
+			}));
+			started.await();
+
+			SearchResult ownResult = new SearchResult();
+			assertSame(ownResult, underTest.execute(params("shoes"), () -> ownResult));
+			assertEquals(1, registry.find("searchRequestCoalescing").tag("result", "timeout").counter().count());
+		}
+		finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedExecutionIsNotShared() throws Exception {
+		SearchRequestCoalescer underTest = new SearchRequestCoalescer(5_000, registry, "test");
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<SearchResult> failing = executor.submit(() -> underTest.execute(params("shoes"), () -> {
+				started.countDown();
+				await(release);
+				throw new IOException("connection lost");
+			}));
+			started.await();
+
+			SearchResult ownResult = new SearchResult();
+			CompletableFuture<SearchResult> follower = CompletableFuture.supplyAsync(() -> {
+				try {
+					return underTest.execute(params("shoes"), () -> ownResult);
+				}
+				catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			});
+			Thread.sleep(50);
+			release.countDown();
+
+			assertSame(ownResult, follower.get());
+			assertTrue(assertThrowsExecution(failing) instanceof IOException);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPartialResultIsNotShared() throws Exception {
+		SearchRequestCoalescer underTest = new SearchRequestCoalescer(5_000, registry, "test");
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(() -> underTest.execute(params("shoes"), () -> {
+				started.countDown();
+				await(release);
+				return new SearchResult().setMeta(new HashMap<>(Map.of("partial_result", true)));
+			}));
+			started.await();
+
+			SearchResult ownResult = new SearchResult();
+			CompletableFuture<SearchResult> follower = CompletableFuture.supplyAsync(() -> {
+				try {
+					return underTest.execute(params("shoes"), () -> ownResult);
+				}
+				catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			});
+			Thread.sleep(50);
+			release.countDown();
+
+			assertSame(ownResult, follower.get());
+			assertEquals(1, registry.find("searchRequestCoalescing").tag("result", "partial").counter().count());
+			assertEquals(0, registry.find("searchRequestCoalescing").tag("result", "coalesced").counter().count());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCoalescedResultsAreIndependent() throws Exception {
+		SearchRequestCoalescer underTest = new SearchRequestCoalescer(5_000, registry, "test");
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		SearchResult leaderResult = createResult();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			executor.submit(() -> underTest.execute(params("shoes"), () -> {
+				started.countDown();
+				await(release);
+				return leaderResult;
+			}));
+			started.await();
+
+			List<Future<SearchResult>> followers = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				followers.add(executor.submit(() -> underTest.execute(params("shoes"), () -> new SearchResult())));
+			}
+			Thread.sleep(100);
+			release.countDown();
+
+			SearchResult first = followers.get(0).get();
+			SearchResult second = followers.get(1).get();
+			first.slices.get(0).hits.get(0).document.set("title", "changed");
+			first.slices.get(0).hits.get(0).withMetaData("score", 1);
+			((HierarchialFacetEntry) first.slices.get(0).facets.get(0).entries.get(0)).children.get(0).setDocCount(1);
+			first.slices.get(0).facets.get(1).entries.clear();
+			first.sortOptions.get(0).isActive = true;
+			first.slices.add(new SearchResultSlice());
+
+			assertEquals(createResult().slices, second.slices);
+			assertEquals(createResult().slices, leaderResult.slices);
+			assertEquals(createResult().sortOptions, second.sortOptions);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCoalescingKeyContainsAllParameters() {
+		// fails for new parameters, since they have to be considered by the
+		// coalescing key
+		Map<String, Consumer<InternalSearchParams>> modifications = new HashMap<>();
+		modifications.put("limit", p -> p.setLimit(24));
+		modifications.put("aggSampling", p -> p.setAggSampling(100));
+		modifications.put("offset", p -> p.setOffset(12));
+		modifications.put("userQuery", p -> p.setUserQuery("boots"));
+		modifications.put("withFacets", p -> p.setWithFacets(false));
+		modifications.put("withHits", p -> p.setWithHits(false));
+		modifications.put("linkMode", p -> p.setLinkMode(LinkMode.COMPACT));
+		modifications.put("withResultData", p -> p.setWithResultData(false));
+		modifications.put("includeMainResult", p -> p.setIncludeMainResult(false));
+		modifications.put("sortings", p -> p.withSorting(new SortInstruction(new Field("price"), "price", SortOrder.ASC)));
+		modifications.put("filters", p -> p.withFilter(new TermResultFilter(new Field("brand"), "nike")));
+		modifications.put("inducedFilters", p -> p.inducedFilters.add(new TermResultFilter(new Field("brand"), "nike")));
+		modifications.put("customParams", p -> p.customParams.put("channel", "app"));
+		modifications.put("heroProductSets", p -> p.setHeroProductSets(new StaticProductSet[] { new StaticProductSet().setIds(new String[] { "1" }) }));
+		modifications.put("excludedIds", p -> p.setExcludedIds(Set.of("1")));
+		modifications.put("trace", p -> p.setTrace(TraceOptions.parse("EsQuery")));
+		modifications.put("deadline", p -> p.setDeadline(Deadline.of(100)));
+		modifications.put("multiSearchMember", p -> p.setMultiSearchMember(new MultiSearchBatch(null, 1).getMember(0)));
+
+		SearchRequestCoalescer.CoalescingKey key = SearchRequestCoalescer.getCoalescingKey(params("shoes"));
+		for (java.lang.reflect.Field paramField : InternalSearchParams.class.getDeclaredFields()) {
+			if (Modifier.isStatic(paramField.getModifiers())) continue;
+			Consumer<InternalSearchParams> modification = modifications.get(paramField.getName());
+			assertNotNull(modification, "parameter '" + paramField.getName() + "' is not considered by the coalescing key");
+
+			InternalSearchParams modifiedParams = params("shoes");
+			modification.accept(modifiedParams);
+			assertNotEquals(key, SearchRequestCoalescer.getCoalescingKey(modifiedParams), paramField.getName());
+		}
+	}
+
+	@Test
+	public void testCoalescingKey() {
+		SearchRequestCoalescer.CoalescingKey key = SearchRequestCoalescer.getCoalescingKey(params("shoes"));
+		assertEquals(key, SearchRequestCoalescer.getCoalescingKey(params("  shoes")));
+		assertNotEquals(key, SearchRequestCoalescer.getCoalescingKey(params("shoes").setOffset(12)));
+		assertNotEquals(key, SearchRequestCoalescer.getCoalescingKey(params("shoes").setCustomParams(Map.of("channel", "app"))));
+		assertNotEquals(key, SearchRequestCoalescer.getCoalescingKey(params("shoes").withFilter(new TermResultFilter(new Field("brand"), "nike"))));
+		TermResultFilter idFilter = new TermResultFilter(new Field("brand"), "nike");
+		idFilter.setFilterOnId(true);
+		assertNotEquals(SearchRequestCoalescer.getCoalescingKey(params("shoes").withFilter(new TermResultFilter(new Field("brand"), "nike"))),
+				SearchRequestCoalescer.getCoalescingKey(params("shoes").withFilter(idFilter)));
+		assertNotEquals(key, SearchRequestCoalescer.getCoalescingKey(params("shoes").setDeadline(Deadline.of(100))));
+		assertNull(SearchRequestCoalescer.getCoalescingKey(params("shoes").setTrace(TraceOptions.parse("EsQuery"))));
+		assertNull(SearchRequestCoalescer.getCoalescingKey(params("shoes").setMultiSearchMember(new MultiSearchBatch(null, 1).getMember(0))));
+	}
+
+	private static SearchResult createResult() {
+		SearchResultSlice slice = new SearchResultSlice().setMatchCount(1);
+		slice.hits = new ArrayList<>(List.of(new ResultHit().setDocument(new Document("1").set("title", "shoe")).withMetaData("index", "test")));
+		slice.facets = new ArrayList<>(List.of(
+				new Facet("category").addEntry(new HierarchialFacetEntry("Men", "1", 10, "", false).addChild(new HierarchialFacetEntry("Shoes", "2", 10, "", false))),
+				new Facet("brand").addEntry("nike", 5, "")));
+		return new SearchResult()
+				.setSlices(new ArrayList<>(List.of(slice)))
+				.setSortOptions(new ArrayList<>(List.of(new Sorting("Price", "price", SortOrder.ASC, false, ""))))
+				.setMeta(new HashMap<>());
+	}
+
+	private static InternalSearchParams params(String userQuery) {
+		return new InternalSearchParams().setUserQuery(userQuery).setCustomParams(new HashMap<>()).setTrace(TraceOptions.OFF);
+	}
+
+	private static void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+	}
+
+	private static Throwable assertThrowsExecution(Future<?> future) throws InterruptedException {
+		try {
+			future.get();
+			throw new AssertionError("execution expected to fail");
+		}
+		catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.SearchContext;
+import de.cxp.ocs.SearchPlugins;
+import de.cxp.ocs.config.Field;
+import de.cxp.ocs.config.FieldConfigAccess;
+import de.cxp.ocs.config.FieldConfigIndex;
+import de.cxp.ocs.config.FieldConfiguration;
+import de.cxp.ocs.config.FieldUsage;
+import de.cxp.ocs.config.QueryBuildingSetting;
+import de.cxp.ocs.config.QueryConfiguration;
+import de.cxp.ocs.config.SearchConfiguration;
+import de.cxp.ocs.elasticsearch.model.query.ExtendedQuery;
+import de.cxp.ocs.elasticsearch.query.TextMatchQuery;
+import de.cxp.ocs.model.params.SearchQuery;
+import de.cxp.ocs.model.result.SearchResult;
+import de.cxp.ocs.spi.search.ESQueryFactory;
+import de.cxp.ocs.util.InternalSearchParams;
+import de.cxp.ocs.util.SearchParamsParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SearcherTest {
+
+	private final RestHighLevelClient restClient = mock(RestHighLevelClient.class);
+
+	private final List<SearchRequest> searchRequests = new ArrayList<>();
+
+	@Test
+	public void testLearnedStageCountsSkippedStages() throws Exception {
+		SearchContext searchContext = createSearchContext(new FieldConfiguration());
+		Searcher underTest = createSearcher(searchContext);
+
+		SearchResult firstResult = underTest.find(params("foo", searchContext));
+		assertEquals(2, firstResult.meta.get("query_stage"));
+
+		// the first stage didn't create a query, but still counts
+		SearchResult learnedResult = underTest.find(params("foo", searchContext));
+		assertEquals(2, learnedResult.meta.get("query_stage"));
+		assertEquals(2, learnedResult.meta.get("query_stages_skipped"));
+	}
+
+	@Test
+	public void testFacetValuesDontTrainStageLearner() throws Exception {
+		SearchContext searchContext = createSearchContext(new FieldConfiguration().addField(new Field("brand").setUsage(FieldUsage.FACET)));
+		Searcher underTest = createSearcher(searchContext);
+
+		// the stage is learned by the search only
+		InternalSearchParams facetValuesParams = params("bar", searchContext);
+		underTest.findFacetValues(facetValuesParams, "brand", null, 10);
+		underTest.findFacetValues(facetValuesParams, "brand", null, 10);
+		assertEquals(0, underTest.find(params("bar", searchContext)).meta.getOrDefault("query_stages_skipped", 0));
+		assertFalse(facetValuesParams.withHits);
+		assertTrue(facetValuesParams.withFacets);
+
+		// the learned stage is used right away
+		searchRequests.clear();
+		underTest.findFacetValues(facetValuesParams, "brand", null, 10);
+		assertEquals(1, searchRequests.size());
+		assertTrue(searchRequests.get(0).source().toString().contains("with_hits"));
+		assertNotNull(searchRequests.get(0).source().aggregations());
+		assertEquals(2, underTest.find(params("bar", searchContext)).meta.get("query_stages_skipped"));
+	}
+
+	private SearchContext createSearchContext(FieldConfiguration fieldConfig) {
+		SearchConfiguration config = new SearchConfiguration().setIndexName("test")
+				.setQueryConfigs(List.of(
+						new QueryConfiguration().setName("no_query").setStrategy("NoQuery"),
+						new QueryConfiguration().setName("no_hits").setStrategy("TermQuery"),
+						new QueryConfiguration().setName("with_hits").setStrategy("TermQuery")));
+		config.getQueryProcessing().setQueryStageLearnerSize(10);
+		return new SearchContext(new FieldConfigIndex(fieldConfig), config, Collections.emptyList(), null, null);
+	}
+
+	private Searcher createSearcher(SearchContext searchContext) throws Exception {
+		SearchPlugins plugins = mock(SearchPlugins.class);
+		Map<String, Supplier<? extends ESQueryFactory>> queryFactories = Map.of("NoQuery", NoQueryFactory::new, "TermQuery", TermQueryFactory::new);
+		when(plugins.getEsQueryFactories()).thenReturn(queryFactories);
+		when(restClient.search(any(SearchRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+			SearchRequest searchRequest = invocation.getArgument(0);
+			searchRequests.add(searchRequest);
+			return response(searchRequest.source().toString().contains("with_hits") ? 1 : 0);
+		});
+		return new Searcher(restClient, searchContext, new SimpleMeterRegistry(), plugins);
+	}
+
+	private static InternalSearchParams params(String userQuery, SearchContext searchContext) {
+		InternalSearchParams params = SearchParamsParser.extractInternalParams(new SearchQuery().setQ(userQuery), Collections.emptyMap(), searchContext);
+		params.withHits = false;
+		return params;
+	}
+
+	private static SearchResponse response(long totalHits) {
+		SearchHits hits = new SearchHits(new SearchHit[0], new TotalHits(totalHits, TotalHits.Relation.EQUAL_TO), 1f);
+		return new SearchResponse(new InternalSearchResponse(hits, null, null, null, false, null, 1), null, 1, 1, 0, 1,
+				ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+	}
+
+	public static class NoQueryFactory extends TermQueryFactory {
+
+		@Override
+		public TextMatchQuery<QueryBuilder> createQuery(ExtendedQuery parsedQuery) {
+			return null;
+		}
+	}
+
+	public static class TermQueryFactory implements ESQueryFactory {
+
+		private String name;
+
+		@Override
+		public void initialize(String name, Map<QueryBuildingSetting, String> settings, Map<String, Float> fieldWeights, FieldConfigAccess fieldConfig) {
+			this.name = name;
+		}
+
+		@Override
+		public TextMatchQuery<QueryBuilder> createQuery(ExtendedQuery parsedQuery) {
+			return new TextMatchQuery<>(QueryBuilders.termQuery("searchable", parsedQuery.getSearchQuery().toQueryString()).queryName(name),
+					QueryBuilders.matchAllQuery(), false, false);
+		}
+
+		@Override
+		public boolean allowParallelSpellcheckExecution() {
+			return false;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package de.cxp.ocs.elasticsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.suggest.Suggest;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SortBy;
+import org.elasticsearch.search.suggest.term.TermSuggestion;
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.elasticsearch.model.term.AssociatedTerm;
+import de.cxp.ocs.elasticsearch.query.builder.CountedTerm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SpellCorrectorTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	private final SpellCorrectionCache cache = new SpellCorrectionCache(100, 60, registry, "test");
+
+	private final SpellCorrector underTest = new SpellCorrector(List.of("title"), cache, null);
+
+	@Test
+	public void testOnlyUncachedTermsAreRequested() {
+		SuggestBuilder spellCorrectionQuery = underTest.buildSpellCorrectionQuery("iphnoe case");
+		assertEquals("iphnoe case", spellCorrectionQuery.getGlobalText());
+
+		Map<String, AssociatedTerm> corrections = underTest.getCorrections("iphnoe case", suggest("iphnoe", "iphone", "case"));
+		assertEquals(1, corrections.size());
+		assertEquals("iphone", corrections.get("iphnoe").getRelatedTerms().keySet().iterator().next());
+		assertEquals(2, cache.size());
+
+		// only the unknown term is requested
+		assertEquals("addidas", underTest.buildSpellCorrectionQuery("iphnoe addidas case").getGlobalText());
+		corrections = underTest.getCorrections("iphnoe addidas case", suggest("addidas", "adidas"));
+		assertEquals(2, corrections.size());
+		assertEquals("adidas", corrections.get("addidas").getRelatedTerms().keySet().iterator().next());
+
+		// no request at all, if all terms are known
+		assertNull(underTest.buildSpellCorrectionQuery("case iphnoe"));
+		corrections = underTest.getCorrections("case iphnoe", null);
+		assertEquals(1, corrections.size());
+		CountedTerm cachedCorrection = (CountedTerm) corrections.get("iphnoe").getRelatedTerms().get("iphone");
+		assertEquals(42, cachedCorrection.getTermFrequency());
+
+		assertEquals(4, registry.find("spellCorrectionCache").tag("result", "hit").counter().count());
+		assertEquals(3, registry.find("spellCorrectionCache").tag("result", "miss").counter().count());
+	}
+
+	@Test
+	public void testCachedCorrectionsAreNotShared() {
+		underTest.getCorrections("iphnoe", suggest("iphnoe", "iphone"));
+		Map<String, AssociatedTerm> corrections = underTest.getCorrections("iphnoe", null);
+		corrections.get("iphnoe").getRelatedTerms().clear();
+
+		assertEquals(1, underTest.getCorrections("iphnoe", null).get("iphnoe").getRelatedTerms().size());
+	}
+
+	@Test
+	public void testWithoutCache() {
+		SpellCorrector uncachedCorrector = new SpellCorrector(List.of("title"));
+		assertEquals("iphnoe case", uncachedCorrector.buildSpellCorrectionQuery("iphnoe case").getGlobalText());
+		assertTrue(uncachedCorrector.getCorrections("iphnoe case", null).isEmpty());
+		assertEquals(1, uncachedCorrector.getCorrections("iphnoe case", suggest("iphnoe", "iphone", "case")).size());
+	}
+
+	/**
+	 * Build a term suggestion response.
+	 * 
+	 * @param termsAndCorrections
+	 *        the requested terms, each one optionally followed by its
+	 *        correction (if it's not the next requested term)
+	 * @return suggest response
+	 */
+	private Suggest suggest(String... termsAndCorrections) {
+		TermSuggestion suggestion = new TermSuggestion("search_data.title", 5, SortBy.SCORE);
+		List<String> requestedTerms = List.of("iphnoe", "case", "addidas");
+		int offset = 0;
+		for (int i = 0; i < termsAndCorrections.length; i++) {
+			String term = termsAndCorrections[i];
+			TermSuggestion.Entry entry = new TermSuggestion.Entry(new Text(term), offset, term.length());
+			offset += term.length() + 1;
+			if (i + 1 < termsAndCorrections.length && !requestedTerms.contains(termsAndCorrections[i + 1])) {
+				entry.addOption(new TermSuggestion.Entry.Option(new Text(termsAndCorrections[++i]), 42, 0.8f));
+			}
+			suggestion.addTerm(entry);
+		}
+		return new Suggest(Arrays.asList(suggestion));
+	}
+}
@@ -0,0 +1,92 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.config.FacetConfiguration;
+import de.cxp.ocs.config.Field;
+import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
+import de.cxp.ocs.util.InternalSearchParams;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdaptiveAggregationSamplingTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void testDisabledByDefault() {
+		AdaptiveAggregationSampling underTest = new AdaptiveAggregationSampling(new FacetConfiguration(), registry, "test");
+		assertFalse(underTest.isEnabled());
+
+		InternalSearchParams params = new InternalSearchParams().setUserQuery("*");
+		underTest.recordHitCount(params, 1_000_000);
+		assertEquals(-1, underTest.getAdaptiveSampleSize(params, -1));
+	}
+
+	@Test
+	public void testSampleSizeByObservedHits() {
+		FacetConfiguration facetConfig = new FacetConfiguration()
+				.setAdaptiveSamplingMinHits(10_000)
+				.setAdaptiveSamplingRate(0.1)
+				.setAdaptiveSamplingMinSize(2_000);
+		AdaptiveAggregationSampling underTest = new AdaptiveAggregationSampling(facetConfig, registry, "test");
+
+		InternalSearchParams broadQuery = new InternalSearchParams().setUserQuery("*");
+		InternalSearchParams mediumQuery = new InternalSearchParams().setUserQuery("shoes");
+		InternalSearchParams narrowQuery = new InternalSearchParams().setUserQuery("red shoes");
+
+		// unknown queries are never sampled
+		assertEquals(-1, underTest.getAdaptiveSampleSize(broadQuery, -1));
+
+		underTest.recordHitCount(broadQuery, 500_000);
+		underTest.recordHitCount(mediumQuery, 12_000);
+		underTest.recordHitCount(narrowQuery, 800);
+
+		assertEquals(50_000, underTest.getAdaptiveSampleSize(broadQuery, -1));
+		assertEquals(2_000, underTest.getAdaptiveSampleSize(mediumQuery, -1));
+		assertEquals(-1, underTest.getAdaptiveSampleSize(narrowQuery, -1));
+
+		// explicit sampling takes precedence
+		broadQuery.aggSampling = 100;
+		assertEquals(-1, underTest.getAdaptiveSampleSize(broadQuery, -1));
+
+		assertEquals(2, registry.get("facetAggregationSampling").tag("decision", "sampled").counter().count());
+		assertEquals(2, registry.get("facetAggregationSampling").tag("decision", "full").counter().count());
+	}
+
+	@Test
+	public void testExpectedHitsOfCurrentQuery() {
+		FacetConfiguration facetConfig = new FacetConfiguration()
+				.setAdaptiveSamplingMinHits(10_000)
+				.setAdaptiveSamplingRate(0.1)
+				.setAdaptiveSamplingMinSize(2_000);
+		AdaptiveAggregationSampling underTest = new AdaptiveAggregationSampling(facetConfig, registry, "test");
+		InternalSearchParams params = new InternalSearchParams().setUserQuery("shoes");
+
+		// no previous request necessary
+		assertEquals(50_000, underTest.getAdaptiveSampleSize(params, 500_000));
+
+		// the expectation of the current query takes precedence
+		underTest.recordHitCount(params, 500_000);
+		assertEquals(-1, underTest.getAdaptiveSampleSize(params, 800));
+		assertEquals(50_000, underTest.getAdaptiveSampleSize(params, -1));
+	}
+
+	@Test
+	public void testQueryKeyConsidersFilters() {
+		InternalSearchParams unfiltered = new InternalSearchParams().setUserQuery("shoes");
+		InternalSearchParams filtered = new InternalSearchParams().setUserQuery("shoes")
+				.withFilter(new TermResultFilter(new Field("brand"), "apple"));
+		InternalSearchParams negated = new InternalSearchParams().setUserQuery("shoes")
+				.withFilter(new TermResultFilter(new Field("brand"), "apple").setNegated(true));
+
+		assertNotEquals(AdaptiveAggregationSampling.getQueryKey(unfiltered), AdaptiveAggregationSampling.getQueryKey(filtered));
+		assertNotEquals(AdaptiveAggregationSampling.getQueryKey(filtered), AdaptiveAggregationSampling.getQueryKey(negated));
+		assertEquals(AdaptiveAggregationSampling.getQueryKey(filtered), AdaptiveAggregationSampling.getQueryKey(new InternalSearchParams().setUserQuery(" shoes ")
+				.withFilter(new TermResultFilter(new Field("brand"), "apple"))));
+	}
+}
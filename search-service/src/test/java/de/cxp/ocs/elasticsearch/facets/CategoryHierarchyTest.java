@@ -0,0 +1,58 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.elasticsearch.facets.CategoryHierarchy.Category;
+
+public class CategoryHierarchyTest {
+
+	@Test
+	public void testIdPathsIndependentOfOrder() {
+		CategoryHierarchy underTest = CategoryHierarchy.builder()
+				.add("category", "Men/Shoes/Sneaker", "3")
+				.add("category", "Men/Shoes", "2")
+				.add("category", "Men", "1")
+				.add("brand_category", "Men", "b1")
+				.build();
+
+		Category sneaker = underTest.getCategory("category", "Men/Shoes/Sneaker");
+		assertEquals("3", sneaker.getId());
+		assertEquals("/1/2/3", sneaker.getIdPathString());
+		assertEquals(3, sneaker.path.length);
+		assertEquals("/1/2", underTest.getCategory("category", "Men/Shoes").getIdPathString());
+		assertEquals("/b1", underTest.getCategory("brand_category", "Men").getIdPathString());
+		assertEquals(4, underTest.getSize());
+	}
+
+	@Test
+	public void testUnknownCategories() {
+		CategoryHierarchy underTest = CategoryHierarchy.builder()
+				.add("category", "Men/Shoes", "2")
+				.add("category", "Men/Shoes", "5")
+				.build();
+
+		// first ID wins and missing parents are skipped
+		assertEquals("/2", underTest.getCategory("category", "Men/Shoes").getIdPathString());
+		assertNull(underTest.getCategory("category", "Men"));
+		assertNull(underTest.getCategory("unknown", "Men/Shoes"));
+		assertNull(CategoryHierarchy.EMPTY.getCategory("category", "Men"));
+	}
+
+	@Test
+	public void testCategoriesWithoutId() {
+		CategoryHierarchy underTest = CategoryHierarchy.builder()
+				.add("category", "Men/Shoes", "2")
+				.add("category", "Men", null)
+				.add("category", "Women", null)
+				.build();
+
+		assertNull(underTest.getCategory("category", "Women").getIdPathString());
+		assertNull(underTest.getCategory("category", "Women").idPath);
+		// the ID-path of a child without the parent ID would be wrong
+		assertNull(underTest.getCategory("category", "Men/Shoes").getIdPathString());
+		assertEquals("2", underTest.getCategory("category", "Men/Shoes").getId());
+	}
+}
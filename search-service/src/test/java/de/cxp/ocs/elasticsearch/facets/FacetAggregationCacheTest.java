@@ -0,0 +1,98 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.TotalHits.Relation;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.hash.HashCode;
+
+import de.cxp.ocs.config.FacetConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class FacetAggregationCacheTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void testDisabledByDefault() {
+		FacetAggregationCache underTest = new FacetAggregationCache(new FacetConfiguration(), registry, "test");
+		assertFalse(underTest.isEnabled());
+
+		HashCode cacheKey = FacetAggregationCache.getCacheKey(browseSearchSource("shoes"));
+		underTest.put(cacheKey, searchResponse(new Aggregations(Collections.emptyList()), false));
+		assertNull(underTest.get(cacheKey));
+	}
+
+	@Test
+	public void testCacheKeyIgnoresSortingAndPaging() {
+		HashCode cacheKey = FacetAggregationCache.getCacheKey(browseSearchSource("shoes"));
+
+		assertEquals(cacheKey, FacetAggregationCache.getCacheKey(browseSearchSource("shoes").from(24).size(12).sort("price", SortOrder.ASC)));
+		assertNotEquals(cacheKey, FacetAggregationCache.getCacheKey(browseSearchSource("shirts")));
+		assertNotEquals(cacheKey, FacetAggregationCache.getCacheKey(browseSearchSource("shoes").postFilter(QueryBuilders.termQuery("brand", "apple"))));
+		assertNotEquals(cacheKey, FacetAggregationCache.getCacheKey(browseSearchSource("shoes").aggregation(AggregationBuilders.terms("color").field("color"))));
+	}
+
+	@Test
+	public void testCachedAggregations() {
+		FacetAggregationCache underTest = new FacetAggregationCache(new FacetConfiguration().setAggregationCacheTtlSeconds(60), registry, "test");
+		HashCode cacheKey = FacetAggregationCache.getCacheKey(browseSearchSource("shoes"));
+		Aggregations aggregations = new Aggregations(Collections.emptyList());
+
+		assertNull(underTest.get(cacheKey));
+		underTest.put(cacheKey, searchResponse(aggregations, true));
+		assertNull(underTest.get(cacheKey), "incomplete responses must not be cached");
+
+		underTest.put(cacheKey, searchResponse(aggregations, false));
+		assertSame(aggregations, underTest.get(cacheKey));
+
+		underTest.invalidateAll();
+		assertNull(underTest.get(cacheKey));
+
+		assertEquals(1, registry.get("facetAggregationCache").tag("result", "hit").counter().count());
+		assertEquals(3, registry.get("facetAggregationCache").tag("result", "miss").counter().count());
+	}
+
+	@Test
+	public void testResponseWithAggregations() {
+		SearchResponse responseWithoutAggregations = searchResponse(null, false);
+		Aggregations aggregations = new Aggregations(Collections.emptyList());
+
+		SearchResponse mergedResponse = FacetAggregationCache.withAggregations(responseWithoutAggregations, aggregations);
+
+		assertSame(aggregations, mergedResponse.getAggregations());
+		assertSame(responseWithoutAggregations.getHits(), mergedResponse.getHits());
+		assertEquals(responseWithoutAggregations.getTook(), mergedResponse.getTook());
+	}
+
+	private SearchSourceBuilder browseSearchSource(String category) {
+		return SearchSourceBuilder.searchSource()
+				.query(QueryBuilders.boolQuery().filter(QueryBuilders.termQuery("category", category)))
+				.aggregation(AggregationBuilders.terms("brand").field("brand"));
+	}
+
+	private SearchResponse searchResponse(Aggregations aggregations, boolean timedOut) {
+		SearchHits hits = new SearchHits(new SearchHit[] { new SearchHit(1) }, new TotalHits(1, Relation.EQUAL_TO), 1f);
+		return new SearchResponse(new SearchResponseSections(hits, aggregations, null, timedOut, null, null, 1),
+				null, 1, 1, 0, 5, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+	}
+}
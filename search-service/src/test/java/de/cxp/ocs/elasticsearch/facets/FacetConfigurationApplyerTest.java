@@ -0,0 +1,424 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.ParsedComposite;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.ParsedFilter;
+import org.elasticsearch.search.aggregations.bucket.nested.NestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.ParsedNested;
+import org.elasticsearch.search.aggregations.bucket.nested.ParsedReverseNested;
+import org.elasticsearch.search.aggregations.bucket.nested.ReverseNestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.sampler.InternalSampler;
+import org.elasticsearch.search.aggregations.bucket.sampler.ParsedSampler;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.xcontent.*;
+import org.elasticsearch.xcontent.json.JsonXContent;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+
+import de.cxp.ocs.SearchContext;
+import de.cxp.ocs.config.*;
+import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
+import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
+import de.cxp.ocs.elasticsearch.query.TextMatchQuery;
+import de.cxp.ocs.elasticsearch.query.filter.FilterContext;
+import de.cxp.ocs.elasticsearch.query.filter.PathResultFilter;
+import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
+import de.cxp.ocs.model.params.LinkMode;
+import de.cxp.ocs.model.result.Facet;
+import de.cxp.ocs.model.result.FacetEntry;
+import de.cxp.ocs.model.result.HierarchialFacetEntry;
+import de.cxp.ocs.util.DefaultLinkBuilder;
+import de.cxp.ocs.util.InternalSearchParams;
+
+public class FacetConfigurationApplyerTest {
+
+	private static final NamedXContentRegistry aggParserRegistry = new NamedXContentRegistry(List.of(
+			new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(NestedAggregationBuilder.NAME), (p, c) -> ParsedNested.fromXContent(p, (String) c)),
+			new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(ReverseNestedAggregationBuilder.NAME), (p, c) -> ParsedReverseNested.fromXContent(p, (String) c)),
+			new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(FilterAggregationBuilder.NAME), (p, c) -> ParsedFilter.fromXContent(p, (String) c)),
+			new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(StringTerms.NAME), (p, c) -> ParsedStringTerms.fromXContent(p, (String) c)),
+			new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(InternalSampler.PARSER_NAME), (p, c) -> ParsedSampler.fromXContent(p, (String) c)),
+			new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(CompositeAggregationBuilder.NAME), (p, c) -> ParsedComposite.fromXContent(p, (String) c))));
+
+	private final FieldConfigIndex fieldConfigIndex = new FieldConfigIndex(new FieldConfiguration()
+			.addField(new Field("brand").setUsage(FieldUsage.FACET))
+			.addField(new Field("color").setUsage(FieldUsage.FACET))
+			.addField(new Field("material").setUsage(FieldUsage.FACET))
+			.addField(new Field("size").setUsage(FieldUsage.FACET)));
+
+	@Test
+	public void testNoLinksCreatedForFacetsBeyondLimit() throws IOException {
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(createSearchContext(), Collections.emptySet());
+		DefaultLinkBuilder linkBuilder = Mockito.spy(new DefaultLinkBuilder(new InternalSearchParams().setUserQuery("shoes")));
+
+		List<Facet> facets = underTest.getFacets(parseAggregations(), 100, new FilterContext(Collections.emptyMap(), Collections.emptyMap()), linkBuilder);
+
+		// size is removed by the min-value-count and material by the max-facets limit
+		assertEquals(List.of("brand", "color"), facets.stream().map(Facet::getFieldName).toList());
+		assertEquals(List.of("apple", "orange"), facets.get(0).getEntries().stream().map(FacetEntry::getKey).toList());
+		for (Facet facet : facets) {
+			for (FacetEntry entry : facet.getEntries()) {
+				assertEquals(new DefaultLinkBuilder(new InternalSearchParams().setUserQuery("shoes")).withFilterAsLink(new FacetConfig(facet.getFieldName(), facet.getFieldName()), entry.getKey()),
+						entry.getLink());
+			}
+		}
+
+		Set<String> linkedFields = Mockito.mockingDetails(linkBuilder).getInvocations().stream()
+				.map(Invocation::getArguments)
+				.filter(args -> args.length > 0 && args[0] instanceof FacetConfig)
+				.map(args -> ((FacetConfig) args[0]).getSourceField())
+				.collect(Collectors.toSet());
+		// size has to be created to apply the facet filter, but material is never created
+		assertEquals(Set.of("brand", "color", "size"), linkedFields);
+	}
+
+	@Test
+	public void testFacetsCreatedOnlyOnce() throws IOException {
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(createSearchContext(), Collections.emptySet());
+		List<String> createdFacets = new ArrayList<>();
+
+		List<Facet> facets = underTest.getFacets(parseAggregations(), 100, new FilterContext(Collections.emptyMap(), Collections.emptyMap()),
+				new DefaultLinkBuilder(new InternalSearchParams()), (facetType, fieldName, bucketCount, buildNanos) -> createdFacets.add(fieldName));
+
+		assertEquals(List.of("brand", "color"), facets.stream().map(Facet::getFieldName).toList());
+		// size is created but removed by the facet filter, material is beyond the limit
+		assertEquals(List.of("brand", "color", "size"), createdFacets.stream().sorted().toList());
+	}
+
+	@Test
+	public void testNoLinks() throws IOException {
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(createSearchContext(), Collections.emptySet());
+		InternalSearchParams params = new InternalSearchParams().setUserQuery("shoes");
+		params.linkMode = LinkMode.NONE;
+
+		List<Facet> facets = underTest.getFacets(parseAggregations(), 100, new FilterContext(Collections.emptyMap(), Collections.emptyMap()), new DefaultLinkBuilder(params));
+
+		assertEquals(List.of("brand", "color"), facets.stream().map(Facet::getFieldName).toList());
+		assertEquals(100, facets.get(0).getAbsoluteFacetCoverage());
+		for (Facet facet : facets) {
+			for (FacetEntry entry : facet.getEntries()) {
+				assertNotNull(entry.getKey());
+				assertNull(entry.getLink());
+			}
+		}
+	}
+
+	@Test
+	public void testEstimatedCountsFromSample() throws IOException {
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(createSearchContext(), Collections.emptySet());
+		DefaultLinkBuilder linkBuilder = new DefaultLinkBuilder(new InternalSearchParams());
+
+		List<Facet> facets = underTest.getFacets(parseSampledAggregations(100, true), 200, new FilterContext(Collections.emptyMap(), Collections.emptyMap()), linkBuilder);
+
+		assertEquals(List.of("brand", "color"), facets.stream().map(Facet::getFieldName).toList());
+		assertTrue(facets.get(0).isEstimated());
+		assertEquals(200, facets.get(0).getAbsoluteFacetCoverage());
+		assertEquals(List.of(120L, 80L), facets.get(0).getEntries().stream().map(FacetEntry::getDocCount).toList());
+		assertNotNull(facets.get(0).getEntries().get(0).getLink());
+
+		// without the flag the sampled counts are used as they are
+		facets = underTest.getFacets(parseSampledAggregations(100, false), 200, new FilterContext(Collections.emptyMap(), Collections.emptyMap()), linkBuilder);
+		assertFalse(facets.get(0).isEstimated());
+		assertEquals(List.of(60L, 40L), facets.get(0).getEntries().stream().map(FacetEntry::getDocCount).toList());
+	}
+
+	@Test
+	public void testFacetValuesAggregationExcludesOwnPostFilter() {
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(createSearchContext(), Collections.emptySet());
+		QueryBuilder brandFilter = QueryBuilders.termQuery("brand", "apple");
+		QueryBuilder colorFilter = QueryBuilders.termQuery("color", "red");
+		Map<String, QueryBuilder> postFilters = Map.of("brand", brandFilter, "color", colorFilter);
+		FilterContext filterContext = new FilterContext(Collections.emptyMap(), postFilters, new TextMatchQuery<>(null, null, false, true),
+				QueryBuilders.boolQuery().must(brandFilter).must(colorFilter), null, Collections.emptyMap());
+
+		AggregationBuilder brandValuesAgg = underTest.buildFacetValuesAggregation(filterContext, "brand", null, 100).get();
+		assertEquals(colorFilter, ((FilterAggregationBuilder) brandValuesAgg).getFilter());
+
+		AggregationBuilder materialValuesAgg = underTest.buildFacetValuesAggregation(filterContext, "material", null, 100).get();
+		assertEquals(filterContext.getJoinedPostFilters(), ((FilterAggregationBuilder) materialValuesAgg).getFilter());
+
+		assertFalse(underTest.buildFacetValuesAggregation(filterContext, "unknown", null, 100).isPresent());
+	}
+
+	@Test
+	public void testFacetValuesPage() throws IOException {
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(createSearchContext(), Collections.emptySet());
+		Map<String, InternalResultFilter> brandFilter = Map.of("brand", new TermResultFilter(new Field("brand"), "apple"));
+		FilterContext filterContext = new FilterContext(brandFilter, Collections.emptyMap());
+		InternalSearchParams params = new InternalSearchParams().withFilter(brandFilter.get("brand"));
+
+		Facet facet = underTest.getFacetValues(parse(facetValuesJson("\"after_key\": { \"value\": \"banana\" },")), "brand", 2, filterContext, new DefaultLinkBuilder(params)).get();
+
+		assertEquals("brand", facet.getFieldName());
+		assertTrue(facet.isFiltered());
+		assertEquals(List.of("apple", "banana"), facet.getEntries().stream().map(FacetEntry::getKey).toList());
+		assertEquals(List.of(60L, 30L), facet.getEntries().stream().map(FacetEntry::getDocCount).toList());
+		assertEquals(90, facet.getAbsoluteFacetCoverage());
+		assertTrue(facet.getEntries().get(0).isSelected());
+		assertFalse(facet.getEntries().get(1).isSelected());
+
+		String nextCursor = (String) facet.getMeta().get(NestedFacetCreator.NEXT_CURSOR_META_KEY);
+		assertEquals(Map.of(NestedFacetCreator.VALUES_PAGE_SOURCE, "banana"), NestedFacetCreator.decodeValuesPageCursor(nextCursor));
+
+		// the last page has no cursor
+		facet = underTest.getFacetValues(parse(facetValuesJson("")), "brand", 3, filterContext, new DefaultLinkBuilder(params)).get();
+		assertNull(facet.getMeta().get(NestedFacetCreator.NEXT_CURSOR_META_KEY));
+	}
+
+	@Test
+	public void testCategoryFacetWithPrebuiltHierarchy() throws IOException {
+		FieldConfigIndex categoryFieldIndex = new FieldConfigIndex(new FieldConfiguration()
+				.addField(new Field("category").setType(FieldType.CATEGORY).setUsage(FieldUsage.FACET)));
+		SearchConfiguration config = new SearchConfiguration();
+		config.getFacetConfiguration().setFacets(List.of(new FacetConfig("Category", "category")));
+		CategoryHierarchy hierarchy = CategoryHierarchy.builder()
+				.add("category", "Men/Shoes", "2")
+				.add("category", "Men", "1")
+				.add("category", "Women", "3")
+				.build();
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(new SearchContext(categoryFieldIndex, config, Collections.emptyList(), null, hierarchy), Collections.emptySet());
+		FilterContext filterContext = new FilterContext(Collections.emptyMap(), Collections.emptyMap());
+
+		AggregationBuilder categoryAgg = underTest.buildAggregators(filterContext, 0).stream()
+				.filter(agg -> "CategoryFacetCreatorAggregation".equals(agg.getName()))
+				.findFirst().get();
+		assertFalse(categoryAgg.toString().contains(NestedFacetCreator.FACET_IDS_AGG), "category IDs must not be aggregated");
+
+		List<Facet> facets = underTest.getFacets(parse(categoryAggregationsJson()), 100, filterContext, new DefaultLinkBuilder(new InternalSearchParams()));
+
+		assertEquals(1, facets.size());
+		List<FacetEntry> rootEntries = facets.get(0).getEntries();
+		assertEquals(List.of("Men", "Women"), rootEntries.stream().map(FacetEntry::getKey).toList());
+		assertEquals(List.of("1", "3"), rootEntries.stream().map(FacetEntry::getId).toList());
+		assertEquals(List.of(60L, 40L), rootEntries.stream().map(FacetEntry::getDocCount).toList());
+
+		FacetEntry shoesEntry = ((HierarchialFacetEntry) rootEntries.get(0)).getChildren().get(0);
+		assertEquals("Shoes", shoesEntry.getKey());
+		assertEquals("2", shoesEntry.getId());
+		assertEquals("Men/Shoes", ((HierarchialFacetEntry) shoesEntry).getPath());
+		assertEquals(20L, shoesEntry.getDocCount());
+	}
+
+	@Test
+	public void testCategoryMissingInHierarchy() throws IOException {
+		Field categoryField = new Field("category").setType(FieldType.CATEGORY).setUsage(FieldUsage.FACET);
+		FieldConfigIndex categoryFieldIndex = new FieldConfigIndex(new FieldConfiguration().addField(categoryField));
+		SearchConfiguration config = new SearchConfiguration();
+		config.getFacetConfiguration().setFacets(List.of(new FacetConfig("Category", "category").setShowUnselectedOptions(true)));
+		// 'Women' was indexed after the hierarchy was fetched
+		CategoryHierarchy hierarchy = CategoryHierarchy.builder()
+				.add("category", "Men/Shoes", "2")
+				.add("category", "Men", "1")
+				.build();
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(new SearchContext(categoryFieldIndex, config, Collections.emptyList(), null, hierarchy), Collections.emptySet());
+		PathResultFilter idFilter = new PathResultFilter(categoryField, "/1");
+		idFilter.setFilterOnId(true);
+		FilterContext filterContext = new FilterContext(Map.of("category", idFilter), Collections.emptyMap());
+
+		List<Facet> facets = underTest.getFacets(parse(categoryAggregationsJson()), 100, filterContext, new DefaultLinkBuilder(new InternalSearchParams().withFilter(idFilter)));
+
+		List<FacetEntry> rootEntries = facets.get(0).getEntries();
+		assertEquals(List.of("Men", "Women"), rootEntries.stream().map(FacetEntry::getKey).toList());
+		assertEquals("1", rootEntries.get(0).getId());
+		assertNull(rootEntries.get(1).getId());
+		String womenLink = rootEntries.get(1).getLink();
+		assertNotNull(womenLink);
+		assertFalse(womenLink.contains("null"), womenLink);
+
+		// from now on the IDs are aggregated again
+		AggregationBuilder categoryAgg = underTest.buildAggregators(filterContext, 0).stream()
+				.filter(agg -> "CategoryFacetCreatorAggregation".equals(agg.getName()))
+				.findFirst().get();
+		assertTrue(categoryAgg.toString().contains(NestedFacetCreator.FACET_IDS_AGG));
+	}
+
+	@Test
+	public void testLimitedFacetsEquivalentToBestRankedFacets() throws IOException {
+		// brand has many matching variants per product, so its nested doc
+		// count is the highest although it has the least facet coverage
+		Aggregations aggregations = parse(termFacetAggregationsJson(
+				nameBucket("brand", Map.of("apple", 10L, "orange", 10L), 20),
+				nameBucket("color", Map.of("red", 50L, "blue", 30L), 1),
+				nameBucket("material", Map.of("wood", 20L, "metal", 20L), 1),
+				nameBucket("size", Map.of("S", 70L, "M", 70L), 1)));
+		FilterContext filterContext = new FilterContext(Collections.emptyMap(), Collections.emptyMap());
+
+		List<String> limitedFacets = getFacetFields(aggregations, filterContext, 2);
+
+		assertEquals(List.of("size", "color"), limitedFacets);
+		assertEquals(getFacetFields(aggregations, filterContext, 10).subList(0, 2), limitedFacets);
+	}
+
+	@Test
+	public void testLimitedFilteredFacetsEquivalentToBestRankedFacets() throws IOException {
+		// filtered single-select facets only cover the selected values
+		Aggregations aggregations = parse(termFacetAggregationsJson(
+				nameBucket("brand", Map.of("apple", 10L, "orange", 300L), 20),
+				nameBucket("color", Map.of("red", 50L, "blue", 30L), 1),
+				nameBucket("material", Map.of("wood", 20L, "metal", 20L), 1),
+				nameBucket("size", Map.of("S", 70L, "M", 70L), 1)));
+		FilterContext filterContext = new FilterContext(Map.of(
+				"brand", new TermResultFilter(new Field("brand"), "apple"),
+				"size", new TermResultFilter(new Field("size"), "S")), Collections.emptyMap());
+
+		List<String> limitedFacets = getFacetFields(aggregations, filterContext, 1);
+
+		assertEquals(List.of("size"), limitedFacets);
+		assertEquals(getFacetFields(aggregations, filterContext, 10).subList(0, 1), limitedFacets);
+	}
+
+	private List<String> getFacetFields(Aggregations aggregations, FilterContext filterContext, int maxFacets) {
+		SearchConfiguration config = new SearchConfiguration();
+		config.getFacetConfiguration()
+				.setMaxFacets(maxFacets)
+				.setFacets(List.of(
+						new FacetConfig("Brand", "brand"),
+						new FacetConfig("Color", "color"),
+						new FacetConfig("Material", "material"),
+						new FacetConfig("Size", "size")));
+		FacetConfigurationApplyer underTest = new FacetConfigurationApplyer(new SearchContext(fieldConfigIndex, config, Collections.emptyList(), null, null), Collections.emptySet());
+		return underTest.getFacets(aggregations, 200, filterContext, new DefaultLinkBuilder(new InternalSearchParams()))
+				.stream().map(Facet::getFieldName).toList();
+	}
+
+	private String categoryAggregationsJson() {
+		String emptyNestedAgg = """
+				{ "doc_count": 0, "filter#_filtered": { "doc_count": 0, "sterms#_names": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [] } } }
+				""";
+		String categoryAgg = """
+				{ "doc_count": 120, "filter#_filtered": { "doc_count": 120, "sterms#_names": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [
+					{ "key": "category", "doc_count": 120, "sterms#_values": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [
+						{ "key": "Men", "doc_count": 60, "reverse_nested#_reverse": { "doc_count": 60 } },
+						{ "key": "Women", "doc_count": 40, "reverse_nested#_reverse": { "doc_count": 40 } },
+						{ "key": "Men/Shoes", "doc_count": 20, "reverse_nested#_reverse": { "doc_count": 20 } }
+					] } }
+				] } } }
+				""";
+		return """
+				{
+					"nested#CategoryFacetCreatorAggregation": %2$s,
+					"nested#TermFacetCreatorAggregation": %1$s,
+					"nested#IntervalFacetCreatorAggregation": %1$s,
+					"nested#_variants": {
+						"doc_count": 0,
+						"nested#TermFacetCreatorAggregation": %1$s,
+						"nested#IntervalFacetCreatorAggregation": %1$s
+					}
+				}
+				""".formatted(emptyNestedAgg, categoryAgg);
+	}
+
+	private String facetValuesJson(String afterKey) {
+		return """
+				{ "nested#TermFacetCreatorAggregation": { "doc_count": 200, "filter#_filtered": { "doc_count": 100, "composite#_values": { %s "buckets": [
+					{ "key": { "value": "apple" }, "doc_count": 70, "sterms#_ids": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [] }, "reverse_nested#_reverse": { "doc_count": 60 } },
+					{ "key": { "value": "banana" }, "doc_count": 30, "sterms#_ids": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [] }, "reverse_nested#_reverse": { "doc_count": 30 } }
+				] } } } }
+				""".formatted(afterKey);
+	}
+
+	private SearchContext createSearchContext() {
+		SearchConfiguration config = new SearchConfiguration();
+		config.getFacetConfiguration()
+				.setMaxFacets(2)
+				.setFacets(List.of(
+						new FacetConfig("Brand", "brand").setOrder(1),
+						new FacetConfig("Color", "color").setOrder(2),
+						new FacetConfig("Material", "material").setOrder(3),
+						new FacetConfig("Size", "size").setOrder(0).setMinValueCount(3)));
+		return new SearchContext(fieldConfigIndex, config, Collections.emptyList(), null, null);
+	}
+
+	private Aggregations parseAggregations() throws IOException {
+		return parse(aggregationsJson());
+	}
+
+	private Aggregations parseSampledAggregations(long sampleDocCount, boolean estimateCounts) throws IOException {
+		String aggregationsJson = aggregationsJson().trim();
+		return parse("""
+				{ "sampler#_sampled": { "doc_count": %d, "meta": { "estimateCounts": %b }, %s } }
+				""".formatted(sampleDocCount, estimateCounts, aggregationsJson.substring(1, aggregationsJson.length() - 1)));
+	}
+
+	private Aggregations parse(String json) throws IOException {
+		try (XContentParser parser = JsonXContent.jsonXContent.createParser(aggParserRegistry, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+			parser.nextToken();
+			return Aggregations.fromXContent(parser);
+		}
+	}
+
+	private String aggregationsJson() {
+		return termFacetAggregationsJson(
+				nameBucket("brand", Map.of("apple", 60L, "orange", 40L)),
+				nameBucket("color", Map.of("red", 50L, "blue", 30L)),
+				nameBucket("material", Map.of("wood", 20L, "metal", 20L)),
+				nameBucket("size", Map.of("S", 70L, "M", 30L)));
+	}
+
+	private String termFacetAggregationsJson(String... nameBuckets) {
+		String emptyNestedAgg = """
+				{ "doc_count": 0, "filter#_filtered": { "doc_count": 0, "sterms#_names": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [] } } }
+				""";
+		String termFacetAgg = """
+				{ "doc_count": 400, "filter#_filtered": { "doc_count": 400, "sterms#_names": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [
+					%s
+				] } } }
+				""".formatted(String.join(", ", nameBuckets));
+		return """
+				{
+					"nested#CategoryFacetCreatorAggregation": %1$s,
+					"nested#TermFacetCreatorAggregation": %2$s,
+					"nested#IntervalFacetCreatorAggregation": %1$s,
+					"nested#_variants": {
+						"doc_count": 0,
+						"nested#TermFacetCreatorAggregation": %1$s,
+						"nested#IntervalFacetCreatorAggregation": %1$s
+					}
+				}
+				""".formatted(emptyNestedAgg, termFacetAgg);
+	}
+
+	private String nameBucket(String name, Map<String, Long> valueCounts) {
+		return nameBucket(name, valueCounts, 1);
+	}
+
+	/**
+	 * @param variantsPerDocument
+	 *        the number of nested documents that match per document, which
+	 *        multiplies the nested doc counts but not the reverse nested ones
+	 */
+	private String nameBucket(String name, Map<String, Long> valueCounts, int variantsPerDocument) {
+		StringBuilder valueBuckets = new StringBuilder();
+		long docCount = 0;
+		for (Map.Entry<String, Long> valueCount : new TreeMap<>(valueCounts).entrySet()) {
+			if (valueBuckets.length() > 0) valueBuckets.append(',');
+			valueBuckets.append("""
+					{ "key": "%s", "doc_count": %d,
+						"sterms#_ids": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [] },
+						"reverse_nested#_reverse": { "doc_count": %d } }
+					""".formatted(valueCount.getKey(), valueCount.getValue() * variantsPerDocument, valueCount.getValue()));
+			docCount += valueCount.getValue() * variantsPerDocument;
+		}
+		return """
+				{ "key": "%s", "doc_count": %d, "sterms#_values": { "doc_count_error_upper_bound": 0, "sum_other_doc_count": 0, "buckets": [ %s ] } }
+				""".formatted(name, docCount, valueBuckets);
+	}
+}
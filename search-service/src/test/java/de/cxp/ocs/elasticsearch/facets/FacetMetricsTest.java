@@ -0,0 +1,73 @@
+package de.cxp.ocs.elasticsearch.facets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.config.FacetConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class FacetMetricsTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void testMetersPerField() {
+		FacetMetrics underTest = new FacetMetrics(new FacetConfiguration(), registry, "test");
+		FacetMetrics.RequestRecorder recorder = underTest.newRecorder(false);
+		recorder.record("term", "brand", 20, 2_000_000);
+		recorder.record("interval", "price", 5, 500_000);
+
+		Timer brandTimer = registry.find("facetBuild").tags("indexName", "test", "type", "term", "field", "brand").timer();
+		assertNotNull(brandTimer);
+		assertEquals(1, brandTimer.count());
+		assertEquals(2, brandTimer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+		assertEquals(20, registry.find("facetBuckets").tags("field", "brand").summary().totalAmount(), 0.001);
+		assertEquals(5, registry.find("facetBuckets").tags("type", "interval", "field", "price").summary().totalAmount(), 0.001);
+
+		assertTrue(recorder.getSlowestFacets(10).isEmpty());
+	}
+
+	@Test
+	public void testFieldTagLimit() {
+		FacetMetrics underTest = new FacetMetrics(new FacetConfiguration().setMetricsMaxFields(1), registry, "test");
+		FacetMetrics.RequestRecorder recorder = underTest.newRecorder(false);
+		recorder.record("term", "brand", 20, 1000);
+		recorder.record("term", "color", 10, 1000);
+		recorder.record("term", "size", 10, 1000);
+		recorder.record("term", "brand", 10, 1000);
+
+		assertEquals(2, registry.find("facetBuild").tags("field", "brand").timer().count());
+		assertEquals(2, registry.find("facetBuild").tags("field", FacetMetrics.OTHER_FIELDS_TAG).timer().count());
+		assertEquals(2, registry.find("facetBuild").timers().size());
+	}
+
+	@Test
+	public void testSlowestFacetsTrace() {
+		FacetMetrics underTest = new FacetMetrics(new FacetConfiguration(), registry, "test");
+		FacetMetrics.RequestRecorder recorder = underTest.newRecorder(true);
+		recorder.record("term", "brand", 20, 1_000_000);
+		recorder.record("interval", "price", 5, 3_000_000);
+		recorder.record("term", "brand", 8, 2_500_000);
+		recorder.record("term", "color", 3, 100_000);
+
+		List<Map<String, Object>> slowest = underTest.newRecorder(true).getSlowestFacets(10);
+		assertTrue(slowest.isEmpty());
+
+		slowest = recorder.getSlowestFacets(2);
+		assertEquals(2, slowest.size());
+		assertEquals("brand", slowest.get(0).get("field"));
+		assertEquals(3.5, slowest.get(0).get("ms"));
+		assertEquals(20, slowest.get(0).get("buckets"));
+		assertEquals("price", slowest.get(1).get("field"));
+		assertEquals("interval", slowest.get(1).get("type"));
+	}
+}
@@ -25,7 +25,7 @@ public class HeroProductHandlerTest {
 		HeroProductHandler underTest = new HeroProductHandler(Collections.emptyMap());
 		
 		Searcher searcherMock = mock(Searcher.class);
-		SearchContext context = new SearchContext(null, null, null, null);
+		SearchContext context = new SearchContext(null, null, null, null, null);
 		
 		GenericProductSet genericProductSet = new GenericProductSet("x", 3, Collections.singletonMap("inject", "something"));
 		StaticProductSet[] resolved = underTest.resolve(new ProductSet[] { genericProductSet }, searcherMock, context);
@@ -52,7 +52,7 @@ public class HeroProductHandlerTest {
 		HeroProductHandler underTest = new HeroProductHandler(Collections.singletonMap(ProductSetType.Generic, resolverStub));
 
 		Searcher searcherMock = mock(Searcher.class);
-		SearchContext context = new SearchContext(null, null, null, null);
+		SearchContext context = new SearchContext(null, null, null, null, null);
 		StaticProductSet[] resolved = underTest.resolve(new ProductSet[] { genericProductSet }, searcherMock, context);
 
 		assertTrue(resolved[0] == expectedResult);
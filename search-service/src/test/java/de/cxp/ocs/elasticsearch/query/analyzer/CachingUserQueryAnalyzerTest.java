@@ -0,0 +1,170 @@
+package de.cxp.ocs.elasticsearch.query.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.elasticsearch.model.query.AnalyzedQuery;
+import de.cxp.ocs.elasticsearch.model.query.ExtendedQuery;
+import de.cxp.ocs.elasticsearch.model.query.QueryBoosting;
+import de.cxp.ocs.elasticsearch.model.query.SingleTermQuery;
+import de.cxp.ocs.elasticsearch.model.term.AssociatedTerm;
+import de.cxp.ocs.elasticsearch.model.term.QueryStringTerm;
+import de.cxp.ocs.elasticsearch.model.term.WeightedTerm;
+import de.cxp.ocs.elasticsearch.model.visitor.QueryTermVisitor;
+import de.cxp.ocs.spi.search.UserQueryAnalyzer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class CachingUserQueryAnalyzerTest {
+
+	private final QuerqyQueryExpanderBuilder qqBuilder = new QuerqyQueryExpanderBuilder();
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@AfterEach
+	public void cleanupTempRuleFile() {
+		qqBuilder.createdTempFiles.forEach(file -> {
+			try {
+				file.delete();
+			}
+			catch (Exception e) {
+				log.info("failed to delete file {}", file, e);
+			}
+		});
+	}
+
+	@Test
+	public void testCachedAnalysis() {
+		QuerqyQueryExpander querqy = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop", "cheap =>", "  FILTER: * price:[* TO 100]");
+		CachingUserQueryAnalyzer underTest = new CachingUserQueryAnalyzer(querqy, 100, registry, "test");
+
+		ExtendedQuery analyzedQuery = underTest.analyze("cheap notebook");
+		String expectedQueryString = querqy.analyze("cheap notebook").toQueryString();
+		assertEquals(expectedQueryString, analyzedQuery.toQueryString());
+		assertEquals(expectedQueryString, underTest.analyze("cheap notebook").toQueryString());
+		assertEquals(expectedQueryString, underTest.analyze("  cheap   notebook ").toQueryString());
+		assertNotEquals(expectedQueryString, underTest.analyze("notebook").toQueryString());
+
+		assertEquals(2, underTest.size());
+		assertEquals(2, registry.find("queryAnalysisCache").tag("result", "hit").counter().count());
+		assertEquals(2, registry.find("queryAnalysisCache").tag("result", "miss").counter().count());
+	}
+
+	@Test
+	public void testCachedAnalysisNotModifiedByCaller() {
+		QuerqyQueryExpander querqy = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop", "  UP(10): brand:apple", "cheap =>", "  FILTER: * price:[* TO 100]");
+		CachingUserQueryAnalyzer underTest = new CachingUserQueryAnalyzer(querqy, 100, registry, "test");
+		String expectedQueryString = querqy.analyze("cheap notebook").toQueryString();
+		List<QueryBoosting> expectedBoostings = querqy.analyze("cheap notebook").getBoostings();
+
+		// modify the result of the analysis and of the cache hit
+		for (int i = 0; i < 2; i++) {
+			ExtendedQuery analyzedQuery = underTest.analyze("cheap notebook");
+			assertEquals(expectedQueryString, analyzedQuery.toQueryString());
+			assertEquals(expectedBoostings, analyzedQuery.getBoostings());
+
+			analyzedQuery.accept(new QueryTermVisitor() {
+
+				@Override
+				public void visitTerm(QueryStringTerm term) {
+					if (term instanceof WeightedTerm) {
+						((WeightedTerm) term).setRawTerm("modified").setWeight(0.5f);
+					}
+					else if (term instanceof AssociatedTerm) {
+						((AssociatedTerm) term).getRelatedTerms().clear();
+						visitTerm(((AssociatedTerm) term).getMainTerm());
+					}
+				}
+
+				@Override
+				public void visitSubQuery(AnalyzedQuery subQuery) {
+					subQuery.accept(this);
+				}
+			});
+			analyzedQuery.getFilters().clear();
+			analyzedQuery.getBoostings().get(0).setField("modified");
+			assertNotEquals(expectedQueryString, analyzedQuery.toQueryString());
+		}
+		assertEquals(expectedQueryString, underTest.analyze("cheap notebook").toQueryString());
+		assertEquals(expectedBoostings, underTest.analyze("cheap notebook").getBoostings());
+		assertEquals(3, registry.find("queryAnalysisCache").tag("result", "hit").counter().count());
+	}
+
+	@Test
+	public void testUnknownQueryTypesNotCached() {
+		UserQueryAnalyzer customAnalyzer = new WhitespaceAnalyzer() {
+
+			@Override
+			public ExtendedQuery analyze(String userQuery) {
+				return new ExtendedQuery(new SingleTermQuery(userQuery, new WeightedTerm(userQuery) {}));
+			}
+		};
+		CachingUserQueryAnalyzer underTest = new CachingUserQueryAnalyzer(customAnalyzer, 100, registry, "test");
+		assertEquals("notebook", underTest.analyze("notebook").toQueryString());
+		assertEquals(0, underTest.size());
+	}
+
+	@Test
+	public void testInvalidationOnVersionChange() {
+		VersionedWhitespaceAnalyzer analyzer = new VersionedWhitespaceAnalyzer();
+		CachingUserQueryAnalyzer underTest = new CachingUserQueryAnalyzer(analyzer, 100, registry, "test");
+		underTest.analyze("notebook");
+		underTest.analyze("laptop");
+		assertEquals(2, underTest.size());
+		underTest.analyze("notebook");
+		assertEquals(1, registry.find("queryAnalysisCache").tag("result", "hit").counter().count());
+
+		analyzer.version++;
+		underTest.analyze("notebook");
+		assertEquals(1, registry.find("queryAnalysisCache").tag("result", "hit").counter().count());
+		assertEquals(1, underTest.size());
+	}
+
+	@Test
+	public void testQuerqyVersion() {
+		QuerqyQueryExpander querqy = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop");
+		assertEquals(1, querqy.getVersion());
+		assertEquals(0, new QuerqyQueryExpander().getVersion());
+	}
+
+	/**
+	 * 100 distinct queries that are requested 100 times each are only analyzed
+	 * once and the cached results equal the uncached ones.
+	 */
+	@Test
+	public void testRepeatedQueriesAnalyzedOnce() {
+		QuerqyQueryExpander querqy = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop", "cheap =>", "  FILTER: * price:[* TO 100]",
+				"tv =>", "  SYNONYM: television", "  UP(100): brand:samsung");
+		CachingUserQueryAnalyzer cachingAnalyzer = new CachingUserQueryAnalyzer(querqy, 1000, registry, "test");
+
+		for (int i = 0; i < 100; i++) {
+			for (int q = 0; q < 100; q++) {
+				String userQuery = "cheap notebook " + q + " tv";
+				ExtendedQuery cachedQuery = cachingAnalyzer.analyze(userQuery);
+				ExtendedQuery uncachedQuery = querqy.analyze(userQuery);
+				assertEquals(uncachedQuery.toQueryString(), cachedQuery.toQueryString());
+				assertEquals(uncachedQuery.getBoostings(), cachedQuery.getBoostings());
+			}
+		}
+		assertEquals(100, cachingAnalyzer.size());
+		assertEquals(100, registry.find("queryAnalysisCache").tag("result", "miss").counter().count());
+		assertEquals(9_900, registry.find("queryAnalysisCache").tag("result", "hit").counter().count());
+	}
+
+	static class VersionedWhitespaceAnalyzer extends WhitespaceAnalyzer implements VersionedQueryAnalyzer {
+
+		long version = 0;
+
+		@Override
+		public long getVersion() {
+			return version;
+		}
+	}
+}
@@ -6,10 +6,16 @@ import static de.cxp.ocs.elasticsearch.query.analyzer.AnalyzerUtil.extractTerms;
 import static de.cxp.ocs.util.TestUtils.assertAndCastInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
@@ -20,6 +26,7 @@ import de.cxp.ocs.elasticsearch.model.query.QueryBoosting;
 import de.cxp.ocs.elasticsearch.model.term.*;
 import de.cxp.ocs.elasticsearch.model.util.QueryStringUtil;
 import de.cxp.ocs.elasticsearch.query.analyzer.QuerqyQueryExpanderBuilder.RuleLoadingFlags;
+import de.cxp.ocs.spi.search.UserQueryAnalyzer;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -646,6 +653,68 @@ public class QuerqyQueryExpanderTest {
 		assertEquals("(((in1 in2) OR \"out1 out2\") in3) OR (in1 ((in2 in3) OR \"out2 out3\"))", analyzedQuery.getSearchQuery().toQueryString());
 	}
 
+	@Test
+	public void testReloadChangedRules() throws IOException {
+		QuerqyQueryExpander underTest = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop");
+		assertEquals("(notebook OR laptop)", analyze(underTest, "notebook").toQueryString());
+
+		// unchanged rules are not compiled again
+		assertFalse(underTest.reload());
+		assertEquals(1, underTest.getVersion());
+
+		writeRules("notebook =>", "  SYNONYM: netbook");
+		assertTrue(underTest.reload());
+		assertEquals(2, underTest.getVersion());
+		assertEquals("(notebook OR netbook)", analyze(underTest, "notebook").toQueryString());
+	}
+
+	@Test
+	public void testScheduledReloadWithoutQueries() throws Exception {
+		qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop");
+		QuerqyQueryExpander underTest = new QuerqyQueryExpander();
+		underTest.initialize(Map.of(
+				QuerqyQueryExpander.RULES_URL_PROPERTY_NAME, qqBuilder.createdTempFiles.get(0).getAbsolutePath(),
+				QuerqyQueryExpander.RULES_RELOAD_INTERVAL_PROPERTY_NAME, "1"));
+		assertEquals(1, underTest.getVersion());
+
+		// no analyze call necessary, e.g. because of cached analysis results
+		writeRules("notebook =>", "  SYNONYM: netbook");
+		long timeout = System.currentTimeMillis() + 5_000;
+		while (underTest.getVersion() == 1 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(50);
+		}
+		assertEquals(2, underTest.getVersion());
+		assertEquals("(notebook OR netbook)", analyze(underTest, "notebook").toQueryString());
+	}
+
+	@Test
+	public void testInvalidRulesKeepPreviousRules() throws IOException {
+		QuerqyQueryExpander underTest = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop");
+
+		writeRules("notebook =>", "  SYNONYM laptop");
+		assertThrows(IOException.class, underTest::reload);
+		assertEquals(1, underTest.getVersion());
+		assertEquals("(notebook OR laptop)", analyze(underTest, "notebook").toQueryString());
+	}
+
+	@Test
+	public void testDryRunWithRules() throws IOException {
+		QuerqyQueryExpander underTest = qqBuilder.loadWithRules("notebook =>", "  SYNONYM: laptop");
+
+		UserQueryAnalyzer testAnalyzer = underTest.withRules("notebook =>\n  SYNONYM: netbook");
+		assertEquals("(notebook OR netbook)", testAnalyzer.analyze("notebook").toQueryString());
+		assertThrows(IOException.class, () -> underTest.withRules("notebook =>\n  SYNONYM netbook"));
+
+		// active rules are not touched
+		assertEquals(1, underTest.getVersion());
+		assertEquals("(notebook OR laptop)", analyze(underTest, "notebook").toQueryString());
+	}
+
+	private void writeRules(String... instructions) throws IOException {
+		File rulesFile = qqBuilder.createdTempFiles.get(qqBuilder.createdTempFiles.size() - 1);
+		Files.write(rulesFile.toPath(), List.of(instructions), StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * analyze and log results
 	 * 
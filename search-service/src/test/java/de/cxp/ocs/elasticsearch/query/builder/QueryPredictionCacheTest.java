@@ -0,0 +1,85 @@
+package de.cxp.ocs.elasticsearch.query.builder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.config.QueryProcessingConfiguration;
+import de.cxp.ocs.elasticsearch.model.query.ExtendedQuery;
+import de.cxp.ocs.elasticsearch.model.query.MultiTermQuery;
+import de.cxp.ocs.elasticsearch.model.term.Occur;
+import de.cxp.ocs.elasticsearch.model.term.WeightedTerm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class QueryPredictionCacheTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void testCachedPredictionsAreCopies() {
+		QueryPredictionCache underTest = new QueryPredictionCache(new QueryProcessingConfiguration().setPredictionCacheSize(10), registry, "test");
+		String cacheKey = QueryPredictionCache.getCacheKey(query("red", "shoes"), Set.of("title"), null);
+		assertNull(underTest.get(cacheKey));
+
+		PredictedQuery prediction = new PredictedQuery();
+		prediction.matchCount = 42;
+		prediction.termsUnique.put("red", new WeightedTerm("red"));
+		prediction.unknownTerms.add(new WeightedTerm("shoes"));
+		underTest.put(cacheKey, List.of(prediction));
+
+		// modifications of the original or returned predictions must not
+		// affect the cached ones
+		prediction.termsUnique.put("shoes", new WeightedTerm("shoes"));
+		List<PredictedQuery> cachedPredictions = underTest.get(cacheKey);
+		assertEquals(1, cachedPredictions.size());
+		assertNotSame(prediction, cachedPredictions.get(0));
+		assertEquals(42, cachedPredictions.get(0).matchCount);
+		assertEquals(Set.of("red"), cachedPredictions.get(0).termsUnique.keySet());
+		cachedPredictions.get(0).unknownTerms.clear();
+		assertEquals(1, underTest.get(cacheKey).get(0).unknownTerms.size());
+
+		assertEquals(2, registry.find("queryPredictionCache").tag("result", "hit").counter().count());
+		assertEquals(1, registry.find("queryPredictionCache").tag("result", "miss").counter().count());
+
+		underTest.invalidateAll();
+		assertEquals(0, underTest.size());
+	}
+
+	@Test
+	public void testCacheKey() {
+		String cacheKey = QueryPredictionCache.getCacheKey(query("red", "shoes"), Set.of("title", "brand"), null);
+		assertEquals(cacheKey, QueryPredictionCache.getCacheKey(query("red", "shoes"), Set.of("brand", "title"), null));
+		assertNotEquals(cacheKey, QueryPredictionCache.getCacheKey(query("red", "shoes"), Set.of("title"), null));
+		assertNotEquals(cacheKey, QueryPredictionCache.getCacheKey(query("red", "shoes"), Set.of("title", "brand"), "whitespace"));
+		assertNotEquals(cacheKey, QueryPredictionCache.getCacheKey(query("shoes", "red"), Set.of("title", "brand"), null));
+
+		ExtendedQuery queryWithExclude = new ExtendedQuery(new MultiTermQuery(Arrays.asList(
+				new WeightedTerm("red"), new WeightedTerm("shoes"), new WeightedTerm("kids", 1f, Occur.MUST_NOT))));
+		assertNotEquals(cacheKey, QueryPredictionCache.getCacheKey(queryWithExclude, Set.of("title", "brand"), null));
+	}
+
+	@Test
+	public void testDisabledCache() {
+		QueryPredictionCache underTest = new QueryPredictionCache(new QueryProcessingConfiguration(), registry, "test");
+		assertFalse(underTest.isEnabled());
+		underTest.put("key", List.of(new PredictedQuery()));
+		assertNull(underTest.get("key"));
+		assertEquals(0, underTest.size());
+
+		underTest.recordPredictionTime(1_000_000);
+		assertEquals(1, registry.find("queryPrediction").timer().count());
+	}
+
+	private static ExtendedQuery query(String... terms) {
+		return new ExtendedQuery(new MultiTermQuery(Arrays.stream(terms).map(WeightedTerm::new).toList()));
+	}
+}
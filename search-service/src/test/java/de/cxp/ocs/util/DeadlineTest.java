@@ -0,0 +1,51 @@
+package de.cxp.ocs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.elasticsearch.client.RequestOptions;
+import org.junit.jupiter.api.Test;
+
+public class DeadlineTest {
+
+	@Test
+	public void testNoDeadline() {
+		assertSame(Deadline.NONE, Deadline.of(0));
+		assertSame(Deadline.NONE, Deadline.of(-1));
+		assertFalse(Deadline.NONE.isExceeded());
+		assertNull(Deadline.NONE.getSearchTimeout());
+		assertSame(RequestOptions.DEFAULT, Deadline.NONE.getRequestOptions());
+
+		Deadline.NONE.markExhausted("facets");
+		assertTrue(Deadline.NONE.getExhaustedStages().isEmpty());
+	}
+
+	@Test
+	public void testRemainingTime() {
+		Deadline underTest = Deadline.of(10_000);
+		assertFalse(underTest.isExceeded());
+		assertTrue(underTest.getRemainingMillis() > 9_000);
+		assertTrue(underTest.getSearchTimeout().millis() > 9_000);
+		assertEquals(underTest.getSearchTimeout().millis() + Deadline.CLIENT_TIMEOUT_GRACE_MS,
+				underTest.getRequestOptions().getRequestConfig().getSocketTimeout(), 50);
+	}
+
+	@Test
+	public void testExceededDeadline() throws InterruptedException {
+		Deadline underTest = Deadline.of(1);
+		Thread.sleep(5);
+		assertTrue(underTest.isExceeded());
+		assertEquals(0, underTest.getRemainingMillis());
+		assertEquals(Deadline.MIN_TIMEOUT_MS, underTest.getSearchTimeout().millis());
+
+		underTest.markExhausted("query_stages");
+		underTest.markExhausted("facets");
+		underTest.markExhausted("facets");
+		assertEquals(List.of("query_stages", "facets"), underTest.getExhaustedStages());
+	}
+}
@@ -0,0 +1,122 @@
+package de.cxp.ocs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
+import de.cxp.ocs.config.Field;
+import de.cxp.ocs.config.FieldType;
+import de.cxp.ocs.elasticsearch.query.filter.NumberResultFilter;
+import de.cxp.ocs.elasticsearch.query.filter.PathResultFilter;
+import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
+import de.cxp.ocs.elasticsearch.query.sort.SortInstruction;
+import de.cxp.ocs.model.result.SortOrder;
+
+/**
+ * Compares the links of the {@link DefaultLinkBuilder} for a matrix of search states, facets and values with the
+ * recorded links in 'default-link-builder.golden'. The links must stay byte-identical, since they are used by clients
+ * as-is.
+ */
+public class DefaultLinkBuilderGoldenTest {
+
+	private static final String GOLDEN_FILE = "default-link-builder.golden";
+
+	private static final List<FacetConfig> facets = List.of(
+			new FacetConfig("Brand", "brand"),
+			new FacetConfig("Brand", "brand").setMultiSelect(true),
+			new FacetConfig("Price", "price"),
+			new FacetConfig("Category", "cat").setMultiSelect(true),
+			new FacetConfig("Category", "category").setMultiSelect(true),
+			new FacetConfig("Color", "color"),
+			new FacetConfig("XBrand", "xbrand").setMultiSelect(true),
+			new FacetConfig("Size", "size"));
+
+	private static final List<String[]> values = List.of(
+			new String[] { "apple" },
+			new String[] { "orange" },
+			new String[] { "red" },
+			new String[] { "apple", "orange" },
+			new String[] { "pine & apple" },
+			new String[] { "ba, na" },
+			new String[] { "123" },
+			new String[] { "Männer" },
+			new String[] { "foobar, 6% off" },
+			new String[] { "darkred" },
+			new String[] { "(50%*) ~!'" },
+			new String[] { "1.23", "4.56" });
+
+	private static Map<String, InternalSearchParams> searchStates() {
+		Map<String, InternalSearchParams> states = new LinkedHashMap<>();
+		states.put("empty", new InternalSearchParams());
+		states.put("query", new InternalSearchParams().setUserQuery("foo bar"));
+		states.put("filtered", new InternalSearchParams()
+				.setUserQuery("foo")
+				.withFilter(new TermResultFilter(new Field("brand"), "apple", "orange"))
+				.withFilter(new NumberResultFilter(new Field("price").setType(FieldType.NUMBER), 1.23, 4.56))
+				.withSorting(new SortInstruction(new Field("price"), "-price", SortOrder.DESC))
+				.setLimit(24)
+				.setOffset(12)
+				.setWithFacets(false));
+		states.put("special", new InternalSearchParams()
+				.setUserQuery("t-shirt (men's) *50% & more+")
+				.withFilter(new TermResultFilter(new Field("brand"), "pine & apple", "ba, na"))
+				.withFilter(new PathResultFilter(new Field("cat"), "Foobar, 6% off", "Männer"))
+				.withFilter(new TermResultFilter(new Field("category"), "123", "456").setFilterOnId(true))
+				.withFilter(new TermResultFilter(new Field("color"), "red").setNegated(true))
+				.withFilter(new TermResultFilter(new Field("size"), "(50%*) ~!'")));
+		states.put("substring", new InternalSearchParams()
+				.withFilter(new TermResultFilter(new Field("xbrand"), "darkred"))
+				.withFilter(new TermResultFilter(new Field("brand"), "apple"))
+				.withSorting(new SortInstruction(new Field("size"), "size", SortOrder.ASC)));
+		return states;
+	}
+
+	private static List<String> createLinks() {
+		List<String> links = new ArrayList<>();
+		searchStates().forEach((stateName, params) -> {
+			DefaultLinkBuilder underTest = new DefaultLinkBuilder(params);
+			links.add(stateName + " | toString => " + underTest);
+			for (FacetConfig facet : facets) {
+				String facetName = facet.getSourceField() + (facet.isMultiSelect() ? "[multi]" : "");
+				links.add(stateName + " | without " + facetName + " => " + underTest.withoutFilterAsLink(facet));
+				for (String[] filterValues : values) {
+					String filter = " " + facetName + "=" + String.join("|", filterValues) + " => ";
+					links.add(stateName + " | with" + filter + underTest.withFilterAsLink(facet, filterValues));
+					links.add(stateName + " | without" + filter + underTest.withoutFilterAsLink(facet, filterValues));
+					links.add(stateName + " | exact" + filter + underTest.withExactFilterAsLink(facet, filterValues));
+					links.add(stateName + " | merged" + filter + underTest.withFilterAsLink(facet.getSourceField(), true, filterValues));
+				}
+			}
+			for (String sortField : new String[] { "price", "size", "brand" }) {
+				for (SortOrder sortOrder : SortOrder.values()) {
+					Field field = new Field(sortField);
+					String prefix = stateName + " | sort " + sortField + " " + sortOrder + " => ";
+					links.add(prefix + underTest.withSortingLink(field, sortOrder) + " (active=" + underTest.isSortingActive(field, sortOrder) + ")");
+				}
+			}
+		});
+		return links;
+	}
+
+	@Test
+	public void testLinksAreUnchanged() throws IOException {
+		List<String> expectedLinks;
+		try (InputStream goldenInput = getClass().getResourceAsStream(GOLDEN_FILE)) {
+			expectedLinks = new String(goldenInput.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+		}
+		List<String> actualLinks = createLinks();
+		assertEquals(expectedLinks.size(), actualLinks.size());
+		for (int i = 0; i < expectedLinks.size(); i++) {
+			assertEquals(expectedLinks.get(i), actualLinks.get(i));
+		}
+	}
+}
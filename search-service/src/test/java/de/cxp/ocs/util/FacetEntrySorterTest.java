@@ -1,14 +1,21 @@
 package de.cxp.ocs.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig.ValueOrder;
 import de.cxp.ocs.model.result.Facet;
 import de.cxp.ocs.model.result.FacetEntry;
+import de.cxp.ocs.model.result.HierarchialFacetEntry;
 
 public class FacetEntrySorterTest {
 
@@ -31,25 +38,25 @@ public class FacetEntrySorterTest {
 	@Test
 	public void testNoopSorterInit() {
 		FacetEntry firstEntry = testFacet.getEntries().get(0);
-		FacetEntrySorter.of(null, 12).sort(testFacet);
+		FacetEntrySorter.of(null).sort(testFacet);
 		assertEquals(firstEntry, testFacet.getEntries().get(0));
 	}
 
 	@Test
 	public void testAlphaNumSorter() {
-		FacetEntrySorter.of(ValueOrder.ALPHANUM_ASC, 12).sort(testFacet);
+		FacetEntrySorter.of(ValueOrder.ALPHANUM_ASC).sort(testFacet);
 		assertEquals("1 A", testFacet.getEntries().get(0).key);
 	}
 
 	@Test
 	public void testAlphaNumDescSorter() {
-		FacetEntrySorter.of(ValueOrder.ALPHANUM_DESC, 12).sort(testFacet);
+		FacetEntrySorter.of(ValueOrder.ALPHANUM_DESC).sort(testFacet);
 		assertEquals("Beta", testFacet.getEntries().get(0).key);
 	}
 
 	@Test
 	public void testHumanNumSorter() {
-		FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_ASC, 12).sort(testFacet);
+		FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_ASC).sort(testFacet);
 		Iterator<FacetEntry> facetEntryIterator = testFacet.getEntries().iterator();
 		assertEquals("1 A", facetEntryIterator.next().getKey());
 		assertEquals("1.2 A", facetEntryIterator.next().getKey());
@@ -59,4 +66,57 @@ public class FacetEntrySorterTest {
 		assertEquals("Alpha", facetEntryIterator.next().getKey());
 		assertEquals("Beta", facetEntryIterator.next().getKey());
 	}
+
+	@Test
+	public void testHumanNumDescSorter() {
+		FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_DESC).sort(testFacet);
+		assertEquals(List.of("28 z", "4 D", "2 B", "1.2 A", "1 A", "Beta", "Alpha"), getKeys(testFacet.getEntries()));
+	}
+
+	@Test
+	public void testSortHierarchicalChildren() {
+		HierarchialFacetEntry parent = new HierarchialFacetEntry("Shoes", null, 10, "", false)
+				.addChild(new FacetEntry("Size 42", null, 4, "", false))
+				.addChild(new FacetEntry("Size 8", null, 3, "", false))
+				.addChild(new FacetEntry("Size 10", null, 3, "", false));
+		Facet categoryFacet = new Facet("category").addEntry(parent);
+
+		FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_ASC).sort(categoryFacet);
+		assertEquals(List.of("Size 8", "Size 10", "Size 42"), getKeys(parent.getChildren()));
+
+		FacetEntrySorter.of(ValueOrder.ALPHANUM_DESC).sort(categoryFacet);
+		assertEquals(List.of("Size 8", "Size 42", "Size 10"), getKeys(parent.getChildren()));
+	}
+
+	@Test
+	public void testSharedSorterUsedConcurrently() throws Exception {
+		assertSame(FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_ASC), FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_ASC));
+
+		List<String> expectedOrder = List.of("1 A", "1.2 A", "2 B", "4 D", "28 z", "Alpha", "Beta");
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<List<String>>> results = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				results.add(executor.submit(() -> {
+					Facet facet = new Facet("random");
+					for (int e = testFacet.getEntries().size() - 1; e >= 0; e--) {
+						FacetEntry entry = testFacet.getEntries().get(e);
+						facet.addEntry(new FacetEntry(entry.getKey(), entry.getId(), entry.getDocCount(), "", false));
+					}
+					FacetEntrySorter.of(ValueOrder.HUMAN_NUMERIC_ASC).sort(facet);
+					return getKeys(facet.getEntries());
+				}));
+			}
+			for (Future<List<String>> result : results) {
+				assertEquals(expectedOrder, result.get());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<String> getKeys(List<FacetEntry> entries) {
+		return entries.stream().map(FacetEntry::getKey).toList();
+	}
 }
@@ -1,5 +1,6 @@
 package de.cxp.ocs.util;
 
+import static de.cxp.ocs.util.SearchParamsParser.extractInternalParams;
 import static de.cxp.ocs.util.SearchParamsParser.parseFilters;
 import static de.cxp.ocs.util.SearchParamsParser.parseSortings;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -9,14 +10,18 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
+import de.cxp.ocs.SearchContext;
 import de.cxp.ocs.config.*;
 import de.cxp.ocs.elasticsearch.model.filter.InternalResultFilter;
 import de.cxp.ocs.elasticsearch.query.filter.NumberResultFilter;
 import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
 import de.cxp.ocs.elasticsearch.query.sort.SortInstruction;
+import de.cxp.ocs.model.params.LinkMode;
+import de.cxp.ocs.model.params.SearchQuery;
 import de.cxp.ocs.model.result.SortOrder;
 
 public class SearchParamsParserTest {
@@ -97,4 +102,48 @@ public class SearchParamsParserTest {
 		assertEquals("price", sortings.get(0).getField().getName());
 		assertEquals(SortOrder.DESC, sortings.get(0).getSortOrder());
 	}
+
+	@Test
+	public void testLinkModeWithTenantDefault() {
+		SearchConfiguration config = new SearchConfiguration();
+		config.getFacetConfiguration().setLinkMode(LinkMode.NONE);
+		SearchContext searchContext = new SearchContext(fieldConfIndex, config, Collections.emptyList(), null, null);
+
+		assertEquals(LinkMode.NONE, extractInternalParams(new SearchQuery(), Collections.emptyMap(), searchContext).linkMode);
+		assertEquals(LinkMode.COMPACT, extractInternalParams(new SearchQuery().setLinks(LinkMode.COMPACT), Collections.emptyMap(), searchContext).linkMode);
+		assertEquals(LinkMode.FULL, extractInternalParams(new SearchQuery(), Collections.emptyMap(), new SearchContext(fieldConfIndex, new SearchConfiguration(), Collections.emptyList(), null, null)).linkMode);
+	}
+
+	@Test
+	public void testWithoutHits() {
+		SearchContext searchContext = new SearchContext(fieldConfIndex, new SearchConfiguration(), Collections.emptyList(), null, null);
+
+		assertTrue(extractInternalParams(new SearchQuery(), Collections.emptyMap(), searchContext).withHits);
+		InternalSearchParams params = extractInternalParams(new SearchQuery().setWithHits(false), Collections.emptyMap(), searchContext);
+		assertFalse(params.withHits);
+		assertTrue(params.withFacets);
+	}
+
+	@Test
+	public void testLatencyBudget() {
+		SearchContext noBudgetContext = new SearchContext(fieldConfIndex, new SearchConfiguration(), Collections.emptyList(), null, null);
+		assertFalse(extractInternalParams(new SearchQuery(), Collections.emptyMap(), noBudgetContext).deadline.isSet());
+		InternalSearchParams params = extractInternalParams(new SearchQuery(), Map.of("latencyBudget", "200"), noBudgetContext);
+		assertEquals(200, params.deadline.getBudgetMillis());
+		assertFalse(params.customParams.containsKey("latencyBudget"));
+
+		// requested budget may only lower the tenant budget
+		SearchContext budgetContext = new SearchContext(fieldConfIndex, new SearchConfiguration().setLatencyBudgetMs(100), Collections.emptyList(), null, null);
+		assertEquals(100, extractInternalParams(new SearchQuery(), Collections.emptyMap(), budgetContext).deadline.getBudgetMillis());
+		assertEquals(100, extractInternalParams(new SearchQuery(), Map.of("latencyBudget", "200"), budgetContext).deadline.getBudgetMillis());
+		assertEquals(50, extractInternalParams(new SearchQuery(), Map.of("latencyBudget", "50"), budgetContext).deadline.getBudgetMillis());
+	}
+
+	@Test
+	public void testParseLinkMode() {
+		assertEquals(LinkMode.NONE, LinkMode.parse("false"));
+		assertEquals(LinkMode.FULL, LinkMode.parse("TRUE"));
+		assertEquals(LinkMode.COMPACT, LinkMode.parse(" compact"));
+		assertEquals(null, LinkMode.parse(""));
+	}
 }
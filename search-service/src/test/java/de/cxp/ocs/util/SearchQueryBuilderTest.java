@@ -2,8 +2,15 @@ package de.cxp.ocs.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
 import de.cxp.ocs.config.FacetConfiguration.FacetConfig;
@@ -12,6 +19,8 @@ import de.cxp.ocs.config.FieldType;
 import de.cxp.ocs.elasticsearch.query.filter.NumberResultFilter;
 import de.cxp.ocs.elasticsearch.query.filter.PathResultFilter;
 import de.cxp.ocs.elasticsearch.query.filter.TermResultFilter;
+import de.cxp.ocs.model.params.LinkMode;
+import de.cxp.ocs.model.result.SortOrder;
 
 public class SearchQueryBuilderTest {
 
@@ -173,4 +182,98 @@ public class SearchQueryBuilderTest {
 		String result = underTest.withFilterAsLink(new FacetConfig("Brand", "brand"), "bar");
 		assertEquals(result, "q=foo&brand=bar");
 	}
+
+	@Test
+	public void testCompactLinks() {
+		DefaultLinkBuilder underTest = new DefaultLinkBuilder(
+				new InternalSearchParams()
+						.setUserQuery("foo")
+						.setLinkMode(LinkMode.COMPACT)
+						.withFilter(new TermResultFilter(new Field("brand"), "apple")));
+		FacetConfig brandFacet = new FacetConfig("Brand", "brand").setMultiSelect(true);
+		assertEquals("brand=apple%2Corange", underTest.withFilterAsLink(brandFacet, "orange"));
+		assertEquals("brand=", underTest.withoutFilterAsLink(brandFacet, "apple"));
+		assertEquals("brand=apple", underTest.withFilterAsLink(brandFacet, "apple"));
+		assertEquals("price=0%2C10", underTest.withFilterAsLink(new FacetConfig("Price", "price"), "0", "10"));
+		assertEquals("sort=-price", underTest.withSortingLink(new Field("price"), SortOrder.DESC));
+		assertNull(underTest.currentLink());
+	}
+
+	@Test
+	public void testNoLinks() {
+		DefaultLinkBuilder underTest = new DefaultLinkBuilder(
+				new InternalSearchParams()
+						.setUserQuery("foo")
+						.setLinkMode(LinkMode.NONE)
+						.withFilter(new TermResultFilter(new Field("brand"), "apple")));
+		FacetConfig brandFacet = new FacetConfig("Brand", "brand").setMultiSelect(true);
+		assertNull(underTest.withFilterAsLink(brandFacet, "orange"));
+		assertNull(underTest.withoutFilterAsLink(brandFacet, "apple"));
+		assertNull(underTest.withExactFilterAsLink(brandFacet, "apple"));
+		assertNull(underTest.withSortingLink(new Field("price"), SortOrder.DESC));
+		assertNull(underTest.currentLink());
+		assertFalse(underTest.isSortingActive(new Field("price"), SortOrder.DESC));
+	}
+
+	/**
+	 * Applying a compact link to the current search state must lead to the same parameters as the full link, for 30
+	 * facets with 10 values each.
+	 */
+	@Test
+	public void testCompactLinksEquivalentToFullLinks() {
+		Map<LinkMode, DefaultLinkBuilder> linkBuilders = new EnumMap<>(LinkMode.class);
+		for (LinkMode linkMode : LinkMode.values()) {
+			InternalSearchParams params = new InternalSearchParams().setUserQuery("foo bar").setLinkMode(linkMode);
+			for (int f = 0; f < 10; f++) {
+				params.withFilter(new TermResultFilter(new Field("facet" + f), "value 1", "value 2"));
+			}
+			linkBuilders.put(linkMode, new DefaultLinkBuilder(params));
+		}
+		DefaultLinkBuilder fullLinks = linkBuilders.get(LinkMode.FULL);
+		DefaultLinkBuilder compactLinks = linkBuilders.get(LinkMode.COMPACT);
+		DefaultLinkBuilder noLinks = linkBuilders.get(LinkMode.NONE);
+		String currentLink = fullLinks.currentLink();
+
+		for (int f = 0; f < 30; f++) {
+			FacetConfig facetConfig = new FacetConfig("Facet " + f, "facet" + f).setMultiSelect(true);
+			for (int v = 0; v < 10; v++) {
+				String value = "value " + v;
+				assertEquals(parseQuery(fullLinks.withFilterAsLink(facetConfig, value)),
+						applyCompactLink(currentLink, compactLinks.withFilterAsLink(facetConfig, value)));
+				assertEquals(parseQuery(fullLinks.withExactFilterAsLink(facetConfig, value)),
+						applyCompactLink(currentLink, compactLinks.withExactFilterAsLink(facetConfig, value)));
+				assertEquals(parseQuery(fullLinks.withoutFilterAsLink(facetConfig, value)),
+						applyCompactLink(currentLink, compactLinks.withoutFilterAsLink(facetConfig, value)));
+				assertNull(noLinks.withFilterAsLink(facetConfig, value));
+			}
+			assertEquals(parseQuery(fullLinks.withoutFilterAsLink(facetConfig)),
+					applyCompactLink(currentLink, compactLinks.withoutFilterAsLink(facetConfig)));
+			assertEquals(parseQuery(fullLinks.withSortingLink(new Field("facet" + f), SortOrder.DESC)),
+					applyCompactLink(currentLink, compactLinks.withSortingLink(new Field("facet" + f), SortOrder.DESC)));
+		}
+	}
+
+	private static Map<String, String> applyCompactLink(String currentLink, String compactLink) {
+		Map<String, String> params = parseQuery(currentLink);
+		parseQuery(compactLink).forEach((name, value) -> {
+			if (value.isEmpty()) {
+				params.remove(name);
+			}
+			else {
+				params.put(name, value);
+			}
+		});
+		return params;
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query == null || query.isEmpty()) return params;
+		for (String param : query.split("&")) {
+			int valueStart = param.indexOf('=');
+			params.put(URLDecoder.decode(param.substring(0, valueStart), StandardCharsets.UTF_8),
+					URLDecoder.decode(param.substring(valueStart + 1), StandardCharsets.UTF_8));
+		}
+		return params;
+	}
 }
@@ -0,0 +1,100 @@
+package de.cxp.ocs.smartsuggest.querysuggester;
+
+import lombok.Getter;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Immutable set of precomputed top-K suggestions for a fixed set of prefixes.
+ * </p>
+ * <p>
+ * It is built off the request path for a specific suggester and is meant to be swapped together with that suggester.
+ * The cached suggestions are immutable copies (unmodifiable payload and tags), so they can be shared between
+ * requests without cloning. Only the returned lists have to be copied, since the limiters modify them.
+ * </p>
+ */
+public class PrefixResultCache implements Accountable {
+
+	static final PrefixResultCache EMPTY = new PrefixResultCache(Collections.emptyMap(), 0);
+
+	private final Map<String, List<Suggestion>> topSuggestions;
+
+	/**
+	 * The amount of suggestions that were fetched per prefix.
+	 */
+	@Getter
+	private final int topK;
+
+	private PrefixResultCache(Map<String, List<Suggestion>> topSuggestions, int topK) {
+		this.topSuggestions = topSuggestions;
+		this.topK = topK;
+	}
+
+	/**
+	 * Precompute the top suggestions for the given prefixes.
+	 *
+	 * @param suggester
+	 *        the suggester to fetch the suggestions from
+	 * @param prefixes
+	 *        the normalized prefixes
+	 * @param topK
+	 *        amount of suggestions to fetch for each prefix
+	 * @param reusable
+	 *        optional cache that was built with the same suggester, whose entries are taken over instead of fetching
+	 *        them again. May be null.
+	 * @return new immutable cache
+	 * @throws SuggestException
+	 *         if the suggester fails
+	 */
+	static PrefixResultCache build(QuerySuggester suggester, Collection<String> prefixes, int topK, PrefixResultCache reusable) throws SuggestException {
+		Map<String, List<Suggestion>> topSuggestions = new HashMap<>(Math.max(16, prefixes.size() * 4 / 3 + 1));
+		for (String prefix : prefixes) {
+			List<Suggestion> reusedSuggestions = reusable != null && reusable.topK == topK ? reusable.get(prefix) : null;
+			if (reusedSuggestions != null) {
+				topSuggestions.put(prefix, reusedSuggestions);
+			}
+			else {
+				List<Suggestion> suggestions = suggester.suggest(prefix, topK, Collections.emptySet());
+				List<Suggestion> immutableSuggestions = new ArrayList<>(suggestions.size());
+				for (Suggestion suggestion : suggestions) {
+					immutableSuggestions.add(toImmutableSuggestion(suggestion));
+				}
+				topSuggestions.put(prefix, Collections.unmodifiableList(immutableSuggestions));
+			}
+		}
+		return new PrefixResultCache(Collections.unmodifiableMap(topSuggestions), topK);
+	}
+
+	private static Suggestion toImmutableSuggestion(Suggestion s) {
+		return new Suggestion(s.getLabel())
+				.setPayload(s.getPayload() == null ? null : Collections.unmodifiableMap(new HashMap<>(s.getPayload())))
+				.setWeight(s.getWeight())
+				// resolve tags eagerly, since the lazy initialization is not thread-safe
+				.setTags(Set.copyOf(s.getTags()));
+	}
+
+	/**
+	 * @param prefix
+	 *        normalized prefix
+	 * @return the unmodifiable list of precomputed suggestions or null if that prefix is not cached.
+	 */
+	List<Suggestion> get(String prefix) {
+		return topSuggestions.get(prefix);
+	}
+
+	boolean contains(String prefix) {
+		return topSuggestions.containsKey(prefix);
+	}
+
+	public int size() {
+		return topSuggestions.size();
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		return RamUsageEstimator.shallowSizeOf(this) + RamUsageEstimator.sizeOfMap(topSuggestions);
+	}
+}
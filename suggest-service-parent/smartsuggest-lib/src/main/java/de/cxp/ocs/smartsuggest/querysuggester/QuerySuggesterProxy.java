@@ -1,46 +1,58 @@
 package de.cxp.ocs.smartsuggest.querysuggester;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheStats;
 import de.cxp.ocs.smartsuggest.monitoring.Instrumentable;
 import de.cxp.ocs.smartsuggest.monitoring.MeterRegistryAdapter;
 import de.cxp.ocs.smartsuggest.util.Util;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.RamUsageEstimator;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+/**
+ * <p>
+ * Proxy that holds the currently active suggester of an index and allows to swap it.
+ * </p>
+ * <p>
+ * For the most frequently requested short prefixes (up to CACHE_LETTER_LENGTH characters), the top suggestions are
+ * precomputed into a {@link PrefixResultCache}. That cache is built off the request path together with a new
+ * suggester (see {@link #updateSuggester(QuerySuggester)}) or when new hot prefixes were requested
+ * (see {@link #refreshPrefixCache()}) and is swapped atomically with the suggester it was built from.
+ * </p>
+ */
 @Slf4j
 public class QuerySuggesterProxy implements QuerySuggester, Instrumentable, Accountable {
 
-	private final    String                          indexName;
-	private final    AtomicReference<QuerySuggester> innerQuerySuggester = new AtomicReference<>(new NoopQuerySuggester());
-	private volatile boolean                         isClosed            = false;
+	private final    String                           indexName;
+	private final    AtomicReference<SuggesterState>  state    = new AtomicReference<>(new SuggesterState(new NoopQuerySuggester(), PrefixResultCache.EMPTY));
+	private volatile boolean                          isClosed = false;
 
-	private final int maxSuggestionsPerCacheEntry = Integer.getInteger("MAX_SUGGESTIONS_PER_CACHE_ENTRY", 10);
-	private final int cacheLetterLength           = Integer.getInteger("CACHE_LETTER_LENGTH", 3);
+	private final int  maxSuggestionsPerCacheEntry = Integer.getInteger("MAX_SUGGESTIONS_PER_CACHE_ENTRY", 10);
+	private final int  cacheLetterLength           = Integer.getInteger("CACHE_LETTER_LENGTH", 3);
+	private final long maxCacheSize                = Long.getLong("CACHE_MAX_SIZE", 10_000L);
 
-	private final Cache<String, List<Suggestion>> firstLetterCache = CacheBuilder.newBuilder()
-			.maximumSize(Long.getLong("CACHE_MAX_SIZE", 10_000L))
-			.recordStats()
-			.build();
+	/**
+	 * Request counts of the cacheable prefixes. Used to decide which prefixes should be precomputed.
+	 */
+	private final Map<String, AtomicLong> prefixRequestCounts = new ConcurrentHashMap<>();
 
-	private CacheStats cacheStats;
-	private long       lastCacheStatsUpdate;
+	private final LongAdder[] requestsPerPrefixLength = newCounters(cacheLetterLength + 1);
+	private final LongAdder[] hitsPerPrefixLength     = newCounters(cacheLetterLength + 1);
+
+	private record SuggesterState(QuerySuggester suggester, PrefixResultCache prefixCache) {}
 
 	/**
 	 * names for logging and metrics
@@ -52,25 +64,37 @@ public class QuerySuggesterProxy implements QuerySuggester, Instrumentable, Acco
 		this.indexName = indexName;
 	}
 
+	private static LongAdder[] newCounters(int size) {
+		LongAdder[] counters = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			counters[i] = new LongAdder();
+		}
+		return counters;
+	}
+
 	public QuerySuggester getInnerSuggester() {
-		return innerQuerySuggester.get();
+		return state.get().suggester();
 	}
 
-	public void updateSuggester(@NonNull QuerySuggester newSuggester) throws AlreadyClosedException {
+	public synchronized void updateSuggester(@NonNull QuerySuggester newSuggester) throws AlreadyClosedException {
 		if (isClosed) throw new AlreadyClosedException("suggester for tenant " + indexName + " closed");
+		QuerySuggester currentSuggester = state.get().suggester();
 		log.info("updating index {} from {}({} records) to {}({} records)", indexName,
-				innerQuerySuggester.get().getClass().getSimpleName(), innerQuerySuggester.get().recordCount(),
+				currentSuggester.getClass().getSimpleName(), currentSuggester.recordCount(),
 				newSuggester.getClass().getSimpleName(), newSuggester.recordCount());
 
+		// let old request counts fade out, so that the cache adapts to changed search behavior
+		prefixRequestCounts.values().forEach(count -> count.updateAndGet(c -> c / 2));
+		prefixRequestCounts.values().removeIf(count -> count.get() == 0);
+
 		long startMs = System.currentTimeMillis();
-		Set<String> cacheKeys = firstLetterCache.asMap().keySet();
-		cacheKeys.forEach(term -> firstLetterCache.put(term, newSuggester.suggest(term)));
-		log.info("refreshed cache with {} entries in {}ms", cacheKeys.size(), (System.currentTimeMillis() - startMs));
+		PrefixResultCache newPrefixCache = buildPrefixCache(newSuggester, null);
+		log.info("precomputed suggestions for {} prefixes in {}ms", newPrefixCache.size(), (System.currentTimeMillis() - startMs));
 
-		QuerySuggester oldSuggester = innerQuerySuggester.getAndSet(newSuggester);
-		if (oldSuggester != null) {
+		SuggesterState oldState = state.getAndSet(new SuggesterState(newSuggester, newPrefixCache));
+		if (oldState.suggester() != null) {
 			try {
-				oldSuggester.destroy();
+				oldState.suggester().destroy();
 			}
 			catch (Exception e) {
 				log.error("Failed to close/cleanup the old suggester. Ignoring error and continue with new suggester.", e);
@@ -78,101 +102,147 @@ public class QuerySuggesterProxy implements QuerySuggester, Instrumentable, Acco
 		}
 	}
 
+	/**
+	 * Precompute the suggestions of frequently requested prefixes that are not cached yet. Should be called
+	 * regularly outside the request path, e.g. by the updater if there is no new data.
+	 */
+	public synchronized void refreshPrefixCache() {
+		if (isClosed) return;
+		SuggesterState currentState = state.get();
+		if (!currentState.suggester().isReady()) return;
+
+		List<String> hotPrefixes = getHotPrefixes();
+		if (hotPrefixes.stream().allMatch(currentState.prefixCache()::contains)) return;
+
+		PrefixResultCache newPrefixCache = buildPrefixCache(currentState.suggester(), currentState.prefixCache());
+		// only swap if the suggester was not changed in the meantime
+		if (state.compareAndSet(currentState, new SuggesterState(currentState.suggester(), newPrefixCache))) {
+			log.debug("extended precomputed suggestions of index {} to {} prefixes", indexName, newPrefixCache.size());
+		}
+	}
+
+	private PrefixResultCache buildPrefixCache(QuerySuggester suggester, PrefixResultCache reusable) {
+		if (!suggester.isReady()) return PrefixResultCache.EMPTY;
+		try {
+			return PrefixResultCache.build(suggester, getHotPrefixes(), maxSuggestionsPerCacheEntry, reusable);
+		}
+		catch (Exception e) {
+			log.error("Failed to precompute prefix suggestions for index {}. Continue without prefix cache.", indexName, e);
+			return PrefixResultCache.EMPTY;
+		}
+	}
+
+	private List<String> getHotPrefixes() {
+		return prefixRequestCounts.entrySet().stream()
+				.sorted(Comparator.comparingLong((Map.Entry<String, AtomicLong> e) -> e.getValue().get()).reversed())
+				.limit(maxCacheSize)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+
 	@Override
 	public boolean isReady() {
-		return innerQuerySuggester.get().isReady();
+		return state.get().suggester().isReady();
 	}
 
 	@Override
 	public void close() throws Exception {
 		isClosed = true;
-		firstLetterCache.invalidateAll();
-		firstLetterCache.cleanUp();
-		innerQuerySuggester.get().close();
+		prefixRequestCounts.clear();
+		state.get().suggester().close();
 	}
 
 	@Override
 	public void destroy() throws Exception {
 		close();
-		innerQuerySuggester.get().destroy();
+		state.get().suggester().destroy();
 	}
 
 	@Override
 	public List<Suggestion> suggest(String term, int maxResults, Set<String> tags) throws SuggestException {
 		if (isClosed || isBlank(term)) return emptyList();
 		final String normalizedTerm = term.toLowerCase();
+		final SuggesterState currentState = state.get();
 
-		// only cache results, if no tags filter is given and the limit
+		// only use cached results, if no tags filter is given and the limit
 		// of results is <= to the maxSuggestionPerCacheEntry level
 		if (normalizedTerm.length() <= cacheLetterLength
 				&& (tags == null || tags.isEmpty())
 				&& maxResults <= maxSuggestionsPerCacheEntry) {
-			try {
-				List<Suggestion> cachedResults = firstLetterCache.get(normalizedTerm,
-						() -> innerQuerySuggester.get().suggest(normalizedTerm, maxSuggestionsPerCacheEntry, tags));
-
-				if (maxResults < maxSuggestionsPerCacheEntry && cachedResults.size() > maxResults) {
+			List<Suggestion> cachedResults = currentState.prefixCache().get(normalizedTerm);
+			recordPrefixRequest(normalizedTerm, cachedResults != null);
+			if (cachedResults != null) {
+				if (cachedResults.size() > maxResults) {
 					cachedResults = cachedResults.subList(0, maxResults);
 				}
-
-				// don't use stream + collector, because we need a mutable list
-				ArrayList<Suggestion> clonedList = new ArrayList<>(cachedResults.size());
-				for (Suggestion cachedSuggestion : cachedResults) {
-					clonedList.add(cloneSuggestion(cachedSuggestion));
-				}
-				return clonedList;
-			}
-			catch (ExecutionException e) {
-				throw new SuggestException(e.getCause());
+				// the cached suggestions are immutable, but the list must be mutable for the limiters
+				return new ArrayList<>(cachedResults);
 			}
 		}
-		else {
-			return innerQuerySuggester.get().suggest(normalizedTerm, maxResults, tags);
+		return currentState.suggester().suggest(normalizedTerm, maxResults, tags);
+	}
+
+	private void recordPrefixRequest(String normalizedTerm, boolean isHit) {
+		requestsPerPrefixLength[normalizedTerm.length()].increment();
+		if (isHit) {
+			hitsPerPrefixLength[normalizedTerm.length()].increment();
+		}
+		AtomicLong count = prefixRequestCounts.get(normalizedTerm);
+		if (count == null && prefixRequestCounts.size() < maxCacheSize) {
+			count = prefixRequestCounts.computeIfAbsent(normalizedTerm, k -> new AtomicLong());
 		}
+		if (count != null) count.incrementAndGet();
 	}
 
-	private Suggestion cloneSuggestion(Suggestion s) {
-		Suggestion clone = new Suggestion(s.getLabel());
-		clone.setTags(s.getTags());
-		clone.setPayload(s.getPayload() == null ? null : new HashMap<>(s.getPayload()));
-		clone.setWeight(s.getWeight());
-		return clone;
+	double getHitRate(int prefixLength) {
+		long requests = requestsPerPrefixLength[prefixLength].sum();
+		return requests == 0 ? 0d : (double) hitsPerPrefixLength[prefixLength].sum() / requests;
 	}
 
-	CacheStats getCacheStats() {
-		if (cacheStats == null || lastCacheStatsUpdate + 60_000 < System.currentTimeMillis()) {
-			cacheStats = firstLetterCache.stats();
-			lastCacheStatsUpdate = System.currentTimeMillis();
+	double getHitRate() {
+		long requests = 0;
+		long hits = 0;
+		for (int i = 1; i <= cacheLetterLength; i++) {
+			requests += requestsPerPrefixLength[i].sum();
+			hits += hitsPerPrefixLength[i].sum();
 		}
-		return cacheStats;
+		return requests == 0 ? 0d : (double) hits / requests;
+	}
+
+	int getPrefixCacheSize() {
+		return state.get().prefixCache().size();
 	}
 
 	@Override
 	public void instrument(MeterRegistryAdapter metricsRegistryAdapter, Iterable<Tag> tags) {
 		if (metricsRegistryAdapter != null) {
 			MeterRegistry reg = metricsRegistryAdapter.getMetricsRegistry();
-			reg.gauge(Util.APP_NAME + ".suggester.cache.size", tags, this, me -> me.firstLetterCache.size());
-			reg.gauge(Util.APP_NAME + ".suggester.cache.evictionCount", tags, this, me -> me.getCacheStats().evictionCount());
-			reg.gauge(Util.APP_NAME + ".suggester.cache.hit_rate", tags, this, me -> me.getCacheStats().hitRate());
-			reg.gauge(Util.APP_NAME + ".suggester.cache.miss_rate", tags, this, me -> me.getCacheStats().missRate());
+			reg.gauge(Util.APP_NAME + ".suggester.cache.size", tags, this, QuerySuggesterProxy::getPrefixCacheSize);
+			reg.gauge(Util.APP_NAME + ".suggester.cache.hit_rate", tags, this, QuerySuggesterProxy::getHitRate);
+			reg.gauge(Util.APP_NAME + ".suggester.cache.miss_rate", tags, this, me -> 1d - me.getHitRate());
+			for (int i = 1; i <= cacheLetterLength; i++) {
+				final int prefixLength = i;
+				reg.gauge(Util.APP_NAME + ".suggester.cache.prefix_hit_rate", Tags.concat(tags, "prefix_length", String.valueOf(prefixLength)),
+						this, me -> me.getHitRate(prefixLength));
+			}
 		}
 	}
 
 	@Override
 	public long ramBytesUsed() {
 		long mySize = RamUsageEstimator.shallowSizeOf(this);
-		mySize += RamUsageEstimator.shallowSizeOf(firstLetterCache);
-		mySize += RamUsageEstimator.sizeOfMap(firstLetterCache.asMap());
-		QuerySuggester delegate = innerQuerySuggester.get();
-		if (delegate instanceof Accountable) {
-			mySize += RamUsageEstimator.sizeOf((Accountable) delegate);
+		mySize += RamUsageEstimator.sizeOfMap(prefixRequestCounts);
+		SuggesterState currentState = state.get();
+		mySize += currentState.prefixCache().ramBytesUsed();
+		if (currentState.suggester() instanceof Accountable) {
+			mySize += RamUsageEstimator.sizeOf((Accountable) currentState.suggester());
 		}
 		return mySize;
 	}
 
 	@Override
 	public long recordCount() {
-		return innerQuerySuggester.get().recordCount();
+		return state.get().suggester().recordCount();
 	}
 
 }
@@ -0,0 +1,341 @@
+package de.cxp.ocs.smartsuggest.querysuggester.lucene;
+
+import de.cxp.ocs.smartsuggest.spi.SuggestRecord;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * <p>
+ * Infix suggester that holds the data of the primary, typo and shingle suggesters in a single index, so that a single
+ * search returns the matches of all those groups.
+ * </p>
+ * <p>
+ * Each suggestion is indexed once per group. The group is stored as an internal context value and the group rank is
+ * encoded into the weight, so that the weight sorted results are ordered by group first and by the actual weight
+ * afterwards. The primary and typo groups require all terms to match, the shingle group only requires any term to
+ * match, which is close to the shingle suggester that matches on single words and word-shingles.
+ * </p>
+ * <p>
+ * The returned weights are the same as the ones of the separate suggesters: the primary and shingle group get the
+ * weight transformation of the {@link org.apache.lucene.search.suggest.analyzing.BlendedInfixSuggester} and the
+ * shingle group results are additionally blended with the reciprocal position of the first matching word.
+ * </p>
+ */
+class CombinedInfixSuggester extends AnalyzingInfixSuggester {
+
+	/**
+	 * The groups in the order of their rank.
+	 */
+	enum Group {
+		PRIMARY, TYPO, SHINGLE;
+
+		private final BytesRef contextValue = new BytesRef((GROUP_CONTEXT_PREFIX + name()).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static final String GROUP_CONTEXT_PREFIX = "\u0000group:";
+
+	/**
+	 * Weights are clamped into that range, so that the group rank can be encoded into the upper bits.
+	 */
+	private static final long GROUP_WEIGHT_RANGE = 1L << 61;
+
+	CombinedInfixSuggester(Directory dir, Analyzer indexAnalyzer, Analyzer queryAnalyzer) throws IOException {
+		super(dir, indexAnalyzer, queryAnalyzer, DEFAULT_MIN_PREFIX_CHARS, false, DEFAULT_ALL_TERMS_REQUIRED, false);
+	}
+
+	void build(Iterable<SuggestRecord> suggestions) throws IOException {
+		build(new CombinedSuggestionIterator(suggestions));
+	}
+
+	/**
+	 * @return the amount of indexed suggestions, which is the amount of documents divided by the amount of groups.
+	 * @throws IOException
+	 *         if the index can't be read
+	 */
+	long getRecordCount() throws IOException {
+		return getCount() / Group.values().length;
+	}
+
+	/**
+	 * Single lookup for all groups. If contexts are given, the shingle group is not considered.
+	 * Since the results are ordered by group rank, a group with many matches may fill all fetched results. In that
+	 * case the groups that did not get their share are looked up separately.
+	 *
+	 * @param key
+	 *        the user input
+	 * @param contexts
+	 *        optional contexts, of which at least one must match
+	 * @param numPerGroup
+	 *        amount of results that should be fetched per group
+	 * @return the results per group, with the same weights and contexts as the separate suggesters would return
+	 * @throws IOException
+	 *         if the index can't be read
+	 */
+	EnumMap<Group, List<LookupResult>> lookupGroups(CharSequence key, Set<BytesRef> contexts, int numPerGroup) throws IOException {
+		int num = numPerGroup * Group.values().length;
+		List<LookupResult> results = lookup(key, contexts, num, true, false);
+
+		EnumMap<Group, List<LookupResult>> groupedResults = new EnumMap<>(Group.class);
+		for (Group group : Group.values()) {
+			groupedResults.put(group, new ArrayList<>());
+		}
+		for (LookupResult result : results) {
+			Group group = getGroup(result.contexts);
+			if (group == null) continue;
+			List<LookupResult> groupResults = groupedResults.get(group);
+			if (groupResults.size() < numPerGroup) {
+				groupResults.add(toGroupResult(group, result));
+			}
+		}
+
+		// if less results than requested were found, all groups got all their matches
+		if (results.size() >= num) {
+			for (Group group : Group.values()) {
+				if (groupedResults.get(group).size() >= numPerGroup) continue;
+				// the shingle group is not considered with contexts
+				if (Group.SHINGLE.equals(group) && contexts != null && !contexts.isEmpty()) continue;
+
+				List<LookupResult> groupResults = new ArrayList<>();
+				for (LookupResult result : lookup(key, groupContextQuery(group, contexts), numPerGroup, true, false)) {
+					groupResults.add(toGroupResult(group, result));
+				}
+				groupedResults.put(group, groupResults);
+			}
+		}
+
+		// the blended shingle results have to be reordered
+		groupedResults.get(Group.SHINGLE).sort(Comparator.comparingLong((LookupResult r) -> r.value).reversed());
+		return groupedResults;
+	}
+
+	private static LookupResult toGroupResult(Group group, LookupResult result) {
+		Set<BytesRef> resultContexts = null;
+		if (Group.TYPO.equals(group)) {
+			resultContexts = new HashSet<>(result.contexts);
+			resultContexts.remove(group.contextValue);
+		}
+		return new LookupResult(result.key, result.value, result.payload, resultContexts);
+	}
+
+	/**
+	 * Context query that restricts the lookup to the given group and optionally to at least one of the given
+	 * contexts.
+	 */
+	private static BooleanQuery groupContextQuery(Group group, Set<BytesRef> contexts) {
+		BooleanQuery.Builder contextQuery = new BooleanQuery.Builder();
+		contextQuery.add(groupQuery(group), BooleanClause.Occur.MUST);
+		if (contexts != null && !contexts.isEmpty()) {
+			BooleanQuery.Builder anyContext = new BooleanQuery.Builder();
+			for (BytesRef context : contexts) {
+				anyContext.add(new TermQuery(new Term(CONTEXTS_FIELD_NAME, context)), BooleanClause.Occur.SHOULD);
+			}
+			contextQuery.add(anyContext.build(), BooleanClause.Occur.MUST);
+		}
+		return contextQuery.build();
+	}
+
+	/**
+	 * @return the group a context query of {@link #groupContextQuery(Group, Set)} is restricted to or null
+	 */
+	private static Group getRestrictedGroup(BooleanClause contextClause) {
+		if (contextClause == null) return null;
+		for (BooleanClause clause : ((BooleanQuery) contextClause.getQuery()).clauses()) {
+			if (BooleanClause.Occur.MUST.equals(clause.getOccur()) && clause.getQuery() instanceof TermQuery) {
+				Term term = ((TermQuery) clause.getQuery()).getTerm();
+				if (CONTEXTS_FIELD_NAME.equals(term.field())) {
+					for (Group group : Group.values()) {
+						if (group.contextValue.equals(term.bytes())) return group;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes the weights of the results, so they are the same as the ones of the separate suggesters.
+	 */
+	@Override
+	protected List<LookupResult> createResults(IndexSearcher searcher, TopFieldDocs hits, int num, CharSequence key, boolean doHighlight,
+			Set<String> matchedTokens, String prefixToken) throws IOException {
+		List<LookupResult> results = super.createResults(searcher, hits, num, key, doHighlight, matchedTokens, prefixToken);
+		List<LookupResult> decodedResults = new ArrayList<>(results.size());
+		for (LookupResult result : results) {
+			Group group = getGroup(result.contexts);
+			if (group == null) continue;
+			long weight = result.value - (Group.values().length - 1 - group.ordinal()) * GROUP_WEIGHT_RANGE;
+			if (!Group.TYPO.equals(group)) {
+				// same weight transformation as done by the BlendedInfixSuggester
+				if (weight == 0) weight = 1;
+				if (weight < 10 && weight > -10) weight *= 10;
+			}
+			if (Group.SHINGLE.equals(group) && !result.key.toString().startsWith(key.toString())) {
+				weight = (long) (weight / (getFirstMatchPosition(result.key.toString(), matchedTokens, prefixToken) + 1d));
+			}
+			decodedResults.add(new LookupResult(result.key, weight, result.payload, result.contexts));
+		}
+		return decodedResults;
+	}
+
+	private int getFirstMatchPosition(String text, Set<String> matchedTokens, String prefixToken) throws IOException {
+		try (TokenStream tokenStream = indexAnalyzer.tokenStream(TEXT_FIELD_NAME, text)) {
+			CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+			PositionIncrementAttribute positionIncrementAttribute = tokenStream.addAttribute(PositionIncrementAttribute.class);
+			tokenStream.reset();
+			int position = -1;
+			int firstMatchPosition = Integer.MAX_VALUE;
+			while (tokenStream.incrementToken()) {
+				position += positionIncrementAttribute.getPositionIncrement();
+				String token = termAttribute.toString();
+				if (matchedTokens.contains(token) || (prefixToken != null && token.startsWith(prefixToken))) {
+					firstMatchPosition = position;
+					break;
+				}
+			}
+			tokenStream.end();
+			return firstMatchPosition;
+		}
+	}
+
+	private static Group getGroup(Set<BytesRef> contexts) {
+		if (contexts == null) return null;
+		for (Group group : Group.values()) {
+			if (contexts.contains(group.contextValue)) return group;
+		}
+		return null;
+	}
+
+	/**
+	 * Restricts the query terms per group: all terms are required for the primary and typo group and any term is
+	 * enough for the shingle group.
+	 */
+	@Override
+	protected Query finishQuery(BooleanQuery.Builder in, boolean allTermsRequired) {
+		BooleanQuery query = in.build();
+		BooleanQuery.Builder allTerms = new BooleanQuery.Builder();
+		BooleanQuery.Builder anyTerm = new BooleanQuery.Builder();
+		BooleanClause contextClause = null;
+		for (BooleanClause clause : query.clauses()) {
+			// term and prefix queries are added for the user input, the optional context query is a boolean query
+			if (clause.getQuery() instanceof BooleanQuery) {
+				contextClause = clause;
+			}
+			else {
+				allTerms.add(clause.getQuery(), BooleanClause.Occur.MUST);
+				anyTerm.add(clause.getQuery(), BooleanClause.Occur.SHOULD);
+			}
+		}
+
+		Group restrictedGroup = getRestrictedGroup(contextClause);
+		if (restrictedGroup != null) {
+			// the context clause already restricts the group
+			return new BooleanQuery.Builder()
+					.add(Group.SHINGLE.equals(restrictedGroup) ? anyTerm.build() : allTerms.build(), BooleanClause.Occur.MUST)
+					.add(contextClause)
+					.build();
+		}
+
+		BooleanQuery.Builder groupsQuery = new BooleanQuery.Builder();
+		groupsQuery.add(new BooleanQuery.Builder()
+				.add(allTerms.build(), BooleanClause.Occur.MUST)
+				.add(new BooleanQuery.Builder()
+						.add(groupQuery(Group.PRIMARY), BooleanClause.Occur.SHOULD)
+						.add(groupQuery(Group.TYPO), BooleanClause.Occur.SHOULD)
+						.build(), BooleanClause.Occur.FILTER)
+				.build(), BooleanClause.Occur.SHOULD);
+		if (contextClause == null) {
+			groupsQuery.add(new BooleanQuery.Builder()
+					.add(anyTerm.build(), BooleanClause.Occur.MUST)
+					.add(groupQuery(Group.SHINGLE), BooleanClause.Occur.FILTER)
+					.build(), BooleanClause.Occur.SHOULD);
+		}
+
+		BooleanQuery.Builder finalQuery = new BooleanQuery.Builder();
+		finalQuery.add(groupsQuery.build(), BooleanClause.Occur.MUST);
+		if (contextClause != null) {
+			finalQuery.add(contextClause);
+		}
+		return finalQuery.build();
+	}
+
+	private static Query groupQuery(Group group) {
+		return new TermQuery(new Term(CONTEXTS_FIELD_NAME, group.contextValue));
+	}
+
+	/**
+	 * Iterates over the suggestions once per group, using the primary text for the primary group and the secondary
+	 * text for the others.
+	 */
+	private static class CombinedSuggestionIterator implements InputIterator {
+
+		private final Iterable<SuggestRecord> suggestions;
+
+		private Group              currentGroup;
+		private SuggestionIterator currentIterator;
+
+		CombinedSuggestionIterator(Iterable<SuggestRecord> suggestions) {
+			this.suggestions = suggestions;
+		}
+
+		@Override
+		public BytesRef next() throws IOException {
+			BytesRef next = currentIterator == null ? null : currentIterator.next();
+			while (next == null && (currentGroup == null || currentGroup.ordinal() < Group.values().length - 1)) {
+				currentGroup = currentGroup == null ? Group.PRIMARY : Group.values()[currentGroup.ordinal() + 1];
+				if (Group.PRIMARY.equals(currentGroup)) {
+					currentIterator = new SuggestionBestMatchIterator(suggestions.iterator());
+				}
+				else {
+					currentIterator = new SuggestionVariantIterator(suggestions.iterator());
+				}
+				next = currentIterator.next();
+			}
+			return next;
+		}
+
+		@Override
+		public long weight() {
+			long weight = Math.max(0, Math.min(currentIterator.weight(), GROUP_WEIGHT_RANGE - 1));
+			return weight + (Group.values().length - 1 - currentGroup.ordinal()) * GROUP_WEIGHT_RANGE;
+		}
+
+		@Override
+		public BytesRef payload() {
+			return currentIterator.payload();
+		}
+
+		@Override
+		public boolean hasPayloads() {
+			return true;
+		}
+
+		@Override
+		public Set<BytesRef> contexts() {
+			Set<BytesRef> contexts = new HashSet<>(currentIterator.contexts());
+			contexts.add(currentGroup.contextValue);
+			return contexts;
+		}
+
+		@Override
+		public boolean hasContexts() {
+			return true;
+		}
+	}
+}
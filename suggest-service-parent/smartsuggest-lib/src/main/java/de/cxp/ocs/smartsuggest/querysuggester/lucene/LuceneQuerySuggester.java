@@ -14,6 +14,7 @@ import de.cxp.ocs.smartsuggest.spi.SuggestRecord;
 import de.cxp.ocs.smartsuggest.util.Util;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -32,6 +33,8 @@ import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
 import org.apache.lucene.search.suggest.analyzing.BlendedInfixSuggester;
 import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
 import org.apache.lucene.search.suggest.analyzing.SuggestStopFilter;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
@@ -45,6 +48,7 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.*;
@@ -81,6 +85,12 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 	private final AnalyzingInfixSuggester secondarySuggester;
 	private final AnalyzingInfixSuggester shingleSuggester;
 
+	/**
+	 * Replaces the primary, secondary and shingle suggester, if the combined lookup is enabled. In that case those
+	 * other suggesters are null.
+	 */
+	private final CombinedInfixSuggester combinedSuggester;
+
 	/**
 	 * A fuzzy suggester that is used for search terms shorter than or equal to
 	 * 6 characters.
@@ -102,6 +112,7 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 	private Instant indexModTime;
 	private long    recordCount   = 0;
 	private long    memUsageBytes = 0;
+	private long    offHeapBytes  = 0;
 
 	private final    List<Closeable> closeables = new ArrayList<>();
 	private volatile boolean         isClosed   = false;
@@ -109,6 +120,23 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 	@Getter(AccessLevel.PACKAGE)
 	private final Path indexFolder;
 
+	/**
+	 * Only used to memory map the fuzzy index files, if they should be used off-heap.
+	 */
+	private MMapDirectory fuzzyIndexDirectory;
+
+	/**
+	 * Amount of FST bytes that are read off-heap, indexed by fuzzy-stage minus one. A value of 0 means that the
+	 * according fuzzy suggester is held on heap.
+	 */
+	private final long[] fuzzyOffHeapBytes = new long[2];
+
+	/**
+	 * The memory mapped inputs of the off-heap loaded fuzzy suggesters, indexed by fuzzy-stage minus one. They are
+	 * replaced and closed with each reload.
+	 */
+	private final IndexInput[] fuzzyIndexInputs = new IndexInput[2];
+
 	/**
 	 * Constructor for fresh suggester that in initialized in an empty folder. To recover the suggester, use the other constructor with the modTime of the according data.
 	 *
@@ -145,6 +173,11 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 		this.modifiedTermsService = modifiedTermsService;
 		this.suggestConfig = suggestConfig;
 		this.indexFolder = indexFolder;
+		closeables.add(modifiedTermsService);
+		if (suggestConfig.isUseOffHeapFuzzyIndex()) {
+			// fail fast instead of at the first indexation
+			OffHeapFSTLoader.checkSupported();
+		}
 
 		try {
 			// TODO: extract a AnalyzerProviderInterface to make this
@@ -153,41 +186,30 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 			Analyzer basicIndexAnalyzer = setupBasicAnalyzer(true, stopWords);
 			Analyzer basicQueryAnalyzer = setupBasicAnalyzer(false, stopWords);
 
-			MMapDirectory infixDir = new MMapDirectory(indexFolder.resolve("infix"));
-			// the num-factor of 1 is all we need here, since the suggestions are considered as preordered and we use
-			// the 'BlenderType.CUSTOM' here that does not cause major reorderings.
-			// Although the AnalyzingInfixSuggester would still be a bit faster, the BlendedInfixSuggester has better
-			// handling of position match penalties for suggestions with the single weight
-			primarySuggester = new BlendedInfixSuggester(infixDir, basicIndexAnalyzer, basicQueryAnalyzer,
-					AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS, BlendedInfixSuggester.BlenderType.CUSTOM, 1, null,
-					false, AnalyzingInfixSuggester.DEFAULT_ALL_TERMS_REQUIRED, false);
-			closeables.add(primarySuggester);
-
-			Analyzer basicIndexAnalyzer2 = setupBasicAnalyzer(true, stopWords);
-			Analyzer basicQueryAnalyzer2 = setupBasicAnalyzer(false, stopWords);
-			MMapDirectory infixDir2 = new MMapDirectory(indexFolder.resolve("typo"));
-			secondarySuggester = new AnalyzingInfixSuggester(infixDir2, basicIndexAnalyzer2, basicQueryAnalyzer2,
-					AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS, false, AnalyzingInfixSuggester.DEFAULT_ALL_TERMS_REQUIRED, false);
-			closeables.add(secondarySuggester);
-
-			final Analyzer shingleIndexAnalyzer = setupShingleAnalyzer(true, stopWords);
-			final Analyzer shingleQueryAnalyzer = setupShingleAnalyzer(false, stopWords);
-			MMapDirectory shingleDir = new MMapDirectory(indexFolder.resolve("shingle"));
-			shingleSuggester = new BlendedInfixSuggester(shingleDir, shingleIndexAnalyzer, shingleQueryAnalyzer,
-					AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS,
-					BlendedInfixSuggester.BlenderType.POSITION_RECIPROCAL, 1, null, false, false, false);
-			closeables.add(shingleSuggester);
+			if (suggestConfig.isUseCombinedLookup()) {
+				combinedSuggester = new CombinedInfixSuggester(new MMapDirectory(indexFolder.resolve("combined")), basicIndexAnalyzer, basicQueryAnalyzer);
+				closeables.add(combinedSuggester);
+				primarySuggester = null;
+				secondarySuggester = null;
+				shingleSuggester = null;
+			}
+			else {
+				combinedSuggester = null;
+				primarySuggester = createPrimarySuggester(indexFolder, basicIndexAnalyzer, basicQueryAnalyzer);
+				secondarySuggester = createSecondarySuggester(indexFolder, stopWords);
+				shingleSuggester = createShingleSuggester(indexFolder, stopWords);
+			}
 
 			fuzzySuggesterOneEdit = createFuzzySuggester(indexFolder, "Short", basicIndexAnalyzer, basicQueryAnalyzer, 1);
 			fuzzySuggesterTwoEdits = createFuzzySuggester(indexFolder, "Long", basicIndexAnalyzer, basicQueryAnalyzer, 2);
 
-			if (primarySuggester.getCount() == 0) {
+			if (getIndexedRecordCount() == 0) {
 				// seems like nothing is initialized => we need to init the analyzers with empty data to avoid "not ready" suggesters
 				index(emptyList(), 0).join();
 			}
 			else {
-				fuzzySuggesterOneEdit.load(new FileInputStream(getFuzzyIndexFile(1)));
-				fuzzySuggesterTwoEdits.load(new FileInputStream(getFuzzyIndexFile(2)));
+				loadFuzzySuggester(fuzzySuggesterOneEdit, 1);
+				loadFuzzySuggester(fuzzySuggesterTwoEdits, 2);
 				finalizeIndexation(null, Objects.requireNonNull(modTime, "modTime required if index already exist, but is not empty"));
 			}
 		}
@@ -196,12 +218,47 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 		}
 	}
 
+	private AnalyzingInfixSuggester createPrimarySuggester(Path indexFolder, Analyzer basicIndexAnalyzer, Analyzer basicQueryAnalyzer) throws IOException {
+		MMapDirectory infixDir = new MMapDirectory(indexFolder.resolve("infix"));
+		// the num-factor of 1 is all we need here, since the suggestions are considered as preordered and we use
+		// the 'BlenderType.CUSTOM' here that does not cause major reorderings.
+		// Although the AnalyzingInfixSuggester would still be a bit faster, the BlendedInfixSuggester has better
+		// handling of position match penalties for suggestions with the single weight
+		AnalyzingInfixSuggester primarySuggester = new BlendedInfixSuggester(infixDir, basicIndexAnalyzer, basicQueryAnalyzer,
+				AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS, BlendedInfixSuggester.BlenderType.CUSTOM, 1, null,
+				false, AnalyzingInfixSuggester.DEFAULT_ALL_TERMS_REQUIRED, false);
+		closeables.add(primarySuggester);
+		return primarySuggester;
+	}
+
+	private AnalyzingInfixSuggester createSecondarySuggester(Path indexFolder, CharArraySet stopWords) throws IOException {
+		Analyzer basicIndexAnalyzer2 = setupBasicAnalyzer(true, stopWords);
+		Analyzer basicQueryAnalyzer2 = setupBasicAnalyzer(false, stopWords);
+		MMapDirectory infixDir2 = new MMapDirectory(indexFolder.resolve("typo"));
+		AnalyzingInfixSuggester secondarySuggester = new AnalyzingInfixSuggester(infixDir2, basicIndexAnalyzer2, basicQueryAnalyzer2,
+				AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS, false, AnalyzingInfixSuggester.DEFAULT_ALL_TERMS_REQUIRED, false);
+		closeables.add(secondarySuggester);
+		return secondarySuggester;
+	}
+
+	private AnalyzingInfixSuggester createShingleSuggester(Path indexFolder, CharArraySet stopWords) throws IOException {
+		final Analyzer shingleIndexAnalyzer = setupShingleAnalyzer(true, stopWords);
+		final Analyzer shingleQueryAnalyzer = setupShingleAnalyzer(false, stopWords);
+		MMapDirectory shingleDir = new MMapDirectory(indexFolder.resolve("shingle"));
+		AnalyzingInfixSuggester shingleSuggester = new BlendedInfixSuggester(shingleDir, shingleIndexAnalyzer, shingleQueryAnalyzer,
+				AnalyzingInfixSuggester.DEFAULT_MIN_PREFIX_CHARS,
+				BlendedInfixSuggester.BlenderType.POSITION_RECIPROCAL, 1, null, false, false, false);
+		closeables.add(shingleSuggester);
+		return shingleSuggester;
+	}
+
 	@Override
 	public void instrument(MeterRegistryAdapter metricsRegistryAdapter, Iterable<Tag> tags) {
 		if (metricsRegistryAdapter != null) {
 			MeterRegistry reg = metricsRegistryAdapter.getMetricsRegistry();
 			reg.gauge(METRICS_PREFIX + ".record_count", tags, this, me -> me.recordCount);
-			reg.gauge(METRICS_PREFIX + ".estimated_memusage_bytes", tags, this, me -> me.memUsageBytes);
+			reg.gauge(METRICS_PREFIX + ".estimated_memusage_bytes", Tags.concat(tags, "memory", "heap"), this, me -> me.memUsageBytes);
+			reg.gauge(METRICS_PREFIX + ".estimated_memusage_bytes", Tags.concat(tags, "memory", "off_heap"), this, me -> me.offHeapBytes);
 			reg.more().counter(METRICS_PREFIX + ".last_index_timestamp_seconds", tags, this,
 					me -> (me.indexModTime == null ? -1 : me.indexModTime.getEpochSecond()));
 		}
@@ -220,6 +277,49 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 				0, DEFAULT_MIN_FUZZY_LENGTH, true);
 	}
 
+	/**
+	 * Loads the fuzzy suggester from its index file. Depending on the configuration, the FST is loaded onto the heap
+	 * or it is memory mapped and read off-heap.
+	 */
+	private void loadFuzzySuggester(FuzzySuggester fuzzySuggester, int fuzzyStage) throws IOException {
+		if (suggestConfig.isUseOffHeapFuzzyIndex()) {
+			if (fuzzyIndexDirectory == null) {
+				fuzzyIndexDirectory = new MMapDirectory(indexFolder);
+				closeables.add(fuzzyIndexDirectory);
+			}
+			IndexInput fuzzyIndexInput = fuzzyIndexDirectory.openInput(getFuzzyIndexFile(fuzzyStage).getName(), IOContext.READ);
+			try {
+				fuzzyOffHeapBytes[fuzzyStage - 1] = OffHeapFSTLoader.load(fuzzySuggester, fuzzyIndexInput);
+			}
+			catch (IOException | RuntimeException e) {
+				fuzzyIndexInput.close();
+				throw e;
+			}
+			replaceFuzzyIndexInput(fuzzyStage, fuzzyIndexInput);
+		}
+		else {
+			fuzzySuggester.load(new FileInputStream(getFuzzyIndexFile(fuzzyStage)));
+			fuzzyOffHeapBytes[fuzzyStage - 1] = 0;
+			replaceFuzzyIndexInput(fuzzyStage, null);
+		}
+	}
+
+	/**
+	 * Close the input of the previously loaded fuzzy suggester, since the suggester does not use it anymore.
+	 */
+	private void replaceFuzzyIndexInput(int fuzzyStage, IndexInput newInput) {
+		IndexInput oldInput = fuzzyIndexInputs[fuzzyStage - 1];
+		fuzzyIndexInputs[fuzzyStage - 1] = newInput;
+		if (oldInput != null) {
+			try {
+				oldInput.close();
+			}
+			catch (IOException e) {
+				log.error("An error occurred while closing '{}'", oldInput, e);
+			}
+		}
+	}
+
 	private Analyzer setupBasicAnalyzer(boolean forIndexing, CharArraySet stopWordSet) {
 		final Analyzer analyzer = new Analyzer() {
 
@@ -300,16 +400,30 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 				perfResult.addStep("sharpenedTerms", resultCount);
 			}
 
+			// with the combined lookup, the best matches, typo variants and shingle matches are fetched at once
+			final EnumMap<CombinedInfixSuggester.Group, List<Lookup.LookupResult>> combinedResults;
+			if (combinedSuggester != null) {
+				combinedResults = combinedSuggester.lookupGroups(term, contexts, maxResults + uniqueQueries.size());
+				perfResult.addStep("combinedLookup", combinedResults.values().stream().mapToInt(List::size).sum());
+			}
+			else {
+				combinedResults = null;
+			}
+
 			// lookup for best matches
 			{
-				int resultCount = collectSuggestions(term, contexts, primarySuggester, maxResults, uniqueQueries, maxResults, BEST_MATCHES_GROUP_NAME, results);
+				final List<Lookup.LookupResult> lookupResults = combinedResults != null ? combinedResults.get(CombinedInfixSuggester.Group.PRIMARY)
+						: primarySuggester.lookup(term, contexts, false, maxResults + uniqueQueries.size());
+				int resultCount = collectSuggestions(term, lookupResults, uniqueQueries, maxResults, BEST_MATCHES_GROUP_NAME, results);
 				perfResult.addStep("bestMatches", resultCount);
 			}
 
 			// lookup known typo variants
 			if (uniqueQueries.size() < maxResults) {
 				final int itemsToFetchTypos = maxResults - uniqueQueries.size();
-				int resultCount = collectSuggestions(term, contexts, secondarySuggester, itemsToFetchTypos, uniqueQueries, itemsToFetchTypos, TYPO_MATCHES_GROUP_NAME, results);
+				final List<Lookup.LookupResult> lookupResults = combinedResults != null ? combinedResults.get(CombinedInfixSuggester.Group.TYPO)
+						: secondarySuggester.lookup(term, contexts, false, itemsToFetchTypos + uniqueQueries.size());
+				int resultCount = collectSuggestions(term, lookupResults, uniqueQueries, itemsToFetchTypos, TYPO_MATCHES_GROUP_NAME, results);
 				if (SortStrategy.PrimaryAndSecondaryByWeight.equals(suggestConfig.getSortStrategy())) {
 					results.sort(Util.getDefaultComparator(suggestConfig.locale, term));
 				}
@@ -337,8 +451,9 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 			// lookup with shingles
 			if ((suggestConfig.isAlwaysDoFuzzy() || uniqueQueries.isEmpty()) && uniqueQueries.size() < maxResults && contexts == null) {
 				final int itemsToFetchShingles = maxResults - uniqueQueries.size();
-				int resultCount = collectSuggestions(term, null, shingleSuggester, itemsToFetchShingles, uniqueQueries, itemsToFetchShingles, SHINGLE_MATCHES_GROUP_NAME,
-						results);
+				final List<Lookup.LookupResult> lookupResults = combinedResults != null ? combinedResults.get(CombinedInfixSuggester.Group.SHINGLE)
+						: shingleSuggester.lookup(term, null, false, itemsToFetchShingles + uniqueQueries.size());
+				int resultCount = collectSuggestions(term, lookupResults, uniqueQueries, itemsToFetchShingles, SHINGLE_MATCHES_GROUP_NAME, results);
 				perfResult.addStep("shingleMatches", resultCount);
 			}
 
@@ -408,10 +523,8 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 		return suggestions.size();
 	}
 
-	private int collectSuggestions(String term, Set<BytesRef> contexts, Lookup suggester, int itemsToFetch,
-			Set<String> uniqueQueries, int maxResults, String groupName, List<Suggestion> results) throws IOException {
-		final List<Lookup.LookupResult> lookupResults = suggester.lookup(term, contexts, false, itemsToFetch + uniqueQueries.size());
-
+	private int collectSuggestions(String term, List<Lookup.LookupResult> lookupResults,
+			Set<String> uniqueQueries, int maxResults, String groupName, List<Suggestion> results) {
 		final List<Suggestion> suggestions = getUniqueSuggestions(lookupResults, uniqueQueries, maxResults);
 		suggestions.forEach(s -> withPayloadEntry(s, CommonPayloadFields.PAYLOAD_GROUPMATCH_KEY, groupName));
 
@@ -470,11 +583,44 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 	}
 
 	void commit() throws IOException {
-		primarySuggester.commit();
-		secondarySuggester.commit();
-		shingleSuggester.commit();
-		fuzzySuggesterOneEdit.store(new FileOutputStream(getFuzzyIndexFile(1)));
-		fuzzySuggesterTwoEdits.store(new FileOutputStream(getFuzzyIndexFile(2)));
+		if (combinedSuggester != null) {
+			combinedSuggester.commit();
+		}
+		else {
+			primarySuggester.commit();
+			secondarySuggester.commit();
+			shingleSuggester.commit();
+		}
+		// off-heap suggesters were loaded from their index files, so they are persisted already
+		if (fuzzyOffHeapBytes[0] == 0) fuzzySuggesterOneEdit.store(new FileOutputStream(getFuzzyIndexFile(1)));
+		if (fuzzyOffHeapBytes[1] == 0) fuzzySuggesterTwoEdits.store(new FileOutputStream(getFuzzyIndexFile(2)));
+	}
+
+	/**
+	 * Store the freshly built fuzzy FSTs and reload them off-heap, so that the heap copy can be garbage collected.
+	 * The files are written into a temporary file first and then moved, because an already memory mapped file must
+	 * not be modified.
+	 */
+	private void moveFuzzyIndexesOffHeap() {
+		try {
+			for (int fuzzyStage = 1; fuzzyStage <= 2; fuzzyStage++) {
+				FuzzySuggester fuzzySuggester = fuzzyStage == 1 ? fuzzySuggesterOneEdit : fuzzySuggesterTwoEdits;
+				if (fuzzySuggester.getCount() == 0 || fuzzyOffHeapBytes[fuzzyStage - 1] > 0) continue;
+
+				Path fuzzyIndexFile = getFuzzyIndexFile(fuzzyStage).toPath();
+				Path tempFile = Files.createTempFile(indexFolder, fuzzyIndexFile.getFileName().toString(), ".tmp");
+				fuzzySuggester.store(new FileOutputStream(tempFile.toFile()));
+				Files.move(tempFile, fuzzyIndexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				loadFuzzySuggester(fuzzySuggester, fuzzyStage);
+			}
+		}
+		catch (IOException iox) {
+			throw new UncheckedIOException(iox);
+		}
+	}
+
+	IndexInput getFuzzyIndexInput(int fuzzyStage) {
+		return fuzzyIndexInputs[fuzzyStage - 1];
 	}
 
 	private File getFuzzyIndexFile(int fuzzyStage) {
@@ -483,39 +629,49 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 
 	@Override
 	public CompletableFuture<Void> index(Iterable<SuggestRecord> suggestions, long modificationTime) {
-		Runnable primaryIndexJob = indexAsync(primarySuggester, suggestions, false);
-		Runnable secondaryIndexJob = indexAsync(secondarySuggester, suggestions, true);
-		Runnable fuzzyShortIndexJob = indexAsync(fuzzySuggesterOneEdit, suggestions, false);
-		Runnable fuzzyLongIndexJob = indexAsync(fuzzySuggesterTwoEdits, suggestions, false);
-		Runnable shingleIndexJob = indexAsync(shingleSuggester, suggestions, true);
+		// the fuzzy suggesters will be rebuilt on heap
+		Arrays.fill(fuzzyOffHeapBytes, 0);
+		List<Runnable> indexJobs = new ArrayList<>();
+		if (combinedSuggester != null) {
+			indexJobs.add(() -> {
+				try {
+					combinedSuggester.build(suggestions);
+				}
+				catch (IOException iox) {
+					throw new UncheckedIOException(iox);
+				}
+			});
+		}
+		else {
+			indexJobs.add(indexAsync(primarySuggester, suggestions, false));
+			indexJobs.add(indexAsync(secondarySuggester, suggestions, true));
+			indexJobs.add(indexAsync(shingleSuggester, suggestions, true));
+		}
+		indexJobs.add(indexAsync(fuzzySuggesterOneEdit, suggestions, false));
+		indexJobs.add(indexAsync(fuzzySuggesterTwoEdits, suggestions, false));
 
 		if (suggestConfig.isIndexConcurrently()) {
-			CompletableFuture<Void> infixFuture = CompletableFuture.runAsync(primaryIndexJob);
-			CompletableFuture<Void> typoInfixFuture = CompletableFuture.runAsync(secondaryIndexJob);
-			CompletableFuture<Void> fuzzyShortFuture = CompletableFuture.runAsync(fuzzyShortIndexJob);
-			CompletableFuture<Void> fuzzyLongFuture = CompletableFuture.runAsync(fuzzyLongIndexJob);
-			CompletableFuture<Void> shingleFuture = CompletableFuture.runAsync(shingleIndexJob);
 			return CompletableFuture
-					.allOf(infixFuture, typoInfixFuture, fuzzyShortFuture, fuzzyLongFuture, shingleFuture)
+					.allOf(indexJobs.stream().map(CompletableFuture::runAsync).toArray(CompletableFuture[]::new))
 					.thenRun(() -> finalizeIndexation(suggestions, modificationTime));
 		}
 		else {
 			// this runs as a part of the SuggestionsUpdater inside a ThreadPoolExecutor, so no need to shift that work
 			// into common thread-pool
-			primaryIndexJob.run();
-			secondaryIndexJob.run();
-			fuzzyShortIndexJob.run();
-			fuzzyLongIndexJob.run();
-			shingleIndexJob.run();
+			indexJobs.forEach(Runnable::run);
 			finalizeIndexation(suggestions, modificationTime);
 			return CompletableFuture.completedFuture(null);
 		}
 	}
 
 	private void finalizeIndexation(Iterable<SuggestRecord> suggestions, long dataModTime) {
+		if (suggestions != null && suggestConfig.isUseOffHeapFuzzyIndex()) {
+			moveFuzzyIndexesOffHeap();
+		}
 		indexModTime = dataModTime == -1 ? Instant.MIN : Instant.ofEpochMilli(dataModTime);
 		recordCount = getRecordCount(suggestions);
 		memUsageBytes = ramBytesUsed();
+		offHeapBytes = offHeapBytesUsed();
 	}
 
 	private long getRecordCount(Iterable<SuggestRecord> suggestions) {
@@ -524,7 +680,7 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 		}
 		else {
 			try {
-				return primarySuggester.getCount();
+				return getIndexedRecordCount();
 			}
 			catch (IOException e) {
 				return -1;
@@ -532,6 +688,10 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 		}
 	}
 
+	private long getIndexedRecordCount() throws IOException {
+		return combinedSuggester != null ? combinedSuggester.getRecordCount() : primarySuggester.getCount();
+	}
+
 	private Runnable indexAsync(Lookup lookup, Iterable<SuggestRecord> suggestions, boolean useVariant) {
 		return () -> {
 			try {
@@ -581,6 +741,8 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 	@Override
 	public void close() {
 		isClosed = true;
+		replaceFuzzyIndexInput(1, null);
+		replaceFuzzyIndexInput(2, null);
 		for (Closeable closeable : closeables) {
 			try {
 				closeable.close();
@@ -627,19 +789,47 @@ public class LuceneQuerySuggester implements QuerySuggester, QueryIndexer, Accou
 	@Override
 	public long ramBytesUsed() {
 		long mySize = RamUsageEstimator.shallowSizeOf(this);
-		mySize += RamUsageEstimator.sizeOf(primarySuggester);
-		mySize += RamUsageEstimator.sizeOf(secondarySuggester);
-		mySize += RamUsageEstimator.sizeOf(shingleSuggester);
+		if (combinedSuggester != null) {
+			mySize += RamUsageEstimator.sizeOf(combinedSuggester);
+		}
+		else {
+			mySize += RamUsageEstimator.sizeOf(primarySuggester);
+			mySize += RamUsageEstimator.sizeOf(secondarySuggester);
+			mySize += RamUsageEstimator.sizeOf(shingleSuggester);
+		}
 		mySize += RamUsageEstimator.sizeOf(fuzzySuggesterOneEdit);
 		mySize += RamUsageEstimator.sizeOf(fuzzySuggesterTwoEdits);
 		mySize += RamUsageEstimator.sizeOf(modifiedTermsService);
 		return mySize;
 	}
 
+	/**
+	 * Estimates the amount of data that is read from memory mapped files. That is the size of the infix indexes, the
+	 * memory mapped modified terms and the fuzzy FSTs, if they are loaded off-heap.
+	 *
+	 * @return estimated off-heap bytes
+	 */
+	public long offHeapBytesUsed() {
+		long offHeapSize = fuzzyOffHeapBytes[0] + fuzzyOffHeapBytes[1] + modifiedTermsService.offHeapBytesUsed();
+		for (String infixFolder : new String[] { "infix", "typo", "shingle", "combined" }) {
+			offHeapSize += getFolderSize(indexFolder.resolve(infixFolder));
+		}
+		return offHeapSize;
+	}
+
+	private static long getFolderSize(Path folder) {
+		try (var files = Files.list(folder)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		}
+		catch (IOException e) {
+			return 0;
+		}
+	}
+
 	@Override
 	public long recordCount() {
 		try {
-			return primarySuggester.getCount();
+			return getIndexedRecordCount();
 		}
 		catch (IOException e) {
 			log.warn("IOException when retrieving count of infixSuggester: {}", e.getMessage());
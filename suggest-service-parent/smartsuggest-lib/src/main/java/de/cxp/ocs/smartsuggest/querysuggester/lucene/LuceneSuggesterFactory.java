@@ -4,16 +4,22 @@ import de.cxp.ocs.smartsuggest.monitoring.MeterRegistryAdapter;
 import de.cxp.ocs.smartsuggest.querysuggester.QuerySuggester;
 import de.cxp.ocs.smartsuggest.querysuggester.SuggesterFactory;
 import de.cxp.ocs.smartsuggest.querysuggester.modified.ModifiedTermsService;
+import de.cxp.ocs.smartsuggest.querysuggester.modified.ModifiedTermsStore;
 import de.cxp.ocs.smartsuggest.spi.IndexArchive;
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig;
 import de.cxp.ocs.smartsuggest.spi.SuggestData;
 import de.cxp.ocs.smartsuggest.spi.SuggestRecord;
+import de.cxp.ocs.smartsuggest.util.ArchiveCodec;
 import de.cxp.ocs.smartsuggest.util.FileUtils;
+import de.cxp.ocs.smartsuggest.util.Util;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.util.IOUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -24,13 +30,30 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 @Slf4j
 public class LuceneSuggesterFactory implements SuggesterFactory<LuceneQuerySuggester> {
 
-	private static final String FILENAME_SUGGEST_DATA = "suggest_data.ser";
+	/**
+	 * Legacy file with the metadata and the modified queries. It's only written if the system property
+	 * {@value #WRITE_LEGACY_DATA_PROPERTY} is set to true and read if an archive has no separate metadata file.
+	 */
+	private static final String FILENAME_SUGGEST_DATA      = "suggest_data.ser";
+	private static final String FILENAME_SUGGEST_METADATA  = "suggest_metadata.ser";
+	private static final String FILENAME_RELAXED_QUERIES   = "relaxed_queries.fst";
+	private static final String FILENAME_SHARPENED_QUERIES = "sharpened_queries.fst";
+
+	/**
+	 * Set this system property to true to also write the legacy 'suggest_data.ser' file with all modified queries
+	 * into the archives. This is only necessary during a rolling deployment as long as instances with a version that
+	 * can't read the FST files recover from the created archives.
+	 */
+	public static final String WRITE_LEGACY_DATA_PROPERTY = LuceneSuggesterFactory.class.getName() + ".writeLegacyData";
+
+	private boolean writeLegacyData = Boolean.getBoolean(WRITE_LEGACY_DATA_PROPERTY);
 
 	private Path                    baseDirectory;
 	private CompletableFuture<Void> persistJobFuture = null;
@@ -42,6 +65,10 @@ public class LuceneSuggesterFactory implements SuggesterFactory<LuceneQuerySugge
 		this.baseDirectory = baseDirectory;
 	}
 
+	void setWriteLegacyData(boolean writeLegacyData) {
+		this.writeLegacyData = writeLegacyData;
+	}
+
 	@Override
 	public void instrument(MeterRegistryAdapter metricsRegistryAdapter, Iterable<Tag> tags) {
 		this.metricsRegistryAdapter = metricsRegistryAdapter;
@@ -78,13 +105,17 @@ public class LuceneSuggesterFactory implements SuggesterFactory<LuceneQuerySugge
 	}
 
 	private LuceneQuerySuggester initSuggester(SuggestData suggestData, SuggestConfig suggestConfig, Path indexFolder) {
+		return initSuggester(suggestData, suggestConfig, indexFolder, new ModifiedTermsService(
+				suggestData.getRelaxedQueries(),
+				suggestData.getSharpenedQueries(),
+				suggestConfig));
+	}
+
+	private LuceneQuerySuggester initSuggester(SuggestData suggestData, SuggestConfig suggestConfig, Path indexFolder, ModifiedTermsService modifiedTermsService) {
 		var luceneQuerySuggester = new LuceneQuerySuggester(
 				indexFolder,
 				suggestConfig,
-				new ModifiedTermsService(
-						suggestData.getRelaxedQueries(),
-						suggestData.getSharpenedQueries(),
-						suggestConfig),
+				modifiedTermsService,
 				Optional.ofNullable(suggestData.getWordsToIgnore())
 						.map(sw -> new CharArraySet(sw, true))
 						.orElse(null),
@@ -111,17 +142,23 @@ public class LuceneSuggesterFactory implements SuggesterFactory<LuceneQuerySugge
 	}
 
 	private void persistNonIndexedData(Path indexFolder, SuggestData data) {
-		// store all but suggest-records
+		// store all but suggest-records. The modified queries are stored as FSTs that can be memory mapped on recovery.
 		SuggestData nonIndexedData = SuggestData.builder()
 				.type(data.getType())
 				.locale(data.getLocale())
 				.modificationTime(data.getModificationTime())
-				.sharpenedQueries(data.getSharpenedQueries())
-				.relaxedQueries(data.getRelaxedQueries())
 				.wordsToIgnore(data.getWordsToIgnore())
 				.build();
 		try {
-			FileUtils.persistSerializable(indexFolder.resolve(FILENAME_SUGGEST_DATA), nonIndexedData);
+			ModifiedTermsStore.write(data.getRelaxedQueries(), indexFolder.resolve(FILENAME_RELAXED_QUERIES));
+			ModifiedTermsStore.write(data.getSharpenedQueries(), indexFolder.resolve(FILENAME_SHARPENED_QUERIES));
+			FileUtils.persistSerializable(indexFolder.resolve(FILENAME_SUGGEST_METADATA), nonIndexedData);
+			if (writeLegacyData) {
+				FileUtils.persistSerializable(indexFolder.resolve(FILENAME_SUGGEST_DATA), nonIndexedData.toBuilder()
+						.relaxedQueries(data.getRelaxedQueries())
+						.sharpenedQueries(data.getSharpenedQueries())
+						.build());
+			}
 		}
 		catch (IOException ioe) {
 			throw new UncheckedIOException(ioe);
@@ -134,21 +171,62 @@ public class LuceneSuggesterFactory implements SuggesterFactory<LuceneQuerySugge
 		final long start = System.currentTimeMillis();
 		luceneSuggester.commit();
 		persistJobFuture.join();
-		File tarGzFile = FileUtils.packArchive(luceneSuggester.getIndexFolder(), "suggest-index-" + luceneSuggester.getIndexModTime().toEpochMilli());
-		log.info("suggester persisted to {} in {}ms", tarGzFile, System.currentTimeMillis() - start);
-		return new IndexArchive(tarGzFile, luceneSuggester.getIndexModTime().toEpochMilli());
+		ArchiveCodec archiveCodec = Optional.ofNullable(luceneSuggester.getSuggestConfig().getArchiveCodec()).orElse(ArchiveCodec.TAR_GZ);
+		File archiveFile = FileUtils.packArchive(luceneSuggester.getIndexFolder(), "suggest-index-" + luceneSuggester.getIndexModTime().toEpochMilli(), archiveCodec);
+		log.info("suggester persisted to {} in {}ms", archiveFile, System.currentTimeMillis() - start);
+		return new IndexArchive(archiveFile, luceneSuggester.getIndexModTime().toEpochMilli());
 	}
 
 	@Override
 	public LuceneQuerySuggester recover(IndexArchive archive, SuggestConfig suggestConfig) throws IOException {
-		final long start = System.currentTimeMillis();
+		final long start = System.nanoTime();
 		Path indexFolder = prepareIndexFolder(archive.dataModificationTime());
 		FileUtils.unpackArchive(archive, indexFolder);
-		SuggestData suggestData = FileUtils.loadSerializable(indexFolder.resolve(FILENAME_SUGGEST_DATA), SuggestData.class);
-		LuceneQuerySuggester suggester = initSuggester(suggestData, suggestConfig, indexFolder);
+		long unpackDone = System.nanoTime();
+
+		ModifiedTermsService modifiedTermsService;
+		SuggestData suggestData;
+		if (Files.exists(indexFolder.resolve(FILENAME_SUGGEST_METADATA))) {
+			suggestData = FileUtils.loadSerializable(indexFolder.resolve(FILENAME_SUGGEST_METADATA), SuggestData.class);
+			modifiedTermsService = loadModifiedTermsService(suggestConfig, indexFolder);
+		}
+		else {
+			// archives of older versions contain the modified queries inside the serialized suggest data
+			suggestData = FileUtils.loadSerializable(indexFolder.resolve(FILENAME_SUGGEST_DATA), SuggestData.class);
+			modifiedTermsService = new ModifiedTermsService(suggestData.getRelaxedQueries(), suggestData.getSharpenedQueries(), suggestConfig);
+		}
+		long sideDataDone = System.nanoTime();
+
+		LuceneQuerySuggester suggester = initSuggester(suggestData, suggestConfig, indexFolder, modifiedTermsService);
 		assert suggester.isReady();
-		log.info("recovered LuceneQuerySuggester from {} with {} records in {}ms", archive, suggester.recordCount(), System.currentTimeMillis() - start);
+		long indexDone = System.nanoTime();
+
+		recordRecoveryTime("unpack", unpackDone - start);
+		recordRecoveryTime("side_data", sideDataDone - unpackDone);
+		recordRecoveryTime("index", indexDone - sideDataDone);
+		log.info("recovered LuceneQuerySuggester from {} with {} records in {}ms (unpack: {}ms, side data: {}ms, index: {}ms)", archive, suggester.recordCount(),
+				TimeUnit.NANOSECONDS.toMillis(indexDone - start), TimeUnit.NANOSECONDS.toMillis(unpackDone - start),
+				TimeUnit.NANOSECONDS.toMillis(sideDataDone - unpackDone), TimeUnit.NANOSECONDS.toMillis(indexDone - sideDataDone));
 		return suggester;
 	}
 
+	private ModifiedTermsService loadModifiedTermsService(SuggestConfig suggestConfig, Path indexFolder) throws IOException {
+		ModifiedTermsStore relaxedQueries = ModifiedTermsStore.open(indexFolder.resolve(FILENAME_RELAXED_QUERIES));
+		try {
+			return new ModifiedTermsService(relaxedQueries, ModifiedTermsStore.open(indexFolder.resolve(FILENAME_SHARPENED_QUERIES)), suggestConfig);
+		}
+		catch (IOException | RuntimeException e) {
+			IOUtils.closeWhileHandlingException(relaxedQueries);
+			throw e;
+		}
+	}
+
+	private void recordRecoveryTime(String phase, long nanos) {
+		if (metricsRegistryAdapter == null) return;
+		Timer.builder(Util.APP_NAME + ".lucene_suggester.recovery.time")
+				.tags(Tags.concat(tags, "phase", phase))
+				.register(metricsRegistryAdapter.getMetricsRegistry())
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
 }
@@ -0,0 +1,111 @@
+package de.cxp.ocs.smartsuggest.querysuggester.lucene;
+
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.apache.lucene.util.fst.*;
+import org.apache.lucene.util.fst.PairOutputs.Pair;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * <p>
+ * Loads the FST of an {@link AnalyzingSuggester} (and so also of the FuzzySuggester) off-heap.
+ * </p>
+ * <p>
+ * The standard {@link AnalyzingSuggester#load(org.apache.lucene.store.DataInput)} always copies the FST onto the
+ * heap. This loader reads the same format as written by
+ * {@link AnalyzingSuggester#store(org.apache.lucene.store.DataOutput)}, but initializes the FST with an
+ * {@link OffHeapFSTStore} that reads the arcs directly from the given (memory mapped) {@link IndexInput}.
+ * Since the AnalyzingSuggester does not offer a way to inject a custom FSTStore and the FuzzySuggester is final,
+ * the loaded state is set via VarHandles.
+ * </p>
+ * <p>
+ * ATTENTION: the given IndexInput must stay open as long as the suggester is used and an off-heap loaded suggester
+ * can't be stored again.
+ * </p>
+ * <p>
+ * Since the private fields of the AnalyzingSuggester are no stable API, {@link #checkSupported()} has to be called
+ * before the off-heap loading is used. It fails with a clear error if those fields changed with a Lucene upgrade.
+ * </p>
+ */
+class OffHeapFSTLoader {
+
+	private static final VarHandle FST_HANDLE;
+	private static final VarHandle COUNT_HANDLE;
+	private static final VarHandle MAX_ANALYZED_PATHS_HANDLE;
+	private static final VarHandle HAS_PAYLOADS_HANDLE;
+
+	private static final ReflectiveOperationException LOOKUP_ERROR;
+
+	static {
+		VarHandle fstHandle = null, countHandle = null, maxAnalyzedPathsHandle = null, hasPayloadsHandle = null;
+		ReflectiveOperationException lookupError = null;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(AnalyzingSuggester.class, MethodHandles.lookup());
+			fstHandle = lookup.findVarHandle(AnalyzingSuggester.class, "fst", FST.class);
+			countHandle = lookup.findVarHandle(AnalyzingSuggester.class, "count", long.class);
+			maxAnalyzedPathsHandle = lookup.findVarHandle(AnalyzingSuggester.class, "maxAnalyzedPathsForOneInput", int.class);
+			hasPayloadsHandle = lookup.findVarHandle(AnalyzingSuggester.class, "hasPayloads", boolean.class);
+		}
+		catch (ReflectiveOperationException e) {
+			lookupError = e;
+		}
+		FST_HANDLE = fstHandle;
+		COUNT_HANDLE = countHandle;
+		MAX_ANALYZED_PATHS_HANDLE = maxAnalyzedPathsHandle;
+		HAS_PAYLOADS_HANDLE = hasPayloadsHandle;
+		LOOKUP_ERROR = lookupError;
+	}
+
+	private OffHeapFSTLoader() {}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *         if the internal fields of the AnalyzingSuggester of the used Lucene version can't be accessed
+	 */
+	static void checkSupported() {
+		if (LOOKUP_ERROR != null) {
+			throw new UnsupportedOperationException("Off-heap fuzzy index is not supported with Lucene " + Version.LATEST
+					+ ", since the internal fields of the AnalyzingSuggester changed: " + LOOKUP_ERROR.getMessage(), LOOKUP_ERROR);
+		}
+	}
+
+	/**
+	 * Load the suggester data from the given input with the FST kept off-heap.
+	 *
+	 * @param suggester
+	 *        the suggester to load
+	 * @param input
+	 *        input at the position of the persisted suggester data
+	 * @return the amount of FST bytes that are read off-heap
+	 * @throws IOException
+	 *         in case the input can't be read
+	 */
+	static long load(AnalyzingSuggester suggester, IndexInput input) throws IOException {
+		checkSupported();
+		long count = input.readVLong();
+		OffHeapFSTStore fstStore = new OffHeapFSTStore();
+		FST<Pair<Long, BytesRef>> fst = new FST<>(input, input,
+				new PairOutputs<>(PositiveIntOutputs.getSingleton(), ByteSequenceOutputs.getSingleton()), fstStore);
+		// the off-heap store only remembers the position of the FST bytes, so we have to skip them manually
+		input.skipBytes(fstStore.size());
+		int maxAnalyzedPathsForOneInput = input.readVInt();
+		boolean hasPayloads = input.readByte() == 1;
+
+		COUNT_HANDLE.setVolatile(suggester, count);
+		MAX_ANALYZED_PATHS_HANDLE.setVolatile(suggester, maxAnalyzedPathsForOneInput);
+		HAS_PAYLOADS_HANDLE.setVolatile(suggester, hasPayloads);
+		FST_HANDLE.setVolatile(suggester, fst);
+
+		// verify the state through the public API, in case the fields changed their meaning
+		if (suggester.getCount() != count) {
+			throw new IllegalStateException("Off-heap fuzzy index is not supported with Lucene " + Version.LATEST
+					+ ": loaded count " + count + " is not returned by the suggester");
+		}
+		return fstStore.size();
+	}
+}
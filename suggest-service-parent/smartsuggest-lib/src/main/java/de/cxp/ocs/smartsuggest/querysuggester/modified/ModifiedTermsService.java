@@ -1,39 +1,78 @@
 package de.cxp.ocs.smartsuggest.querysuggester.modified;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
 
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig;
-import lombok.RequiredArgsConstructor;
 
 /**
  * A service that provides mappings of modified (relaxed or sharpened) queries.
+ * The mappings are either held in maps on the heap or read from memory mapped {@link ModifiedTermsStore}s.
  */
-@RequiredArgsConstructor
-public class ModifiedTermsService implements Accountable {
+public class ModifiedTermsService implements Accountable, Closeable {
 
     private final Map<String, List<String>> relaxedTerms;
 	private final Map<String, List<String>>	sharpenedTermsMap;
 
+	private final ModifiedTermsStore relaxedTermsStore;
+	private final ModifiedTermsStore sharpenedTermsStore;
+
 	private final SuggestConfig config;
 
     private final List<String> emptyList = Collections.emptyList();
-    
+
+	public ModifiedTermsService(Map<String, List<String>> relaxedTerms, Map<String, List<String>> sharpenedTermsMap, SuggestConfig config) {
+		this.relaxedTerms = relaxedTerms;
+		this.sharpenedTermsMap = sharpenedTermsMap;
+		this.relaxedTermsStore = null;
+		this.sharpenedTermsStore = null;
+		this.config = config;
+	}
+
+	/**
+	 * Constructor for mappings that are read from the given stores. The stores are closed together with this service.
+	 *
+	 * @param relaxedTermsStore
+	 *        store with the relaxed terms
+	 * @param sharpenedTermsStore
+	 *        store with the sharpened terms
+	 * @param config
+	 *        suggest config
+	 */
+	public ModifiedTermsService(ModifiedTermsStore relaxedTermsStore, ModifiedTermsStore sharpenedTermsStore, SuggestConfig config) {
+		this.relaxedTerms = null;
+		this.sharpenedTermsMap = null;
+		this.relaxedTermsStore = relaxedTermsStore;
+		this.sharpenedTermsStore = sharpenedTermsStore;
+		this.config = config;
+	}
+
     public List<String> getRelaxedTerm(String term) {
+		if (relaxedTermsStore != null) return relaxedTermsStore.get(term);
         return relaxedTerms != null ? relaxedTerms.getOrDefault(term, emptyList) : emptyList;
     }
 
     public List<String> getSharpenedTerm(String term) {
-		List<String> sharpenedTerms = sharpenedTermsMap != null ? sharpenedTermsMap.getOrDefault(term, emptyList) : emptyList;
+		List<String> sharpenedTerms;
+		if (sharpenedTermsStore != null) {
+			sharpenedTerms = sharpenedTermsStore.get(term);
+		}
+		else {
+			sharpenedTerms = sharpenedTermsMap != null ? sharpenedTermsMap.getOrDefault(term, emptyList) : emptyList;
+		}
 		return sharpenedTerms.size() > config.maxSharpenedQueries ? sharpenedTerms.subList(0, config.maxSharpenedQueries) : sharpenedTerms;
     }
-    
+
     public boolean hasData() {
-		return relaxedTerms != null && !relaxedTerms.isEmpty() || sharpenedTermsMap != null && !sharpenedTermsMap.isEmpty();
+		return relaxedTerms != null && !relaxedTerms.isEmpty() || sharpenedTermsMap != null && !sharpenedTermsMap.isEmpty()
+				|| relaxedTermsStore != null && !relaxedTermsStore.isEmpty() || sharpenedTermsStore != null && !sharpenedTermsStore.isEmpty();
     }
 
 	@Override
@@ -41,6 +80,21 @@ public class ModifiedTermsService implements Accountable {
 		long mySize = RamUsageEstimator.shallowSizeOf(this);
 		mySize += RamUsageEstimator.sizeOfMap(relaxedTerms);
 		mySize += RamUsageEstimator.sizeOfMap(sharpenedTermsMap);
+		if (relaxedTermsStore != null) mySize += relaxedTermsStore.ramBytesUsed();
+		if (sharpenedTermsStore != null) mySize += sharpenedTermsStore.ramBytesUsed();
 		return mySize;
 	}
+
+	/**
+	 * @return the amount of bytes that are read from memory mapped files
+	 */
+	public long offHeapBytesUsed() {
+		return (relaxedTermsStore != null ? relaxedTermsStore.offHeapBytesUsed() : 0)
+				+ (sharpenedTermsStore != null ? sharpenedTermsStore.offHeapBytesUsed() : 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOUtils.close(relaxedTermsStore, sharpenedTermsStore);
+	}
 }
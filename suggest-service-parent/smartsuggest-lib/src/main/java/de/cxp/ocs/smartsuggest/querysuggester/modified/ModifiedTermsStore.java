@@ -0,0 +1,191 @@
+package de.cxp.ocs.smartsuggest.querysuggester.modified;
+
+import lombok.Getter;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.*;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.fst.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * <p>
+ * Read-only mapping of terms to lists of modified terms, that is persisted as an FST and memory mapped from that file.
+ * </p>
+ * <p>
+ * The FST maps the UTF-8 bytes of each term to the encoded list of its modified terms. It is read with an
+ * {@link OffHeapFSTStore}, so opening it only reads the file header and lookups only touch the pages of the according
+ * FST arcs.
+ * </p>
+ */
+public class ModifiedTermsStore implements Accountable, Closeable {
+
+	private static final String CODEC_NAME = "ModifiedTerms";
+	private static final int    VERSION    = 0;
+
+	private final Directory     directory;
+	private final IndexInput    input;
+	private final FST<BytesRef> fst;
+	private final long          offHeapBytes;
+
+	/**
+	 * Amount of terms with modified terms
+	 */
+	@Getter
+	private final long size;
+
+	private ModifiedTermsStore(Directory directory, IndexInput input, FST<BytesRef> fst, long offHeapBytes, long size) {
+		this.directory = directory;
+		this.input = input;
+		this.fst = fst;
+		this.offHeapBytes = offHeapBytes;
+		this.size = size;
+	}
+
+	/**
+	 * Write the given mappings into the given file.
+	 *
+	 * @param modifiedTerms
+	 *        the terms with the according list of modified terms. May be null or empty.
+	 * @param file
+	 *        the file to write to. Must not exist yet.
+	 * @throws IOException
+	 *         if the file can't be written
+	 */
+	public static void write(Map<String, List<String>> modifiedTerms, Path file) throws IOException {
+		// the FST requires the input sorted by the byte representation
+		SortedMap<BytesRef, List<String>> sortedTerms = new TreeMap<>();
+		if (modifiedTerms != null) {
+			modifiedTerms.forEach((term, terms) -> {
+				if (term != null && terms != null) sortedTerms.put(new BytesRef(term), terms);
+			});
+		}
+
+		FST<BytesRef> fst = null;
+		if (!sortedTerms.isEmpty()) {
+			Builder<BytesRef> fstBuilder = new Builder<>(FST.INPUT_TYPE.BYTE1, ByteSequenceOutputs.getSingleton());
+			IntsRefBuilder scratchInts = new IntsRefBuilder();
+			ByteBuffersDataOutput scratchOutput = new ByteBuffersDataOutput();
+			for (Map.Entry<BytesRef, List<String>> entry : sortedTerms.entrySet()) {
+				scratchOutput.reset();
+				scratchOutput.writeVInt(entry.getValue().size());
+				for (String modifiedTerm : entry.getValue()) {
+					scratchOutput.writeString(modifiedTerm);
+				}
+				fstBuilder.add(Util.toIntsRef(entry.getKey(), scratchInts), new BytesRef(scratchOutput.toArrayCopy()));
+			}
+			fst = fstBuilder.finish();
+		}
+
+		try (
+				Directory fileDirectory = FSDirectory.open(file.getParent());
+				IndexOutput output = fileDirectory.createOutput(file.getFileName().toString(), IOContext.DEFAULT)
+		) {
+			CodecUtil.writeHeader(output, CODEC_NAME, VERSION);
+			output.writeVLong(sortedTerms.size());
+			output.writeByte((byte) (fst == null ? 0 : 1));
+			if (fst != null) {
+				fst.save(output, output);
+			}
+			CodecUtil.writeFooter(output);
+		}
+	}
+
+	/**
+	 * Open the store from the given file. The store must be closed, when it's not used anymore.
+	 *
+	 * @param file
+	 *        the file written with {@link #write(Map, Path)}
+	 * @return the opened store
+	 * @throws IOException
+	 *         if the file does not exist or is not a valid store
+	 */
+	public static ModifiedTermsStore open(Path file) throws IOException {
+		if (!Files.exists(file)) {
+			throw new NoSuchFileException("expected modified terms file " + file + " not found");
+		}
+		Directory fileDirectory = new MMapDirectory(file.getParent());
+		IndexInput input = null;
+		try {
+			input = fileDirectory.openInput(file.getFileName().toString(), IOContext.READ);
+			CodecUtil.checkHeader(input, CODEC_NAME, VERSION, VERSION);
+			// only validate the footer structure, since a full checksum would read the complete file
+			long dataStart = input.getFilePointer();
+			CodecUtil.retrieveChecksum(input);
+			input.seek(dataStart);
+			long size = input.readVLong();
+			OffHeapFSTStore fstStore = new OffHeapFSTStore();
+			FST<BytesRef> fst = input.readByte() == 1 ? new FST<>(input, input, ByteSequenceOutputs.getSingleton(), fstStore) : null;
+			return new ModifiedTermsStore(fileDirectory, input, fst, fst == null ? 0 : fstStore.size(), size);
+		}
+		catch (IOException | RuntimeException e) {
+			if (input != null) input.close();
+			fileDirectory.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param term
+	 *        the term to lookup
+	 * @return the modified terms or an empty list
+	 */
+	public List<String> get(String term) {
+		if (fst == null || term == null) return Collections.emptyList();
+		try {
+			BytesRef encodedTerms = Util.get(fst, new BytesRef(term));
+			if (encodedTerms == null) return Collections.emptyList();
+
+			ByteArrayDataInput termsInput = new ByteArrayDataInput(encodedTerms.bytes, encodedTerms.offset, encodedTerms.length);
+			int count = termsInput.readVInt();
+			List<String> modifiedTerms = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				modifiedTerms.add(termsInput.readString());
+			}
+			return modifiedTerms;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the size of the memory mapped FST
+	 */
+	public long offHeapBytesUsed() {
+		return offHeapBytes;
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		return RamUsageEstimator.shallowSizeOf(this) + (fst == null ? 0 : fst.ramBytesUsed());
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			input.close();
+		}
+		finally {
+			directory.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ModifiedTermsStore(size=" + size + ", offHeapBytes=" + offHeapBytesUsed() + ")";
+	}
+}
@@ -3,10 +3,11 @@ package de.cxp.ocs.smartsuggest.spi;
 import java.io.File;
 
 /**
- * Wrapper around an archive file that can be stored and loaded. The file is expected to be a .tar.gz file.
+ * Wrapper around an archive file that can be stored and loaded. The file is expected to be a tar file, that is
+ * compressed according to one of the {@link de.cxp.ocs.smartsuggest.util.ArchiveCodec}s (.tar.gz by default).
  *
  * @param zippedTarFile
- * 		The file is expected to be a .tar.gz file
+ * 		The file is expected to be a (compressed) tar file
  * @param dataModificationTime
  * 		modification time of the data in this archive (not the file creation time).
  */
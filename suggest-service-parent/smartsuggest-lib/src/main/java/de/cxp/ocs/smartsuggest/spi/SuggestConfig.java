@@ -1,5 +1,7 @@
 package de.cxp.ocs.smartsuggest.spi;
 
+import de.cxp.ocs.smartsuggest.util.ArchiveCodec;
+
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -37,6 +39,12 @@ public class SuggestConfig implements Cloneable, Serializable {
 	
 	public boolean isIndexConcurrently = true;
 
+	public boolean useOffHeapFuzzyIndex = false;
+
+	public boolean useCombinedLookup = false;
+
+	public ArchiveCodec archiveCodec = ArchiveCodec.TAR_GZ;
+
 	// TODO: Attention: for each added configuration value, also extend
 	// de.cxp.ocs.suggest.SuggestServiceProperties in the suggest-service
 
@@ -270,6 +278,53 @@ public class SuggestConfig implements Cloneable, Serializable {
 		return isIndexConcurrently;
 	}
 
+	/**
+	 * <p>
+	 * If set to true, the FSTs of the fuzzy suggesters are persisted to their index files and memory mapped from
+	 * there, instead of keeping them on the heap. This reduces the heap usage per suggester significantly at the cost
+	 * of slightly slower fuzzy lookups if the files are not in the page cache.
+	 * </p>
+	 * Default: false
+	 *
+	 * @param useOffHeapFuzzyIndex
+	 *        true to load fuzzy indexes off-heap
+	 */
+	public void setUseOffHeapFuzzyIndex(boolean useOffHeapFuzzyIndex) {
+		this.useOffHeapFuzzyIndex = useOffHeapFuzzyIndex;
+	}
+
+	/**
+	 * <p>
+	 * If set to true, the primary, typo and shingle data are indexed into a single infix index and the according
+	 * lookups are done with a single search per request. The results of the groups are ranked in the same order as
+	 * with the separate lookups. Only the shingle matches may differ slightly, since they are matched on single words
+	 * and not on word-shingles.
+	 * </p>
+	 * Changing that setting requires a reindexation.
+	 * Default: false
+	 *
+	 * @param useCombinedLookup
+	 *        true to use a single combined lookup
+	 */
+	public void setUseCombinedLookup(boolean useCombinedLookup) {
+		this.useCombinedLookup = useCombinedLookup;
+	}
+
+	/**
+	 * <p>
+	 * Codec of the archives that are created to store the suggest indexes at an index archive provider.
+	 * Existing archives are always read with the codec they were created with, so that setting can be changed at any
+	 * time.
+	 * </p>
+	 * Default: TAR_GZ
+	 *
+	 * @param archiveCodec
+	 *        the codec to create archives with
+	 */
+	public void setArchiveCodec(ArchiveCodec archiveCodec) {
+		this.archiveCodec = archiveCodec;
+	}
+
 	@SneakyThrows
 	@Override
 	public SuggestConfig clone()  {
@@ -4,6 +4,7 @@ import de.cxp.ocs.smartsuggest.QuerySuggestManager;
 import de.cxp.ocs.smartsuggest.querysuggester.QuerySuggester;
 import de.cxp.ocs.smartsuggest.querysuggester.Suggestion;
 import de.cxp.ocs.smartsuggest.spi.*;
+import de.cxp.ocs.smartsuggest.util.ArchiveCodec;
 import de.cxp.ocs.smartsuggest.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 
@@ -50,15 +51,21 @@ public class IndexArchiveProviderTestKit<T extends IndexArchiveProvider> {
 			underTest.configure(testConfig);
 			assert !underTest.hasData(indexName);
 
+			// all archive formats must be stored and loaded without modification
 			long modTime = System.currentTimeMillis();
-			Path tempFile = createTestArchive("xyz");
-			underTest.store(indexName, new IndexArchive(tempFile.toFile(), modTime));
+			for (ArchiveCodec codec : ArchiveCodec.values()) {
+				modTime++;
+				String content = "xyz-" + codec.name();
+				Path tempFile = createTestArchive(content, codec);
+				underTest.store(indexName, new IndexArchive(tempFile.toFile(), modTime));
 
-			assert underTest.hasData(indexName);
-			assert underTest.getLastDataModTime(indexName) == modTime;
+				assert underTest.hasData(indexName);
+				assert underTest.getLastDataModTime(indexName) == modTime;
 
-			var loadedArchive = underTest.loadData(indexName);
-			assertEquals("xyz", unpackContentFromArchive(loadedArchive));
+				var loadedArchive = underTest.loadData(indexName);
+				assert ArchiveCodec.detect(loadedArchive.zippedTarFile()) == codec : "loaded archive is not a " + codec + " archive";
+				assertEquals(content, unpackContentFromArchive(loadedArchive));
+			}
 		}
 		catch (Exception e) {
 			if (underTest instanceof Closeable closable) {
@@ -69,10 +76,44 @@ public class IndexArchiveProviderTestKit<T extends IndexArchiveProvider> {
 		return underTest;
 	}
 
+	/**
+	 * Runs the integration test with all archive codecs.
+	 *
+	 * @return the tested instance
+	 * @throws Exception
+	 * 		in case of some unexpected behaviour
+	 * @throws AssertionError
+	 * 		if test failed
+	 */
 	public T integrationTest() throws Exception {
-		String indexName2 = "test_2";
 		T underTest = classUnderTest.getConstructor().newInstance();
+		for (ArchiveCodec codec : ArchiveCodec.values()) {
+			// the default codec uses the plain index name, so existing test setups continue to work
+			integrationTest(underTest, ArchiveCodec.TAR_GZ.equals(codec) ? "test_2" : "test_2_" + codec.name().toLowerCase(), codec);
+		}
+		return underTest;
+	}
+
+	/**
+	 * Runs the integration test with the given archive codec.
+	 *
+	 * @param codec
+	 * 		the archive codec the suggest indexes are stored with
+	 * @return the tested instance
+	 * @throws Exception
+	 * 		in case of some unexpected behaviour
+	 * @throws AssertionError
+	 * 		if test failed
+	 */
+	public T integrationTest(ArchiveCodec codec) throws Exception {
+		T underTest = classUnderTest.getConstructor().newInstance();
+		integrationTest(underTest, "test_2_" + codec.name().toLowerCase(), codec);
+		return underTest;
+	}
 
+	private void integrationTest(T underTest, String indexName2, ArchiveCodec codec) throws Exception {
+		SuggestConfig suggestConfig = new SuggestConfig();
+		suggestConfig.setArchiveCodec(codec);
 		try {
 			// first initialize with some data
 			SdpMock dataProviderMock = new SdpMock(indexName2)
@@ -82,6 +123,7 @@ public class IndexArchiveProviderTestKit<T extends IndexArchiveProvider> {
 							.build());
 			try (
 					var qsm = QuerySuggestManager.builder()
+							.withDefaultSuggestConfig(suggestConfig)
 							.withSuggestDataProvider(dataProviderMock)
 							.withArchiveDataProvider(underTest)
 							.addArchiveProviderConfig(classUnderTest, testConfig)
@@ -91,11 +133,13 @@ public class IndexArchiveProviderTestKit<T extends IndexArchiveProvider> {
 				assert qsm.getQuerySuggester(indexName2, true).isReady();
 				// assert data has been placed
 				assert underTest.hasData(indexName2);
+				assert ArchiveCodec.detect(underTest.loadData(indexName2).zippedTarFile()) == codec : "archive was not stored as " + codec;
 			}
 
 			// query suggester and qsm are closed, but data should still be available at the archive
 			try (
 					var qsm = QuerySuggestManager.builder()
+							.withDefaultSuggestConfig(suggestConfig)
 							// without SuggestDataProvider(dataProviderMock)!
 							.addArchiveProviderConfig(classUnderTest, testConfig)
 							.withArchiveDataProvider(underTest)
@@ -115,8 +159,6 @@ public class IndexArchiveProviderTestKit<T extends IndexArchiveProvider> {
 			}
 			throw e;
 		}
-
-		return underTest;
 	}
 
 	public void serviceLoaderTest() {
@@ -210,11 +252,11 @@ public class IndexArchiveProviderTestKit<T extends IndexArchiveProvider> {
 		return underTest;
 	}
 
-	private static Path createTestArchive(String content) throws IOException {
+	private static Path createTestArchive(String content, ArchiveCodec codec) throws IOException {
 		Path archiveDir = Files.createTempDirectory("test-archive");
 		Path contentFile = archiveDir.resolve("content.txt");
 		Files.writeString(contentFile, content, StandardCharsets.UTF_8);
-		return FileUtils.packArchive(archiveDir, "test-archive.").toPath();
+		return FileUtils.packArchive(archiveDir, "test-archive.", codec).toPath();
 	}
 
 	private static String unpackContentFromArchive(IndexArchive archive) throws IOException {
@@ -88,6 +88,8 @@ public class SuggestionsUpdater implements Runnable, Instrumentable {
 		try {
 			update();
 			updateFailCount = 0;
+			// precompute suggestions for new hot prefixes (no-op if nothing changed)
+			querySuggesterProxy.refreshPrefixCache();
 		}
 		catch (AlreadyClosedException ace) {
 			log.info("Stopping updates for closed suggester {}", indexName);
@@ -177,8 +179,8 @@ public class SuggestionsUpdater implements Runnable, Instrumentable {
 	private void updateFromArchiveProvider(Instant remoteArchiveModTime) throws Exception {
 		if (lastUpdate == null || remoteArchiveModTime.isAfter(lastUpdate)) {
 			IndexArchive loadedArchive = fetchSuggestData(archiveProvider, remoteArchiveModTime);
-			if (!FileUtils.isTarGz(loadedArchive.zippedTarFile())) {
-				throw new IllegalStateException("Not a tar.gz file: " + loadedArchive.zippedTarFile());
+			if (!FileUtils.isSupportedArchive(loadedArchive.zippedTarFile())) {
+				throw new IllegalStateException("Not a supported archive file: " + loadedArchive.zippedTarFile());
 			}
 			QuerySuggester querySuggester = factory.recover(loadedArchive, configProvider.getConfig(indexName, defaultSuggestConfig));
 			finishUpdate(querySuggester, remoteArchiveModTime);
@@ -3,17 +3,20 @@ package de.cxp.ocs.smartsuggest.util;
 import de.cxp.ocs.smartsuggest.spi.IndexArchive;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarFile;
 
 public class FileUtils {
 
@@ -76,50 +79,148 @@ public class FileUtils {
 		}
 	}
 
+	/**
+	 * @param file
+	 *        archive file
+	 * @return true if the file is an archive of any of the supported {@link ArchiveCodec}s
+	 */
+	public static boolean isSupportedArchive(File file) {
+		return ArchiveCodec.detect(file) != null;
+	}
+
+	/**
+	 * Unpack the given archive into the target folder. The archive codec is detected automatically.
+	 *
+	 * @param archive
+	 *        archive to unpack
+	 * @param targetFolder
+	 *        folder to unpack the archive into. Will be created if it does not exist.
+	 * @throws IOException
+	 *         if the archive can't be read or the files can't be written
+	 */
 	public static void unpackArchive(IndexArchive archive, Path targetFolder) throws IOException {
 		File tarFile = archive.zippedTarFile();
-		if (!isTarGz(tarFile)) {
-			throw new IllegalArgumentException("File " + tarFile + " is not a valid tar.gz archive");
+		ArchiveCodec codec = ArchiveCodec.detect(tarFile);
+		if (codec == null) {
+			throw new IllegalArgumentException("File " + tarFile + " is not a valid tar archive");
 		}
 
 		if (!Files.exists(targetFolder)) {
 			Files.createDirectories(targetFolder);
 		}
 
+		if (ArchiveCodec.TAR.equals(codec)) {
+			unpackUncompressedTar(tarFile, targetFolder);
+			return;
+		}
+
 		try (InputStream fileInputStream = Files.newInputStream(tarFile.toPath());
 			 BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream);
-			 GZIPInputStream gzipInputStream = new GZIPInputStream(bufferedInputStream);
-			 TarArchiveInputStream tarInputStream = new TarArchiveInputStream(gzipInputStream)) {
+			 InputStream decompressedInputStream = codec.decompress(bufferedInputStream);
+			 TarArchiveInputStream tarInputStream = new TarArchiveInputStream(decompressedInputStream)) {
 
 			TarArchiveEntry entry;
 			while ((entry = tarInputStream.getNextEntry()) != null) {
-				Path entryPath = targetFolder.resolve(entry.getName()).normalize();
-				
-				// Validate that the entryPath is within the targetFolder
-				if (!entryPath.startsWith(targetFolder)) {
-					throw new IOException("Invalid entry: " + entry.getName() + " - Entry is outside of the target directory");
-				}
-				
+				Path entryPath = getValidEntryPath(targetFolder, entry);
 				if (entry.isDirectory()) {
 					Files.createDirectories(entryPath);
 				} else {
-					Path parent = entryPath.getParent();
-					if (parent != null && !Files.exists(parent)) {
-						Files.createDirectories(parent);
-					}
+					createParentDirectories(entryPath);
 					Files.copy(tarInputStream, entryPath);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Since the entries of an uncompressed tar file can be accessed randomly, they are extracted in parallel by
+	 * transferring the according file regions directly.
+	 */
+	private static void unpackUncompressedTar(File tarFile, Path targetFolder) throws IOException {
+		List<TarArchiveEntry> fileEntries = new ArrayList<>();
+		try (TarFile tar = new TarFile(tarFile)) {
+			for (TarArchiveEntry entry : tar.getEntries()) {
+				Path entryPath = getValidEntryPath(targetFolder, entry);
+				if (entry.isDirectory()) {
+					Files.createDirectories(entryPath);
+				}
+				else {
+					createParentDirectories(entryPath);
+					fileEntries.add(entry);
+				}
+			}
+		}
+
+		try (FileChannel tarChannel = FileChannel.open(tarFile.toPath(), StandardOpenOption.READ)) {
+			fileEntries.parallelStream().forEach(entry -> {
+				try (FileChannel targetChannel = FileChannel.open(targetFolder.resolve(entry.getName()),
+						StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+					long transferred = 0;
+					while (transferred < entry.getSize()) {
+						transferred += tarChannel.transferTo(entry.getDataOffset() + transferred, entry.getSize() - transferred, targetChannel);
+					}
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static Path getValidEntryPath(Path targetFolder, TarArchiveEntry entry) throws IOException {
+		Path entryPath = targetFolder.resolve(entry.getName()).normalize();
+		// Validate that the entryPath is within the targetFolder
+		if (!entryPath.startsWith(targetFolder)) {
+			throw new IOException("Invalid entry: " + entry.getName() + " - Entry is outside of the target directory");
+		}
+		return entryPath;
+	}
+
+	private static void createParentDirectories(Path entryPath) throws IOException {
+		Path parent = entryPath.getParent();
+		if (parent != null && !Files.exists(parent)) {
+			Files.createDirectories(parent);
+		}
+	}
+
+	/**
+	 * Pack the content of the given folder into a gzip compressed tar file.
+	 *
+	 * @param sourceFolder
+	 *        folder to pack
+	 * @param prefix
+	 *        prefix of the created temporary file
+	 * @return the archive file
+	 * @throws IOException
+	 *         if the files can't be read or the archive can't be written
+	 */
 	public static File packArchive(Path sourceFolder, String prefix) throws IOException {
-		Path tempFile = Files.createTempFile(prefix, ".tar.gz");
+		return packArchive(sourceFolder, prefix, ArchiveCodec.TAR_GZ);
+	}
+
+	/**
+	 * Pack the content of the given folder into a tar file using the given codec.
+	 *
+	 * @param sourceFolder
+	 *        folder to pack
+	 * @param prefix
+	 *        prefix of the created temporary file
+	 * @param codec
+	 *        the archive codec to use
+	 * @return the archive file
+	 * @throws IOException
+	 *         if the files can't be read or the archive can't be written
+	 */
+	public static File packArchive(Path sourceFolder, String prefix, ArchiveCodec codec) throws IOException {
+		Path tempFile = Files.createTempFile(prefix, codec.getFileExtension());
 		
 		try (OutputStream fileOutputStream = Files.newOutputStream(tempFile);
 			 BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
-			 GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bufferedOutputStream);
-			 TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(gzipOutputStream)) {
+			 OutputStream compressedOutputStream = codec.compress(bufferedOutputStream);
+			 TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(compressedOutputStream)) {
 			
 			tarOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
 			
@@ -0,0 +1,80 @@
+package de.cxp.ocs.smartsuggest.querysuggester;
+
+import de.cxp.ocs.smartsuggest.spi.SuggestRecord;
+import de.cxp.ocs.smartsuggest.util.FakeSuggester;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static de.cxp.ocs.smartsuggest.util.TestSetupUtil.asSuggestRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuerySuggesterProxyTest {
+
+	private final QuerySuggesterProxy underTest = new QuerySuggesterProxy("proxy-test");
+
+	@AfterEach
+	public void close() throws Exception {
+		underTest.close();
+	}
+
+	@Test
+	public void testHotPrefixesArePrecomputed() throws Exception {
+		underTest.updateSuggester(new FakeSuggester(new SuggestRecord[] {
+				asSuggestRecord("apple", "apple", 100),
+				asSuggestRecord("apricot", "apricot", 90),
+				asSuggestRecord("banana", "banana", 80) }));
+
+		List<Suggestion> uncachedResult = underTest.suggest("ap");
+		assertEquals(2, uncachedResult.size());
+		assertEquals(0d, underTest.getHitRate(2));
+		assertEquals(0, underTest.getPrefixCacheSize());
+
+		underTest.refreshPrefixCache();
+		assertEquals(1, underTest.getPrefixCacheSize());
+
+		List<Suggestion> cachedResult1 = underTest.suggest("ap");
+		List<Suggestion> cachedResult2 = underTest.suggest("AP");
+		assertEquals(2, cachedResult1.size());
+		assertEquals("apple", cachedResult1.get(0).getLabel());
+		// cached suggestions are shared and not cloned, but the lists are separate
+		assertSame(cachedResult1.get(0), cachedResult2.get(0));
+		assertNotSame(cachedResult1, cachedResult2);
+		assertThrows(UnsupportedOperationException.class, () -> cachedResult1.get(0).getPayload().put("foo", "bar"));
+
+		// limit is considered
+		assertEquals(1, underTest.suggest("ap", 1, Set.of()).size());
+
+		assertEquals(3d / 4, underTest.getHitRate(2));
+		assertEquals(0d, underTest.getHitRate(1));
+	}
+
+	@Test
+	public void testPrefixCacheIsSwappedWithSuggester() throws Exception {
+		underTest.updateSuggester(new FakeSuggester(new SuggestRecord[] {
+				asSuggestRecord("apple", "apple", 100) }));
+		underTest.suggest("a");
+		underTest.refreshPrefixCache();
+		assertEquals("apple", underTest.suggest("a").get(0).getLabel());
+
+		underTest.updateSuggester(new FakeSuggester(new SuggestRecord[] {
+				asSuggestRecord("avocado", "avocado", 100) }));
+		assertEquals(1, underTest.getPrefixCacheSize());
+		List<Suggestion> result = underTest.suggest("a");
+		assertEquals(1, result.size());
+		assertEquals("avocado", result.get(0).getLabel());
+		assertEquals(2d / 3, underTest.getHitRate(1), 0.0001d);
+	}
+
+	@Test
+	public void testFilteredAndLongerTermsAreNotCached() throws Exception {
+		underTest.updateSuggester(new FakeSuggester(new SuggestRecord[] {
+				asSuggestRecord("apple", "apple", 100, Set.of("fruit")) }));
+		underTest.suggest("a", 10, Set.of("fruit"));
+		underTest.suggest("appl");
+		underTest.refreshPrefixCache();
+		assertEquals(0, underTest.getPrefixCacheSize());
+	}
+}
@@ -0,0 +1,46 @@
+package de.cxp.ocs.smartsuggest.querysuggester.lucene;
+
+import de.cxp.ocs.smartsuggest.querysuggester.lucene.CombinedInfixSuggester.Group;
+import de.cxp.ocs.smartsuggest.spi.SuggestRecord;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Set;
+
+import static de.cxp.ocs.smartsuggest.util.TestSetupUtil.asSuggestRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CombinedInfixSuggesterTest {
+
+	@Test
+	void dominantGroupDoesNotHideOtherGroups() throws Exception {
+		List<SuggestRecord> records = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			records.add(asSuggestRecord("shirt variant " + i, "shirt " + i, 100 + i, Set.of("tag")));
+		}
+
+		try (CombinedInfixSuggester underTest = new CombinedInfixSuggester(new ByteBuffersDirectory(), new StandardAnalyzer(), new StandardAnalyzer())) {
+			underTest.build(records);
+
+			// all primary matches are ranked before the other groups
+			EnumMap<Group, List<LookupResult>> results = underTest.lookupGroups("shirt", null, 2);
+			assertThat(results.get(Group.PRIMARY)).extracting(r -> r.key.toString()).containsExactly("shirt 9", "shirt 8");
+			assertThat(results.get(Group.TYPO)).hasSize(2);
+			assertThat(results.get(Group.SHINGLE)).hasSize(2);
+
+			// with contexts, the shingle group is not considered
+			EnumMap<Group, List<LookupResult>> filteredResults = underTest.lookupGroups("shirt", Set.of(new BytesRef("tag")), 2);
+			assertThat(filteredResults.get(Group.PRIMARY)).hasSize(2);
+			assertThat(filteredResults.get(Group.TYPO)).hasSize(2)
+					.allMatch(r -> r.contexts.equals(Set.of(new BytesRef("tag"))));
+			assertThat(filteredResults.get(Group.SHINGLE)).isEmpty();
+			assertThat(underTest.lookupGroups("shirt", Set.of(new BytesRef("other")), 2).values()).allMatch(List::isEmpty);
+		}
+	}
+}
@@ -1,22 +1,33 @@
 package de.cxp.ocs.smartsuggest.querysuggester.lucene;
 
+import de.cxp.ocs.smartsuggest.querysuggester.Suggestion;
 import de.cxp.ocs.smartsuggest.querysuggester.modified.ModifiedTermsService;
 import de.cxp.ocs.smartsuggest.spi.IndexArchive;
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig;
 import de.cxp.ocs.smartsuggest.spi.SuggestData;
 import de.cxp.ocs.smartsuggest.spi.SuggestRecord;
+import de.cxp.ocs.smartsuggest.util.FileUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.IndexInput;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import static de.cxp.ocs.smartsuggest.util.TestSetupUtil.asSuggestRecord;
 import static de.cxp.ocs.smartsuggest.util.TestSetupUtil.getWordSet;
 import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 
 @Slf4j
@@ -60,6 +71,52 @@ public class LuceneQuerySuggesterPersistenceTest {
 		}
 	}
 
+	@Test
+	public void testOffHeapFuzzyIndexStoreAndRecovery(@TempDir Path indexFolder) throws Exception {
+		SuggestConfig suggestConfig = minimalSuggestConfig();
+		suggestConfig.setUseOffHeapFuzzyIndex(true);
+
+		long modTime;
+		try(var underTest = new LuceneQuerySuggester(indexFolder, suggestConfig, mock(ModifiedTermsService.class), getWordSet(Locale.ROOT), null)) {
+			underTest.index(testRecords, System.currentTimeMillis()).get();
+			assert underTest.isReady();
+			assertAllFunctionsWork(underTest);
+			underTest.commit();
+			modTime = underTest.getIndexModTime().toEpochMilli();
+			assert underTest.offHeapBytesUsed() > 0 : "fuzzy index of fresh suggester should be moved off-heap";
+		}
+
+		try(var underTest = new LuceneQuerySuggester(indexFolder, suggestConfig, mock(ModifiedTermsService.class), getWordSet(Locale.ROOT), modTime)) {
+			assert underTest.isReady();
+			assertAllFunctionsWork(underTest);
+			assert underTest.offHeapBytesUsed() > 0;
+		}
+
+		// files written off-heap can also be loaded onto the heap
+		suggestConfig.setUseOffHeapFuzzyIndex(false);
+		try(var underTest = new LuceneQuerySuggester(indexFolder, suggestConfig, mock(ModifiedTermsService.class), getWordSet(Locale.ROOT), modTime)) {
+			assert underTest.isReady();
+			assertAllFunctionsWork(underTest);
+		}
+	}
+
+	@Test
+	public void testOffHeapFuzzyIndexInputsAreClosedOnReindex(@TempDir Path indexFolder) throws Exception {
+		SuggestConfig suggestConfig = minimalSuggestConfig();
+		suggestConfig.setUseOffHeapFuzzyIndex(true);
+
+		try(var underTest = new LuceneQuerySuggester(indexFolder, suggestConfig, mock(ModifiedTermsService.class), getWordSet(Locale.ROOT), null)) {
+			underTest.index(testRecords, System.currentTimeMillis()).get();
+			IndexInput previousInput = underTest.getFuzzyIndexInput(1);
+			assertNotNull(previousInput);
+
+			underTest.index(testRecords, System.currentTimeMillis()).get();
+			assertAllFunctionsWork(underTest);
+			assertNotSame(previousInput, underTest.getFuzzyIndexInput(1));
+			assertThrows(AlreadyClosedException.class, () -> previousInput.seek(0));
+		}
+	}
+
 	@Test
 	public void testStoreAndRecoveryWithFactory(@TempDir Path baseDir) throws Exception {
 		LuceneSuggesterFactory factory = new LuceneSuggesterFactory();
@@ -83,4 +140,59 @@ public class LuceneQuerySuggesterPersistenceTest {
 		}
 
 	}
+
+	@Test
+	public void testModifiedQueriesRecoveryWithFactory(@TempDir Path baseDir) throws Exception {
+		LuceneSuggesterFactory factory = new LuceneSuggesterFactory();
+		factory.init(baseDir);
+		SuggestData suggestData = new SuggestData();
+		suggestData.setModificationTime(System.currentTimeMillis());
+		suggestData.setSuggestRecords(testRecords);
+		suggestData.setSharpenedQueries(Map.of("sneaker", List.of("search a", "search b")));
+		suggestData.setRelaxedQueries(Map.of("boots", List.of("search b")));
+		var config = minimalSuggestConfig();
+
+		IndexArchive archive;
+		try (LuceneQuerySuggester underTest = factory.getSuggester(suggestData, config)) {
+			assertEquals(List.of("search a", "search b"), labels(underTest.suggest("sneaker")));
+			archive = factory.createArchive(underTest);
+
+			// the legacy file is only written on demand
+			assertFalse(Files.exists(underTest.getIndexFolder().resolve("suggest_data.ser")));
+			underTest.destroy();
+		}
+
+		try (LuceneQuerySuggester recovered = factory.recover(archive, config)) {
+			assertAllFunctionsWork(recovered);
+			assertEquals(List.of("search a", "search b"), labels(recovered.suggest("sneaker")));
+			assertEquals(List.of("search b"), labels(recovered.suggest("boots")));
+			assert recovered.offHeapBytesUsed() > 0;
+		}
+	}
+
+	@Test
+	public void testLegacyDataForOlderReaders(@TempDir Path baseDir) throws Exception {
+		LuceneSuggesterFactory factory = new LuceneSuggesterFactory();
+		factory.init(baseDir);
+		factory.setWriteLegacyData(true);
+		SuggestData suggestData = new SuggestData();
+		suggestData.setModificationTime(System.currentTimeMillis());
+		suggestData.setSuggestRecords(testRecords);
+		suggestData.setSharpenedQueries(Map.of("sneaker", List.of("search a", "search b")));
+		suggestData.setRelaxedQueries(Map.of("boots", List.of("search b")));
+
+		try (LuceneQuerySuggester underTest = factory.getSuggester(suggestData, minimalSuggestConfig())) {
+			factory.createArchive(underTest);
+
+			// older versions only read the modified queries from the serialized suggest data
+			SuggestData legacyData = FileUtils.loadSerializable(underTest.getIndexFolder().resolve("suggest_data.ser"), SuggestData.class);
+			assertEquals(suggestData.getSharpenedQueries(), legacyData.getSharpenedQueries());
+			assertEquals(suggestData.getRelaxedQueries(), legacyData.getRelaxedQueries());
+			underTest.destroy();
+		}
+	}
+
+	private static List<String> labels(List<Suggestion> suggestions) {
+		return suggestions.stream().map(Suggestion::getLabel).toList();
+	}
 }
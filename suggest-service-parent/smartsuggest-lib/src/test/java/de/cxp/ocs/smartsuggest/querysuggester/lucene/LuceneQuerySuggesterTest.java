@@ -613,6 +613,37 @@ class LuceneQuerySuggesterTest {
 		}
 	}
 
+	@DisplayName("The combined lookup should return the same best, typo and shingle matches as the separate lookups")
+	@Test
+	void suggest_combined_lookup(@TempDir Path indexFolder) throws IOException {
+		List<SuggestRecord> toIndex = new ArrayList<>(asList(
+				asSuggestRecord("men's shirts", setOf("men shirts"), 101),
+				asSuggestRecord("beige men's shirts", setOf("beige men shirts"), 100),
+				asSuggestRecord("women's shirts", setOf("women shirts"), 102),
+				asSuggestRecord("work shirts", setOf("work shirts"), 103),
+				asSuggestRecord("shirts", setOf("shirts"), 104),
+				asSuggestRecord("name 1", "movie 1", 5, setOf("movie")),
+				asSuggestRecord("name 2", "movie 2", 0, setOf("movie")),
+				asSuggestRecord("name 3", "book 3", 102, setOf("book"))));
+		underTest.index(toIndex, System.currentTimeMillis()).join();
+
+		SuggestConfig combinedConfig = suggestConfig.clone();
+		combinedConfig.setUseCombinedLookup(true);
+		try (LuceneQuerySuggester combinedSuggester = new LuceneQuerySuggester(indexFolder.resolve("combined"), combinedConfig, modifiedTermsService, getWordSet(Locale.ROOT))) {
+			combinedSuggester.index(toIndex, System.currentTimeMillis()).join();
+			assertThat(combinedSuggester.recordCount()).isEqualTo(toIndex.size());
+
+			for (String term : asList("shi", "men", "women's shirts", "work", "mov", "name", "movie 1", "beige men's shirts", "men's shi", "shirts men")) {
+				assertThat(asStrings(combinedSuggester.suggest(term))).as(term).isEqualTo(asStrings(underTest.suggest(term)));
+			}
+			assertThat(asStrings(combinedSuggester.suggest("name", 10, setOf("movie")))).isEqualTo(asStrings(underTest.suggest("name", 10, setOf("movie"))));
+
+			List<Suggestion> results = combinedSuggester.suggest("beige men's shirts");
+			assertSuggestion(results.get(0), "beige men's shirts", BEST_MATCHES_GROUP_NAME);
+			assertSuggestion(results.get(1), "shirts", SHINGLE_MATCHES_GROUP_NAME);
+		}
+	}
+
 	private void assertLabel(Suggestion suggestion, String expectedLabel) {
 		assertThat(suggestion.getLabel()).isEqualTo(expectedLabel);
 	}
@@ -626,6 +657,10 @@ class LuceneQuerySuggesterTest {
 		assertGroupName(suggestion, expectedGroupName);
 	}
 
+	private List<String> asStrings(List<Suggestion> suggestions) {
+		return suggestions.stream().map(Suggestion::toString).toList();
+	}
+
 	private Set<String> setOf(String... entries) {
 		return new HashSet<>(asList(entries));
 	}
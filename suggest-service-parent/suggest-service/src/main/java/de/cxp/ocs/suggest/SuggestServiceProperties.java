@@ -19,6 +19,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig;
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig.SortStrategy;
+import de.cxp.ocs.smartsuggest.util.ArchiveCodec;
 import de.cxp.ocs.smartsuggest.spi.SuggestConfigProvider;
 import lombok.NonNull;
 
@@ -69,6 +70,34 @@ public class SuggestServiceProperties implements SuggestConfigProvider {
 	 */
 	private static final String PROPERTY_CONCURRENT_INDEXATION = "concurrent-indexation";
 
+	/**
+	 * Expects boolean value. Default: false
+	 *
+	 * @see SuggestConfig::setUseOffHeapFuzzyIndex
+	 */
+	private static final String PROPERTY_OFF_HEAP_FUZZY_INDEX = "off-heap-fuzzy-index";
+
+	/**
+	 * Expects boolean value. Default: false
+	 *
+	 * @see SuggestConfig::setUseCombinedLookup
+	 */
+	private static final String PROPERTY_COMBINED_LOOKUP = "combined-lookup";
+
+	/**
+	 * Expects string which is literally one of:
+	 * <ul>
+	 * <li>TAR_GZ</li>
+	 * <li>TAR_ZSTD</li>
+	 * <li>TAR</li>
+	 * </ul>
+	 * Default: TAR_GZ
+	 *
+	 * @see ArchiveCodec
+	 * @see SuggestConfig::setArchiveCodec
+	 */
+	private static final String PROPERTY_ARCHIVE_CODEC = "archive-codec";
+
 	/**
 	 * Expects string which is literally one of:
 	 * <ul>
@@ -235,6 +264,18 @@ public class SuggestServiceProperties implements SuggestConfigProvider {
 				.map(Boolean::parseBoolean)
 				.ifPresent(baseConfig::setIndexConcurrently);
 
+		getPropertyValue(PROPERTY_OFF_HEAP_FUZZY_INDEX, customPropertyInfix)
+				.map(Boolean::parseBoolean)
+				.ifPresent(baseConfig::setUseOffHeapFuzzyIndex);
+
+		getPropertyValue(PROPERTY_COMBINED_LOOKUP, customPropertyInfix)
+				.map(Boolean::parseBoolean)
+				.ifPresent(baseConfig::setUseCombinedLookup);
+
+		getPropertyValue(PROPERTY_ARCHIVE_CODEC, customPropertyInfix)
+				.map(ArchiveCodec::valueOf)
+				.ifPresent(baseConfig::setArchiveCodec);
+
 		return baseConfig;
 	}
 
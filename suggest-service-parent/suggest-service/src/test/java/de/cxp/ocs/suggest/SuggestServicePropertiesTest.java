@@ -5,6 +5,7 @@ import java.util.*;
 
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig;
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig.SortStrategy;
+import de.cxp.ocs.smartsuggest.util.ArchiveCodec;
 import org.junit.jupiter.api.Test;
 
 import de.cxp.ocs.smartsuggest.spi.SuggestConfig.GroupConfig;
@@ -66,6 +67,9 @@ public class SuggestServicePropertiesTest {
 		assertFalse(suggestConfig.isAlwaysDoFuzzy());
 		assertEquals(SortStrategy.PrimaryAndSecondaryByWeight, suggestConfig.getSortStrategy());
 		assertTrue(suggestConfig.isIndexConcurrently());
+		assertFalse(suggestConfig.isUseOffHeapFuzzyIndex());
+		assertFalse(suggestConfig.isUseCombinedLookup());
+		assertEquals(ArchiveCodec.TAR_GZ, suggestConfig.getArchiveCodec());
 	}
 	
 }